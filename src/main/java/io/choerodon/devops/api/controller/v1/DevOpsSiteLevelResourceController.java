@@ -17,9 +17,11 @@ import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.devops.api.vo.AppServiceRepVO;
 import io.choerodon.devops.api.vo.ClusterOverViewVO;
 import io.choerodon.devops.api.vo.UserAttrVO;
+import io.choerodon.devops.api.vo.ValuesMergeCacheStatsVO;
 import io.choerodon.devops.app.service.AppServiceService;
 import io.choerodon.devops.app.service.DevopsClusterService;
 import io.choerodon.devops.app.service.UserAttrService;
+import io.choerodon.devops.infra.handler.ValuesMergeCache;
 import io.choerodon.swagger.annotation.Permission;
 
 /**
@@ -37,6 +39,8 @@ public class DevOpsSiteLevelResourceController {
     private UserAttrService userAttrService;
     @Autowired
     private AppServiceService appServiceService;
+    @Autowired
+    private ValuesMergeCache valuesMergeCache;
 
     @Permission(level = ResourceLevel.SITE, roles = InitRoleCode.SITE_ADMINISTRATOR)
     @GetMapping("/clusters/overview")
@@ -77,4 +81,18 @@ public class DevOpsSiteLevelResourceController {
             @RequestBody Set<Long> gitlabUserIds) {
         return new ResponseEntity<>(userAttrService.listUsersByGitlabUserIds(gitlabUserIds), HttpStatus.OK);
     }
+
+    @Permission(level = ResourceLevel.SITE, roles = InitRoleCode.SITE_ADMINISTRATOR)
+    @ApiOperation(value = "查询values合并结果缓存的统计信息")
+    @GetMapping(value = "/values_merge_cache")
+    public ResponseEntity<ValuesMergeCacheStatsVO> queryValuesMergeCacheStats() {
+        return new ResponseEntity<>(valuesMergeCache.getStats(), HttpStatus.OK);
+    }
+
+    @Permission(level = ResourceLevel.SITE, roles = InitRoleCode.SITE_ADMINISTRATOR)
+    @ApiOperation(value = "清空values合并结果缓存, 返回清除的条目数量")
+    @DeleteMapping(value = "/values_merge_cache")
+    public ResponseEntity<Integer> flushValuesMergeCache() {
+        return new ResponseEntity<>(valuesMergeCache.flush(), HttpStatus.OK);
+    }
 }
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
+import io.choerodon.devops.api.vo.CiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.app.service.DevopsCiJobService;
@@ -66,6 +67,18 @@ public class DevopsCiJobController {
         return ResponseEntity.ok(devopsCiJobService.queryTrace(gitlabProjectId, jobId));
     }
 
+    @Permission(level = ResourceLevel.ORGANIZATION, roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
+    @ApiOperation(value = "从指定位置增量查询job日志")
+    @GetMapping("/gitlab_projects/{gitlab_project_id}/gitlab_jobs/{job_id}/trace_chunk")
+    public ResponseEntity<CiJobTraceVO> queryTraceChunk(
+            @PathVariable(value = "project_id") Long projectId,
+            @PathVariable(value = "gitlab_project_id") Long gitlabProjectId,
+            @PathVariable(value = "job_id") Long jobId,
+            @ApiParam(value = "开始的字节位置, 使用上一次返回的nextOffset, 第一次查询时为0")
+            @RequestParam(value = "offset", required = false, defaultValue = "0") Long offset) {
+        return ResponseEntity.ok(devopsCiJobService.queryTrace(projectId, gitlabProjectId, jobId, offset));
+    }
+
     @Permission(level = ResourceLevel.ORGANIZATION, roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
     @ApiOperation(value = "重试job")
     @GetMapping("/gitlab_projects/{gitlab_project_id}/gitlab_jobs/{job_id}/retry")
@@ -5,6 +5,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.iam.InitRoleCode;
 import io.choerodon.core.iam.ResourceLevel;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
+import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
 import io.choerodon.devops.app.service.DevopsEnvPodService;
 import io.choerodon.devops.infra.dto.AppServiceDTO;
 import io.choerodon.devops.infra.dto.DevopsEnvPodDTO;
@@ -22,6 +23,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -116,4 +118,27 @@ public class DevopsEnvPodController {
         devopsEnvPodService.deleteEnvPodById(projectId, envId, podId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * 查询pod降采样后的cpu和内存用量历史
+     *
+     * @param envId 环境id
+     * @param podId pod id
+     * @return 历史数据
+     */
+    @Permission(level = ResourceLevel.ORGANIZATION,
+            roles = {InitRoleCode.PROJECT_OWNER, InitRoleCode.PROJECT_MEMBER})
+    @ApiOperation(value = "查询pod的资源用量历史")
+    @GetMapping("/{pod_id}/metrics_history")
+    public ResponseEntity<List<PodMetricsRedisInfoVO>> queryPodMetricsHistory(
+            @ApiParam(value = "项目id")
+            @PathVariable(value = "project_id") Long projectId,
+            @Encrypt
+            @ApiParam(value = "podId")
+            @PathVariable(value = "pod_id") Long podId,
+            @Encrypt
+            @ApiParam(value = "环境id", required = true)
+            @RequestParam(value = "env_id") Long envId) {
+        return ResponseEntity.ok(devopsEnvPodService.queryPodMetricsHistory(projectId, envId, podId));
+    }
 }
@@ -0,0 +1,62 @@
+package io.choerodon.devops.api.vo;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * 从指定位置开始的一段job日志
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class CiJobTraceVO {
+    @ApiModelProperty("从请求的位置开始新增的日志内容")
+    private String content;
+    @ApiModelProperty("下一次请求使用的位置, 也就是目前日志的总字节数")
+    private Long nextOffset;
+    @ApiModelProperty("job是否已经结束, 结束后日志不会再增加, 不需要继续请求")
+    private Boolean complete;
+    @ApiModelProperty("请求的位置超出了日志的长度, 这次返回的是从头开始的完整日志")
+    private Boolean reset;
+
+    public CiJobTraceVO() {
+    }
+
+    public CiJobTraceVO(String content, Long nextOffset, Boolean complete, Boolean reset) {
+        this.content = content;
+        this.nextOffset = nextOffset;
+        this.complete = complete;
+        this.reset = reset;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Long getNextOffset() {
+        return nextOffset;
+    }
+
+    public void setNextOffset(Long nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+
+    public Boolean getComplete() {
+        return complete;
+    }
+
+    public void setComplete(Boolean complete) {
+        this.complete = complete;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+}
@@ -0,0 +1,52 @@
+package io.choerodon.devops.api.vo;
+
+/**
+ * 流水线记录中某个阶段处于某个状态的job数量, 由sql聚合得到
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class JobStatusCountVO {
+    /**
+     * ci流水线记录的id或者cd阶段记录的id
+     */
+    private Long recordId;
+    /**
+     * 阶段名称, 只有ci的job记录有
+     */
+    private String stage;
+    private String status;
+    private Long jobCount;
+
+    public Long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(Long recordId) {
+        this.recordId = recordId;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getJobCount() {
+        return jobCount;
+    }
+
+    public void setJobCount(Long jobCount) {
+        this.jobCount = jobCount;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Date;
 
 public class JobWebHookVO {
 
+    private Long projectId;
     private String sha;
     private String ref;
     private Long buildId;
@@ -16,6 +17,14 @@ public class JobWebHookVO {
 
     private JobCommitVO commit;
 
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
     public String getSha() {
         return sha;
     }
@@ -0,0 +1,43 @@
+package io.choerodon.devops.api.vo;
+
+/**
+ * 一条流水线的执行记录统计
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class PipelineRecordRelStatsVO {
+    private Long pipelineId;
+    /**
+     * 执行记录的总数
+     */
+    private Long recordCount;
+    /**
+     * 第一条执行记录的id
+     */
+    private Long firstRecordRelId;
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    public void setPipelineId(Long pipelineId) {
+        this.pipelineId = pipelineId;
+    }
+
+    public Long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(Long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public Long getFirstRecordRelId() {
+        return firstRecordRelId;
+    }
+
+    public void setFirstRecordRelId(Long firstRecordRelId) {
+        this.firstRecordRelId = firstRecordRelId;
+    }
+}
@@ -13,7 +13,14 @@ public class PodMetricsRedisInfoVO {
     private String memory;
     private Date snapShotTime;
     private String clusterCode;
-
+    /**
+     * cpu用量, 单位: 毫核
+     */
+    private Long cpuMillicores;
+    /**
+     * 内存用量, 单位: 字节
+     */
+    private Long memoryBytes;
 
     public String getNamespace() {
         return namespace;
@@ -62,4 +69,20 @@ public class PodMetricsRedisInfoVO {
     public void setClusterCode(String clusterCode) {
         this.clusterCode = clusterCode;
     }
+
+    public Long getCpuMillicores() {
+        return cpuMillicores;
+    }
+
+    public void setCpuMillicores(Long cpuMillicores) {
+        this.cpuMillicores = cpuMillicores;
+    }
+
+    public Long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public void setMemoryBytes(Long memoryBytes) {
+        this.memoryBytes = memoryBytes;
+    }
 }
@@ -0,0 +1,102 @@
+package io.choerodon.devops.api.vo;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * values合并结果缓存的统计信息
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class ValuesMergeCacheStatsVO {
+    @ApiModelProperty("是否启用缓存")
+    private Boolean enabled;
+    @ApiModelProperty("当前缓存的条目数量")
+    private Integer size;
+    @ApiModelProperty("缓存的最大条目数量")
+    private Integer maxEntries;
+    @ApiModelProperty("当前缓存内容的总字符数")
+    private Long weight;
+    @ApiModelProperty("缓存内容的最大总字符数")
+    private Long maxWeight;
+    @ApiModelProperty("命中次数")
+    private Long hitCount;
+    @ApiModelProperty("未命中次数")
+    private Long missCount;
+    @ApiModelProperty("淘汰的条目数量")
+    private Long evictionCount;
+    @ApiModelProperty("命中率")
+    private Double hitRate;
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public void setSize(Integer size) {
+        this.size = size;
+    }
+
+    public Integer getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(Integer maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Long getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Long weight) {
+        this.weight = weight;
+    }
+
+    public Long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(Long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public Long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(Long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public Long getMissCount() {
+        return missCount;
+    }
+
+    public void setMissCount(Long missCount) {
+        this.missCount = missCount;
+    }
+
+    public Long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public void setEvictionCount(Long evictionCount) {
+        this.evictionCount = evictionCount;
+    }
+
+    public Double getHitRate() {
+        return hitRate;
+    }
+
+    public void setHitRate(Double hitRate) {
+        this.hitRate = hitRate;
+    }
+}
@@ -14,6 +14,7 @@ import io.choerodon.devops.infra.enums.CommandStatus;
 import io.choerodon.devops.infra.enums.HelmType;
 import io.choerodon.devops.infra.enums.InstanceStatus;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
+import io.choerodon.devops.infra.handler.ClusterSessionRegistry;
 import io.choerodon.devops.infra.util.JsonHelper;
 import io.choerodon.devops.infra.util.KeyParseUtil;
 import io.choerodon.devops.infra.util.TypeUtil;
@@ -50,6 +51,9 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private ClusterSessionRegistry clusterSessionRegistry;
+
     @Autowired
     private DevopsClusterService devopsClusterService;
 
@@ -65,6 +69,12 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
     @Autowired
     private AgentMsgHandlerService agentMsgHandlerService;
 
+    @Autowired
+    private AgentMessageDispatcher agentMessageDispatcher;
+
+    @Autowired
+    private ResourceUpdateCoalescer resourceUpdateCoalescer;
+
     @Override
     public String processor() {
         return DevOpsWebSocketConstants.AGENT;
@@ -82,7 +92,7 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
         clusterSession.setClusterId(clusterId);
         clusterSession.setVersion(WebSocketTool.getVersion(session));
         clusterSession.setRegisterKey(group);
-        redisTemplate.opsForHash().put(CLUSTER_SESSION, clusterSession.getRegisterKey(), clusterSession);
+        clusterSessionRegistry.register(clusterSession);
 
         // 连接成功之后,如果agent版本不匹配则提示升级agent,匹配则返回集群下关联环境的ssh信息
         List<Long> unnecessaryToUpgrade = clusterConnectionHandler.getUpdatedClusterList();
@@ -137,6 +147,25 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(msg.toString());
         }
+        Long clusterId = TypeUtil.objToLong(msg.getClusterId());
+        if (HelmType.RESOURCE_UPDATE == helmType) {
+            // 同一资源还未处理的更新消息会被合并
+            ResourceUpdateCoalescer.CoalescedUpdate task = resourceUpdateCoalescer.offer(clusterId, msg.getKey(), msg.getPayload(),
+                    payload -> agentMsgHandlerService.resourceUpdate(msg.getKey(), payload, clusterId));
+            if (task != null && !agentMessageDispatcher.dispatch(clusterId, helmType, task)) {
+                // 没有入队的任务不会执行, 需要丢弃, 否则这个资源之后的更新都会被合并到这个任务里
+                task.discard();
+            }
+            return;
+        }
+        if (HelmType.RESOURCE_DELETE == helmType) {
+            resourceUpdateCoalescer.seal(clusterId, msg.getKey());
+        }
+        // 交给工作线程处理, 不阻塞WebSocket容器线程
+        agentMessageDispatcher.dispatch(clusterId, helmType, () -> handleMessage(msg, helmType));
+    }
+
+    private void handleMessage(AgentMsgVO msg, HelmType helmType) {
         switch (helmType) {
             // JOB的相关信息
             case HELM_INSTALL_JOB_INFO:
@@ -188,11 +217,7 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
                 agentMsgHandlerService.helmUpgradeJobInfo(
                         msg.getKey(), msg.getPayload(), TypeUtil.objToLong(msg.getClusterId()));
                 break;
-            // 资源更新devops_env_resource和detail
-            case RESOURCE_UPDATE:
-                agentMsgHandlerService.resourceUpdate(
-                        msg.getKey(), msg.getPayload(), TypeUtil.objToLong(msg.getClusterId()));
-                break;
+            // 资源更新devops_env_resource和detail (RESOURCE_UPDATE) 在doHandle中经过合并后处理
             // 资源删除
             case RESOURCE_DELETE:
                 agentMsgHandlerService.resourceDelete(msg.getKey(), msg.getPayload(), TypeUtil.objToLong(msg.getClusterId()));
@@ -324,14 +349,14 @@ public class AgentGitOpsSocketHandler extends AbstractSocketHandler {
                 // 误将新连接的key删掉（两者是同一个key）
                 if (Objects.equals(sessionId, clusterSessionVO.getWebSocketSessionId())) {
                     //移除关联关系
-                    redisTemplate.opsForHash().delete(CLUSTER_SESSION, registerKey);
+                    clusterSessionRegistry.unregister(registerKey);
                 } else {
                     LOGGER.info("This is an elder session whose registerKey value was updated by a new session. the session cluster id is {}", clusterId);
                 }
             } else {
                 // 这个逻辑不应该进的
                 LOGGER.warn("Value of register key is not of Class 'io.choerodon.devops.api.vo.ClusterSessionVO', and its real class is {}", registerKeyValue.getClass());
-                redisTemplate.opsForHash().delete(CLUSTER_SESSION, registerKey);
+                clusterSessionRegistry.unregister(registerKey);
             }
         }
     }
@@ -0,0 +1,143 @@
+package io.choerodon.devops.api.ws.gitops;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.enums.HelmType;
+
+/**
+ * 将agent发送的GitOps消息从WebSocket容器线程分发到工作线程处理
+ * 同一个集群的消息总是进入同一个有界的队列并由同一个线程按顺序处理, 保证同一集群内的资源消息顺序,
+ * 不同集群的消息则可以在不同的线程上并行处理, 避免某个慢消息阻塞整个集群的消息流
+ * <p>
+ * 队列满时WebSocket线程等待入队, 对agent形成背压. 只有agent会定时重新发送的消息类型 ({@link #DROPPABLE_TYPES})
+ * 在等待超时后被丢弃, 其它类型的消息 (命令执行结果, GitOps同步事件, job和实例状态等) 丢弃后agent不会重发, 所以一直等待到入队为止
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class AgentMessageDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentMessageDispatcher.class);
+
+    private static final String METRIC_LATENCY = "devops.agent.message.latency";
+    private static final String METRIC_DROPPED = "devops.agent.message.dropped";
+    private static final String METRIC_QUEUE_DEPTH = "devops.agent.message.queue.depth";
+    private static final String TAG_TYPE = "type";
+
+    /**
+     * agent会定时重新发送的消息类型, 丢弃后下一次发送时恢复:
+     * 资源更新 (informer定时resync, 未入队的更新由ResourceUpdateCoalescer丢弃后随下一次更新恢复),
+     * 资源状态同步请求, 节点数据以及pod实时数据
+     */
+    static final Set<HelmType> DROPPABLE_TYPES = EnumSet.of(HelmType.RESOURCE_UPDATE,
+            HelmType.RESOURCE_STATUS_SYNC_EVENT, HelmType.NODE_SYNC, HelmType.POD_METRICS_SYNC);
+
+    /**
+     * 工作线程数量, 也就是队列的数量
+     */
+    @Value("${devops.agent.message.workerCount:8}")
+    private Integer workerCount;
+    /**
+     * 每个队列的容量
+     */
+    @Value("${devops.agent.message.queueCapacity:2000}")
+    private Integer queueCapacity;
+    /**
+     * 队列满时WebSocket线程等待可以丢弃的消息入队的最长时间, 超时后丢弃消息, 单位: 毫秒
+     */
+    @Value("${devops.agent.message.offerTimeoutMillis:5000}")
+    private Long offerTimeoutMillis;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<ThreadPoolExecutor> lanes = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(queueCapacity);
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+                    r -> {
+                        Thread thread = new Thread(r, "agent-message-" + threadIndex.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // 队列由dispatch直接写入, 所以需要提前启动消费线程
+            lane.prestartAllCoreThreads();
+            lanes.add(lane);
+            meterRegistry.gauge(METRIC_QUEUE_DEPTH, Tags.of("lane", String.valueOf(i)), queue, BlockingQueue::size);
+        }
+        LOGGER.info("Agent message dispatcher started with {} lanes, each with capacity {}", workerCount, queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lanes.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * 分发消息
+     *
+     * @param clusterId 集群id, 决定消息进入的队列
+     * @param helmType  消息类型, 决定队列满时是否可以丢弃, 也用于指标
+     * @param handler   消息的处理逻辑
+     * @return 消息是否入队, 可以丢弃的消息等待超时或者等待时线程被中断时为false
+     */
+    public boolean dispatch(Long clusterId, HelmType helmType, Runnable handler) {
+        long enqueuedAt = System.nanoTime();
+        Timer latency = meterRegistry.timer(METRIC_LATENCY, TAG_TYPE, helmType.value);
+        Runnable task = () -> {
+            try {
+                handler.run();
+                // 将异常捕获，避免工作线程因为异常退出
+            } catch (Exception ex) {
+                LOGGER.warn("Handle Agent Message: an unexpected exception occurred", ex);
+            } finally {
+                latency.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        BlockingQueue<Runnable> queue = laneOf(clusterId).getQueue();
+        boolean accepted;
+        try {
+            // 直接操作队列而不是execute, 以便在队列满时等待, 对agent形成背压
+            if (DROPPABLE_TYPES.contains(helmType)) {
+                accepted = queue.offer(task, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                queue.put(task);
+                accepted = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            meterRegistry.counter(METRIC_DROPPED, TAG_TYPE, helmType.value).increment();
+            LOGGER.warn("Agent message of type {} from cluster {} was dropped because the queue is full or the thread was interrupted", helmType.value, clusterId);
+        }
+        return accepted;
+    }
+
+    private ThreadPoolExecutor laneOf(Long clusterId) {
+        int hash = clusterId == null ? 0 : clusterId.hashCode();
+        return lanes.get(Math.floorMod(hash, lanes.size()));
+    }
+}
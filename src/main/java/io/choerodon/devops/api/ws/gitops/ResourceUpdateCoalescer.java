@@ -0,0 +1,158 @@
+package io.choerodon.devops.api.ws.gitops;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.util.KeyParseUtil;
+
+/**
+ * 合并同一资源的多条RESOURCE_UPDATE消息
+ * 资源更新消息进入集群的消息队列后, 在被处理之前, 同一个资源 (集群, 命名空间, 类型, 名称) 后续到达的更新消息
+ * 只会替换掉待处理的消息内容 (保留resourceVersion最新的), 而不会再次入队, 所以一次突发的几十条更新最终只写一次数据库
+ * 合并窗口就是消息在队列中等待的时间, 所以不会打乱同一集群内消息的顺序
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class ResourceUpdateCoalescer {
+    private static final String METRIC_RESOURCE_UPDATE = "devops.agent.resource.update";
+    private static final Pattern RESOURCE_VERSION_PATTERN = Pattern.compile("\"resourceVersion\"\\s*:\\s*\"(\\d+)\"");
+
+    /**
+     * 资源的key -> 待处理的消息
+     */
+    private final Map<String, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+
+    private final Counter coalescedCounter;
+    private final Counter appliedCounter;
+    private final Counter discardedCounter;
+
+    public ResourceUpdateCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedCounter = meterRegistry.counter(METRIC_RESOURCE_UPDATE, "result", "coalesced");
+        this.appliedCounter = meterRegistry.counter(METRIC_RESOURCE_UPDATE, "result", "applied");
+        this.discardedCounter = meterRegistry.counter(METRIC_RESOURCE_UPDATE, "result", "discarded");
+    }
+
+    /**
+     * 提交一条资源更新消息
+     *
+     * @param clusterId 集群id
+     * @param key       agent消息的key
+     * @param payload   agent消息的内容
+     * @param handler   处理消息内容的逻辑
+     * @return 需要入队执行的任务, 如果消息被合并到已经在队列中的任务里, 返回null.
+     * 任务没能入队时必须调用 {@link CoalescedUpdate#discard()}, 否则之后的更新都会被合并到这个不会执行的任务里
+     */
+    public CoalescedUpdate offer(Long clusterId, String key, String payload, Consumer<String> handler) {
+        String resourceKey = resourceKey(clusterId, key);
+        long version = parseResourceVersion(payload);
+        PendingUpdate[] created = new PendingUpdate[1];
+        pendingUpdates.compute(resourceKey, (k, pending) -> {
+            if (pending == null) {
+                created[0] = new PendingUpdate(payload, version);
+                return created[0];
+            }
+            // 未能解析出版本号时以后到达的消息为准
+            if (version < 0 || pending.version < 0 || version >= pending.version) {
+                pending.payload = payload;
+                pending.version = version;
+            }
+            coalescedCounter.increment();
+            return pending;
+        });
+
+        if (created[0] == null) {
+            return null;
+        }
+        return new CoalescedUpdate(resourceKey, created[0], handler);
+    }
+
+    /**
+     * 结束资源当前的合并, 用于资源删除等需要和更新保持先后顺序的消息,
+     * 在这之后到达的更新消息不会被合并到之前入队的任务中
+     *
+     * @param clusterId 集群id
+     * @param key       agent消息的key
+     */
+    public void seal(Long clusterId, String key) {
+        pendingUpdates.remove(resourceKey(clusterId, key));
+    }
+
+    private static String resourceKey(Long clusterId, String key) {
+        return clusterId + ":" + KeyParseUtil.getNamespace(key) + ":" + KeyParseUtil.getResourceType(key) + ":" + KeyParseUtil.getResourceName(key);
+    }
+
+    /**
+     * 只取出resourceVersion而不反序列化整个消息
+     *
+     * @param payload 消息内容
+     * @return 版本号, 解析不到时为-1
+     */
+    private static long parseResourceVersion(String payload) {
+        if (payload == null) {
+            return -1;
+        }
+        Matcher matcher = RESOURCE_VERSION_PATTERN.matcher(payload);
+        if (matcher.find()) {
+            try {
+                return Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 一个资源合并后的更新任务
+     */
+    public class CoalescedUpdate implements Runnable {
+        private final String resourceKey;
+        private final PendingUpdate own;
+        private final Consumer<String> handler;
+
+        private CoalescedUpdate(String resourceKey, PendingUpdate own, Consumer<String> handler) {
+            this.resourceKey = resourceKey;
+            this.own = own;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            // 从map中移除之后, 这条待处理的消息就不会再被修改了, 之后的消息会开始新的合并
+            release();
+            appliedCounter.increment();
+            handler.accept(own.payload);
+        }
+
+        /**
+         * 任务没能入队时丢弃, 之后到达的更新消息会开始新的合并
+         */
+        public void discard() {
+            release();
+            discardedCounter.increment();
+        }
+
+        private void release() {
+            pendingUpdates.computeIfPresent(resourceKey, (k, pending) -> pending == own ? null : pending);
+        }
+    }
+
+    private static class PendingUpdate {
+        private String payload;
+        private long version;
+
+        private PendingUpdate(String payload, long version) {
+            this.payload = payload;
+            this.version = version;
+        }
+    }
+}
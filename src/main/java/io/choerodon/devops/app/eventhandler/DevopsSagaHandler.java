@@ -35,6 +35,7 @@ import io.choerodon.devops.infra.enums.CommandType;
 import io.choerodon.devops.infra.enums.PipelineStatus;
 import io.choerodon.devops.infra.enums.WorkFlowStatus;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
+import io.choerodon.devops.infra.handler.GitOpsSyncScheduler;
 import io.choerodon.devops.infra.util.GitUserNameUtil;
 import io.choerodon.devops.infra.util.JsonHelper;
 import io.choerodon.devops.infra.util.TypeUtil;
@@ -57,6 +58,8 @@ public class DevopsSagaHandler {
     @Autowired
     private DevopsGitService devopsGitService;
     @Autowired
+    private GitOpsSyncScheduler gitOpsSyncScheduler;
+    @Autowired
     private AppServiceService appServiceService;
     @Autowired
     private DevopsGitlabPipelineService devopsGitlabPipelineService;
@@ -165,7 +168,7 @@ public class DevopsSagaHandler {
             concurrentLimitPolicy = SagaDefinition.ConcurrentLimitPolicy.TYPE_AND_ID,
             seq = 1)
     public String gitops(String data) {
-        devopsGitService.fileResourceSync(JsonHelper.unmarshalByJackson(data, PushWebHookVO.class));
+        gitOpsSyncScheduler.sync(JsonHelper.unmarshalByJackson(data, PushWebHookVO.class));
         return data;
     }
 
@@ -81,6 +81,8 @@ public class SagaHandler {
             seq = 1)
     public String handleGitOpsGroupEvent(String msg) {
         ProjectPayload projectPayload = gson.fromJson(msg, ProjectPayload.class);
+        // 清除创建前查询时可能缓存的 "项目不存在"
+        baseServiceClientOperator.evictProjectCache(projectPayload.getProjectId());
         GitlabGroupPayload gitlabGroupPayload = new GitlabGroupPayload();
         BeanUtils.copyProperties(projectPayload, gitlabGroupPayload);
         loggerInfo(gitlabGroupPayload);
@@ -104,6 +106,7 @@ public class SagaHandler {
             seq = 1)
     public String handleUpdateGitOpsGroupEvent(String msg) {
         ProjectPayload projectPayload = gson.fromJson(msg, ProjectPayload.class);
+        baseServiceClientOperator.evictProjectCache(projectPayload.getProjectId());
         GitlabGroupPayload gitlabGroupPayload = new GitlabGroupPayload();
         BeanUtils.copyProperties(projectPayload, gitlabGroupPayload);
         loggerInfo(msg);
@@ -160,6 +163,8 @@ public class SagaHandler {
         LOGGER.info("create user start");
         loggerInfo(gitlabUserDTO);
         gitlabUserDTO.forEach(t -> {
+            baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(t.getId()));
+            baseServiceClientOperator.evictUserEmailCache(t.getEmail());
             GitlabUserRequestVO gitlabUserReqDTO = new GitlabUserRequestVO();
             gitlabUserReqDTO.setProvider("oauth2_generic");
             gitlabUserReqDTO.setExternUid(t.getId());
@@ -189,6 +194,8 @@ public class SagaHandler {
     public String handleUpdateUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
+        baseServiceClientOperator.evictUserEmailCache(gitlabUserVO.getEmail());
 
         GitlabUserRequestVO gitlabUserReqDTO = new GitlabUserRequestVO();
         gitlabUserReqDTO.setProvider("oauth2_generic");
@@ -214,6 +221,7 @@ public class SagaHandler {
     public String handleIsEnabledUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
 
         gitlabUserService.isEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserVO.getId()));
         return payload;
@@ -229,6 +237,7 @@ public class SagaHandler {
     public String handleDisEnabledUserEvent(String payload) {
         GitlabUserVO gitlabUserVO = gson.fromJson(payload, GitlabUserVO.class);
         loggerInfo(gitlabUserVO);
+        baseServiceClientOperator.evictUserCache(TypeUtil.objToLong(gitlabUserVO.getId()));
 
         gitlabUserService.disEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserVO.getId()));
         return payload;
@@ -241,6 +250,9 @@ public class SagaHandler {
             seq = 1)
     public String handleAssignAdminEvent(String payload) {
         AssignAdminVO assignAdminVO = JSONObject.parseObject(payload, AssignAdminVO.class);
+        if (assignAdminVO != null && assignAdminVO.getAdminUserIds() != null) {
+            assignAdminVO.getAdminUserIds().forEach(baseServiceClientOperator::evictUserCache);
+        }
         gitlabUserService.assignAdmins(assignAdminVO == null ? Collections.emptyList() : assignAdminVO.getAdminUserIds());
         return payload;
     }
@@ -252,6 +264,9 @@ public class SagaHandler {
             seq = 1)
     public String handleDeleteAdminEvent(String payload) {
         DeleteAdminVO deleteAdminVO = JSONObject.parseObject(payload, DeleteAdminVO.class);
+        if (deleteAdminVO != null) {
+            baseServiceClientOperator.evictUserCache(deleteAdminVO.getAdminUserId());
+        }
         gitlabUserService.deleteAdmin(deleteAdminVO == null ? null : deleteAdminVO.getAdminUserId());
         return payload;
     }
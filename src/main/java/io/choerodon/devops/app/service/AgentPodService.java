@@ -1,6 +1,8 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
 import org.springframework.lang.Nullable;
@@ -27,6 +29,15 @@ public interface AgentPodService {
      */
     List<PodMetricsRedisInfoVO> queryAllPodSnapshots(String podName, String namespace, String clusterCode);
 
+    /**
+     * 查询一个Pod降采样后的历史数据, 每个时间间隔一条, 未开启历史数据时为空
+     *
+     * @param podName   pod名称
+     * @param namespace kubernetes namespace
+     * @return 历史数据
+     */
+    List<PodMetricsRedisInfoVO> queryPodSnapshotHistory(String podName, String namespace, String clusterCode);
+
     /**
      * 查询Pod在Redis中最新的实时数据
      *
@@ -36,4 +47,13 @@ public interface AgentPodService {
      */
     @Nullable
     PodMetricsRedisInfoVO queryLatestPodSnapshot(String podName, String namespace, String clusterCode);
+
+    /**
+     * 批量查询同一个命名空间下多个Pod最新的实时数据
+     *
+     * @param podNames  pod names
+     * @param namespace kubernetes namespace
+     * @return pod name -> 最新的实时数据, 没有数据的pod不在其中
+     */
+    Map<String, PodMetricsRedisInfoVO> queryLatestPodSnapshots(Collection<String> podNames, String namespace, String clusterCode);
 }
@@ -286,6 +286,14 @@ public interface AppServiceService {
      */
     SonarContentsVO getSonarContent(Long projectId, Long appServiceId);
 
+    /**
+     * 预热sonarqube相关信息的缓存, 延迟一段时间后在后台查询
+     *
+     * @param projectId    项目Id
+     * @param appServiceId 服务id
+     */
+    void warmUpSonarContent(Long projectId, Long appServiceId);
+
     /**
      * 查看sonarqube相关报表
      *
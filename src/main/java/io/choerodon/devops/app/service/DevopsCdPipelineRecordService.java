@@ -1,5 +1,8 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
+import java.util.Map;
+
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.vo.DevopsCdPipelineRecordVO;
 import io.choerodon.devops.api.vo.HostConnectionVO;
@@ -56,4 +59,12 @@ public interface DevopsCdPipelineRecordService {
     Boolean testConnection(HostConnectionVO hostConnectionVO);
 
     DevopsCdPipelineRecordVO queryByCdPipelineRecordId(Long cdPipelineRecordId);
+
+    /**
+     * 批量查询流水线记录以及阶段状态, 除了等待审核的记录, 查询次数和记录的数量无关
+     *
+     * @param cdPipelineRecordIds cd流水线记录id
+     * @return 记录id -> 记录, 不存在的记录不返回
+     */
+    Map<Long, DevopsCdPipelineRecordVO> queryByCdPipelineRecordIds(Collection<Long> cdPipelineRecordIds);
 }
@@ -19,7 +19,12 @@ public interface DevopsCiJobRecordService {
      */
     DevopsCiJobRecordDTO queryByGitlabJobId(Long gitlabJobId);
 
-    void update(JobWebHookVO jobWebHookVO);
+    /**
+     * 根据job事件批量更新job记录的状态, 同一个job有多个事件时以后面的为准
+     *
+     * @param jobWebHookVOS job事件
+     */
+    void update(List<JobWebHookVO> jobWebHookVOS);
 
     void deleteByPipelineId(Long ciPipelineId);
 
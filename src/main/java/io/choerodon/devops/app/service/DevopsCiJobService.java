@@ -2,6 +2,7 @@ package io.choerodon.devops.app.service;
 
 import java.util.List;
 
+import io.choerodon.devops.api.vo.CiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.infra.dto.DevopsCiJobDTO;
@@ -56,6 +57,17 @@ public interface DevopsCiJobService {
      */
     String queryTrace(Long gitlabProjectId, Long jobId);
 
+    /**
+     * 查询job从指定位置开始新增的日志, 已经结束的job的日志会被缓存
+     *
+     * @param projectId       项目id
+     * @param gitlabProjectId GitLab项目id
+     * @param jobId           GitLab job id
+     * @param offset          开始的字节位置, 为空时从头开始
+     * @return 新增的日志以及下一次请求的位置
+     */
+    CiJobTraceVO queryTrace(Long projectId, Long gitlabProjectId, Long jobId, Long offset);
+
     /**
      * 重试job
      */
@@ -1,6 +1,8 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.vo.DevopsCiPipelineRecordVO;
@@ -34,6 +36,14 @@ public interface DevopsCiPipelineRecordService {
      */
     void asyncPipelineUpdate(Long pipelineRecordId, Integer gitlabPipelineId);
 
+    /**
+     * 在当前线程中拉取gitlab中流水线的状态到数据库进行更新
+     *
+     * @param pipelineRecordId 猪齿鱼流水线纪录id
+     * @param gitlabPipelineId gitlab流水线id
+     */
+    void pipelineUpdate(Long pipelineRecordId, Integer gitlabPipelineId);
+
     DevopsCiPipelineRecordVO queryPipelineRecordDetails(Long projectId, Long ciPipelineRecordId);
 
     /**
@@ -73,4 +83,12 @@ public interface DevopsCiPipelineRecordService {
     List<DevopsCiPipelineRecordDTO> queryNotSynchronizedRecord(Long statusUpdatePeriodMilliSeconds);
 
     DevopsCiPipelineRecordVO queryByCiPipelineRecordId(Long ciPipelineRecordId);
+
+    /**
+     * 批量查询流水线记录以及阶段状态, 查询次数和记录的数量无关
+     *
+     * @param ciPipelineRecordIds ci流水线记录id
+     * @return 记录id -> 记录, 不存在的记录不返回
+     */
+    Map<Long, DevopsCiPipelineRecordVO> queryByCiPipelineRecordIds(Collection<Long> ciPipelineRecordIds);
 }
@@ -3,6 +3,7 @@ package io.choerodon.devops.app.service;
 import io.choerodon.devops.api.vo.DevopsCiStageVO;
 import io.choerodon.devops.infra.dto.DevopsCiStageDTO;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -28,6 +29,13 @@ public interface DevopsCiStageService {
      */
     List<DevopsCiStageDTO> listByPipelineId(Long ciPipelineId);
 
+    /**
+     * 一次查询多条流水线里的阶段
+     * @param ciPipelineIds 流水线id
+     * @return 阶段
+     */
+    List<DevopsCiStageDTO> listByPipelineIds(Collection<Long> ciPipelineIds);
+
     /**
      * 删除阶段
      * @param id
@@ -66,6 +66,15 @@ public interface DevopsCustomizeResourceService {
 
     DevopsCustomizeResourceDTO queryByEnvIdAndKindAndName(Long envId, String kind, String name);
 
+    /**
+     * 查询环境下某种类型的自定义资源
+     *
+     * @param envId 环境id
+     * @param kind  资源类型
+     * @return 自定义资源
+     */
+    List<DevopsCustomizeResourceDTO> listByEnvIdAndKind(Long envId, String kind);
+
     Page<DevopsCustomizeResourceDTO> pageDevopsCustomizeResourceE(Long envId, PageRequest pageable, String params);
 
     void checkExist(Long envId, String kind, String name);
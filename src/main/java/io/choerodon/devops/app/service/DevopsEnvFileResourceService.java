@@ -24,6 +24,14 @@ public interface DevopsEnvFileResourceService {
 
     List<DevopsEnvFileResourceDTO> baseQueryByEnvIdAndPath(Long envId, String path);
 
+    /**
+     * 查询环境下所有的文件资源关系
+     *
+     * @param envId 环境id
+     * @return 文件资源关系
+     */
+    List<DevopsEnvFileResourceDTO> baseListByEnvId(Long envId);
+
     void baseDeleteByEnvIdAndResourceId(Long envId, Long resourceId, String resourceType);
 
     /**
@@ -42,6 +42,20 @@ public interface DevopsEnvFileService {
 
     void baseUpdate(DevopsEnvFileDTO devopsEnvFileDTO);
 
+    /**
+     * 批量插入环境文件记录
+     *
+     * @param devopsEnvFileDTOS 环境文件记录
+     */
+    void batchCreate(List<DevopsEnvFileDTO> devopsEnvFileDTOS);
+
+    /**
+     * 根据id批量更新环境文件记录的devopsCommit
+     *
+     * @param devopsEnvFileDTOS 环境文件记录, 需要有id和devopsCommit
+     */
+    void batchUpdateDevopsCommit(List<DevopsEnvFileDTO> devopsEnvFileDTOS);
+
     void baseDelete(DevopsEnvFileDTO devopsEnvFileDTO);
 
     List<DevopsEnvFileDTO> baseListByEnvIdAndPath(Long envId, String path);
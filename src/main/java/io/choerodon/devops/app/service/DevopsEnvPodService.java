@@ -3,9 +3,11 @@ package io.choerodon.devops.app.service;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.vo.DevopsEnvPodInfoVO;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
+import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
 import io.choerodon.devops.infra.dto.DevopsEnvPodDTO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,7 +26,14 @@ public interface DevopsEnvPodService {
      */
     Page<DevopsEnvPodVO> pageByOptions(Long projectId, Long envId, Long appServiceId, Long instanceId, PageRequest pageable, String searchParam);
 
-    void fillContainers(DevopsEnvPodVO devopsEnvPodVO);
+    /**
+     * 将pod转换为VO并设置容器信息
+     * 优先使用入库时提取的容器摘要, 没有摘要的pod (旧数据) 才解析资源详情, 并补全摘要
+     *
+     * @param devopsEnvPodDTOS pod
+     * @return 设置了容器信息的pod, 顺序不变
+     */
+    List<DevopsEnvPodVO> convertWithContainers(List<DevopsEnvPodDTO> devopsEnvPodDTOS);
 
     DevopsEnvPodDTO baseQueryById(Long id);
 
@@ -40,6 +49,14 @@ public interface DevopsEnvPodService {
 
     void baseDeleteByName(String name, String namespace);
 
+    /**
+     * 批量删除命名空间下指定名称的pod
+     *
+     * @param names     pod名称
+     * @param namespace 命名空间
+     */
+    void baseBatchDeleteByNames(Collection<String> names, String namespace);
+
     void baseDeleteById(Long id);
 
     DevopsEnvPodDTO queryByNameAndEnvName(String name, String namespace);
@@ -55,4 +72,13 @@ public interface DevopsEnvPodService {
 
     void deleteEnvPodById(Long projectId, Long envId, Long podId);
 
+    /**
+     * 查询pod降采样后的cpu和内存用量历史
+     *
+     * @param projectId 项目id
+     * @param envId     环境id
+     * @param podId     pod id
+     * @return 历史数据, 未开启历史数据时为空
+     */
+    List<PodMetricsRedisInfoVO> queryPodMetricsHistory(Long projectId, Long envId, Long podId);
 }
@@ -1,5 +1,6 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.devops.api.vo.DevopsEnvResourceVO;
@@ -40,6 +41,15 @@ public interface DevopsEnvResourceService {
 
     void deleteByEnvIdAndKindAndName(Long envId, String kind, String name);
 
+    /**
+     * 批量删除环境下指定类型和名称的资源
+     *
+     * @param envId 环境id
+     * @param kind  资源类型
+     * @param names 资源名称
+     */
+    void batchDeleteByEnvIdAndKindAndNames(Long envId, String kind, Collection<String> names);
+
     List<DevopsEnvResourceDTO> baseListByEnvAndType(Long envId, String type);
 
     DevopsEnvResourceDTO baseQueryByKindAndName(String kind, String name);
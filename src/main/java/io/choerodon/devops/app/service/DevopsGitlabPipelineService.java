@@ -12,7 +12,12 @@ public interface DevopsGitlabPipelineService {
 
     void create(PipelineWebHookVO pipelineWebHookVO, String token);
 
-    void updateStages(JobWebHookVO jobWebHookVO);
+    /**
+     * 根据同一条流水线的job事件更新流水线阶段的状态, 事件按发生的顺序应用, 只更新一次数据库
+     *
+     * @param jobWebHookVOS 同一条流水线的job事件
+     */
+    void updateStages(List<JobWebHookVO> jobWebHookVOS);
 
     PipelineTimeVO getPipelineTime(Long appServiceId, Date startTime, Date endTime);
 
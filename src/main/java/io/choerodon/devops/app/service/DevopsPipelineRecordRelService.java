@@ -1,6 +1,11 @@
 package io.choerodon.devops.app.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import io.choerodon.core.domain.Page;
+import io.choerodon.devops.api.vo.PipelineRecordRelStatsVO;
 import io.choerodon.devops.infra.dto.DevopsPipelineRecordRelDTO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -22,4 +27,21 @@ public interface DevopsPipelineRecordRelService {
     Page<DevopsPipelineRecordRelDTO> pagingPipelineRel(Long id, PageRequest cicdPipelineRel);
 
     DevopsPipelineRecordRelDTO queryById(Long pipelineRecordRelId);
+
+    /**
+     * 一次查询多条流水线各自最新的若干条执行记录
+     *
+     * @param pipelineIds 流水线id
+     * @param size        每条流水线的记录数量
+     * @return 执行记录, 同一条流水线的记录按id倒序
+     */
+    List<DevopsPipelineRecordRelDTO> listLatestByPipelineIds(Collection<Long> pipelineIds, int size);
+
+    /**
+     * 一次查询多条流水线的执行记录统计
+     *
+     * @param pipelineIds 流水线id
+     * @return 流水线id -> 统计, 没有执行记录的流水线不返回
+     */
+    Map<Long, PipelineRecordRelStatsVO> queryStatsByPipelineIds(Collection<Long> pipelineIds);
 }
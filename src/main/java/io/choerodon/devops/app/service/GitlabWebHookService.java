@@ -2,7 +2,25 @@ package io.choerodon.devops.app.service;
 
 public interface GitlabWebHookService {
 
+    /**
+     * 接收GitLab的webhook事件, token不是对应应用服务的token时忽略事件
+     * 开启异步处理时, 事件入库后立即返回, 由工作线程按GitLab项目顺序处理; 否则在当前线程处理
+     *
+     * @param body  事件内容
+     * @param token webhook的X-Gitlab-Token
+     */
     void forwardingEventToPortal(String body, String token);
 
     void gitOpsWebHook(String body, String token);
+
+    /**
+     * 重新处理已经入库但没有处理完成的事件
+     * 服务启动后先认领当前实例上一次运行时遗留的事件, 之后只认领超时未处理的事件
+     */
+    void recoverWebhookEvents();
+
+    /**
+     * 将因为队列满而留在数据库中的事件按照接收的顺序放入队列
+     */
+    void drainSpilledEvents();
 }
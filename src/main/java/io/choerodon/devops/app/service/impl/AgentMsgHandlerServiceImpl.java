@@ -205,6 +205,7 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
         devopsEnvPodDTO.setReady(getReadyValue(status, v1Pod));
         devopsEnvPodDTO.setNodeName(v1Pod.getSpec().getNodeName());
         devopsEnvPodDTO.setRestartCount(K8sUtil.getRestartCountForPod(v1Pod));
+        devopsEnvPodDTO.setContainerSummary(K8sUtil.getContainerSummary(v1Pod));
 
         Boolean flag = false;
         if (appServiceInstanceDTO.getId() != null) {
@@ -898,7 +899,6 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
 
         ResourceSyncPayloadDTO resourceSyncPayloadDTO = JSONArray.parseObject(msg, ResourceSyncPayloadDTO.class);
         ResourceType resourceType = ResourceType.forString(resourceSyncPayloadDTO.getResourceType());
-        List<DevopsEnvResourceDTO> devopsEnvResourceDTOS;
         if (resourceType == null) {
             resourceType = ResourceType.MISSTYPE;
         }
@@ -908,51 +908,46 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
         }
         switch (resourceType) {
             case POD:
-                devopsEnvResourceDTOS = devopsEnvResourceService
-                        .baseListByEnvAndType(envId, ResourceType.POD.getType());
-                if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> podNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !podNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO -> {
-                                devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                        envId, ResourceType.POD.getType(), devopsEnvResourceDTO.getName());
-                                devopsEnvPodService.baseDeleteByName(
-                                        devopsEnvResourceDTO.getName(), KeyParseUtil.getValue(key, "env"));
-                            });
-                }
+                Set<String> stalePodNames = deleteStaleResources(envId, ResourceType.POD, resourceSyncPayloadDTO.getResources());
+                devopsEnvPodService.baseBatchDeleteByNames(stalePodNames, KeyParseUtil.getValue(key, "env"));
                 break;
             case DEPLOYMENT:
-                devopsEnvResourceDTOS = devopsEnvResourceService
-                        .baseListByEnvAndType(envId, ResourceType.DEPLOYMENT.getType());
-                if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> deploymentNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !deploymentNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO ->
-                                    devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.DEPLOYMENT.getType(), devopsEnvResourceDTO.getName()));
-                }
-                break;
             case REPLICASET:
-                devopsEnvResourceDTOS = devopsEnvResourceService
-                        .baseListByEnvAndType(envId, ResourceType.REPLICASET.getType());
-                if (!devopsEnvResourceDTOS.isEmpty()) {
-                    List<String> replicaSetNames = Arrays.asList(resourceSyncPayloadDTO.getResources());
-                    devopsEnvResourceDTOS.stream()
-                            .filter(devopsEnvResourceDTO -> !replicaSetNames.contains(devopsEnvResourceDTO.getName()))
-                            .forEach(devopsEnvResourceDTO ->
-                                    devopsEnvResourceService.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.REPLICASET.getType(), devopsEnvResourceDTO.getName()));
-                }
+            case STATEFULSET:
+            case DAEMONSET:
+                deleteStaleResources(envId, resourceType, resourceSyncPayloadDTO.getResources());
                 break;
             default:
                 logger.info("Resource sync: miss type: {}", resourceSyncPayloadDTO.getResourceType());
-                // TODO 可能需要增加其他资源的同步
                 break;
         }
     }
 
+    /**
+     * 删除数据库中存在但是agent同步过来的资源中不存在的资源
+     *
+     * @param envId         环境id
+     * @param resourceType  资源类型
+     * @param resourceNames agent同步过来的资源名称
+     * @return 被删除的资源名称
+     */
+    private Set<String> deleteStaleResources(Long envId, ResourceType resourceType, String[] resourceNames) {
+        List<DevopsEnvResourceDTO> devopsEnvResourceDTOS = devopsEnvResourceService.baseListByEnvAndType(envId, resourceType.getType());
+        if (devopsEnvResourceDTOS.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> existNames = new HashSet<>(Arrays.asList(resourceNames));
+        Set<String> staleNames = devopsEnvResourceDTOS.stream()
+                .map(DevopsEnvResourceDTO::getName)
+                .filter(name -> !existNames.contains(name))
+                .collect(Collectors.toSet());
+        if (!staleNames.isEmpty()) {
+            logger.info("Resource sync: delete {} stale {} in env {}", staleNames.size(), resourceType.getType(), envId);
+            devopsEnvResourceService.batchDeleteByEnvIdAndKindAndNames(envId, resourceType.getType(), staleNames);
+        }
+        return staleNames;
+    }
+
     @Override
     public void helmJobEvent(String msg) {
         Event event = JSONArray.parseObject(msg, Event.class);
@@ -1429,6 +1424,7 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
         devopsEnvPodDTO.setInstanceId(appServiceInstanceDTO.getId());
         devopsEnvPodDTO.setNodeName(v1Pod.getSpec().getNodeName());
         devopsEnvPodDTO.setRestartCount(K8sUtil.getRestartCountForPod(v1Pod));
+        devopsEnvPodDTO.setContainerSummary(K8sUtil.getContainerSummary(v1Pod));
         devopsEnvPodService.baseCreate(devopsEnvPodDTO);
     }
 
@@ -2087,6 +2083,9 @@ public class AgentMsgHandlerServiceImpl implements AgentMsgHandlerService {
                         memory[0] = memory[0] + TypeUtil.objToLong(podMetricsContainerVO.getUsage().getMemory().substring(0, (podMetricsContainerVO.getUsage().getMemory().length() - 2)));
                     }
                 });
+                // 容器用量中cpu的单位是纳核, 内存的单位是Ki
+                podMetricsRedisInfoVO.setCpuMillicores(((Double) Math.ceil(cpu[0] / (1000 * 1000))).longValue());
+                podMetricsRedisInfoVO.setMemoryBytes(((Double) memory[0]).longValue() * 1024);
                 if (cpu[0] != 0L) {
                     podMetricsRedisInfoVO.setCpu(((Double) Math.ceil(cpu[0] / (1000 * 1000))).longValue() + "m");
                 }
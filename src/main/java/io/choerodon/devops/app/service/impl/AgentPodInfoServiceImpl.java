@@ -1,65 +1,254 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.alibaba.fastjson.JSON;
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.devops.app.service.AgentPodService;
+import io.choerodon.devops.infra.util.K8sUtil;
 
 /**
+ * Pod的cpu和内存用量以数值的形式存在redis的list中, 每个元素为 "采样时间(毫秒),cpu(毫核),内存(字节)",
+ * 写入时通过RPUSH + LTRIM保留最近的 {@link #RECORD_SIZE} 个, 即一个环形缓冲区;
+ * 一次上报中所有pod的写入, 以及一个命名空间下所有pod的读取, 都在一次pipeline中完成
+ * <p>
+ * 开启历史数据后, 每个pod在每个时间间隔内的采样取平均值后写入另一个list, 用于查看更长时间的用量
+ *
  * @author zmf
  */
 @Service
 public class AgentPodInfoServiceImpl implements AgentPodService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentPodInfoServiceImpl.class);
+
     /**
-     * pod--${podName}--${namespace}
+     * pod--${podName}--${namespace}--${clusterCode}
      */
     private static final String KEY_PATTERN = "pod--%s--%s--%s";
+    /**
+     * pod-history--${podName}--${namespace}--${clusterCode}
+     */
+    private static final String HISTORY_KEY_PATTERN = "pod-history--%s--%s--%s";
     /**
      * 在redis中存的实时数据的最大数量
      */
     private static final long RECORD_SIZE = 30;
+    private static final String FIELD_SEPARATOR = ",";
+
+    @Value("${devops.pod.metrics.retainSeconds:3600}")
+    private long retainSeconds;
+    @Value("${devops.pod.metrics.history.enabled:false}")
+    private boolean historyEnabled;
+    @Value("${devops.pod.metrics.history.intervalMillis:300000}")
+    private long historyIntervalMillis;
+    @Value("${devops.pod.metrics.history.size:288}")
+    private long historySize;
 
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 历史数据的redis key -> 当前时间间隔内的采样累计
+     */
+    private final Map<String, HistoryBucket> historyBuckets = new ConcurrentHashMap<>();
+    private volatile long lastHistoryPruneBucket;
+
     @Override
     public void handleRealTimePodData(List<PodMetricsRedisInfoVO> pods) {
-        Date snapshotTime = new Date();
-        pods.forEach(pod -> {
-            pod.setSnapShotTime(snapshotTime);
-            String key = String.format(KEY_PATTERN, pod.getName(), pod.getNamespace(), pod.getClusterCode());
-            Long size = stringRedisTemplate.opsForList().size(key);
-            if (size >= RECORD_SIZE) {
-                long stop = size - 1;
-                long start = stop - (RECORD_SIZE - 1) + 1;
-                stringRedisTemplate.opsForList().trim(key, start, stop);
-            }
-            stringRedisTemplate.opsForList().rightPush(key, JSON.toJSONString(pod));
+        long snapshotTime = System.currentTimeMillis();
+        Map<String, String> historySamples = historyEnabled ? collectHistorySamples(pods, snapshotTime) : Collections.emptyMap();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+            pods.forEach(pod -> {
+                String key = String.format(KEY_PATTERN, pod.getName(), pod.getNamespace(), pod.getClusterCode());
+                stringRedisConnection.rPush(key, encode(snapshotTime, pod));
+                stringRedisConnection.lTrim(key, -RECORD_SIZE, -1);
+                stringRedisConnection.expire(key, retainSeconds);
+            });
+            long historyRetainSeconds = historyIntervalMillis * (historySize + 1) / 1000;
+            historySamples.forEach((key, sample) -> {
+                stringRedisConnection.rPush(key, sample);
+                stringRedisConnection.lTrim(key, -historySize, -1);
+                stringRedisConnection.expire(key, historyRetainSeconds);
+            });
+            return null;
         });
     }
 
     @Override
     public List<PodMetricsRedisInfoVO> queryAllPodSnapshots(String podName, String namespace, String clusterCode) {
-        return stringRedisTemplate.opsForList()
-                .range(String.format(KEY_PATTERN, podName, namespace, clusterCode), 0, RECORD_SIZE - 1)
-                .stream()
-                .map(p -> JSON.parseObject(p, PodMetricsRedisInfoVO.class))
-                .collect(Collectors.toList());
+        return decodeAll(stringRedisTemplate.opsForList().range(String.format(KEY_PATTERN, podName, namespace, clusterCode), 0, -1),
+                podName, namespace, clusterCode);
+    }
+
+    @Override
+    public List<PodMetricsRedisInfoVO> queryPodSnapshotHistory(String podName, String namespace, String clusterCode) {
+        return decodeAll(stringRedisTemplate.opsForList().range(String.format(HISTORY_KEY_PATTERN, podName, namespace, clusterCode), 0, -1),
+                podName, namespace, clusterCode);
     }
 
     @Nullable
     @Override
     public PodMetricsRedisInfoVO queryLatestPodSnapshot(String podName, String namespace, String clusterCode) {
-        String key = String.format(KEY_PATTERN, podName, namespace, clusterCode);
-        Long size = stringRedisTemplate.opsForList().size(key);
-        return JSON.parseObject(stringRedisTemplate.opsForList().index(key, size - 1), PodMetricsRedisInfoVO.class);
+        String value = stringRedisTemplate.opsForList().index(String.format(KEY_PATTERN, podName, namespace, clusterCode), -1);
+        return value == null ? null : decode(value, podName, namespace, clusterCode);
+    }
+
+    @Override
+    public Map<String, PodMetricsRedisInfoVO> queryLatestPodSnapshots(Collection<String> podNames, String namespace, String clusterCode) {
+        if (podNames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<String> names = new ArrayList<>(podNames);
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+            names.forEach(podName -> stringRedisConnection.lIndex(String.format(KEY_PATTERN, podName, namespace, clusterCode), -1));
+            return null;
+        });
+        Map<String, PodMetricsRedisInfoVO> snapshots = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                snapshots.put(names.get(i), decode(value.toString(), names.get(i), namespace, clusterCode));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * 将采样累计到当前时间间隔, 进入新的时间间隔时返回上一个时间间隔的平均值
+     *
+     * @return 历史数据的redis key -> 需要写入的采样
+     */
+    private Map<String, String> collectHistorySamples(List<PodMetricsRedisInfoVO> pods, long snapshotTime) {
+        long bucket = snapshotTime / historyIntervalMillis;
+        Map<String, String> samples = new HashMap<>();
+        pods.forEach(pod -> {
+            String key = String.format(HISTORY_KEY_PATTERN, pod.getName(), pod.getNamespace(), pod.getClusterCode());
+            HistoryBucket historyBucket = historyBuckets.computeIfAbsent(key, k -> new HistoryBucket(bucket));
+            synchronized (historyBucket) {
+                if (historyBucket.bucket != bucket) {
+                    if (historyBucket.count > 0) {
+                        samples.put(key, String.join(FIELD_SEPARATOR,
+                                String.valueOf(historyBucket.bucket * historyIntervalMillis),
+                                String.valueOf(historyBucket.cpuMillicores / historyBucket.count),
+                                String.valueOf(historyBucket.memoryBytes / historyBucket.count)));
+                    }
+                    historyBucket.reset(bucket);
+                }
+                historyBucket.add(cpuMillicores(pod), memoryBytes(pod));
+            }
+        });
+        if (bucket > lastHistoryPruneBucket + 1) {
+            // 删除已经不再上报的pod (如已被删除) 的累计, 它们最后一个时间间隔的数据会被丢弃
+            lastHistoryPruneBucket = bucket;
+            historyBuckets.values().removeIf(historyBucket -> historyBucket.bucket < bucket - 1);
+        }
+        return samples;
+    }
+
+    private static String encode(long snapshotTime, PodMetricsRedisInfoVO pod) {
+        return snapshotTime + FIELD_SEPARATOR + cpuMillicores(pod) + FIELD_SEPARATOR + memoryBytes(pod);
+    }
+
+    private static List<PodMetricsRedisInfoVO> decodeAll(@Nullable List<String> values, String podName, String namespace, String clusterCode) {
+        if (values == null) {
+            return new ArrayList<>();
+        }
+        return values.stream()
+                .map(value -> decode(value, podName, namespace, clusterCode))
+                .collect(Collectors.toList());
+    }
+
+    private static PodMetricsRedisInfoVO decode(String value, String podName, String namespace, String clusterCode) {
+        if (value.startsWith("{")) {
+            // 升级前以json存储的数据, 在被新的数据挤出环形缓冲区之前仍然可以读取
+            PodMetricsRedisInfoVO legacy = JSON.parseObject(value, PodMetricsRedisInfoVO.class);
+            legacy.setCpuMillicores(cpuMillicores(legacy));
+            legacy.setMemoryBytes(memoryBytes(legacy));
+            return legacy;
+        }
+        String[] fields = value.split(FIELD_SEPARATOR);
+        PodMetricsRedisInfoVO pod = new PodMetricsRedisInfoVO();
+        pod.setName(podName);
+        pod.setNamespace(namespace);
+        pod.setClusterCode(clusterCode);
+        pod.setSnapShotTime(new Date(Long.parseLong(fields[0])));
+        long cpuMillicores = Long.parseLong(fields[1]);
+        long memoryBytes = Long.parseLong(fields[2]);
+        pod.setCpuMillicores(cpuMillicores);
+        pod.setMemoryBytes(memoryBytes);
+        // 和之前存储的字符串格式保持一致
+        pod.setCpu(cpuMillicores == 0 ? "0" : cpuMillicores + "m");
+        pod.setMemory(memoryBytes >> 20 == 0 ? "0" : (memoryBytes >> 20) + "Mi");
+        return pod;
+    }
+
+    private static long cpuMillicores(PodMetricsRedisInfoVO pod) {
+        if (pod.getCpuMillicores() != null) {
+            return pod.getCpuMillicores();
+        }
+        if (pod.getCpu() == null) {
+            return 0;
+        }
+        try {
+            return Math.round(K8sUtil.getNormalValueFromCpuString(pod.getCpu()) * 1000);
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Unexpected cpu value {} of pod {}", pod.getCpu(), pod.getName());
+            return 0;
+        }
+    }
+
+    private static long memoryBytes(PodMetricsRedisInfoVO pod) {
+        if (pod.getMemoryBytes() != null) {
+            return pod.getMemoryBytes();
+        }
+        if (pod.getMemory() == null) {
+            return 0;
+        }
+        try {
+            return K8sUtil.getByteFromMemoryString(pod.getMemory());
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Unexpected memory value {} of pod {}", pod.getMemory(), pod.getName());
+            return 0;
+        }
+    }
+
+    /**
+     * 一个pod在一个时间间隔内的采样累计
+     */
+    private static class HistoryBucket {
+        private long bucket;
+        private long cpuMillicores;
+        private long memoryBytes;
+        private int count;
+
+        private HistoryBucket(long bucket) {
+            this.bucket = bucket;
+        }
+
+        private void reset(long bucket) {
+            this.bucket = bucket;
+            this.cpuMillicores = 0;
+            this.memoryBytes = 0;
+            this.count = 0;
+        }
+
+        private void add(long cpuMillicores, long memoryBytes) {
+            this.cpuMillicores += cpuMillicores;
+            this.memoryBytes += memoryBytes;
+            this.count++;
+        }
     }
 }
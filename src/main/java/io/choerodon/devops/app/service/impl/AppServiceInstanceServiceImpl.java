@@ -29,9 +29,11 @@ import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.RdupmClient;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.gitops.GitOpsChangeSet;
 import io.choerodon.devops.infra.gitops.ResourceConvertToYamlHandler;
 import io.choerodon.devops.infra.gitops.ResourceFileCheckHandler;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
+import io.choerodon.devops.infra.handler.ValuesMergeCache;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -98,6 +100,8 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
     @Autowired
     private ClusterConnectionHandler clusterConnectionHandler;
     @Autowired
+    private ValuesMergeCache valuesMergeCache;
+    @Autowired
     private AppServiceInstanceMapper appServiceInstanceMapper;
     @Autowired
     private DevopsEnvResourceService devopsEnvResourceService;
@@ -718,12 +722,15 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
                     instanceSagaPayload.getSecretCode(),
                     instanceSagaPayload.getDevopsEnvironmentDTO()));
 
+            GitOpsChangeSet changeSet = new GitOpsChangeSet(instanceSagaPayload.getDevopsEnvironmentDTO().getGitlabEnvProjectId().intValue(),
+                    TypeUtil.objToInteger(instanceSagaPayload.getGitlabUserId()), filePath);
             resourceConvertToYamlHandler.operationEnvGitlabFile(
                     RELEASE_PREFIX + instanceSagaPayload.getAppServiceDeployVO().getInstanceName(),
                     instanceSagaPayload.getDevopsEnvironmentDTO().getGitlabEnvProjectId().intValue(),
                     instanceSagaPayload.getAppServiceDeployVO().getType(),
                     instanceSagaPayload.getGitlabUserId(),
-                    instanceSagaPayload.getAppServiceDeployVO().getInstanceId(), C7NHELM_RELEASE, null, false, instanceSagaPayload.getDevopsEnvironmentDTO().getId(), filePath);
+                    instanceSagaPayload.getAppServiceDeployVO().getInstanceId(), C7NHELM_RELEASE, null, false, instanceSagaPayload.getDevopsEnvironmentDTO().getId(), filePath, changeSet);
+            changeSet.commit(CREATE.equals(instanceSagaPayload.getAppServiceDeployVO().getType()) ? "ADD FILE" : "UPDATE FILE");
 
             //创建实例成功 发送web hook json
             if (CREATE.equals(instanceSagaPayload.getAppServiceDeployVO().getType())) {
@@ -934,6 +941,10 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
                 devopsEnvironmentDTO.getType(),
                 devopsEnvironmentDTO.getClusterCode());
 
+        // 对环境库的修改在一个提交中完成
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
+                TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
+
         DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = devopsEnvFileResourceService
                 .baseQueryByEnvIdAndResourceId(devopsEnvironmentDTO.getId(), instanceId, C7NHELM_RELEASE);
         //如果文件对象对应关系不存在，证明没有部署成功，删掉gitops文件,删掉资源
@@ -943,11 +954,8 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             appServiceInstanceMapper.deleteInstanceRelInfo(instanceId);
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     RELEASE_PREFIX + appServiceInstanceDTO.getCode() + YAML_SUFFIX)) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        RELEASE_PREFIX + appServiceInstanceDTO.getCode() + YAML_SUFFIX,
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(RELEASE_PREFIX + appServiceInstanceDTO.getCode() + YAML_SUFFIX);
+                changeSet.commit("DELETE FILE");
             }
             return;
         } else {
@@ -968,12 +976,9 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
         if (devopsEnvFileResourceES.size() == 1) {
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     devopsEnvFileResourceDTO.getFilePath())) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        devopsEnvFileResourceDTO.getFilePath(),
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(devopsEnvFileResourceDTO.getFilePath());
             }
+            changeSet.commit("DELETE FILE");
         } else {
             ResourceConvertToYamlHandler<C7nHelmRelease> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
             C7nHelmRelease c7nHelmRelease = new C7nHelmRelease();
@@ -987,7 +992,8 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
                     gitlabProjectId,
                     "delete",
                     userAttrDTO.getGitlabUserId(),
-                    appServiceInstanceDTO.getId(), C7NHELM_RELEASE, null, false, devopsEnvironmentDTO.getId(), path);
+                    appServiceInstanceDTO.getId(), C7NHELM_RELEASE, null, false, devopsEnvironmentDTO.getId(), path, changeSet);
+            changeSet.commit("UPDATE FILE");
         }
         //删除实例发送web hook josn通知
         sendNotificationService.sendWhenInstanceSuccessOrDelete(appServiceInstanceDTO, SendSettingEnum.DELETE_RESOURCE.value());
@@ -1083,22 +1089,19 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             return instanceValueVO;
         }
 
-        String fileName = GenerateUUID.generateUUID() + YAML_SUFFIX;
-        String path = "deployfile";
-        FileUtil.saveDataToFile(path, fileName, versionValue + "\n" + "---" + "\n" + deployValue);
+        return valuesMergeCache.computeIfAbsent(versionValue, deployValue, this::mergeValues);
+    }
+
+    private InstanceValueVO mergeValues(String versionValue, String deployValue) {
         InstanceValueVO instanceValueVO;
-        String absoluteFilePath = path + System.getProperty(FILE_SEPARATOR) + fileName;
         try {
-            instanceValueVO = FileUtil.replaceNew(absoluteFilePath);
+            instanceValueVO = ValuesMergeUtil.merge(versionValue, deployValue);
+        } catch (CommonException e) {
+            throw e;
         } catch (Exception e) {
-            FileUtil.deleteFile(absoluteFilePath);
             throw new CommonException(e.getMessage(), e);
         }
-        if (instanceValueVO.getHighlightMarkers() == null) {
-            instanceValueVO.setHighlightMarkers(new ArrayList<>());
-        }
         instanceValueVO.setTotalLine(FileUtil.getFileTotalLine(instanceValueVO.getYaml()));
-        FileUtil.deleteFile(absoluteFilePath);
         return instanceValueVO;
     }
 
@@ -1379,7 +1382,9 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             throw new CommonException("error.env.id.not.exist", batchDeploymentPayload.getEnvId());
         }
 
-        Map<String, String> pathContentMap = new HashMap<>();
+        // 所有资源文件在一个提交中创建
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
+                batchDeploymentPayload.getGitlabUserId(), null);
 
         List<InstanceSagaPayload> instanceSagaPayloads = batchDeploymentPayload.getInstanceSagaPayloads();
         for (InstanceSagaPayload instanceSagaPayload : instanceSagaPayloads) {
@@ -1399,7 +1404,7 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
 
             String instanceContent = resourceConvertToYamlHandler.getCreationResourceContentForBatchDeployment();
             String fileName = GitOpsConstants.RELEASE_PREFIX + instanceSagaPayload.getAppServiceDeployVO().getInstanceName() + GitOpsConstants.YAML_FILE_SUFFIX;
-            pathContentMap.put(fileName, instanceContent);
+            changeSet.create(fileName, instanceContent);
         }
 
         for (ServiceSagaPayLoad serviceSagaPayLoad : batchDeploymentPayload.getServiceSagaPayLoads()) {
@@ -1407,7 +1412,7 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             resourceConvertToYamlHandler.setType(serviceSagaPayLoad.getV1Service());
             String serviceContent = resourceConvertToYamlHandler.getCreationResourceContentForBatchDeployment();
             String fileName = GitOpsConstants.SERVICE_PREFIX + serviceSagaPayLoad.getDevopsServiceDTO().getName() + GitOpsConstants.YAML_FILE_SUFFIX;
-            pathContentMap.put(fileName, serviceContent);
+            changeSet.create(fileName, serviceContent);
         }
 
         for (IngressSagaPayload ingressSagaPayload : batchDeploymentPayload.getIngressSagaPayloads()) {
@@ -1415,15 +1420,10 @@ public class AppServiceInstanceServiceImpl implements AppServiceInstanceService
             ingressResourceConvertToYamlHandler.setType(ingressSagaPayload.getV1beta1Ingress());
             String ingressContent = ingressResourceConvertToYamlHandler.getCreationResourceContentForBatchDeployment();
             String fileName = GitOpsConstants.INGRESS_PREFIX + ingressSagaPayload.getDevopsIngressDTO().getName() + GitOpsConstants.YAML_FILE_SUFFIX;
-            pathContentMap.put(fileName, ingressContent);
+            changeSet.create(fileName, ingressContent);
         }
 
-        gitlabServiceClientOperator.createGitlabFiles(
-                TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                batchDeploymentPayload.getGitlabUserId(),
-                GitOpsConstants.MASTER,
-                pathContentMap,
-                GitOpsConstants.BATCH_DEPLOYMENT_COMMIT_MESSAGE);
+        changeSet.commit(GitOpsConstants.BATCH_DEPLOYMENT_COMMIT_MESSAGE);
     }
 
 
@@ -14,6 +14,8 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -32,9 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -87,6 +91,7 @@ import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.HrdsCodeRepoClientOperator;
 import io.choerodon.devops.infra.handler.RetrofitHandler;
+import io.choerodon.devops.infra.handler.SonarContentCache;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -135,6 +140,11 @@ public class AppServiceServiceImpl implements AppServiceService {
 
     @Autowired
     DevopsSagaHandler devopsSagaHandler;
+    @Autowired
+    private SonarContentCache sonarContentCache;
+    @Autowired
+    @Qualifier(GitOpsConstants.SONAR_EXECUTOR)
+    private AsyncTaskExecutor sonarQueryExecutor;
     private final Gson gson = new Gson();
     private final JSON json = new JSON();
     @Value("${services.gitlab.url}")
@@ -1245,25 +1255,59 @@ public class AppServiceServiceImpl implements AppServiceService {
         if (sonarqubeUrl.equals("")) {
             return new SonarContentsVO();
         }
-        SonarContentsVO sonarContentsVO = new SonarContentsVO();
-        List<SonarContentVO> sonarContentVOS = new ArrayList<>();
+        return querySonarContent(getSonarKey(projectId, appServiceId));
+    }
+
+    @Override
+    public void warmUpSonarContent(Long projectId, Long appServiceId) {
+        if (sonarqubeUrl.equals("")) {
+            return;
+        }
+        // sonar项目key的查询需要调用iam服务, 也放到预热的线程中进行, 不阻塞调用方; 失败时只记录日志
+        sonarContentCache.scheduleWarmUp(String.valueOf(appServiceId), () -> querySonarContent(getSonarKey(projectId, appServiceId)));
+    }
+
+    private String getSonarKey(Long projectId, Long appServiceId) {
         AppServiceDTO appServiceDTO = baseQuery(appServiceId);
         ProjectDTO projectDTO = baseServiceClientOperator.queryIamProjectById(projectId);
         Tenant organization = baseServiceClientOperator.queryOrganizationById(projectDTO.getOrganizationId());
+        return String.format(SONAR_KEY, organization.getTenantNum(), projectDTO.getCode(), appServiceDTO.getCode());
+    }
 
-
+    /**
+     * 查询sonar项目的代码质量概览
+     * 先查询最近一次分析的时间, 没有新的分析时直接返回缓存的结果; 各个指标的问题分布在线程池中并行查询
+     *
+     * @param key sonar项目key
+     * @return 代码质量概览, 来自缓存时不能被修改
+     */
+    private SonarContentsVO querySonarContent(String key) {
         //初始化sonarClient
         SonarClient sonarClient = RetrofitHandler.getSonarClient(sonarqubeUrl, SONAR, userName, password);
-        String key = String.format(SONAR_KEY, organization.getTenantNum(), projectDTO.getCode(), appServiceDTO.getCode());
         sonarqubeUrl = sonarqubeUrl.endsWith("/") ? sonarqubeUrl : sonarqubeUrl + "/";
 
-        //校验sonarqube地址是否正确
+        //查询最近一次分析的时间, 同时校验sonarqube地址是否正确
+        Map<String, String> queryMap = new HashMap<>();
+        queryMap.put("component", key);
+        Response<SonarComponent> sonarAnalysisDate;
         try {
-            sonarClient.getUser().execute();
+            sonarAnalysisDate = sonarClient.getSonarAnalysisDate(queryMap).execute();
         } catch (IOException e) {
             return new SonarContentsVO();
         }
+        boolean analysisDateFound = sonarAnalysisDate.raw().code() == 200 && sonarAnalysisDate.body() != null;
+        String analysisDate = analysisDateFound ? sonarAnalysisDate.body().getAnalysisDate() : null;
+        if (analysisDate != null) {
+            SonarContentsVO cached = sonarContentCache.get(key, analysisDate);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
+        SonarContentsVO sonarContentsVO = new SonarContentsVO();
+        List<SonarContentVO> sonarContentVOS = new ArrayList<>();
+        // 并行查询各个指标的问题分布
+        List<Future<?>> rateFutures = new ArrayList<>();
         try {
             //初始化查询参数
             Map<String, String> queryContentMap = new HashMap<>();
@@ -1300,11 +1344,8 @@ public class AppServiceServiceImpl implements AppServiceService {
                     sonarContentsVO.setDate(sonarAnalyses.body().getAnalyses().get(0).getDate());
                 }
             }
-            Map<String, String> queryMap = new HashMap<>();
-            queryMap.put("component", key);
-            Response<SonarComponent> sonarAnalysisDate = sonarClient.getSonarAnalysisDate(queryMap).execute();
-            if (sonarAnalysisDate.raw().code() == 200 && sonarAnalysisDate.body() != null) {
-                sonarContentsVO.setDate(sonarAnalysisDate.body().getAnalysisDate());
+            if (analysisDateFound) {
+                sonarContentsVO.setDate(analysisDate);
             }
             sonarContentsVO.setDate(getTimestampTimeV17(sonarContentsVO.getDate()));
 
@@ -1317,17 +1358,16 @@ public class AppServiceServiceImpl implements AppServiceService {
                         bug.setKey(measure.getMetric());
                         bug.setValue(measure.getValue() == null ? "0" : measure.getValue());
                         bug.setUrl(String.format("%sproject/issues?id=%s&resolved=false&types=BUG", sonarqubeUrl, key));
-                        try {
-                            Map<String, String> queryBugMap = getQueryMap(key, "BUG", false);
+                        Map<String, String> queryBugMap = getQueryMap(key, "BUG", false);
+                        rateFutures.add(sonarQueryExecutor.submit(() -> {
                             Response<Bug> bugResponse = sonarClient.getBugs(queryBugMap).execute();
                             if (bugResponse.raw().code() != 200) {
                                 throw new CommonException(bugResponse.errorBody().string());
                             }
                             List<Facet> facets = bugResponse.body().getFacets();
                             getRate(bug, facets);
-                        } catch (IOException e) {
-                            throw new CommonException(e);
-                        }
+                            return null;
+                        }));
                         sonarContentVOS.add(bug);
                         break;
                     case VULNERABILITIES:
@@ -1335,17 +1375,16 @@ public class AppServiceServiceImpl implements AppServiceService {
                         vulnerabilities.setKey(measure.getMetric());
                         vulnerabilities.setValue(measure.getValue() == null ? "0" : measure.getValue());
                         vulnerabilities.setUrl(String.format("%sproject/issues?id=%s&resolved=false&types=VULNERABILITY", sonarqubeUrl, key));
-                        try {
-                            Map<String, String> queryVulnerabilitiesMap = getQueryMap(key, "VULNERABILITY", false);
+                        Map<String, String> queryVulnerabilitiesMap = getQueryMap(key, "VULNERABILITY", false);
+                        rateFutures.add(sonarQueryExecutor.submit(() -> {
                             Response<Vulnerability> vulnerabilityResponse = sonarClient.getVulnerability(queryVulnerabilitiesMap).execute();
                             if (vulnerabilityResponse.raw().code() != 200) {
                                 throw new CommonException(vulnerabilityResponse.errorBody().string());
                             }
                             List<Facet> facets = vulnerabilityResponse.body().getFacets();
                             getRate(vulnerabilities, facets);
-                        } catch (IOException e) {
-                            throw new CommonException(e);
-                        }
+                            return null;
+                        }));
                         sonarContentVOS.add(vulnerabilities);
                         break;
                     case NEW_BUGS:
@@ -1353,18 +1392,16 @@ public class AppServiceServiceImpl implements AppServiceService {
                         newBug.setKey(measure.getMetric());
                         newBug.setValue(measure.getValue() == null ? "0" : measure.getValue());
                         newBug.setUrl(String.format("%sproject/issues?id=%s&resolved=false&sinceLeakPeriod=true&types=BUG", sonarqubeUrl, key));
-                        try {
-                            Map<String, String> queryNewBugMap = getQueryMap(key, "BUG", true);
-
+                        Map<String, String> queryNewBugMap = getQueryMap(key, "BUG", true);
+                        rateFutures.add(sonarQueryExecutor.submit(() -> {
                             Response<Bug> newBugResponse = sonarClient.getNewBugs(queryNewBugMap).execute();
                             if (newBugResponse.raw().code() != 200) {
                                 throw new CommonException(newBugResponse.errorBody().string());
                             }
                             List<Facet> facets = newBugResponse.body().getFacets();
                             getRate(newBug, facets);
-                        } catch (IOException e) {
-                            throw new CommonException(e);
-                        }
+                            return null;
+                        }));
                         sonarContentVOS.add(newBug);
                         break;
                     case NEW_VULNERABILITIES:
@@ -1372,17 +1409,16 @@ public class AppServiceServiceImpl implements AppServiceService {
                         newVulnerabilities.setKey(measure.getMetric());
                         newVulnerabilities.setValue(measure.getPeriods().get(0).getValue());
                         newVulnerabilities.setUrl(String.format("%sproject/issues?id=%s&resolved=false&sinceLeakPeriod=true&types=VULNERABILITY", sonarqubeUrl, key));
-                        try {
-                            Map<String, String> queryNewVulnerabilitiesMap = getQueryMap(key, "VULNERABILITY", true);
+                        Map<String, String> queryNewVulnerabilitiesMap = getQueryMap(key, "VULNERABILITY", true);
+                        rateFutures.add(sonarQueryExecutor.submit(() -> {
                             Response<Vulnerability> newVulnerabilityResponse = sonarClient.getNewVulnerability(queryNewVulnerabilitiesMap).execute();
                             if (newVulnerabilityResponse.raw().code() != 200) {
                                 throw new CommonException(newVulnerabilityResponse.errorBody().string());
                             }
                             List<Facet> facets = newVulnerabilityResponse.body().getFacets();
                             getRate(newVulnerabilities, facets);
-                        } catch (IOException e) {
-                            throw new CommonException(e);
-                        }
+                            return null;
+                        }));
                         sonarContentVOS.add(newVulnerabilities);
                         break;
                     case SQALE_INDEX:
@@ -1548,13 +1584,35 @@ public class AppServiceServiceImpl implements AppServiceService {
                         break;
                 }
             });
+            waitForSonarQueries(rateFutures);
             sonarContentsVO.setSonarContents(sonarContentVOS);
         } catch (IOException e) {
             throw new CommonException(e);
+        } finally {
+            rateFutures.forEach(future -> future.cancel(true));
+        }
+        if (analysisDate != null) {
+            sonarContentCache.put(key, analysisDate, sonarContentsVO);
         }
         return sonarContentsVO;
     }
 
+    private static void waitForSonarQueries(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CommonException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CommonException) {
+                    throw (CommonException) e.getCause();
+                }
+                throw new CommonException(e.getCause());
+            }
+        }
+    }
+
     public String getTimestampTimeV17(String str) {
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss+0000");
         Date date = null;
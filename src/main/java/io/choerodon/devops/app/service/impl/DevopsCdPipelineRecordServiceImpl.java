@@ -1207,41 +1207,60 @@ public class DevopsCdPipelineRecordServiceImpl implements DevopsCdPipelineRecord
         if (cdPipelineRecordId == null || cdPipelineRecordId == 0L) {
             return null;
         }
-        DevopsCdPipelineRecordDTO devopsCdPipelineRecordDTO = devopsCdPipelineRecordMapper.selectByPrimaryKey(cdPipelineRecordId);
-        if (Objects.isNull(devopsCdPipelineRecordDTO)) {
-            return null;
+        return queryByCdPipelineRecordIds(Collections.singletonList(cdPipelineRecordId)).get(cdPipelineRecordId);
+    }
+
+    @Override
+    public Map<Long, DevopsCdPipelineRecordVO> queryByCdPipelineRecordIds(Collection<Long> cdPipelineRecordIds) {
+        Set<Long> recordIds = cdPipelineRecordIds.stream()
+                .filter(id -> id != null && id != 0L)
+                .collect(Collectors.toSet());
+        Map<Long, DevopsCdPipelineRecordVO> result = new HashMap<>();
+        if (recordIds.isEmpty()) {
+            return result;
         }
-        DevopsCdPipelineRecordVO devopsCdPipelineRecordVO = new DevopsCdPipelineRecordVO();
-        BeanUtils.copyProperties(devopsCdPipelineRecordDTO, devopsCdPipelineRecordVO);
-        devopsCdPipelineRecordVO.setCreatedDate(devopsCdPipelineRecordDTO.getCreationDate());
-        List<DevopsCdStageRecordDTO> devopsCdStageRecordDTOS = devopsCdStageRecordService.queryByPipelineRecordId(devopsCdPipelineRecordVO.getId());
-        if (!CollectionUtils.isEmpty(devopsCdStageRecordDTOS)) {
-            //封装审核数据
-            List<DevopsCdStageRecordVO> devopsCdStageRecordVOS = ConvertUtils.convertList(devopsCdStageRecordDTOS, DevopsCdStageRecordVO.class);
-            devopsCdStageRecordVOS.sort(Comparator.comparing(StageRecordVO::getSequence));
-            for (DevopsCdStageRecordVO devopsCdStageRecordVO : devopsCdStageRecordVOS) {
-                //查询Cd job
-                List<DevopsCdJobRecordDTO> devopsCdJobRecordDTOS = devopsCdJobRecordService.queryByStageRecordId(devopsCdStageRecordVO.getId());
-                List<DevopsCdJobRecordVO> devopsCdJobRecordVOS = ConvertUtils.convertList(devopsCdJobRecordDTOS, DevopsCdJobRecordVO.class);
+        List<DevopsCdPipelineRecordDTO> devopsCdPipelineRecordDTOS = devopsCdPipelineRecordMapper.selectByIds(StringUtils.collectionToCommaDelimitedString(recordIds));
+        if (devopsCdPipelineRecordDTOS.isEmpty()) {
+            return result;
+        }
+        // 所有记录的阶段记录以及阶段下job的状态统计各查询一次
+        Map<Long, List<DevopsCdStageRecordDTO>> stageRecordMap = devopsCdStageRecordMapper.listByPipelineRecordIds(recordIds).stream()
+                .collect(Collectors.groupingBy(DevopsCdStageRecordDTO::getPipelineRecordId));
+        Set<Long> stageRecordIds = stageRecordMap.values().stream()
+                .flatMap(List::stream)
+                .map(DevopsCdStageRecordDTO::getId)
+                .collect(Collectors.toSet());
+        Map<Long, Set<String>> jobStatusMap = stageRecordIds.isEmpty() ? Collections.emptyMap()
+                : devopsCdJobRecordMapper.countStatusByStageRecordIds(stageRecordIds).stream()
+                .collect(Collectors.groupingBy(JobStatusCountVO::getRecordId, Collectors.mapping(JobStatusCountVO::getStatus, Collectors.toSet())));
+
+        devopsCdPipelineRecordDTOS.forEach(devopsCdPipelineRecordDTO -> {
+            DevopsCdPipelineRecordVO devopsCdPipelineRecordVO = new DevopsCdPipelineRecordVO();
+            BeanUtils.copyProperties(devopsCdPipelineRecordDTO, devopsCdPipelineRecordVO);
+            devopsCdPipelineRecordVO.setCreatedDate(devopsCdPipelineRecordDTO.getCreationDate());
+            List<DevopsCdStageRecordDTO> devopsCdStageRecordDTOS = stageRecordMap.get(devopsCdPipelineRecordDTO.getId());
+            if (!CollectionUtils.isEmpty(devopsCdStageRecordDTOS)) {
+                List<DevopsCdStageRecordVO> devopsCdStageRecordVOS = ConvertUtils.convertList(devopsCdStageRecordDTOS, DevopsCdStageRecordVO.class);
+                devopsCdStageRecordVOS.sort(Comparator.comparing(StageRecordVO::getSequence));
                 //计算cd阶段的状态， cd下的所有job状态都是未执行 那么cd的状态是未执行
-                Set<String> strings = devopsCdJobRecordVOS.stream().map(devopsCdJobRecordVO -> devopsCdJobRecordVO.getStatus()).collect(Collectors.toSet());
-                if (!CollectionUtils.isEmpty(strings) && strings.size() == 1 && strings.contains(JobStatusEnum.CREATED.value())) {
-                    devopsCdStageRecordVO.setStatus(JobStatusEnum.CREATED.value());
-                }
-                //计算satge耗时
-                if (!CollectionUtils.isEmpty(devopsCdStageRecordVO.getJobRecordVOList())) {
-                    Long seconds = devopsCdStageRecordVO.getJobRecordVOList().stream().filter(devopsCdJobRecordVO -> !Objects.isNull(devopsCdJobRecordVO.getDurationSeconds())).map(DevopsCdJobRecordVO::getDurationSeconds).reduce((aLong, aLong2) -> aLong + aLong2).get();
-                    devopsCdStageRecordVO.setDurationSeconds(seconds);
+                devopsCdStageRecordVOS.forEach(devopsCdStageRecordVO -> {
+                    Set<String> strings = jobStatusMap.getOrDefault(devopsCdStageRecordVO.getId(), Collections.emptySet());
+                    if (strings.size() == 1 && strings.contains(JobStatusEnum.CREATED.value())) {
+                        devopsCdStageRecordVO.setStatus(JobStatusEnum.CREATED.value());
+                    }
+                });
+                // 只有存在待审核阶段的记录才需要查询当前停留的审核节点
+                if (devopsCdStageRecordDTOS.stream().anyMatch(stage -> PipelineStatus.NOT_AUDIT.toValue().equals(stage.getStatus()))) {
+                    addAuditStateInfo(devopsCdPipelineRecordVO);
+                } else {
+                    devopsCdPipelineRecordVO.setDevopsCdPipelineDeatilVO(new DevopsCdPipelineDeatilVO());
                 }
+                devopsCdPipelineRecordVO.setDevopsCdStageRecordVOS(devopsCdStageRecordVOS);
+            } else {
+                devopsCdPipelineRecordVO.setDevopsCdStageRecordVOS(Collections.emptyList());
             }
-            // 计算流水线当前停留的审核节点
-            addAuditStateInfo(devopsCdPipelineRecordVO);
-            devopsCdPipelineRecordVO.setDevopsCdStageRecordVOS(devopsCdStageRecordVOS);
-        } else {
-            devopsCdPipelineRecordVO.setDevopsCdStageRecordVOS(Collections.EMPTY_LIST);
-        }
-
-        return devopsCdPipelineRecordVO;
+            result.put(devopsCdPipelineRecordVO.getId(), devopsCdPipelineRecordVO);
+        });
+        return result;
     }
-
 }
@@ -59,17 +59,24 @@ public class DevopsCiJobRecordServiceImpl implements DevopsCiJobRecordService {
     }
 
     @Override
-    public void update(JobWebHookVO jobWebHookVO) {
-        DevopsCiJobRecordDTO recordDTO = new DevopsCiJobRecordDTO();
-        recordDTO.setGitlabJobId(jobWebHookVO.getBuildId());
-        DevopsCiJobRecordDTO devopsCiJobRecordDTO = devopsCiJobRecordMapper.selectOne(recordDTO);
-        if (devopsCiJobRecordDTO != null) {
+    public void update(List<JobWebHookVO> jobWebHookVOS) {
+        if (CollectionUtils.isEmpty(jobWebHookVOS)) {
+            return;
+        }
+        Map<Long, JobWebHookVO> jobMap = jobWebHookVOS.stream()
+                .collect(Collectors.toMap(JobWebHookVO::getBuildId, v -> v, (older, newer) -> newer));
+        List<DevopsCiJobRecordDTO> devopsCiJobRecordDTOS = devopsCiJobRecordMapper.listByGitlabJobIds(jobMap.keySet());
+        if (devopsCiJobRecordDTOS.isEmpty()) {
+            return;
+        }
+        devopsCiJobRecordDTOS.forEach(devopsCiJobRecordDTO -> {
+            JobWebHookVO jobWebHookVO = jobMap.get(devopsCiJobRecordDTO.getGitlabJobId());
             devopsCiJobRecordDTO.setStatus(jobWebHookVO.getBuildStatus());
             devopsCiJobRecordDTO.setStartedDate(jobWebHookVO.getBuildStartedAt());
             devopsCiJobRecordDTO.setFinishedDate(jobWebHookVO.getBuildFinishedAt());
             devopsCiJobRecordDTO.setDurationSeconds(jobWebHookVO.getBuildDuration());
-            devopsCiJobRecordMapper.updateByPrimaryKeySelective(devopsCiJobRecordDTO);
-        }
+        });
+        devopsCiJobRecordMapper.batchUpdateStatus(devopsCiJobRecordDTOS);
     }
 
     @Override
@@ -1,8 +1,12 @@
 package io.choerodon.devops.app.service.impl;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.hzero.boot.file.FileClient;
@@ -16,18 +20,21 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.CiJobTraceVO;
 import io.choerodon.devops.api.vo.SonarInfoVO;
 import io.choerodon.devops.api.vo.SonarQubeConfigVO;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.infra.dto.*;
 import io.choerodon.devops.infra.dto.gitlab.JobDTO;
 import io.choerodon.devops.infra.enums.AppServiceEvent;
+import io.choerodon.devops.infra.enums.JobStatusEnum;
 import io.choerodon.devops.infra.enums.JobTypeEnum;
 import io.choerodon.devops.infra.enums.sonar.SonarAuthType;
 import io.choerodon.devops.infra.exception.DevopsCiInvalidException;
 import io.choerodon.devops.infra.feign.SonarClient;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.handler.CiJobTraceCache;
 import io.choerodon.devops.infra.handler.RetrofitHandler;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.GitUserNameUtil;
@@ -57,6 +64,11 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
 
     private static final String SONAR_KEY = "%s-%s:%s";
     private static final String SONAR = "sonar";
+    /**
+     * 结束后日志不会再变化的job状态
+     */
+    private static final Set<String> FINISHED_JOB_STATUSES = new HashSet<>(Arrays.asList(
+            JobStatusEnum.SUCCESS.value(), JobStatusEnum.FAILED.value(), JobStatusEnum.CANCELED.value(), JobStatusEnum.SKIPPED.value()));
 
     private DevopsCiJobMapper devopsCiJobMapper;
     private GitlabServiceClientOperator gitlabServiceClientOperator;
@@ -71,6 +83,7 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
     private BaseServiceClientOperator baseServiceClientOperator;
     private AppServiceMapper appServiceMapper;
     private CheckGitlabAccessLevelService checkGitlabAccessLevelService;
+    private CiJobTraceCache ciJobTraceCache;
 
     public DevopsCiJobServiceImpl(DevopsCiJobMapper devopsCiJobMapper,
                                   GitlabServiceClientOperator gitlabServiceClientOperator,
@@ -84,7 +97,8 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
                                   AppServiceMapper appServiceMapper,
                                   CheckGitlabAccessLevelService checkGitlabAccessLevelService,
                                   BaseServiceClientOperator baseServiceClientOperator,
-                                  DevopsCiPipelineRecordMapper devopsCiPipelineRecordMapper) {
+                                  DevopsCiPipelineRecordMapper devopsCiPipelineRecordMapper,
+                                  CiJobTraceCache ciJobTraceCache) {
         this.devopsCiJobMapper = devopsCiJobMapper;
         this.gitlabServiceClientOperator = gitlabServiceClientOperator;
         this.userAttrService = userAttrService;
@@ -98,6 +112,7 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
         this.appServiceMapper = appServiceMapper;
         this.checkGitlabAccessLevelService = checkGitlabAccessLevelService;
         this.baseServiceClientOperator = baseServiceClientOperator;
+        this.ciJobTraceCache = ciJobTraceCache;
     }
 
     @Override
@@ -173,6 +188,36 @@ public class DevopsCiJobServiceImpl implements DevopsCiJobService {
         return gitlabServiceClientOperator.queryTrace(gitlabProjectId.intValue(), jobId.intValue(), userAttrDTO.getGitlabUserId().intValue());
     }
 
+    @Override
+    public CiJobTraceVO queryTrace(Long projectId, Long gitlabProjectId, Long jobId, Long offset) {
+        Assert.notNull(gitlabProjectId, ERROR_GITLAB_PROJECT_ID_IS_NULL);
+        Assert.notNull(jobId, ERROR_GITLAB_JOB_ID_IS_NULL);
+        // 缓存的日志不经过GitLab的权限校验, 所以先校验GitLab项目属于当前项目
+        AppServiceDTO appServiceDTO = appServiceMapper.selectOne(new AppServiceDTO().setGitlabProjectId(TypeUtil.objToInteger(gitlabProjectId)));
+        if (appServiceDTO == null || !projectId.equals(appServiceDTO.getProjectId())) {
+            throw new CommonException("error.app.not.in.this.project", appServiceDTO == null ? null : appServiceDTO.getId(), projectId);
+        }
+        long start = offset == null ? 0 : offset;
+
+        byte[] cached = ciJobTraceCache.get(gitlabProjectId, jobId);
+        if (cached != null) {
+            return CiJobTraceCache.slice(cached, start, true);
+        }
+
+        // 先查询job的状态再查询日志, 状态是结束时查询到的日志一定是完整的; 只有job属于这个GitLab项目时才缓存
+        DevopsCiJobRecordDTO devopsCiJobRecordDTO = devopsCiJobRecordService.queryByGitlabJobId(jobId);
+        boolean complete = devopsCiJobRecordDTO != null
+                && gitlabProjectId.equals(devopsCiJobRecordDTO.getGitlabProjectId())
+                && FINISHED_JOB_STATUSES.contains(devopsCiJobRecordDTO.getStatus());
+        UserAttrDTO userAttrDTO = userAttrService.baseQueryById(GitUserNameUtil.getUserId());
+        String trace = gitlabServiceClientOperator.queryTrace(gitlabProjectId.intValue(), jobId.intValue(), userAttrDTO.getGitlabUserId().intValue());
+        byte[] traceBytes = trace == null ? new byte[0] : trace.getBytes(StandardCharsets.UTF_8);
+        if (complete) {
+            ciJobTraceCache.put(gitlabProjectId, jobId, traceBytes);
+        }
+        return CiJobTraceCache.slice(traceBytes, start, complete);
+    }
+
     @Override
     public void retryJob(Long projectId, Long gitlabProjectId, Long jobId) {
         Assert.notNull(gitlabProjectId, ERROR_GITLAB_PROJECT_ID_IS_NULL);
@@ -232,6 +232,13 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
             Long pipelineRecordId = devopsCiPipelineRecordDTO.getId();
             saveJobRecords(pipelineWebHookVO, pipelineRecordId);
         }
+
+        // sonar任务执行成功后预热代码质量信息的缓存
+        boolean sonarJobSucceeded = pipelineWebHookVO.getBuilds().stream()
+                .anyMatch(job -> JobTypeEnum.SONAR.value().equals(job.getType()) && PipelineStatus.SUCCESS.toValue().equals(job.getStatus()));
+        if (sonarJobSucceeded) {
+            applicationService.warmUpSonarContent(applicationDTO.getProjectId(), applicationDTO.getId());
+        }
     }
 
     private void saveJobRecords(PipelineWebHookVO pipelineWebHookVO, Long pipelineRecordId) {
@@ -306,6 +313,17 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
     @Override
     public void asyncPipelineUpdate(Long pipelineRecordId, Integer gitlabPipelineId) {
         LOGGER.info("Start to update pipeline asynchronously...record id {}, gitlab pipeline id {}", pipelineRecordId, gitlabPipelineId);
+        doPipelineUpdate(pipelineRecordId, gitlabPipelineId);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public void pipelineUpdate(Long pipelineRecordId, Integer gitlabPipelineId) {
+        LOGGER.info("Start to update pipeline...record id {}, gitlab pipeline id {}", pipelineRecordId, gitlabPipelineId);
+        doPipelineUpdate(pipelineRecordId, gitlabPipelineId);
+    }
+
+    private void doPipelineUpdate(Long pipelineRecordId, Integer gitlabPipelineId) {
         AssertUtils.notNull(pipelineRecordId, "pipelineRecordId shouldn't be null");
 
         AppServiceDTO appServiceDTO = devopsCiPipelineRecordMapper.queryGitlabProjectIdByRecordId(pipelineRecordId);
@@ -758,48 +776,65 @@ public class DevopsCiPipelineRecordServiceImpl implements DevopsCiPipelineRecord
         if (ciPipelineRecordId == null || ciPipelineRecordId == 0L) {
             return null;
         }
-        DevopsCiPipelineRecordDTO devopsCiPipelineRecordDTO = devopsCiPipelineRecordMapper.selectByPrimaryKey(ciPipelineRecordId);
-        if (Objects.isNull(devopsCiPipelineRecordDTO)) {
-            return null;
-        }
-        DevopsCiPipelineRecordVO devopsCiPipelineRecordVO = new DevopsCiPipelineRecordVO();
-        BeanUtils.copyProperties(devopsCiPipelineRecordDTO, devopsCiPipelineRecordVO);
-        devopsCiPipelineRecordVO.setCreatedDate(devopsCiPipelineRecordDTO.getCreatedDate());
-
-        ciPipelineSyncHandler.syncPipeline(devopsCiPipelineRecordVO.getStatus(), devopsCiPipelineRecordVO.getLastUpdateDate(), devopsCiPipelineRecordVO.getId(), TypeUtil.objToInteger(devopsCiPipelineRecordVO.getGitlabPipelineId()));
-        // 查询流水线记录下的job记录
-        DevopsCiJobRecordDTO recordDTO = new DevopsCiJobRecordDTO();
-        recordDTO.setCiPipelineRecordId(devopsCiPipelineRecordVO.getId());
-        List<DevopsCiJobRecordDTO> devopsCiJobRecordDTOS = devopsCiJobRecordMapper.select(recordDTO);
+        return queryByCiPipelineRecordIds(Collections.singletonList(ciPipelineRecordId)).get(ciPipelineRecordId);
+    }
 
-        // 只返回job的最新记录
-        devopsCiJobRecordDTOS = filterJobs(devopsCiJobRecordDTOS);
-        Map<String, List<DevopsCiJobRecordDTO>> jobRecordMap = devopsCiJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStage));
-        // 查询阶段信息
-        List<DevopsCiStageDTO> devopsCiStageDTOList = devopsCiStageService.listByPipelineId(devopsCiPipelineRecordDTO.getCiPipelineId());
-        if (CollectionUtils.isEmpty(devopsCiStageDTOList)) {
-            for (Map.Entry<String, List<DevopsCiJobRecordDTO>> stringListEntry : jobRecordMap.entrySet()) {
-                long seq = 0L;
-                DevopsCiStageDTO devopsCiStageDTO = new DevopsCiStageDTO();
-                devopsCiStageDTO.setName(stringListEntry.getKey());
-                devopsCiStageDTO.setSequence(seq++);
-                devopsCiStageDTOList.add(devopsCiStageDTO);
-            }
+    @Override
+    public Map<Long, DevopsCiPipelineRecordVO> queryByCiPipelineRecordIds(Collection<Long> ciPipelineRecordIds) {
+        Set<Long> recordIds = ciPipelineRecordIds.stream()
+                .filter(id -> id != null && id != 0L)
+                .collect(Collectors.toSet());
+        Map<Long, DevopsCiPipelineRecordVO> result = new HashMap<>();
+        if (recordIds.isEmpty()) {
+            return result;
         }
-        List<DevopsCiStageRecordVO> devopsCiStageRecordVOS = ConvertUtils.convertList(devopsCiStageDTOList, DevopsCiStageRecordVO.class);
-        // 计算stage状态
-        devopsCiStageRecordVOS.forEach(stageRecord -> {
-            List<DevopsCiJobRecordDTO> ciJobRecordDTOS = jobRecordMap.get(stageRecord.getName());
-            if (!CollectionUtils.isEmpty(ciJobRecordDTOS)) {
-                Map<String, List<DevopsCiJobRecordDTO>> statusMap = ciJobRecordDTOS.stream().collect(Collectors.groupingBy(DevopsCiJobRecordDTO::getStatus));
-                //计算stage状态
-                calculateStageStatus(stageRecord, statusMap);
+        List<DevopsCiPipelineRecordDTO> devopsCiPipelineRecordDTOS = devopsCiPipelineRecordMapper.selectByIds(StringUtils.join(recordIds, ","));
+        if (devopsCiPipelineRecordDTOS.isEmpty()) {
+            return result;
+        }
+        // 所有记录的job状态统计以及所属流水线的阶段各查询一次, 重试过的job只统计最新的记录
+        Map<Long, List<JobStatusCountVO>> jobStatusCountMap = devopsCiJobRecordMapper.countStatusByCiPipelineRecordIds(recordIds).stream()
+                .collect(Collectors.groupingBy(JobStatusCountVO::getRecordId));
+        Map<Long, List<DevopsCiStageDTO>> stageMap = devopsCiStageService.listByPipelineIds(devopsCiPipelineRecordDTOS.stream()
+                .map(DevopsCiPipelineRecordDTO::getCiPipelineId)
+                .collect(Collectors.toSet())).stream()
+                .collect(Collectors.groupingBy(DevopsCiStageDTO::getCiPipelineId));
+
+        devopsCiPipelineRecordDTOS.forEach(devopsCiPipelineRecordDTO -> {
+            DevopsCiPipelineRecordVO devopsCiPipelineRecordVO = new DevopsCiPipelineRecordVO();
+            BeanUtils.copyProperties(devopsCiPipelineRecordDTO, devopsCiPipelineRecordVO);
+            devopsCiPipelineRecordVO.setCreatedDate(devopsCiPipelineRecordDTO.getCreatedDate());
+
+            // job状态统计已经批量查出, 同步时不再逐条查询记录是否有job
+            ciPipelineSyncHandler.syncPipeline(devopsCiPipelineRecordVO.getStatus(), devopsCiPipelineRecordVO.getLastUpdateDate(), devopsCiPipelineRecordVO.getId(), TypeUtil.objToInteger(devopsCiPipelineRecordVO.getGitlabPipelineId()),
+                    jobStatusCountMap.containsKey(devopsCiPipelineRecordDTO.getId()));
+
+            Map<String, List<JobStatusCountVO>> jobRecordMap = jobStatusCountMap.getOrDefault(devopsCiPipelineRecordDTO.getId(), Collections.emptyList()).stream()
+                    .collect(Collectors.groupingBy(JobStatusCountVO::getStage));
+            List<DevopsCiStageDTO> devopsCiStageDTOList = new ArrayList<>(stageMap.getOrDefault(devopsCiPipelineRecordDTO.getCiPipelineId(), Collections.emptyList()));
+            // 流水线没有阶段信息时使用job记录中的阶段
+            if (CollectionUtils.isEmpty(devopsCiStageDTOList)) {
+                for (String stageName : jobRecordMap.keySet()) {
+                    DevopsCiStageDTO devopsCiStageDTO = new DevopsCiStageDTO();
+                    devopsCiStageDTO.setName(stageName);
+                    devopsCiStageDTO.setSequence(0L);
+                    devopsCiStageDTOList.add(devopsCiStageDTO);
+                }
             }
-
+            List<DevopsCiStageRecordVO> devopsCiStageRecordVOS = ConvertUtils.convertList(devopsCiStageDTOList, DevopsCiStageRecordVO.class);
+            // 计算stage状态
+            devopsCiStageRecordVOS.forEach(stageRecord -> {
+                List<JobStatusCountVO> jobStatusCounts = jobRecordMap.get(stageRecord.getName());
+                if (!CollectionUtils.isEmpty(jobStatusCounts)) {
+                    Map<String, List<JobStatusCountVO>> statusMap = jobStatusCounts.stream().collect(Collectors.groupingBy(JobStatusCountVO::getStatus));
+                    calculateStageStatus(stageRecord, statusMap);
+                }
+            });
+            // stage排序
+            devopsCiStageRecordVOS = devopsCiStageRecordVOS.stream().sorted(Comparator.comparing(DevopsCiStageRecordVO::getSequence)).filter(v -> v.getStatus() != null).collect(Collectors.toList());
+            devopsCiPipelineRecordVO.setStageRecordVOList(devopsCiStageRecordVOS);
+            result.put(devopsCiPipelineRecordVO.getId(), devopsCiPipelineRecordVO);
         });
-        // stage排序
-        devopsCiStageRecordVOS = devopsCiStageRecordVOS.stream().sorted(Comparator.comparing(DevopsCiStageRecordVO::getSequence)).filter(v -> v.getStatus() != null).collect(Collectors.toList());
-        devopsCiPipelineRecordVO.setStageRecordVOList(devopsCiStageRecordVOS);
-        return devopsCiPipelineRecordVO;
+        return result;
     }
 }
@@ -25,7 +25,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
-import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.devops.api.validator.DevopsCiPipelineAdditionalValidator;
@@ -56,8 +55,6 @@ import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.RdupmClientOperator;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
-import io.choerodon.mybatis.pagehelper.domain.PageRequest;
-import io.choerodon.mybatis.pagehelper.domain.Sort;
 
 /**
  * 〈功能简述〉
@@ -125,7 +122,6 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
     private final DevopsEnvironmentMapper devopsEnvironmentMapper;
     private final DevopsPipelineRecordRelService devopsPipelineRecordRelService;
     private final DevopsCdPipelineService devopsCdPipelineService;
-    private final DevopsPipelineRecordRelMapper devopsPipelineRecordRelMapper;
     private final DevopsDeployValueMapper devopsDeployValueMapper;
 
     public DevopsCiPipelineServiceImpl(
@@ -161,7 +157,6 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
             DevopsEnvironmentMapper devopsEnvironmentMapper,
             @Lazy DevopsPipelineRecordRelService devopsPipelineRecordRelService,
             @Lazy DevopsCdPipelineService devopsCdPipelineService,
-            DevopsPipelineRecordRelMapper devopsPipelineRecordRelMapper,
             DevopsDeployValueMapper devopsDeployValueMapper
     ) {
         this.devopsCiCdPipelineMapper = devopsCiCdPipelineMapper;
@@ -194,7 +189,6 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
         this.devopsEnvironmentMapper = devopsEnvironmentMapper;
         this.devopsPipelineRecordRelService = devopsPipelineRecordRelService;
         this.devopsCdPipelineService = devopsCdPipelineService;
-        this.devopsPipelineRecordRelMapper = devopsPipelineRecordRelMapper;
         this.devopsDeployValueMapper = devopsDeployValueMapper;
         this.devopsCiJobMapper = devopsCiJobMapper;
     }
@@ -550,24 +544,32 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
         }
         // 查询流水线
         List<CiCdPipelineVO> ciCdPipelineVOS = ciCdPipelineMapper.queryByProjectIdAndName(projectId, appServiceIds, name);
-        // 封装流水线记录
-        PageRequest cicdPipelineRel = new PageRequest(GitOpsConstants.FIRST_PAGE_INDEX, DEFAULT_PIPELINE_RECORD_SIZE, new Sort(new Sort.Order(Sort.Direction.DESC, DevopsPipelineRecordRelDTO.FIELD_ID)));
-        //每条流水线默认展示5条记录
+        // 封装流水线记录, 每条流水线默认展示5条记录
+        // 所有流水线的记录以及记录的阶段状态都批量查询, 查询次数和流水线、记录的数量无关
+        Set<Long> pipelineIds = ciCdPipelineVOS.stream().map(CiCdPipelineVO::getId).collect(Collectors.toSet());
+        Map<Long, List<DevopsPipelineRecordRelDTO>> pipelineRecordRels = devopsPipelineRecordRelService.listLatestByPipelineIds(pipelineIds, DEFAULT_PIPELINE_RECORD_SIZE)
+                .stream()
+                .collect(Collectors.groupingBy(DevopsPipelineRecordRelDTO::getPipelineId));
+        Map<Long, PipelineRecordRelStatsVO> pipelineRecordRelStats = devopsPipelineRecordRelService.queryStatsByPipelineIds(pipelineIds);
+        List<DevopsPipelineRecordRelDTO> allRecordRels = pipelineRecordRels.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        Map<Long, DevopsCiPipelineRecordVO> ciPipelineRecords = devopsCiPipelineRecordService.queryByCiPipelineRecordIds(
+                allRecordRels.stream().map(DevopsPipelineRecordRelDTO::getCiPipelineRecordId).filter(Objects::nonNull).collect(Collectors.toSet()));
+        Map<Long, DevopsCdPipelineRecordVO> cdPipelineRecords = devopsCdPipelineRecordService.queryByCdPipelineRecordIds(
+                allRecordRels.stream().map(DevopsPipelineRecordRelDTO::getCdPipelineRecordId).filter(Objects::nonNull).collect(Collectors.toSet()));
         ciCdPipelineVOS.forEach(ciCdPipelineVO -> {
             List<CiCdPipelineRecordVO> ciCdPipelineRecordVOS = new ArrayList<>();
-            // 查询cicd关系表
-            Page<DevopsPipelineRecordRelDTO> devopsPipelineRecordRelDTOPage = devopsPipelineRecordRelService.pagingPipelineRel(ciCdPipelineVO.getId(), cicdPipelineRel);
-            if (!Objects.isNull(devopsPipelineRecordRelDTOPage)) {
-                ciCdPipelineVO.setHasMoreRecords(devopsPipelineRecordRelDTOPage.getTotalElements() > DEFAULT_PIPELINE_RECORD_SIZE);
-            }
+            // cicd关系, 按id倒序
+            List<DevopsPipelineRecordRelDTO> devopsPipelineRecordRelDTOS = pipelineRecordRels.getOrDefault(ciCdPipelineVO.getId(), Collections.emptyList());
+            PipelineRecordRelStatsVO recordRelStats = pipelineRecordRelStats.get(ciCdPipelineVO.getId());
+            ciCdPipelineVO.setHasMoreRecords(recordRelStats != null && recordRelStats.getRecordCount() > DEFAULT_PIPELINE_RECORD_SIZE);
 
-            if (!Objects.isNull(devopsPipelineRecordRelDTOPage) && !CollectionUtils.isEmpty(devopsPipelineRecordRelDTOPage.getContent())) {
-                devopsPipelineRecordRelDTOPage.getContent().forEach(devopsPipelineRecordRelDTO -> {
+            if (!CollectionUtils.isEmpty(devopsPipelineRecordRelDTOS)) {
+                devopsPipelineRecordRelDTOS.forEach(devopsPipelineRecordRelDTO -> {
                     CiCdPipelineRecordVO ciCdPipelineRecordVO = new CiCdPipelineRecordVO();
-                    //查询ci记录
-                    DevopsCiPipelineRecordVO devopsCiPipelineRecordVO = devopsCiPipelineRecordService.queryByCiPipelineRecordId(devopsPipelineRecordRelDTO.getCiPipelineRecordId());
-                    //查询cd记录
-                    DevopsCdPipelineRecordVO devopsCdPipelineRecordVO = devopsCdPipelineRecordService.queryByCdPipelineRecordId(devopsPipelineRecordRelDTO.getCdPipelineRecordId());
+                    //ci记录
+                    DevopsCiPipelineRecordVO devopsCiPipelineRecordVO = ciPipelineRecords.get(devopsPipelineRecordRelDTO.getCiPipelineRecordId());
+                    //cd记录
+                    DevopsCdPipelineRecordVO devopsCdPipelineRecordVO = cdPipelineRecords.get(devopsPipelineRecordRelDTO.getCdPipelineRecordId());
                     //cicd
                     if (devopsCiPipelineRecordVO != null && devopsCdPipelineRecordVO != null) {
                         List<StageRecordVO> stageRecordVOS = new ArrayList<>();
@@ -588,8 +590,8 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
                         ciCdPipelineRecordVO.setStageRecordVOS(stageRecordVOS);
                         ciCdPipelineRecordVOS.add(ciCdPipelineRecordVO);
 
-                        //cicd 如果是cicd并且此记录是第一条则跳过
-                        if (!CollectionUtils.isEmpty(ciCdPipelineRecordVOS) && isFirstRecord(devopsPipelineRecordRelDTO)) {
+                        //cicd 如果是cicd并且此记录是第一条则跳过, 第一条记录就是id最小的记录
+                        if (recordRelStats != null && devopsPipelineRecordRelDTO.getId().equals(recordRelStats.getFirstRecordRelId())) {
                             CiCdPipelineUtils.recordListSort(ciCdPipelineRecordVOS);
                             ciCdPipelineRecordVOS.get(ciCdPipelineRecordVOS.size() - 1).setStageRecordVOS(null);
                         }
@@ -640,26 +642,6 @@ public class DevopsCiPipelineServiceImpl implements DevopsCiPipelineService {
         return ciCdPipelineVOS;
     }
 
-    private boolean isFirstRecord(DevopsPipelineRecordRelDTO devopsPipelineRecordRelDTO) {
-        DevopsPipelineRecordRelDTO recordRelDTO = new DevopsPipelineRecordRelDTO();
-        recordRelDTO.setPipelineId(devopsPipelineRecordRelDTO.getPipelineId());
-        List<DevopsPipelineRecordRelDTO> select = devopsPipelineRecordRelMapper.select(recordRelDTO);
-        if (select.size() == 1) {
-            return true;
-        }
-        List<DevopsPipelineRecordRelVO> devopsPipelineRecordRelVOS = ConvertUtils.convertList(select, this::relDtoToRelVO);
-        CiCdPipelineUtils.recordListSort(devopsPipelineRecordRelVOS);
-        return devopsPipelineRecordRelDTO.getId().compareTo(devopsPipelineRecordRelVOS.get(devopsPipelineRecordRelVOS.size() - 1).getId()) == 0 ? true : false;
-
-    }
-
-    private DevopsPipelineRecordRelVO relDtoToRelVO(DevopsPipelineRecordRelDTO devopsPipelineRecordRelDTO) {
-        DevopsPipelineRecordRelVO devopsPipelineRecordRelVO = new DevopsPipelineRecordRelVO();
-        BeanUtils.copyProperties(devopsPipelineRecordRelDTO, devopsPipelineRecordRelVO);
-        devopsPipelineRecordRelVO.setCreatedDate(devopsPipelineRecordRelDTO.getCreationDate());
-        return devopsPipelineRecordRelVO;
-    }
-
     /**
      * 校验应用服务之前并不存在流水线
      *
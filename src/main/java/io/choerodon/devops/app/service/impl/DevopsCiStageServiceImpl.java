@@ -1,5 +1,7 @@
 package io.choerodon.devops.app.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.core.exception.CommonException;
@@ -51,6 +53,14 @@ public class DevopsCiStageServiceImpl implements DevopsCiStageService {
         return devopsCiStageMapper.select(devopsCiStageDTO);
     }
 
+    @Override
+    public List<DevopsCiStageDTO> listByPipelineIds(Collection<Long> ciPipelineIds) {
+        if (ciPipelineIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return devopsCiStageMapper.listByPipelineIds(ciPipelineIds);
+    }
+
     @Override
     @Transactional
     public void deleteById(Long id) {
@@ -535,9 +535,8 @@ public class DevopsClusterResourceServiceImpl implements DevopsClusterResourceSe
     }
 
     private void checkPodIsReady(Long instanceId, ClusterResourceVO clusterResourceVO) {
-        List<DevopsEnvPodVO> devopsEnvPodDTOS = ConvertUtils.convertList(devopsEnvPodService.baseListByInstanceId(instanceId), DevopsEnvPodVO.class);
         //查询pod状态
-        devopsEnvPodDTOS.forEach(devopsEnvPodVO -> devopsEnvPodService.fillContainers(devopsEnvPodVO));
+        List<DevopsEnvPodVO> devopsEnvPodDTOS = devopsEnvPodService.convertWithContainers(devopsEnvPodService.baseListByInstanceId(instanceId));
         List<ContainerVO> readyContainers = new ArrayList<>();
         Integer totalNum = 0;
         //健康检查，ready=true的pod大于1就是可用的
@@ -536,7 +536,7 @@ public class DevopsClusterServiceImpl implements DevopsClusterService {
         Page<DevopsEnvPodDTO> devopsEnvPodDTOPageInfo = basePageQueryPodsByNodeName(clusterId, nodeName, pageable, searchParam);
         Page<DevopsEnvPodVO> envPodVOPageInfo = ConvertUtils.convertPage(devopsEnvPodDTOPageInfo, DevopsEnvPodVO.class);
 
-        envPodVOPageInfo.setContent(devopsEnvPodDTOPageInfo.getContent().stream().map(this::podDTO2VO).collect(Collectors.toList()));
+        envPodVOPageInfo.setContent(devopsEnvPodService.convertWithContainers(devopsEnvPodDTOPageInfo.getContent()));
         return envPodVOPageInfo;
     }
 
@@ -688,12 +688,6 @@ public class DevopsClusterServiceImpl implements DevopsClusterService {
      * @param devopsEnvPodDTO pod dto
      * @return the cluster pod vo
      */
-    private DevopsEnvPodVO podDTO2VO(final DevopsEnvPodDTO devopsEnvPodDTO) {
-        DevopsEnvPodVO devopsEnvPodVO = ConvertUtils.convertObject(devopsEnvPodDTO, DevopsEnvPodVO.class);
-        devopsEnvPodService.fillContainers(devopsEnvPodVO);
-        return devopsEnvPodVO;
-    }
-
     /**
      * convert cluster entity to instances of {@link ClusterWithNodesVO}
      *
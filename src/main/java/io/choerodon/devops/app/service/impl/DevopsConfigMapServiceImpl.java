@@ -14,6 +14,7 @@ import io.choerodon.devops.infra.enums.ObjectType;
 import io.choerodon.devops.infra.enums.SendSettingEnum;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.gitops.GitOpsChangeSet;
 import io.choerodon.devops.infra.gitops.ResourceConvertToYamlHandler;
 import io.choerodon.devops.infra.gitops.ResourceFileCheckHandler;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
@@ -216,6 +217,10 @@ public class DevopsConfigMapServiceImpl implements DevopsConfigMapService {
         //判断当前容器目录下是否存在环境对应的gitops文件目录，不存在则克隆
         String path = clusterConnectionHandler.handDevopsEnvGitRepository(devopsEnvironmentDTO.getProjectId(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getId(), devopsEnvironmentDTO.getEnvIdRsa(), devopsEnvironmentDTO.getType(), devopsEnvironmentDTO.getClusterCode());
 
+        // 对环境库的修改在一个提交中完成
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
+                TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
+
         //查询改对象所在文件中是否含有其它对象
         DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = devopsEnvFileResourceService
                 .baseQueryByEnvIdAndResourceId(devopsEnvironmentDTO.getId(), configMapId, CONFIGMAP);
@@ -223,11 +228,8 @@ public class DevopsConfigMapServiceImpl implements DevopsConfigMapService {
             baseDelete(configMapId);
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     CONFIG_MAP_PREFIX + devopsConfigMapDTO.getName() + ".yaml")) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        CONFIG_MAP_PREFIX + devopsConfigMapDTO.getName() + ".yaml",
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(CONFIG_MAP_PREFIX + devopsConfigMapDTO.getName() + ".yaml");
+                changeSet.commit("DELETE FILE");
             }
             return;
         } else {
@@ -244,12 +246,9 @@ public class DevopsConfigMapServiceImpl implements DevopsConfigMapService {
         if (devopsEnvFileResourceDTOS.size() == 1) {
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     devopsEnvFileResourceDTO.getFilePath())) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        devopsEnvFileResourceDTO.getFilePath(),
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(devopsEnvFileResourceDTO.getFilePath());
             }
+            changeSet.commit("DELETE FILE");
         } else {
             ResourceConvertToYamlHandler<V1ConfigMap> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
             V1ConfigMap v1ConfigMap = new V1ConfigMap();
@@ -263,7 +262,8 @@ public class DevopsConfigMapServiceImpl implements DevopsConfigMapService {
                     gitalbEnvProjectId,
                     DELETE_TYPE,
                     userAttrDTO.getGitlabUserId(),
-                    devopsConfigMapDTO.getId(), CONFIGMAP, null, false, devopsEnvironmentDTO.getId(), path);
+                    devopsConfigMapDTO.getId(), CONFIGMAP, null, false, devopsEnvironmentDTO.getId(), path, changeSet);
+            changeSet.commit("UPDATE FILE");
         }
         //删除配置映射加上消息发送
         sendNotificationService.sendWhenConfigMap(devopsConfigMapDTO, SendSettingEnum.DELETE_RESOURCE.value());
@@ -371,10 +371,12 @@ public class DevopsConfigMapServiceImpl implements DevopsConfigMapService {
             baseUpdate(devopsConfigMapDTO);
         }
 
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(envGitLabProjectId, TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
         ResourceConvertToYamlHandler<V1ConfigMap> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
         resourceConvertToYamlHandler.setType(v1ConfigMap);
         resourceConvertToYamlHandler.operationEnvGitlabFile(CONFIG_MAP_PREFIX + devopsConfigMapDTO.getName(), envGitLabProjectId, isCreate ? CREATE_TYPE : UPDATE_TYPE,
-                userAttrDTO.getGitlabUserId(), devopsConfigMapDTO.getId(), CONFIGMAP, null, false, devopsConfigMapDTO.getEnvId(), path);
+                userAttrDTO.getGitlabUserId(), devopsConfigMapDTO.getId(), CONFIGMAP, null, false, devopsConfigMapDTO.getEnvId(), path, changeSet);
+        changeSet.commit(isCreate ? "ADD FILE" : "UPDATE FILE");
     }
 
     private DevopsEnvCommandDTO initDevopsEnvCommandDTO(String type) {
@@ -425,6 +425,14 @@ public class DevopsCustomizeResourceServiceImpl implements DevopsCustomizeResour
         return devopsCustomizeResourceMapper.selectOne(devopsCustomizeResourceDO);
     }
 
+    @Override
+    public List<DevopsCustomizeResourceDTO> listByEnvIdAndKind(Long envId, String kind) {
+        DevopsCustomizeResourceDTO devopsCustomizeResourceDTO = new DevopsCustomizeResourceDTO();
+        devopsCustomizeResourceDTO.setEnvId(Objects.requireNonNull(envId));
+        devopsCustomizeResourceDTO.setK8sKind(Objects.requireNonNull(kind));
+        return devopsCustomizeResourceMapper.select(devopsCustomizeResourceDTO);
+    }
+
     @Override
     public Page<DevopsCustomizeResourceDTO> pageDevopsCustomizeResourceE(Long envId, PageRequest pageable, String params) {
         Map maps = TypeUtil.castMapParams(params);
@@ -4,12 +4,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import com.google.common.collect.Lists;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
@@ -35,6 +37,10 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
  */
 @Service
 public class DevopsEnvFileServiceImpl implements DevopsEnvFileService {
+    /**
+     * 批量插入或更新时每条sql处理的记录数
+     */
+    private static final int BATCH_SIZE = 500;
 
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
@@ -120,6 +126,22 @@ public class DevopsEnvFileServiceImpl implements DevopsEnvFileService {
         devopsEnvFileMapper.updateByPrimaryKeySelective(devopsEnvFileDTO);
     }
 
+    @Override
+    public void batchCreate(List<DevopsEnvFileDTO> devopsEnvFileDTOS) {
+        if (CollectionUtils.isEmpty(devopsEnvFileDTOS)) {
+            return;
+        }
+        Lists.partition(devopsEnvFileDTOS, BATCH_SIZE).forEach(devopsEnvFileMapper::batchInsert);
+    }
+
+    @Override
+    public void batchUpdateDevopsCommit(List<DevopsEnvFileDTO> devopsEnvFileDTOS) {
+        if (CollectionUtils.isEmpty(devopsEnvFileDTOS)) {
+            return;
+        }
+        Lists.partition(devopsEnvFileDTOS, BATCH_SIZE).forEach(devopsEnvFileMapper::batchUpdateDevopsCommit);
+    }
+
     @Override
     public void baseDelete(DevopsEnvFileDTO devopsEnvFileDTO) {
         devopsEnvFileMapper.delete(devopsEnvFileDTO);
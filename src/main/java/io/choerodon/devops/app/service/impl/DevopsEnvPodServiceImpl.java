@@ -1,7 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
+import com.google.common.collect.Lists;
 import io.choerodon.core.domain.Page;
-import io.choerodon.devops.api.vo.ContainerVO;
+import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.vo.DevopsEnvPodInfoVO;
 import io.choerodon.devops.api.vo.DevopsEnvPodVO;
 import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO;
@@ -33,6 +34,7 @@ import java.util.stream.Collectors;
 @Service
 public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
 
+    private static final int BATCH_DELETE_SIZE = 500;
     private static JSON json = new JSON();
     private final Logger logger = LoggerFactory.getLogger(DevopsEnvPodServiceImpl.class);
 
@@ -63,53 +65,50 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
         Page<DevopsEnvPodDTO> devopsEnvPodDTOPageInfo = basePageByIds(projectId, envId, appServiceId, instanceId, pageable, searchParam);
         Page<DevopsEnvPodVO> devopsEnvPodVOPageInfo = ConvertUtils.convertPage(devopsEnvPodDTOPageInfo, DevopsEnvPodVO.class);
 
-        devopsEnvPodVOPageInfo.setContent(devopsEnvPodDTOPageInfo.getContent().stream().map(devopsEnvPodDTO -> {
-            DevopsEnvironmentDTO devopsEnvironmentDTO = devopsEnvironmentService.baseQueryById(devopsEnvPodDTO.getEnvId());
-            DevopsEnvPodVO devopsEnvPodVO = ConvertUtils.convertObject(devopsEnvPodDTO, DevopsEnvPodVO.class);
-            devopsEnvPodVO.setClusterId(devopsEnvironmentDTO.getClusterId());
-            devopsEnvPodVO.setConnect(updatedEnvList.contains(devopsEnvironmentDTO.getClusterId()));
-            //给pod设置containers
-            fillContainers(devopsEnvPodVO);
-            return devopsEnvPodVO;
-        }).collect(Collectors.toList()));
+        // 集群id在分页查询中和环境一起查出, 不再逐个查询环境
+        List<DevopsEnvPodVO> devopsEnvPodVOS = convertWithContainers(devopsEnvPodDTOPageInfo.getContent());
+        devopsEnvPodVOS.forEach(devopsEnvPodVO -> devopsEnvPodVO.setConnect(updatedEnvList.contains(devopsEnvPodVO.getClusterId())));
+        devopsEnvPodVOPageInfo.setContent(devopsEnvPodVOS);
 
         return devopsEnvPodVOPageInfo;
     }
 
     @Override
-    public void fillContainers(DevopsEnvPodVO devopsEnvPodVO) {
+    public List<DevopsEnvPodVO> convertWithContainers(List<DevopsEnvPodDTO> devopsEnvPodDTOS) {
+        return devopsEnvPodDTOS.stream().map(devopsEnvPodDTO -> {
+            DevopsEnvPodVO devopsEnvPodVO = ConvertUtils.convertObject(devopsEnvPodDTO, DevopsEnvPodVO.class);
+            String containerSummary = devopsEnvPodDTO.getContainerSummary();
+            if (containerSummary == null) {
+                // 容器摘要列添加之前入库且之后没有变化过的pod, 解析一次资源详情后补全
+                containerSummary = loadContainerSummary(devopsEnvPodDTO.getInstanceId(), devopsEnvPodDTO.getName());
+                if (containerSummary != null && devopsEnvPodDTO.getId() != null) {
+                    devopsEnvPodMapper.updateContainerSummary(devopsEnvPodDTO.getId(), containerSummary);
+                }
+            }
+            if (containerSummary != null) {
+                devopsEnvPodVO.setContainers(K8sUtil.parseContainerSummary(containerSummary));
+            }
+            return devopsEnvPodVO;
+        }).collect(Collectors.toList());
+    }
 
-        //解析pod的yaml内容获取container的信息
-        String message = devopsEnvResourceService.getResourceDetailByNameAndTypeAndInstanceId(devopsEnvPodVO.getInstanceId(), devopsEnvPodVO.getName(), ResourceType.POD);
+    /**
+     * 解析pod的资源详情获取容器摘要
+     *
+     * @return 容器摘要, 资源详情不存在或者解析失败时为null
+     */
+    private String loadContainerSummary(Long instanceId, String podName) {
+        String message = devopsEnvResourceService.getResourceDetailByNameAndTypeAndInstanceId(instanceId, podName, ResourceType.POD);
 
         if (StringUtils.isEmpty(message)) {
-            return;
+            return null;
         }
 
         try {
-            V1Pod pod = K8sUtil.deserialize(message, V1Pod.class);
-            List<ContainerVO> containers = pod.getStatus().getContainerStatuses()
-                    .stream()
-                    .map(container -> {
-                        ContainerVO containerVO = new ContainerVO();
-                        containerVO.setName(container.getName());
-                        containerVO.setReady(container.isReady());
-                        return containerVO;
-                    })
-                    .collect(Collectors.toList());
-
-            // 将不可用的容器置于靠前位置
-            Map<Boolean, List<ContainerVO>> containsByStatus = containers.stream().collect(Collectors.groupingBy(container -> container.getReady() == null ? Boolean.FALSE : container.getReady()));
-            List<ContainerVO> result = new ArrayList<>();
-            if (!ArrayUtil.isEmpty(containsByStatus.get(Boolean.FALSE))) {
-                result.addAll(containsByStatus.get(Boolean.FALSE));
-            }
-            if (!ArrayUtil.isEmpty(containsByStatus.get(Boolean.TRUE))) {
-                result.addAll(containsByStatus.get(Boolean.TRUE));
-            }
-            devopsEnvPodVO.setContainers(result);
+            return K8sUtil.getContainerSummary(K8sUtil.deserialize(message, V1Pod.class));
         } catch (Exception e) {
-            logger.info("名为 '{}' 的Pod的资源解析失败", devopsEnvPodVO.getName());
+            logger.info("名为 '{}' 的Pod的资源解析失败", podName);
+            return null;
         }
     }
 
@@ -197,6 +196,16 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
         }
     }
 
+    @Override
+    public void baseBatchDeleteByNames(Collection<String> names, String namespace) {
+        if (names == null || names.isEmpty()) {
+            return;
+        }
+        // 分批删除, 避免in的参数过多
+        Lists.partition(new ArrayList<>(names), BATCH_DELETE_SIZE)
+                .forEach(part -> devopsEnvPodMapper.batchDeleteByNamespaceAndNames(namespace, part));
+    }
+
     @Override
     public void baseDeleteById(Long id) {
         devopsEnvPodMapper.deleteByPrimaryKey(id);
@@ -246,8 +255,11 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
         List<DevopsEnvResourceDetailDTO> devopsEnvResourceDetailDTOS = devopsEnvResourceDetailService.listByMessageIds(resourceDetailIds);
         Map<Long, DevopsEnvResourceDetailDTO> devopsEnvResourceDetailMap = devopsEnvResourceDetailDTOS.stream().collect(Collectors.toMap(DevopsEnvResourceDetailDTO::getId, Function.identity()));
 
+        // 环境下的pod都在同一个命名空间中, 一次批量查询所有pod最新的实时数据
+        Map<String, PodMetricsRedisInfoVO> podMetrics = agentPodService.queryLatestPodSnapshots(podNames, devopsEnvironmentDTO.getCode(), devopsClusterDTO.getCode());
+
         devopsEnvPodInfoVOList.forEach(devopsEnvPodInfoVO -> {
-            PodMetricsRedisInfoVO podMetricsRedisInfoVO = agentPodService.queryLatestPodSnapshot(devopsEnvPodInfoVO.getName(), devopsEnvPodInfoVO.getNamespace(), devopsClusterDTO.getCode());
+            PodMetricsRedisInfoVO podMetricsRedisInfoVO = podMetrics.get(devopsEnvPodInfoVO.getName());
             DevopsEnvResourceDTO devopsEnvResourceDTO = devopsEnvResourceMap.get(devopsEnvPodInfoVO.getName());
             DevopsEnvResourceDetailDTO devopsEnvResourceDetailDTO = devopsEnvResourceDetailMap.get(devopsEnvResourceDTO.getResourceDetailId());
             V1Pod v1Pod = json.deserialize(devopsEnvResourceDetailDTO.getMessage(), V1Pod.class);
@@ -259,17 +271,19 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
             }
         });
 
-        // 根据cpu进行逆序排序，考虑为null值的情况
+        // 根据cpu进行逆序排序，按数值而不是字符串比较，没有数据的pod在最后
         if ("cpu".equals(sort)) {
             devopsEnvPodInfoVOList = devopsEnvPodInfoVOList.stream()
-                    .sorted(Comparator.comparing(DevopsEnvPodInfoVO::getCpuUsed, Comparator.nullsFirst(String::compareTo)).reversed())
+                    .sorted(Comparator.comparing((DevopsEnvPodInfoVO pod) -> Optional.ofNullable(podMetrics.get(pod.getName())).map(PodMetricsRedisInfoVO::getCpuMillicores).orElse(null),
+                            Comparator.nullsFirst(Comparator.<Long>naturalOrder())).reversed())
                     .collect(Collectors.toList());
         }
 
-        // 默认根据memory进行逆序排序，考虑为null值的情况
+        // 默认根据memory进行逆序排序，按数值而不是字符串比较，没有数据的pod在最后
         if ("memory".equals(sort)) {
             devopsEnvPodInfoVOList = devopsEnvPodInfoVOList.stream()
-                    .sorted(Comparator.comparing(DevopsEnvPodInfoVO::getMemoryUsed, Comparator.nullsFirst(String::compareTo)).reversed())
+                    .sorted(Comparator.comparing((DevopsEnvPodInfoVO pod) -> Optional.ofNullable(podMetrics.get(pod.getName())).map(PodMetricsRedisInfoVO::getMemoryBytes).orElse(null),
+                            Comparator.nullsFirst(Comparator.<Long>naturalOrder())).reversed())
                     .collect(Collectors.toList());
         }
 
@@ -292,4 +306,15 @@ public class DevopsEnvPodServiceImpl implements DevopsEnvPodService {
 
         agentCommandService.deletePod(devopsEnvPodDTO.getName(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getClusterId());
     }
+
+    @Override
+    public List<PodMetricsRedisInfoVO> queryPodMetricsHistory(Long projectId, Long envId, Long podId) {
+        DevopsEnvironmentDTO devopsEnvironmentDTO = permissionHelper.checkEnvBelongToProject(projectId, envId);
+        DevopsEnvPodDTO devopsEnvPodDTO = baseQueryById(podId);
+        if (devopsEnvPodDTO == null || !devopsEnvironmentDTO.getCode().equals(devopsEnvPodDTO.getNamespace())) {
+            throw new CommonException("error.pod.notExist");
+        }
+        DevopsClusterDTO devopsClusterDTO = devopsClusterService.baseQuery(devopsEnvironmentDTO.getClusterId());
+        return agentPodService.queryPodSnapshotHistory(devopsEnvPodDTO.getName(), devopsEnvPodDTO.getNamespace(), devopsClusterDTO.getCode());
+    }
 }
@@ -6,6 +6,7 @@ import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import io.kubernetes.client.JSON;
 import io.kubernetes.client.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,7 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
     private static final String ERROR_COMMAND_ID_IS_NULL = "error.command.id.is.null";
     private static final String LINE_SEPARATOR = "line.separator";
     private static final String NONE_LABEL = "<none>";
+    private static final int BATCH_DELETE_SIZE = 500;
     private static JSON json = new JSON();
 
     @Autowired
@@ -562,6 +564,16 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
         devopsEnvResourceMapper.delete(devopsEnvResourceDO);
     }
 
+    @Override
+    public void batchDeleteByEnvIdAndKindAndNames(Long envId, String kind, Collection<String> names) {
+        if (CollectionUtils.isEmpty(names)) {
+            return;
+        }
+        // 分批删除, 避免in的参数过多
+        Lists.partition(new ArrayList<>(names), BATCH_DELETE_SIZE)
+                .forEach(part -> devopsEnvResourceMapper.batchDeleteByEnvIdAndKindAndNames(envId, kind, part));
+    }
+
     @Override
     public List<DevopsEnvResourceDTO> baseListByEnvAndType(Long envId, String type) {
         return devopsEnvResourceMapper.listByEnvAndType(envId, type);
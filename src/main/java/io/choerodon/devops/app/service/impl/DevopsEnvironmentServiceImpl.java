@@ -50,6 +50,7 @@ import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
+import io.choerodon.devops.infra.handler.EnvGitWorkspaceManager;
 import io.choerodon.devops.infra.mapper.*;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -131,6 +132,8 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     @Autowired
     private ClusterConnectionHandler clusterConnectionHandler;
     @Autowired
+    private EnvGitWorkspaceManager envGitWorkspaceManager;
+    @Autowired
     private PipelineAppDeployService pipelineAppDeployService;
     @Autowired
     private AppServiceInstanceMapper appServiceInstanceMapper;
@@ -1422,6 +1425,11 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             devopsClusterService.baseUpdate(null, devopsClusterDTO);
         }
 
+        // 删除环境在本地的gitops工作区以及它的锁
+        ProjectDTO projectDTO = baseServiceClientOperator.queryIamProjectById(devopsEnvironmentDTO.getProjectId());
+        Tenant organizationDTO = baseServiceClientOperator.queryOrganizationById(projectDTO.getOrganizationId());
+        envGitWorkspaceManager.remove(GitOpsUtil.getLocalPathToStoreEnv(organizationDTO.getTenantNum(),
+                projectDTO.getCode(), devopsClusterDTO.getCode(), devopsEnvironmentDTO.getCode(), envId));
 
         // 删除环境命名空间
         if (devopsEnvironmentDTO.getClusterId() != null) {
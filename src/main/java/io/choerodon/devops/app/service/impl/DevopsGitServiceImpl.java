@@ -6,7 +6,11 @@ import static io.choerodon.devops.infra.constant.KubernetesConstants.NAME;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
@@ -17,8 +21,10 @@ import org.eclipse.jgit.api.Git;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -44,8 +50,9 @@ import io.choerodon.devops.infra.dto.*;
 import io.choerodon.devops.infra.dto.agile.IssueDTO;
 import io.choerodon.devops.infra.dto.gitlab.BranchDTO;
 import io.choerodon.devops.infra.dto.gitlab.CommitDTO;
-import io.choerodon.devops.infra.dto.gitlab.CompareResultDTO;
+import io.choerodon.devops.infra.dto.gitlab.DiffDTO;
 import io.choerodon.devops.infra.dto.gitlab.MemberDTO;
+import io.choerodon.devops.infra.dto.gitlab.TagDTO;
 import io.choerodon.devops.infra.dto.iam.IamUserDTO;
 import io.choerodon.devops.infra.dto.iam.ProjectDTO;
 import io.choerodon.devops.infra.dto.iam.Tenant;
@@ -55,6 +62,7 @@ import io.choerodon.devops.infra.exception.GitlabAccessInvalidException;
 import io.choerodon.devops.infra.feign.operator.AgileServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.handler.EnvGitWorkspaceManager;
 import io.choerodon.devops.infra.mapper.DevopsMergeRequestMapper;
 import io.choerodon.devops.infra.util.*;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
@@ -94,6 +102,8 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     @Autowired
     private AgileServiceClientOperator agileServiceClientOperator;
     @Autowired
+    private EnvGitWorkspaceManager envGitWorkspaceManager;
+    @Autowired
     private GitUtil gitUtil;
     @Autowired
     private DevopsEnvironmentService devopsEnvironmentService;
@@ -125,6 +135,9 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     private MessageSource messageSource;
     @Autowired
     private CheckGitlabAccessLevelService checkGitlabAccessLevelService;
+    @Autowired
+    @Qualifier(GitOpsConstants.GITOPS_PARSE_EXECUTOR)
+    private AsyncTaskExecutor gitOpsParseExecutor;
 
     @Autowired
     private List<HandlerObjectFileRelationsService> handlerObjectFileRelationsServices;
@@ -616,25 +629,30 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
         final Long projectId = devopsEnvironmentDTO.getProjectId();
 
+        // 同步期间持有工作区的锁, 避免其它操作同时拉取或者删除这个工作区
+        ReentrantLock workspaceLock = envGitWorkspaceManager.getLock(path);
+        workspaceLock.lock();
         try {
             //更新本地库到最新提交
-            Git git = handDevopsEnvGitRepository(path, url, devopsEnvironmentDTO.getEnvIdRsa(), devopsEnvCommitDTO.getCommitSha());
+            Git git = envGitWorkspaceManager.prepare(path, url, devopsEnvironmentDTO.getEnvIdRsa());
             LOGGER.info("更新gitops库成功");
             //查询devops-sync tag是否存在，存在则比较tag和最新commit的diff，不存在则识别gitops库下所有文件为新增文件
-            tagNotExist = getDevopsSyncTag(pushWebHookVO);
+            TagDTO devopsSyncTag = queryDevopsSyncTag(pushWebHookVO);
+            tagNotExist = devopsSyncTag == null;
+
+            // 一次查出环境下所有的文件资源关系, 按文件路径建立索引, 避免每个文件查询一次
+            Map<String, List<DevopsEnvFileResourceDTO>> fileResourcesByPath = devopsEnvFileResourceService
+                    .baseListByEnvId(envId)
+                    .stream()
+                    .filter(devopsEnvFileResourceDTO -> devopsEnvFileResourceDTO.getFilePath() != null)
+                    .collect(Collectors.groupingBy(DevopsEnvFileResourceDTO::getFilePath));
 
             if (tagNotExist) {
                 operationFiles.addAll(FileUtil.getFilesPath(path));
-                operationFiles.forEach(file -> {
-                    List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                            .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), file);
-                    if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                        beforeSync.addAll(devopsEnvFileResourceDTOS);
-                    }
-                });
+                operationFiles.forEach(file -> beforeSync.addAll(fileResourcesByPath.getOrDefault(file, Collections.emptyList())));
             } else {
-                handleDiffs(gitLabProjectId, operationFiles, deletedFiles, beforeSync, beforeSyncDelete,
-                        devopsEnvironmentDTO, devopsEnvCommitDTO);
+                handleDiffs(gitLabProjectId, path, devopsSyncTag, operationFiles, deletedFiles, beforeSync, beforeSyncDelete,
+                        devopsEnvCommitDTO, fileResourcesByPath);
             }
 
             Map<Class, List> resourceKindMap = initResourceKindContainer();
@@ -698,6 +716,8 @@ public class DevopsGitServiceImpl implements DevopsGitService {
             LOGGER.info(e.getMessage(), e);
             TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return;
+        } finally {
+            workspaceLock.unlock();
         }
 
         //删除文件错误记录
@@ -733,19 +753,31 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     private void handleFiles(List<String> operationFiles, List<String> deletedFiles,
                              DevopsEnvironmentDTO devopsEnvironmentDTO, DevopsEnvCommitDTO devopsEnvCommitDTO, String path) {
         //新增解释文件记录
-        for (String filePath : operationFiles) {
-            DevopsEnvFileDTO devopsEnvFileDTO = devopsEnvFileService
-                    .baseQueryByEnvAndPath(devopsEnvironmentDTO.getId(), filePath);
-            if (devopsEnvFileDTO == null) {
-                devopsEnvFileDTO = new DevopsEnvFileDTO();
-                devopsEnvFileDTO.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
-                devopsEnvFileDTO.setFilePath(filePath);
-                devopsEnvFileDTO.setEnvId(devopsEnvCommitDTO.getEnvId());
-                devopsEnvFileService.baseCreate(devopsEnvFileDTO);
-            } else {
-                devopsEnvFileDTO.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
-                devopsEnvFileService.baseUpdate(devopsEnvFileDTO);
+        if (!operationFiles.isEmpty()) {
+            // 一次遍历提交历史得到所有文件的最新提交
+            Map<String, String> latestCommits = GitUtil.getFilesLatestCommit(path + GIT_SUFFIX, operationFiles);
+            Map<String, DevopsEnvFileDTO> existingFiles = new HashMap<>();
+            devopsEnvFileService.baseListByEnvId(devopsEnvironmentDTO.getId())
+                    .forEach(devopsEnvFileDTO -> existingFiles.putIfAbsent(devopsEnvFileDTO.getFilePath(), devopsEnvFileDTO));
+
+            List<DevopsEnvFileDTO> toCreate = new ArrayList<>();
+            List<DevopsEnvFileDTO> toUpdate = new ArrayList<>();
+            for (String filePath : new LinkedHashSet<>(operationFiles)) {
+                String latestCommit = latestCommits.get(filePath);
+                DevopsEnvFileDTO devopsEnvFileDTO = existingFiles.get(filePath);
+                if (devopsEnvFileDTO == null) {
+                    devopsEnvFileDTO = new DevopsEnvFileDTO();
+                    devopsEnvFileDTO.setDevopsCommit(latestCommit);
+                    devopsEnvFileDTO.setFilePath(filePath);
+                    devopsEnvFileDTO.setEnvId(devopsEnvCommitDTO.getEnvId());
+                    toCreate.add(devopsEnvFileDTO);
+                } else if (!Objects.equals(latestCommit, devopsEnvFileDTO.getDevopsCommit())) {
+                    devopsEnvFileDTO.setDevopsCommit(latestCommit);
+                    toUpdate.add(devopsEnvFileDTO);
+                }
             }
+            devopsEnvFileService.batchCreate(toCreate);
+            devopsEnvFileService.batchUpdateDevopsCommit(toUpdate);
         }
 
         for (String filePath : deletedFiles) {
@@ -759,26 +791,25 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     private void handleTag(Git git, String sshKey, PushWebHookVO pushWebHookVO,
                            DevopsEnvCommitDTO devopsEnvCommitDTO, Boolean tagNotExist) {
         if (tagNotExist) {
-            GitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
+            gitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
             if (getDevopsSyncTag(pushWebHookVO)) {
-                GitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
+                gitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
             }
         } else {
-            GitUtil.pushTag(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
+            gitUtil.pushTag(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
             if (getDevopsSyncTag(pushWebHookVO)) {
-                GitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
+                gitUtil.createTagAndPush(git, sshKey, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
             }
         }
     }
 
 
-    private void handleDiffs(Integer gitLabProjectId, List<String> operationFiles, List<String> deletedFiles,
+    private void handleDiffs(Integer gitLabProjectId, String path, TagDTO devopsSyncTag,
+                             List<String> operationFiles, List<String> deletedFiles,
                              Set<DevopsEnvFileResourceDTO> beforeSync, Set<DevopsEnvFileResourceDTO> beforeSyncDelete,
-                             DevopsEnvironmentDTO devopsEnvironmentDTO, DevopsEnvCommitDTO devopsEnvCommitDTO) {
+                             DevopsEnvCommitDTO devopsEnvCommitDTO, Map<String, List<DevopsEnvFileResourceDTO>> fileResourcesByPath) {
         //获取将此次最新提交与tag作比价得到diff
-        CompareResultDTO compareResultDTO = gitlabServiceClientOperator
-                .queryCompareResult(gitLabProjectId, GitUtil.DEV_OPS_SYNC_TAG, devopsEnvCommitDTO.getCommitSha());
-        compareResultDTO.getDiffs().forEach(t -> {
+        listDiffs(gitLabProjectId, path, devopsSyncTag, devopsEnvCommitDTO.getCommitSha()).forEach(t -> {
             if (t.getNewPath().contains("yaml") || t.getNewPath().contains("yml")) {
                 if (t.getDeletedFile()) {
                     // t.getNewPath() 而不是t.getOldPath()，这里能用是因为删除的文件的两个的值一致
@@ -791,25 +822,17 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 }
             }
 
-            List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                    .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), t.getOldPath());
-            if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                beforeSync.addAll(devopsEnvFileResourceDTOS);
-            }
+            beforeSync.addAll(fileResourcesByPath.getOrDefault(t.getOldPath(), Collections.emptyList()));
         });
 
-        deletedFiles.forEach(file -> {
-            List<DevopsEnvFileResourceDTO> devopsEnvFileResourceDTOS = devopsEnvFileResourceService
-                    .baseQueryByEnvIdAndPath(devopsEnvironmentDTO.getId(), file);
-            if (!devopsEnvFileResourceDTOS.isEmpty()) {
-                beforeSyncDelete.addAll(devopsEnvFileResourceDTOS);
-            }
-        });
+        deletedFiles.forEach(file -> beforeSyncDelete.addAll(fileResourcesByPath.getOrDefault(file, Collections.emptyList())));
     }
 
 
     /**
      * 将涉及的文件内的对象进行反序列化处理，获取后续处理所需要的元数据
+     * 文件的解析和参数校验互不依赖, 在线程池中并行进行; 资源是否已存在的校验依赖之前文件解析出的资源,
+     * 所以按照文件的顺序串行进行, 出错时抛出的总是按文件顺序第一个出错的文件的异常, 与串行处理的结果一致
      *
      * @param files             对应之前diff操作的operationFiles
      * @param path              环境库的本地目录
@@ -826,23 +849,78 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                                                         Long envId,
                                                         List<DevopsEnvFileResourceDTO> beforeSyncDelete) {
         Map<String, String> objectPath = new HashMap<>();
-        Yaml yaml = new Yaml();
         final Map<String, ConvertK8sObjectService> converters = EnvironmentType.USER == environmentType ? userEnvSupportedResourceConverters : systemEnvSupportedResourceConverters;
-
-        files.forEach(filePath -> {
-            File file = new File(String.format("%s/%s", path, filePath));
-            Iterable<Object> allParts;
-            try {
-                allParts = yaml.loadAll(new FileInputStream(file));
-            } catch (FileNotFoundException e) {
-                throw new CommonException(e.getMessage(), e);
+        // 0.20版本之前被作为自定义资源解析的PVC的名称
+        final Set<String> customizedPvcNames = devopsCustomizeResourceService
+                .listByEnvIdAndKind(envId, ResourceType.PERSISTENT_VOLUME_CLAIM.getType())
+                .stream()
+                .map(DevopsCustomizeResourceDTO::getName)
+                .collect(Collectors.toSet());
+
+        List<Future<ParsedFile>> parsedFiles = files.stream()
+                .map(filePath -> gitOpsParseExecutor.submit(() -> parseFile(filePath, path, converters, envId, customizedPvcNames)))
+                .collect(Collectors.toList());
+        try {
+            for (Future<ParsedFile> future : parsedFiles) {
+                ParsedFile parsedFile = getParsedFile(future);
+                for (ParsedResource parsedResource : parsedFile.resources) {
+                    objectPath.putAll(parsedResource.objectPath);
+                    Object resource = parsedResource.resource;
+                    resourceContainer.computeIfAbsent(resource.getClass(), t -> new ArrayList<>());
+
+                    // 校验资源是否已经存在
+                    parsedResource.handler.checkIfExist(resourceContainer.get(resource.getClass()), envId, beforeSyncDelete, objectPath, resource);
+                }
+                if (parsedFile.failure != null) {
+                    throw parsedFile.failure;
+                }
             }
-            while (allParts.iterator().hasNext()) {
+        } finally {
+            // 出错时后续文件的解析结果已经没有意义
+            parsedFiles.forEach(future -> future.cancel(true));
+        }
+        return objectPath;
+    }
+
+    private static ParsedFile getParsedFile(Future<ParsedFile> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new CommonException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 解析单个文件中的所有资源并校验参数, 在解析线程中执行
+     * 出错时不直接抛出, 而是记录在结果中, 由调用方按照文件顺序抛出
+     *
+     * @param filePath           文件相对于环境库的路径
+     * @param path               环境库的本地目录
+     * @param converters         当前环境类型支持的转换类
+     * @param envId              环境id
+     * @param customizedPvcNames 之前被作为自定义资源解析的PVC的名称
+     * @return 解析结果
+     */
+    private ParsedFile parseFile(String filePath,
+                                 String path,
+                                 Map<String, ConvertK8sObjectService> converters,
+                                 Long envId,
+                                 Set<String> customizedPvcNames) {
+        ParsedFile parsedFile = new ParsedFile();
+        // Yaml实例不是线程安全的, 每个文件使用单独的实例
+        Yaml yaml = new Yaml();
+        File file = new File(String.format("%s/%s", path, filePath));
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            Iterator<Object> allParts = yaml.loadAll(inputStream).iterator();
+            while (allParts.hasNext()) {
                 Object data;
                 try {
                     // 真正对数据进行解析是在next方法中调用
                     // next方法会调用 org.yaml.snakeyaml.constructor.BaseConstructor.getData()
-                    data = allParts.iterator().next();
+                    data = allParts.next();
                 } catch (Exception e) {
                     // 捕获Yaml解析出错，如： "---{}\n---"
                     // 返回友好的方式
@@ -871,7 +949,7 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 // 处理当前资源的处理逻辑
                 ConvertK8sObjectService currentHandler;
                 if (ResourceType.PERSISTENT_VOLUME_CLAIM.getType().equals(type)
-                        && isPvcTreatedAsCustomizeResourceBefore(envId, getPersistentVolumeClaimName(JSONObject, filePath))) {
+                        && customizedPvcNames.contains(getPersistentVolumeClaimName(JSONObject, filePath))) {
                     // 0.20版本之前被作为自定义资源解析的PVC仍然作为自定义资源看待
                     currentHandler = converters.get(ResourceType.MISSTYPE.getType());
                 } else {
@@ -888,17 +966,22 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                     }
                 }
 
-                Object resource = currentHandler.serializableObject(JSONObject.toJSONString(), filePath, objectPath, envId);
-                resourceContainer.computeIfAbsent(resource.getClass(), t -> new ArrayList<>());
+                ParsedResource parsedResource = new ParsedResource(currentHandler);
+                parsedResource.resource = currentHandler.serializableObject(JSONObject.toJSONString(), filePath, parsedResource.objectPath, envId);
 
                 // 校验参数
-                currentHandler.checkParameters(resource, objectPath);
-
-                // 校验资源是否已经存在
-                currentHandler.checkIfExist(resourceContainer.get(resource.getClass()), envId, beforeSyncDelete, objectPath, resource);
+                currentHandler.checkParameters(parsedResource.resource, parsedResource.objectPath);
+                parsedFile.resources.add(parsedResource);
             }
-        });
-        return objectPath;
+        } catch (FileNotFoundException e) {
+            parsedFile.failure = new CommonException(e.getMessage(), e);
+        } catch (IOException e) {
+            // 关闭文件出错不影响解析结果
+            LOGGER.debug("Failed to close file {}", filePath, e);
+        } catch (RuntimeException e) {
+            parsedFile.failure = e;
+        }
+        return parsedFile;
     }
 
     private static String getPersistentVolumeClaimName(JSONObject jsonObject, String filePath) {
@@ -913,14 +996,33 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     }
 
     /**
-     * 判断PVC在之前0.20版本之前是否被解析为自定义资源
-     *
-     * @param envId        环境id
-     * @param resourceName 资源名称
-     * @return true表明是作为自定义资源
+     * 单个文件的解析结果
+     */
+    private static class ParsedFile {
+        /**
+         * 按照在文件中的顺序排列的资源
+         */
+        private final List<ParsedResource> resources = new ArrayList<>();
+        /**
+         * 解析或校验出错时的异常, 在它之前的资源仍然需要进行存在性校验
+         */
+        private RuntimeException failure;
+    }
+
+    /**
+     * 解析出的单个资源
      */
-    private boolean isPvcTreatedAsCustomizeResourceBefore(Long envId, String resourceName) {
-        return devopsCustomizeResourceService.queryByEnvIdAndKindAndName(envId, ResourceType.PERSISTENT_VOLUME_CLAIM.getType(), resourceName) != null;
+    private static class ParsedResource {
+        private final ConvertK8sObjectService handler;
+        /**
+         * 解析这个资源时记录的对象hashcode和文件路径的对应关系
+         */
+        private final Map<String, String> objectPath = new HashMap<>();
+        private Object resource;
+
+        private ParsedResource(ConvertK8sObjectService handler) {
+            this.handler = handler;
+        }
     }
 
     private void commitBranchSync(PushWebHookVO pushWebHookVO, Long appServiceId) {
@@ -1089,6 +1191,43 @@ public class DevopsGitServiceImpl implements DevopsGitService {
         return devopsEnvFileErrorDTO;
     }
 
+    /**
+     * 获取devops-sync标签和目标提交之间的文件改动
+     * 优先在刚更新过的本地仓库中比较, 本地仓库缺少对应的提交等原因导致比较失败时, 使用GitLab的compare接口
+     *
+     * @param gitLabProjectId 环境库的GitLab项目id
+     * @param path            环境库的本地目录
+     * @param devopsSyncTag   devops-sync标签
+     * @param commitSha       目标提交
+     * @return 文件改动
+     */
+    private List<DiffDTO> listDiffs(Integer gitLabProjectId, String path, TagDTO devopsSyncTag, String commitSha) {
+        if (devopsSyncTag.getCommit() != null && devopsSyncTag.getCommit().getId() != null) {
+            try {
+                return GitUtil.getDiffs(path + GIT_SUFFIX, devopsSyncTag.getCommit().getId(), commitSha);
+            } catch (CommonException e) {
+                LOGGER.warn("Failed to compare {} and {} in local repository {}, fall back to GitLab compare", GitUtil.DEV_OPS_SYNC_TAG, commitSha, path, e);
+            }
+        }
+        return gitlabServiceClientOperator
+                .queryCompareResult(gitLabProjectId, GitUtil.DEV_OPS_SYNC_TAG, commitSha)
+                .getDiffs();
+    }
+
+    /**
+     * 查询环境库的devops-sync标签
+     *
+     * @param pushWebHookVO 推送信息
+     * @return 标签, 不存在时为null
+     */
+    private TagDTO queryDevopsSyncTag(PushWebHookVO pushWebHookVO) {
+        return gitlabServiceClientOperator.listTags(pushWebHookVO.getProjectId(), pushWebHookVO.getUserId())
+                .stream()
+                .filter(tagDO -> tagDO.getName().equals(GitUtil.DEV_OPS_SYNC_TAG))
+                .findFirst()
+                .orElse(null);
+    }
+
     private boolean getDevopsSyncTag(PushWebHookVO pushWebHookVO) {
 
         return gitlabServiceClientOperator.listTags(pushWebHookVO.getProjectId(), pushWebHookVO.getUserId())
@@ -1096,21 +1235,6 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
     }
 
-    private Git handDevopsEnvGitRepository(String path, String url, String envIdRsa, String commit) {
-        File file = new File(path);
-        if (!file.exists()) {
-            return gitUtil.cloneBySsh(path, url, envIdRsa);
-        } else {
-            if (file.isDirectory() && file.listFiles().length > 0) {
-                String localPath = String.format("%s%s", path, GIT_SUFFIX);
-                return GitUtil.pullBySsh(localPath, envIdRsa);
-            } else {
-                return gitUtil.cloneBySsh(path, url, envIdRsa);
-            }
-        }
-    }
-
-
     @Override
     public BranchDTO baseQueryBranch(Integer gitLabProjectId, String branchName) {
         return gitlabServiceClientOperator.queryBranch(gitLabProjectId, branchName);
@@ -2,6 +2,7 @@ package io.choerodon.devops.app.service.impl;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -12,8 +13,10 @@ import org.springframework.util.ObjectUtils;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.core.oauth.DetailsHelper;
 import io.choerodon.devops.api.vo.CommitFormRecordVO;
 import io.choerodon.devops.api.vo.CommitFormUserVO;
+import io.choerodon.devops.api.vo.CommitVO;
 import io.choerodon.devops.api.vo.DevopsGitlabCommitVO;
 import io.choerodon.devops.api.vo.PushWebHookVO;
 import io.choerodon.devops.app.service.AppServiceService;
@@ -26,6 +29,7 @@ import io.choerodon.devops.infra.dto.iam.IamUserDTO;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
 import io.choerodon.devops.infra.mapper.DevopsGitlabCommitMapper;
+import io.choerodon.devops.infra.util.ArrayUtil;
 import io.choerodon.devops.infra.util.PageRequestUtil;
 import io.choerodon.devops.infra.util.TypeUtil;
 import io.choerodon.mybatis.pagehelper.PageHelper;
@@ -56,29 +60,42 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
         AppServiceDTO applicationDTO = applicationService.baseQueryByToken(token);
         String ref = pushWebHookVO.getRef().split("/")[2];
         if (!pushWebHookVO.getCommits().isEmpty()) {
-            pushWebHookVO.getCommits().forEach(commitDTO -> {
-                DevopsGitlabCommitDTO devopsGitlabCommitDTO = devopsGitlabCommitService.baseQueryByShaAndRef(commitDTO.getId(), ref);
-
-                if (devopsGitlabCommitDTO == null) {
-                    devopsGitlabCommitDTO = new DevopsGitlabCommitDTO();
-                    devopsGitlabCommitDTO.setAppServiceId(applicationDTO.getId());
-                    devopsGitlabCommitDTO.setCommitContent(commitDTO.getMessage());
-                    devopsGitlabCommitDTO.setCommitSha(commitDTO.getId());
-                    devopsGitlabCommitDTO.setRef(ref);
-                    devopsGitlabCommitDTO.setUrl(commitDTO.getUrl());
-                    if ("root".equals(commitDTO.getAuthor().getName())) {
-                        devopsGitlabCommitDTO.setUserId(1L);
-                    } else {
-                        IamUserDTO iamUserDTO = baseServiceClientOperator.queryByEmail(applicationDTO.getProjectId(),
-                                commitDTO.getAuthor().getEmail());
-                        if (iamUserDTO != null) {
-                            devopsGitlabCommitDTO.setUserId(iamUserDTO.getId());
-                        }
+            // 一次查询出已经存在的commit, 剩下的commit的作者一次批量查询, 再一次插入
+            Set<String> existingShas = new HashSet<>(devopsGitlabCommitMapper.listExistingShas(ref,
+                    pushWebHookVO.getCommits().stream().map(CommitVO::getId).collect(Collectors.toList())));
+            Map<String, CommitVO> newCommits = new LinkedHashMap<>();
+            pushWebHookVO.getCommits().stream()
+                    .filter(commitVO -> !existingShas.contains(commitVO.getId()))
+                    .forEach(commitVO -> newCommits.putIfAbsent(commitVO.getId(), commitVO));
+            if (newCommits.isEmpty()) {
+                return;
+            }
+
+            Map<String, IamUserDTO> users = baseServiceClientOperator.queryUsersByEmails(applicationDTO.getProjectId(),
+                    newCommits.values().stream()
+                            .filter(commitVO -> !"root".equals(commitVO.getAuthor().getName()))
+                            .map(commitVO -> commitVO.getAuthor().getEmail())
+                            .collect(Collectors.toList()));
+            List<DevopsGitlabCommitDTO> devopsGitlabCommitDTOS = newCommits.values().stream().map(commitDTO -> {
+                DevopsGitlabCommitDTO devopsGitlabCommitDTO = new DevopsGitlabCommitDTO();
+                devopsGitlabCommitDTO.setAppServiceId(applicationDTO.getId());
+                devopsGitlabCommitDTO.setCommitContent(commitDTO.getMessage());
+                devopsGitlabCommitDTO.setCommitSha(commitDTO.getId());
+                devopsGitlabCommitDTO.setRef(ref);
+                devopsGitlabCommitDTO.setUrl(commitDTO.getUrl());
+                if ("root".equals(commitDTO.getAuthor().getName())) {
+                    devopsGitlabCommitDTO.setUserId(1L);
+                } else {
+                    IamUserDTO iamUserDTO = findUserByEmail(users, commitDTO.getAuthor().getEmail());
+                    if (iamUserDTO != null) {
+                        devopsGitlabCommitDTO.setUserId(iamUserDTO.getId());
                     }
-                    devopsGitlabCommitDTO.setCommitDate(commitDTO.getTimestamp());
-                    devopsGitlabCommitService.baseCreate(devopsGitlabCommitDTO);
                 }
-            });
+                devopsGitlabCommitDTO.setCommitDate(commitDTO.getTimestamp());
+                return devopsGitlabCommitDTO;
+            }).collect(Collectors.toList());
+            // 创建人和逐个插入时一样, 取处理事件时设置的推送用户
+            devopsGitlabCommitMapper.batchInsert(devopsGitlabCommitDTOS, DetailsHelper.getUserDetails() == null ? 0L : DetailsHelper.getUserDetails().getUserId());
         } else {
             //直接从一个分支切出来另外一个分支，没有commits记录
             DevopsGitlabCommitDTO devopsGitlabCommitDTO = devopsGitlabCommitService.baseQueryByShaAndRef(pushWebHookVO.getCheckoutSha(), ref);
@@ -93,8 +110,8 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
                 if ("root".equals(commitDTO.getAuthorName())) {
                     devopsGitlabCommitDTO.setUserId(1L);
                 } else {
-                    IamUserDTO userE = baseServiceClientOperator.queryByEmail(applicationDTO.getProjectId(),
-                            commitDTO.getAuthorEmail());
+                    IamUserDTO userE = findUserByEmail(baseServiceClientOperator.queryUsersByEmails(applicationDTO.getProjectId(),
+                            ArrayUtil.singleAsList(commitDTO.getAuthorEmail())), commitDTO.getAuthorEmail());
                     if (userE != null) {
                         devopsGitlabCommitDTO.setUserId(userE.getId());
                     }
@@ -106,6 +123,11 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
 
     }
 
+    @Nullable
+    private static IamUserDTO findUserByEmail(Map<String, IamUserDTO> users, @Nullable String email) {
+        return email == null ? null : users.get(email.toLowerCase(Locale.ROOT));
+    }
+
     @Override
     public DevopsGitlabCommitVO queryCommits(Long projectId, String appServiceIds, Date startDate, Date
             endDate) {
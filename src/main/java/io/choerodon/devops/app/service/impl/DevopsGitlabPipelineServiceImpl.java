@@ -199,27 +199,37 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
     }
 
     @Override
-    public void updateStages(JobWebHookVO jobWebHookVO) {
-        //按照job的状态实时更新pipeline阶段的状态
-        DevopsGitlabCommitDTO devopsGitlabCommitDTO = devopsGitlabCommitService.baseQueryByShaAndRef(jobWebHookVO.getSha(), jobWebHookVO.getRef());
+    public void updateStages(List<JobWebHookVO> jobWebHookVOS) {
+        if (jobWebHookVOS.isEmpty()) {
+            return;
+        }
+        //按照job的状态实时更新pipeline阶段的状态, 同一条流水线的job的commit和流水线都是相同的
+        JobWebHookVO firstJob = jobWebHookVOS.get(0);
+        if (firstJob.getCommit() == null || firstJob.getCommit().getId() == null) {
+            LOGGER.info("The commit attribute or the commit.id attribute is null of jobWebHook {}", firstJob.getBuildName());
+            return;
+        }
 
-        if (jobWebHookVO.getCommit() == null || jobWebHookVO.getCommit().getId() == null) {
-            LOGGER.info("The commit attribute or the commit.id attribute is null of jobWebHook {}", jobWebHookVO.getBuildName());
+        List<JobWebHookVO> jobsToApply = jobWebHookVOS.stream()
+                .filter(job -> !"created".equals(job.getBuildStatus()))
+                .collect(Collectors.toList());
+        if (jobsToApply.isEmpty()) {
             return;
         }
 
-        if (devopsGitlabCommitDTO != null && !"created".equals(jobWebHookVO.getBuildStatus())) {
-            DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = baseQueryByGitlabPipelineId(jobWebHookVO.getCommit().getId());
+        DevopsGitlabCommitDTO devopsGitlabCommitDTO = devopsGitlabCommitService.baseQueryByShaAndRef(firstJob.getSha(), firstJob.getRef());
+        if (devopsGitlabCommitDTO != null) {
+            DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = baseQueryByGitlabPipelineId(firstJob.getCommit().getId());
             if (devopsGitlabPipelineDTO != null) {
-                LOGGER.debug("Found gitlab pipeline by id {}", jobWebHookVO.getCommit().getId());
+                LOGGER.debug("Found gitlab pipeline by id {}", firstJob.getCommit().getId());
                 List<Stage> stages = JSONArray.parseArray(devopsGitlabPipelineDTO.getStage(), Stage.class);
-                stages.stream().filter(stage -> jobWebHookVO.getBuildName().equals(stage.getName())).forEach(stage ->
-                        stage.setStatus(jobWebHookVO.getBuildStatus())
-                );
+                jobsToApply.forEach(jobWebHookVO -> stages.stream()
+                        .filter(stage -> jobWebHookVO.getBuildName().equals(stage.getName()))
+                        .forEach(stage -> stage.setStatus(jobWebHookVO.getBuildStatus())));
                 devopsGitlabPipelineDTO.setStage(JSONArray.toJSONString(stages));
                 baseUpdate(devopsGitlabPipelineDTO);
             } else {
-                LOGGER.debug("Not Found gitlab pipeline by id {}", jobWebHookVO.getCommit().getId());
+                LOGGER.debug("Not Found gitlab pipeline by id {}", firstJob.getCommit().getId());
             }
         }
     }
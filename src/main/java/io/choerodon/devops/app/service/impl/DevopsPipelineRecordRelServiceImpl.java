@@ -1,5 +1,9 @@
 package io.choerodon.devops.app.service.impl;
 
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -7,6 +11,7 @@ import org.springframework.util.Assert;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.PipelineRecordRelStatsVO;
 import io.choerodon.devops.app.service.DevopsPipelineRecordRelService;
 import io.choerodon.devops.infra.constant.PipelineConstants;
 import io.choerodon.devops.infra.dto.DevopsPipelineRecordRelDTO;
@@ -70,4 +75,21 @@ public class DevopsPipelineRecordRelServiceImpl implements DevopsPipelineRecordR
         Assert.notNull(pipelineRecordRelId, ERROR_PIPELINE_RECORD_REL_ID_IS_NULL);
         return devopsPipelineRecordRelMapper.selectByPrimaryKey(pipelineRecordRelId);
     }
+
+    @Override
+    public List<DevopsPipelineRecordRelDTO> listLatestByPipelineIds(Collection<Long> pipelineIds, int size) {
+        if (pipelineIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return devopsPipelineRecordRelMapper.listLatestByPipelineIds(pipelineIds, size);
+    }
+
+    @Override
+    public Map<Long, PipelineRecordRelStatsVO> queryStatsByPipelineIds(Collection<Long> pipelineIds) {
+        if (pipelineIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return devopsPipelineRecordRelMapper.listStatsByPipelineIds(pipelineIds).stream()
+                .collect(Collectors.toMap(PipelineRecordRelStatsVO::getPipelineId, Function.identity()));
+    }
 }
@@ -15,6 +15,7 @@ import io.choerodon.devops.infra.enums.SecretStatus;
 import io.choerodon.devops.infra.enums.SendSettingEnum;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.gitops.GitOpsChangeSet;
 import io.choerodon.devops.infra.gitops.ResourceConvertToYamlHandler;
 import io.choerodon.devops.infra.gitops.ResourceFileCheckHandler;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
@@ -255,11 +256,13 @@ public class DevopsSecretServiceImpl implements DevopsSecretService {
         // 判断当前容器目录下是否存在环境对应的gitops文件目录，不存在则克隆
         String path = clusterConnectionHandler.handDevopsEnvGitRepository(devopsEnvironmentDTO.getProjectId(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getId(), devopsEnvironmentDTO.getEnvIdRsa(), devopsEnvironmentDTO.getType(), devopsEnvironmentDTO.getClusterCode());
 
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(gitlabEnvGroupProjectId, TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
         ResourceConvertToYamlHandler<V1Secret> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
         resourceConvertToYamlHandler.setType(v1Secret);
         resourceConvertToYamlHandler.operationEnvGitlabFile("sct-" + devopsSecretDTO.getName(), gitlabEnvGroupProjectId,
                 isCreate ? CREATE : UPDATE, userAttrDTO.getGitlabUserId(), devopsSecretDTO.getId(), SECRET, null, false,
-                devopsSecretDTO.getEnvId(), path);
+                devopsSecretDTO.getEnvId(), path, changeSet);
+        changeSet.commit(isCreate ? "ADD FILE" : "UPDATE FILE");
     }
 
     @Override
@@ -288,6 +291,10 @@ public class DevopsSecretServiceImpl implements DevopsSecretService {
         //判断当前容器目录下是否存在环境对应的gitops文件目录，不存在则克隆
         String path = clusterConnectionHandler.handDevopsEnvGitRepository(devopsEnvironmentDTO.getProjectId(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getId(), devopsEnvironmentDTO.getEnvIdRsa(), devopsEnvironmentDTO.getType(), devopsEnvironmentDTO.getClusterCode());
 
+        // 对环境库的修改在一个提交中完成
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
+                TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
+
         // 查询该对象所在文件中是否含有其它对象
         DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = devopsEnvFileResourceService
                 .baseQueryByEnvIdAndResourceId(devopsEnvironmentDTO.getId(), secretId, SECRET);
@@ -295,11 +302,8 @@ public class DevopsSecretServiceImpl implements DevopsSecretService {
             baseDelete(secretId);
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     "sct-" + devopsSecretDTO.getName() + ".yaml")) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        "sct-" + devopsSecretDTO.getName() + ".yaml",
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete("sct-" + devopsSecretDTO.getName() + ".yaml");
+                changeSet.commit("DELETE FILE");
             }
             return true;
         } else {
@@ -317,10 +321,9 @@ public class DevopsSecretServiceImpl implements DevopsSecretService {
         if (devopsEnvFileResourceDTOS.size() == 1) {
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), MASTER,
                     devopsEnvFileResourceDTO.getFilePath())) {
-                gitlabServiceClientOperator.deleteFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        devopsEnvFileResourceDTO.getFilePath(), "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(devopsEnvFileResourceDTO.getFilePath());
             }
+            changeSet.commit("DELETE FILE");
         } else {
             ResourceConvertToYamlHandler<V1Secret> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
             V1Secret v1Secret = new V1Secret();
@@ -330,7 +333,8 @@ public class DevopsSecretServiceImpl implements DevopsSecretService {
             resourceConvertToYamlHandler.setType(v1Secret);
             Integer gitlabEnvProjectId = TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId());
             resourceConvertToYamlHandler.operationEnvGitlabFile(null, gitlabEnvProjectId, DELETE, userAttrDTO.getGitlabUserId(), secretId,
-                    SECRET, null, false, devopsEnvironmentDTO.getId(), path);
+                    SECRET, null, false, devopsEnvironmentDTO.getId(), path, changeSet);
+            changeSet.commit("UPDATE FILE");
         }
         //删除成功发送web hook json
         sendNotificationService.sendWhenSecret(devopsSecretDTO, SendSettingEnum.DELETE_RESOURCE.value());
@@ -19,6 +19,7 @@ import io.choerodon.devops.infra.dto.*;
 import io.choerodon.devops.infra.enums.*;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
 import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+import io.choerodon.devops.infra.gitops.GitOpsChangeSet;
 import io.choerodon.devops.infra.gitops.ResourceConvertToYamlHandler;
 import io.choerodon.devops.infra.gitops.ResourceFileCheckHandler;
 import io.choerodon.devops.infra.handler.ClusterConnectionHandler;
@@ -369,6 +370,10 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
         //判断当前容器目录下是否存在环境对应的gitops文件目录，不存在则克隆
         String path = clusterConnectionHandler.handDevopsEnvGitRepository(devopsEnvironmentDTO.getProjectId(), devopsEnvironmentDTO.getCode(), devopsEnvironmentDTO.getId(), devopsEnvironmentDTO.getEnvIdRsa(), devopsEnvironmentDTO.getType(), devopsEnvironmentDTO.getClusterCode());
 
+        // 对环境库的修改在一个提交中完成
+        GitOpsChangeSet changeSet = new GitOpsChangeSet(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
+                TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()), path);
+
         //查询改对象所在文件中是否含有其它对象
         DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = devopsEnvFileResourceService
                 .baseQueryByEnvIdAndResourceId(devopsEnvironmentDTO.getId(), id, SERVICE);
@@ -377,11 +382,8 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
             devopsServiceInstanceService.baseDeleteByOptions(id, null);
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), GitOpsConstants.MASTER,
                     GitOpsConstants.SERVICE_PREFIX + devopsServiceDTO.getName() + GitOpsConstants.YAML_FILE_SUFFIX)) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        GitOpsConstants.SERVICE_PREFIX + devopsServiceDTO.getName() + GitOpsConstants.YAML_FILE_SUFFIX,
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(GitOpsConstants.SERVICE_PREFIX + devopsServiceDTO.getName() + GitOpsConstants.YAML_FILE_SUFFIX);
+                changeSet.commit("DELETE FILE");
             }
             return;
         } else {
@@ -400,12 +402,9 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
         if (devopsEnvFileResourceDTOS.size() == 1) {
             if (gitlabServiceClientOperator.getFile(TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()), GitOpsConstants.MASTER,
                     devopsEnvFileResourceDTO.getFilePath())) {
-                gitlabServiceClientOperator.deleteFile(
-                        TypeUtil.objToInteger(devopsEnvironmentDTO.getGitlabEnvProjectId()),
-                        devopsEnvFileResourceDTO.getFilePath(),
-                        "DELETE FILE",
-                        TypeUtil.objToInteger(userAttrDTO.getGitlabUserId()));
+                changeSet.delete(devopsEnvFileResourceDTO.getFilePath());
             }
+            changeSet.commit("DELETE FILE");
         } else {
             ResourceConvertToYamlHandler<V1Service> resourceConvertToYamlHandler = new ResourceConvertToYamlHandler<>();
             V1Service v1Service = new V1Service();
@@ -419,7 +418,8 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
                     gitlabEnvProjectId,
                     CommandType.DELETE.getType(),
                     userAttrDTO.getGitlabUserId(),
-                    devopsServiceDTO.getId(), SERVICE, null, false, devopsEnvironmentDTO.getId(), path);
+                    devopsServiceDTO.getId(), SERVICE, null, false, devopsEnvironmentDTO.getId(), path, changeSet);
+            changeSet.commit("UPDATE FILE");
         }
         //删除成功后发送webhook json
         sendNotificationService.sendWhenServiceCreationSuccessOrDelete(devopsServiceDTO, devopsEnvironmentDTO, SendSettingEnum.DELETE_RESOURCE.value());
@@ -781,22 +781,12 @@ public class DevopsServiceServiceImpl implements DevopsServiceService {
             List<PodMetricsRedisInfoVO> agentPodInfoVOS = agentPodInfoService.queryAllPodSnapshots(devopsEnvPodDTO.getName(), devopsEnvPodDTO.getNamespace(), devopsClusterDTO.getCode());
 
             if (!agentPodInfoVOS.isEmpty()) {
+                // cpu单位为毫核, 内存单位为Mi
                 List<Long> cpuUsedList = agentPodInfoVOS.stream()
-                        .map(info -> {
-                            if (info.getCpu().equals("0")) {
-                                return 0L;
-                            } else {
-                                return TypeUtil.objToLong(info.getCpu().substring(0, (info.getCpu().length() - 1)));
-                            }
-                        }).collect(Collectors.toList());
+                        .map(PodMetricsRedisInfoVO::getCpuMillicores)
+                        .collect(Collectors.toList());
                 List<Long> memoryUsedList = agentPodInfoVOS.stream()
-                        .map(info -> {
-                            if (info.getMemory().equals("0")) {
-                                return 0L;
-                            } else {
-                                return TypeUtil.objToLong(info.getMemory().substring(0, (info.getMemory()).length() - 2));
-                            }
-                        })
+                        .map(info -> info.getMemoryBytes() >> 20)
                         .collect(Collectors.toList());
                 List<Date> timeList = agentPodInfoVOS.stream().map(PodMetricsRedisInfoVO::getSnapShotTime).collect(Collectors.toList());
 
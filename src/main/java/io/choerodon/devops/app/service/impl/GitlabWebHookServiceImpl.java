@@ -1,11 +1,24 @@
 package io.choerodon.devops.app.service.impl;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
 import com.alibaba.fastjson.JSONArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.alibaba.fastjson.JSONReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import io.choerodon.devops.api.vo.DevopsMergeRequestVO;
 import io.choerodon.devops.api.vo.JobWebHookVO;
@@ -13,16 +26,58 @@ import io.choerodon.devops.api.vo.PipelineWebHookVO;
 import io.choerodon.devops.api.vo.PushWebHookVO;
 import io.choerodon.devops.app.service.*;
 import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.dto.AppServiceDTO;
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO;
 import io.choerodon.devops.infra.dto.iam.IamUserDTO;
 import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator;
+import io.choerodon.devops.infra.handler.GitlabJobEventCoalescer;
+import io.choerodon.devops.infra.handler.GitlabTagIndex;
+import io.choerodon.devops.infra.handler.GitlabWebhookEventDispatcher;
+import io.choerodon.devops.infra.mapper.DevopsGitlabWebhookEventMapper;
 import io.choerodon.devops.infra.util.CustomContextUtil;
 import io.choerodon.devops.infra.util.FastjsonParserConfigProvider;
+import io.choerodon.devops.infra.util.GitUtil;
+import io.choerodon.devops.infra.util.MapperUtil;
+import io.choerodon.devops.infra.util.TypeUtil;
 
 @Service
 public class GitlabWebHookServiceImpl implements GitlabWebHookService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GitlabWebHookServiceImpl.class);
 
+    private static final String OBJECT_KIND = "object_kind";
+    private static final String MERGE_REQUEST = "merge_request";
+    private static final String PUSH = "push";
+    private static final String PIPELINE = "pipeline";
+    private static final String BUILD = "build";
+    private static final String TAG_PUSH = "tag_push";
+
+    /**
+     * 是否异步处理webhook事件
+     */
+    @Value("${devops.gitlab.webhook.async:true}")
+    private Boolean asyncEnabled;
+    /**
+     * 入库的事件超过多久没有处理完成, 就被其它实例认领, 单位: 毫秒
+     */
+    @Value("${devops.gitlab.webhook.recoverAfterMillis:1800000}")
+    private Long recoverAfterMillis;
+    /**
+     * 每次从数据库中读取的事件数量上限
+     */
+    @Value("${devops.gitlab.webhook.recoverBatchSize:500}")
+    private Integer recoverBatchSize;
+    /**
+     * 当前服务实例的标识, 为空时使用保存在instanceIdFile中的标识
+     */
+    @Value("${devops.gitlab.webhook.instanceId:}")
+    private String configuredInstanceId;
+    /**
+     * 保存当前服务实例标识的文件, 第一次启动时生成
+     */
+    @Value("${devops.gitlab.webhook.instanceIdFile:webhook/instance-id}")
+    private String instanceIdFile;
+
     private DevopsMergeRequestService devopsMergeRequestService;
     private DevopsGitService devopsGitService;
     private DevopsGitlabCommitService devopsGitlabCommitService;
@@ -31,6 +86,33 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
     private DevopsCiJobRecordService devopsCiJobRecordService;
     private BaseServiceClientOperator baseServiceClientOperator;
     private DevopsCdPipelineService devopsCdPipelineService;
+    private AppServiceService appServiceService;
+    private DevopsGitlabWebhookEventMapper devopsGitlabWebhookEventMapper;
+    private GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher;
+    private GitlabJobEventCoalescer gitlabJobEventCoalescer;
+    private GitlabTagIndex gitlabTagIndex;
+
+    /**
+     * 当前服务实例的标识, 用于认领入库的事件. 实例重启后标识不变, 所以可以立即认领之前遗留的事件
+     */
+    private String instanceId;
+    /**
+     * 当前实例上一次运行时遗留的事件是否已经全部认领
+     */
+    private volatile boolean ownEventsRecovered;
+    /**
+     * 已经在当前实例的队列中等待处理的事件id, 包括等待合并的job事件, 从数据库读取事件时跳过
+     */
+    private final Set<Long> queuedEventIds = ConcurrentHashMap.newKeySet();
+    /**
+     * 有事件留在数据库中的GitLab项目
+     * 这些项目新接收的事件也留在数据库中, 数据库中的事件全部按照接收的顺序放入队列后, 新的事件才直接放入队列
+     */
+    private final Set<Long> spilledProjects = ConcurrentHashMap.newKeySet();
+    /**
+     * 按GitLab项目加锁, 保证判断事件是否放入队列和将数据库中的事件放入队列不会交错
+     */
+    private final Object[] projectLocks = new Object[64];
 
     public GitlabWebHookServiceImpl(DevopsMergeRequestService devopsMergeRequestService,
                                     DevopsGitService devopsGitService,
@@ -39,7 +121,12 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
                                     DevopsCiPipelineRecordService devopsCiPipelineRecordService,
                                     DevopsCiJobRecordService devopsCiJobRecordService,
                                     BaseServiceClientOperator baseServiceClientOperator,
-                                    DevopsCdPipelineService devopsCdPipelineService) {
+                                    DevopsCdPipelineService devopsCdPipelineService,
+                                    AppServiceService appServiceService,
+                                    DevopsGitlabWebhookEventMapper devopsGitlabWebhookEventMapper,
+                                    GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher,
+                                    GitlabJobEventCoalescer gitlabJobEventCoalescer,
+                                    GitlabTagIndex gitlabTagIndex) {
         this.devopsMergeRequestService = devopsMergeRequestService;
         this.devopsGitService = devopsGitService;
         this.devopsGitlabCommitService = devopsGitlabCommitService;
@@ -48,20 +135,332 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
         this.devopsCiJobRecordService = devopsCiJobRecordService;
         this.baseServiceClientOperator = baseServiceClientOperator;
         this.devopsCdPipelineService = devopsCdPipelineService;
+        this.appServiceService = appServiceService;
+        this.devopsGitlabWebhookEventMapper = devopsGitlabWebhookEventMapper;
+        this.gitlabWebhookEventDispatcher = gitlabWebhookEventDispatcher;
+        this.gitlabJobEventCoalescer = gitlabJobEventCoalescer;
+        this.gitlabTagIndex = gitlabTagIndex;
+        for (int i = 0; i < projectLocks.length; i++) {
+            projectLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        instanceId = resolveInstanceId(configuredInstanceId, instanceIdFile);
+        LOGGER.info("GitLab webhook events are claimed with instance id {}", instanceId);
     }
 
     @Override
     public void forwardingEventToPortal(String body, String token) {
-        JsonObject returnData = new JsonParser().parse(body).getAsJsonObject();
-        String kind = returnData.get("object_kind").getAsString();
+        String kind = readObjectKind(body);
+        Object event = parseEvent(kind, body);
+        if (event == null) {
+            return;
+        }
+        // 先校验token, 不保存和处理无效的事件
+        Long gitlabProjectId = checkToken(kind, event, token);
+        if (gitlabProjectId == null) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(asyncEnabled)) {
+            handleEvent(kind, event, token);
+            return;
+        }
+
+        // 先入库再返回, 服务在处理完成之前停止也不会丢失事件
+        DevopsGitlabWebhookEventDTO devopsGitlabWebhookEventDTO = new DevopsGitlabWebhookEventDTO();
+        devopsGitlabWebhookEventDTO.setGitlabProjectId(gitlabProjectId);
+        devopsGitlabWebhookEventDTO.setObjectKind(kind);
+        devopsGitlabWebhookEventDTO.setToken(token);
+        devopsGitlabWebhookEventDTO.setPayload(body);
+        devopsGitlabWebhookEventDTO.setOwner(instanceId);
+        MapperUtil.resultJudgedInsert(devopsGitlabWebhookEventMapper, devopsGitlabWebhookEventDTO, "error.gitlab.webhook.event.insert");
+
+        synchronized (lockOf(gitlabProjectId)) {
+            // 项目还有留在数据库中的事件时, 新的事件排在它们后面, 由drainSpilledEvents放入队列
+            if (spilledProjects.contains(gitlabProjectId)) {
+                return;
+            }
+            if (!dispatch(devopsGitlabWebhookEventDTO.getId(), gitlabProjectId, kind, System.currentTimeMillis(), event, token)) {
+                spilledProjects.add(gitlabProjectId);
+            }
+        }
+    }
+
+    @Override
+    public void gitOpsWebHook(String body, String token) {
+        if (PUSH.equals(readObjectKind(body))) {
+            PushWebHookVO pushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(pushWebHookVO.toString());
+            }
+            // 不处理删除环境库的分支的情况
+            if (GitOpsConstants.NO_COMMIT_SHA.equals(pushWebHookVO.getAfter())) {
+                LOGGER.debug("GitOps PushWebHook is ignored due to branch deleting. Ref: {}", pushWebHookVO.getRef());
+                return;
+            }
+            // 只处理master分支的commit, 不处理其他分支的commit
+            if (!GitOpsConstants.MASTER_REF.equals(pushWebHookVO.getRef())) {
+                LOGGER.debug("GitOps PushWebHook of ref {} is ignored because the ref is not master.", pushWebHookVO.getRef());
+                return;
+            }
+            devopsGitService.fileResourceSyncSaga(pushWebHookVO, token);
+        }
+    }
+
+    @Override
+    public void recoverWebhookEvents() {
+        if (!Boolean.TRUE.equals(asyncEnabled)) {
+            return;
+        }
+        boolean includeOwn = !ownEventsRecovered;
+        Date before = new Date(System.currentTimeMillis() - recoverAfterMillis);
+        List<DevopsGitlabWebhookEventDTO> events = devopsGitlabWebhookEventMapper.listToRecover(includeOwn ? instanceId : null, before, recoverBatchSize);
+        int recovered = 0;
+        for (DevopsGitlabWebhookEventDTO event : events) {
+            if (queuedEventIds.contains(event.getId())
+                    || devopsGitlabWebhookEventMapper.claim(event.getId(), event.getOwner(), instanceId) != 1) {
+                continue;
+            }
+            recovered++;
+            if (event.getGitlabProjectId() == null) {
+                dispatch(event.getId(), null, event.getObjectKind(), receivedAtOf(event), null, null);
+            } else {
+                // 认领的事件和项目新接收的事件一起按照接收的顺序放入队列
+                spilledProjects.add(event.getGitlabProjectId());
+            }
+        }
+        if (includeOwn && events.size() < recoverBatchSize) {
+            ownEventsRecovered = true;
+        }
+        if (recovered > 0) {
+            LOGGER.info("Recovered {} unprocessed GitLab webhook events", recovered);
+        }
+        drainSpilledEvents();
+    }
+
+    @Override
+    public void drainSpilledEvents() {
+        for (Long gitlabProjectId : spilledProjects) {
+            drainSpilledEvents(gitlabProjectId);
+        }
+    }
+
+    private void drainSpilledEvents(Long gitlabProjectId) {
+        synchronized (lockOf(gitlabProjectId)) {
+            if (!spilledProjects.contains(gitlabProjectId)) {
+                return;
+            }
+            List<DevopsGitlabWebhookEventDTO> events = devopsGitlabWebhookEventMapper.listByOwnerAndProject(instanceId, gitlabProjectId, recoverBatchSize);
+            for (DevopsGitlabWebhookEventDTO event : events) {
+                // 已经在队列中的事件排在这些事件之前, 跳过; 队列仍然是满的时候下次再从数据库读取
+                if (!queuedEventIds.contains(event.getId())
+                        && !dispatch(event.getId(), gitlabProjectId, event.getObjectKind(), receivedAtOf(event), null, null)) {
+                    return;
+                }
+            }
+            // 数据库中的事件已经全部放入队列, 之后接收的事件可以直接放入队列
+            if (events.size() < recoverBatchSize) {
+                spilledProjects.remove(gitlabProjectId);
+            }
+        }
+    }
+
+    private Object lockOf(Long gitlabProjectId) {
+        return projectLocks[Math.floorMod(gitlabProjectId.hashCode(), projectLocks.length)];
+    }
+
+    private static long receivedAtOf(DevopsGitlabWebhookEventDTO event) {
+        return event.getCreationDate() == null ? System.currentTimeMillis() : event.getCreationDate().getTime();
+    }
+
+    /**
+     * 校验webhook的token是对应GitLab项目的应用服务的token
+     *
+     * @return 事件所属的GitLab项目id, token无效时返回null
+     */
+    @Nullable
+    private Long checkToken(String kind, Object event, @Nullable String token) {
+        Long gitlabProjectId = getGitlabProjectId(kind, event);
+        AppServiceDTO appServiceDTO = StringUtils.isEmpty(token) ? null : appServiceService.baseQueryByToken(token);
+        if (appServiceDTO == null || appServiceDTO.getGitlabProjectId() == null) {
+            LOGGER.warn("GitLab webhook {} event of project {} is ignored because the token is invalid", kind, gitlabProjectId);
+            return null;
+        }
+        Long appServiceGitlabProjectId = TypeUtil.objToLong(appServiceDTO.getGitlabProjectId());
+        if (gitlabProjectId != null && !gitlabProjectId.equals(appServiceGitlabProjectId)) {
+            LOGGER.warn("GitLab webhook {} event of project {} is ignored because the token belongs to project {}", kind, gitlabProjectId, appServiceGitlabProjectId);
+            return null;
+        }
+        return appServiceGitlabProjectId;
+    }
+
+    /**
+     * 将事件放入处理队列
+     *
+     * @param event 解析后的事件, 为null时在处理前从数据库中读取
+     * @param token 为null时在处理前从数据库中读取
+     * @return 是否进入了队列
+     */
+    private boolean dispatch(Long eventId, @Nullable Long gitlabProjectId, String kind, long receivedAt, @Nullable Object event, @Nullable String token) {
+        if (!queuedEventIds.add(eventId)) {
+            return true;
+        }
+        boolean accepted = gitlabWebhookEventDispatcher.dispatch(gitlabProjectId, kind, receivedAt, () -> {
+            boolean deferred = false;
+            try {
+                deferred = processStoredEvent(eventId, kind, event, token);
+            } finally {
+                // 合并的job事件在处理完成并删除后再移除
+                if (!deferred) {
+                    queuedEventIds.remove(eventId);
+                }
+            }
+        });
+        if (!accepted) {
+            queuedEventIds.remove(eventId);
+        }
+        return accepted;
+    }
+
+    /**
+     * @return 是否交给了job事件合并器, 这时事件在合并的事件处理完成时删除
+     */
+    private boolean processStoredEvent(Long eventId, String kind, @Nullable Object event, @Nullable String token) {
+        // 确认事件仍然由当前实例负责, 同时刷新更新时间, 避免处理期间被其它实例当作超时的事件认领
+        if (devopsGitlabWebhookEventMapper.claim(eventId, instanceId, instanceId) != 1) {
+            LOGGER.info("GitLab webhook event {} has been claimed by another instance", eventId);
+            return false;
+        }
+        // job事件被合并后, 在合并的事件处理完成时再删除
+        boolean deferred = false;
+        try {
+            if (event == null) {
+                DevopsGitlabWebhookEventDTO stored = devopsGitlabWebhookEventMapper.selectByPrimaryKey(eventId);
+                if (stored == null) {
+                    return false;
+                }
+                token = stored.getToken();
+                event = parseEvent(kind, stored.getPayload());
+            }
+            if (BUILD.equals(kind) && event != null) {
+                deferred = coalesceJobEvent(eventId, (JobWebHookVO) event);
+            }
+            if (!deferred && event != null) {
+                handleEvent(kind, event, token);
+            }
+        } finally {
+            // 工作线程会被复用, 清除处理事件时设置的用户上下文
+            SecurityContextHolder.clearContext();
+            // 和同步处理时一样, 处理失败的事件不会重试
+            if (!deferred) {
+                devopsGitlabWebhookEventMapper.deleteByPrimaryKey(eventId);
+            }
+        }
+        return deferred;
+    }
+
+    /**
+     * 将job事件交给合并器, 同一条流水线短时间内的job事件合并后批量更新
+     *
+     * @return 是否已经交给合并器, 没有流水线id的事件直接处理
+     */
+    private boolean coalesceJobEvent(Long eventId, JobWebHookVO jobWebHookVO) {
+        if (jobWebHookVO.getCommit() == null || jobWebHookVO.getCommit().getId() == null) {
+            return false;
+        }
+        gitlabJobEventCoalescer.add(jobWebHookVO.getProjectId(), jobWebHookVO.getCommit().getId(), jobWebHookVO, eventId,
+                this::handlePendingJobEvents, this::spillPendingJobEvents);
+        return true;
+    }
+
+    private void handlePendingJobEvents(GitlabJobEventCoalescer.PendingJobEvents pendingJobEvents) {
+        try {
+            handleJobEvents(pendingJobEvents.getJobs());
+        } finally {
+            List<Long> eventIds = pendingJobEvents.getEventIds();
+            if (!eventIds.isEmpty()) {
+                devopsGitlabWebhookEventMapper.deleteByIds(eventIds);
+                queuedEventIds.removeAll(eventIds);
+            }
+        }
+    }
+
+    /**
+     * 合并的job事件没有进入队列时, 它们仍然在数据库中, 和队列满时的单个事件一样由drainSpilledEvents按照接收的顺序放回队列
+     */
+    private void spillPendingJobEvents(GitlabJobEventCoalescer.PendingJobEvents pendingJobEvents) {
+        Long gitlabProjectId = pendingJobEvents.getGitlabProjectId();
+        if (gitlabProjectId == null) {
+            // 没有项目id的事件不会从数据库放回队列, 直接处理
+            handlePendingJobEvents(pendingJobEvents);
+            return;
+        }
+        synchronized (lockOf(gitlabProjectId)) {
+            queuedEventIds.removeAll(pendingJobEvents.getEventIds());
+            spilledProjects.add(gitlabProjectId);
+        }
+    }
+
+    private void handleJobEvents(List<JobWebHookVO> jobWebHookVOS) {
+        devopsGitlabPipelineService.updateStages(jobWebHookVOS);
+        devopsCiJobRecordService.update(jobWebHookVOS);
+    }
+
+    /**
+     * 将事件内容解析为对应类型的对象, 每个事件只解析一次
+     *
+     * @return 解析后的事件, 不需要处理的事件类型返回null
+     */
+    @Nullable
+    private static Object parseEvent(@Nullable String kind, String body) {
+        if (kind == null) {
+            return null;
+        }
+        switch (kind) {
+            case MERGE_REQUEST:
+                return JSONArray.parseObject(body, DevopsMergeRequestVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case PUSH:
+            case TAG_PUSH:
+                return JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case PIPELINE:
+                return JSONArray.parseObject(body, PipelineWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case BUILD:
+                return JSONArray.parseObject(body, JobWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Long getGitlabProjectId(String kind, Object event) {
         switch (kind) {
-            case "merge_request":
-                DevopsMergeRequestVO devopsMergeRequestVO = JSONArray.parseObject(body, DevopsMergeRequestVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case MERGE_REQUEST:
+                DevopsMergeRequestVO devopsMergeRequestVO = (DevopsMergeRequestVO) event;
+                return devopsMergeRequestVO.getProject() == null ? null : devopsMergeRequestVO.getProject().getId();
+            case PUSH:
+            case TAG_PUSH:
+                return TypeUtil.objToLong(((PushWebHookVO) event).getProjectId());
+            case PIPELINE:
+                PipelineWebHookVO pipelineWebHookVO = (PipelineWebHookVO) event;
+                return pipelineWebHookVO.getProject() == null ? null : pipelineWebHookVO.getProject().getId();
+            case BUILD:
+                return ((JobWebHookVO) event).getProjectId();
+            default:
+                return null;
+        }
+    }
+
+    private void handleEvent(String kind, Object event, String token) {
+        switch (kind) {
+            case MERGE_REQUEST:
+                DevopsMergeRequestVO devopsMergeRequestVO = (DevopsMergeRequestVO) event;
                 setUserContext(devopsMergeRequestVO.getUser().getUsername());
                 devopsMergeRequestService.create(devopsMergeRequestVO);
                 break;
-            case "push":
-                PushWebHookVO pushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case PUSH:
+                PushWebHookVO pushWebHookVO = (PushWebHookVO) event;
                 setUserContext(pushWebHookVO.getUserUserName());
                 if (LOGGER.isInfoEnabled()) {
                     LOGGER.info(pushWebHookVO.toString());
@@ -69,50 +468,66 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
 
                 devopsGitService.branchSync(pushWebHookVO, token);
                 break;
-            case "pipeline":
-                PipelineWebHookVO pipelineWebHookVO = JSONArray.parseObject(body, PipelineWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case PIPELINE:
+                PipelineWebHookVO pipelineWebHookVO = (PipelineWebHookVO) event;
+                // 先处理这条流水线还在等待合并的job事件, 保持和事件到达时相同的顺序
+                GitlabJobEventCoalescer.PendingJobEvents pendingJobEvents = pipelineWebHookVO.getObjectAttributes() == null
+                        ? null : gitlabJobEventCoalescer.take(pipelineWebHookVO.getObjectAttributes().getId());
+                if (pendingJobEvents != null) {
+                    handlePendingJobEvents(pendingJobEvents);
+                }
                 devopsGitlabPipelineService.create(pipelineWebHookVO, token);
                 // 保存ci流水线执行记录
                 devopsCiPipelineRecordService.create(pipelineWebHookVO, token);
                 // 处理流水线执行成功逻辑, 只处理纯cd流水线逻辑
                 devopsCdPipelineService.handlerCiPipelineStatusSuccess(pipelineWebHookVO, token);
                 break;
-            case "build":
-                JobWebHookVO jobWebHookVO = JSONArray.parseObject(body, JobWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
-                devopsGitlabPipelineService.updateStages(jobWebHookVO);
-                devopsCiJobRecordService.update(jobWebHookVO);
+            case BUILD:
+                handleJobEvents(Collections.singletonList((JobWebHookVO) event));
                 break;
-            case "tag_push":
-                PushWebHookVO tagPushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
+            case TAG_PUSH:
+                PushWebHookVO tagPushWebHookVO = (PushWebHookVO) event;
                 setUserContext(tagPushWebHookVO.getUserUserName());
                 devopsGitlabCommitService.create(tagPushWebHookVO, token);
+                refreshTagIndex(tagPushWebHookVO);
                 break;
             default:
                 break;
         }
     }
 
-    @Override
-    public void gitOpsWebHook(String body, String token) {
-        JsonObject returnData = new JsonParser().parse(body).getAsJsonObject();
-        String kind = returnData.get("object_kind").getAsString();
-        if ("push".equals(kind)) {
-            PushWebHookVO pushWebHookVO = JSONArray.parseObject(body, PushWebHookVO.class, FastjsonParserConfigProvider.getParserConfig());
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug(pushWebHookVO.toString());
-            }
-            // 不处理删除环境库的分支的情况
-            if (GitOpsConstants.NO_COMMIT_SHA.equals(pushWebHookVO.getAfter())) {
-                LOGGER.debug("GitOps PushWebHook is ignored due to branch deleting. Ref: {}", pushWebHookVO.getRef());
-                return;
-            }
-            // 只处理master分支的commit, 不处理其他分支的commit
-            if (!GitOpsConstants.MASTER_REF.equals(pushWebHookVO.getRef())) {
-                LOGGER.debug("GitOps PushWebHook of ref {} is ignored because the ref is not master.", pushWebHookVO.getRef());
-                return;
+    /**
+     * 根据tag事件更新仓库的tag索引: 删除tag时从索引中删除, 创建tag时让索引失效, 下次查询时重新构建
+     */
+    private void refreshTagIndex(PushWebHookVO tagPushWebHookVO) {
+        if (tagPushWebHookVO.getProjectId() == null || tagPushWebHookVO.getRef() == null) {
+            return;
+        }
+        if (GitOpsConstants.NO_COMMIT_SHA.equals(tagPushWebHookVO.getAfter())) {
+            gitlabTagIndex.remove(tagPushWebHookVO.getProjectId(), tagPushWebHookVO.getRef().replaceFirst(GitUtil.DEV_OPS_REFS, ""));
+        } else {
+            gitlabTagIndex.evict(tagPushWebHookVO.getProjectId());
+        }
+    }
+
+    /**
+     * 只读取事件的object_kind字段, GitLab的事件中这个字段在最前面, 所以不需要解析整个事件
+     */
+    @Nullable
+    private static String readObjectKind(String body) {
+        try (JSONReader reader = new JSONReader(new StringReader(body))) {
+            reader.startObject();
+            while (reader.hasNext()) {
+                String key = reader.readString();
+                if (OBJECT_KIND.equals(key)) {
+                    return reader.readString();
+                }
+                // 跳过其它字段的值
+                reader.readObject();
             }
-            devopsGitService.fileResourceSyncSaga(pushWebHookVO, token);
+            reader.endObject();
         }
+        return null;
     }
 
     private void setUserContext(String loginName) {
@@ -125,4 +540,32 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
             LOGGER.info("Failed to query user by login name {}", loginName);
         }
     }
+
+    /**
+     * 读取当前服务实例的标识: 优先使用配置的标识, 否则使用文件中保存的标识, 文件不存在时生成并保存
+     * 在k8s中部署时主机名每次都会变化, 需要配置标识(例如StatefulSet的pod名称)或者将文件所在的目录挂载到持久卷
+     */
+    static String resolveInstanceId(@Nullable String configuredInstanceId, String instanceIdFile) {
+        if (!StringUtils.isEmpty(configuredInstanceId)) {
+            return configuredInstanceId;
+        }
+        Path path = Paths.get(instanceIdFile);
+        try {
+            if (Files.exists(path)) {
+                String saved = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+                if (!saved.isEmpty()) {
+                    return saved;
+                }
+            }
+            String generated = UUID.randomUUID().toString();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(path, generated.getBytes(StandardCharsets.UTF_8));
+            return generated;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read or save the instance id of GitLab webhook events in {}, use a random one", instanceIdFile, e);
+            return UUID.randomUUID().toString();
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package io.choerodon.devops.app.task;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.app.service.GitlabWebHookService;
+
+/**
+ * 重新处理已经入库但没有处理完成的GitLab webhook事件
+ * 服务启动后先认领当前实例上一次运行时遗留的事件, 之后只认领超时未处理的事件
+ * 因为队列满而留在数据库中的事件会尽快放回队列
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+@EnableScheduling
+public class GitlabWebhookEventRecoverySchedule {
+    @Autowired
+    private GitlabWebHookService gitlabWebHookService;
+
+    @Scheduled(initialDelay = 1000 * 30, fixedDelay = 1000 * 60)
+    public void recoverWebhookEvents() {
+        gitlabWebHookService.recoverWebhookEvents();
+    }
+
+    @Scheduled(initialDelay = 1000 * 30, fixedDelay = 1000)
+    public void drainSpilledEvents() {
+        gitlabWebHookService.drainSpilledEvents();
+    }
+}
@@ -1,21 +1,35 @@
 package io.choerodon.devops.app.task;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import io.choerodon.devops.app.service.DevopsCiPipelineRecordService;
+import io.choerodon.devops.infra.constant.GitOpsConstants;
 import io.choerodon.devops.infra.dto.DevopsCiPipelineRecordDTO;
+import io.choerodon.devops.infra.handler.CiPipelineSyncHandler;
+import io.choerodon.devops.infra.handler.RedisLeaseHandler;
 
 /**
  * 〈功能简述〉
  * 〈流水线状态同步定时任务〉
+ * <p>
+ * 多个实例中只有持有租约的实例 (主节点) 执行同步, 流水线分批在 {@link GitOpsConstants#PIPELINE_EXECUTOR} 中并行刷新,
+ * 每批完成后再提交下一批, 避免一次把所有流水线的刷新都放进线程池的队列
  *
  * @author wanghao
  * @since 2020/7/14 16:14
@@ -25,23 +39,89 @@ import io.choerodon.devops.infra.dto.DevopsCiPipelineRecordDTO;
 public class PipelineStatusSyncSchedule {
     private static final Logger LOGGER = LoggerFactory.getLogger(PipelineStatusSyncSchedule.class);
 
+    private static final String METRIC_SCAN = "devops.ci.pipeline.sync.scan";
+    private static final long SYNC_PERIOD_MILLISECONDS = 1000 * 60 * 10L;
+
     // 多久没有更新状态的则进行同步操作 1000 * 60 * 10  默认10分钟
     @Value("${devops.ci.pipeline.sync.statusUpdatePeriodMilliSeconds:600000}")
     private Long statusUpdatePeriodMilliSeconds;
 
+    /**
+     * 每批并行刷新的流水线数量
+     */
+    @Value("${devops.ci.pipeline.sync.scan.batchSize:8}")
+    private Integer batchSize;
+
+    /**
+     * 等待一批流水线刷新完成的最长时间, 单位: 毫秒
+     */
+    @Value("${devops.ci.pipeline.sync.scan.batchTimeoutMilliSeconds:60000}")
+    private Long batchTimeoutMilliSeconds;
+
+    /**
+     * 主节点租约的有效时间, 主节点每次执行时续期, 停止后其它实例在租约过期后接替, 单位: 毫秒
+     */
+    @Value("${devops.ci.pipeline.sync.leader.leaseMilliSeconds:900000}")
+    private Long leaderLeaseMilliSeconds;
+
     @Autowired
     private DevopsCiPipelineRecordService devopsCiPipelineRecordService;
 
+    @Autowired
+    private CiPipelineSyncHandler ciPipelineSyncHandler;
+
+    @Autowired
+    private RedisLeaseHandler redisLeaseHandler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier(GitOpsConstants.PIPELINE_EXECUTOR)
+    private AsyncTaskExecutor pipelineExecutor;
+
     // 10分钟执行一次数据修复
-    @Scheduled(fixedRate = 1000 * 60 * 10)
+    @Scheduled(fixedRate = SYNC_PERIOD_MILLISECONDS)
     public void syncPipelineStatus() {
+        if (!redisLeaseHandler.tryAcquireOrRenew(GitOpsConstants.CI_PIPELINE_SYNC_LEADER_REDIS_KEY, leaderLeaseMilliSeconds)) {
+            LOGGER.debug("Skip syncing pipeline status because this instance is not the leader");
+            meterRegistry.counter(METRIC_SCAN, "role", "follower").increment();
+            return;
+        }
+        meterRegistry.counter(METRIC_SCAN, "role", "leader").increment();
         LOGGER.info(">>>>>>>>>>>>>>>>>>>>>>>>>>> Start sync pipeline status <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<");
         // 查询要修复的流水线记录
         List<DevopsCiPipelineRecordDTO> devopsCiPipelineRecordDTOS = devopsCiPipelineRecordService.queryNotSynchronizedRecord(statusUpdatePeriodMilliSeconds);
-        devopsCiPipelineRecordDTOS.forEach(v -> {
-            devopsCiPipelineRecordService.asyncPipelineUpdate(v.getId(), v.getGitlabPipelineId().intValue());
-        });
         // 执行修复逻辑
+        for (int from = 0; from < devopsCiPipelineRecordDTOS.size(); from += batchSize) {
+            List<DevopsCiPipelineRecordDTO> batch = devopsCiPipelineRecordDTOS.subList(from, Math.min(from + batchSize, devopsCiPipelineRecordDTOS.size()));
+            syncBatch(batch);
+        }
         LOGGER.info(">>>>>>>>>>>>>>>>>>>>>>>>>>> End sync pipeline status <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<");
     }
+
+    private void syncBatch(List<DevopsCiPipelineRecordDTO> batch) {
+        List<Future<?>> futures = new ArrayList<>(batch.size());
+        for (DevopsCiPipelineRecordDTO record : batch) {
+            Integer gitlabPipelineId = record.getGitlabPipelineId().intValue();
+            // 和查询流水线时触发的刷新共用刷新间隔, 最近已经刷新过的流水线不再刷新
+            if (ciPipelineSyncHandler.tryStartRefresh(gitlabPipelineId, record.getLastUpdateDate(), CiPipelineSyncHandler.SOURCE_SCHEDULE)) {
+                futures.add(pipelineExecutor.submit(() -> devopsCiPipelineRecordService.pipelineUpdate(record.getId(), gitlabPipelineId)));
+            }
+        }
+        long deadline = System.currentTimeMillis() + batchTimeoutMilliSeconds;
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOGGER.warn("Failed to sync pipeline status", e.getCause());
+            } catch (TimeoutException e) {
+                // 超时的刷新继续在线程池中执行, 不再等待
+                LOGGER.warn("Timed out waiting for pipeline status sync after {} ms", batchTimeoutMilliSeconds);
+            }
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package io.choerodon.devops.infra.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import io.choerodon.devops.infra.handler.ClusterSessionRegistry;
+
+/**
+ * 订阅集群连接信息变化的通知, 用于刷新本地的集群连接信息注册表
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class ClusterSessionRegistryConfig {
+    @Bean
+    public RedisMessageListenerContainer clusterSessionListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                         ClusterSessionRegistry clusterSessionRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(clusterSessionRegistry, new ChannelTopic(ClusterSessionRegistry.CLUSTER_SESSION_CHANGED_CHANNEL));
+        return container;
+    }
+}
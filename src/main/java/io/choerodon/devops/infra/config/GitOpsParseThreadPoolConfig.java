@@ -0,0 +1,40 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 配置并行解析GitOps文件的线程池
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class GitOpsParseThreadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsParseThreadPoolConfig.class);
+
+    @Bean
+    @Qualifier(GitOpsConstants.GITOPS_PARSE_EXECUTOR)
+    public AsyncTaskExecutor gitOpsParseExecutor(@Value("${devops.gitops.parse.executor.poolSize:4}") Integer poolSize,
+                                                 @Value("${devops.gitops.parse.executor.queueCapacity:10000}") Integer queueCapacity) {
+        LOGGER.debug("Create AsyncTaskExecutor for gitops parsing. The poolSize is {} and the queueCapacity is {}", poolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.GITOPS_PARSE_EXECUTOR);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        // 队列满时由提交任务的线程自己解析, 不会丢弃文件
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package io.choerodon.devops.infra.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+
+/**
+ * 配置并行查询SonarQube的线程池
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Configuration
+public class SonarQueryThreadPoolConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SonarQueryThreadPoolConfig.class);
+
+    @Bean
+    @Qualifier(GitOpsConstants.SONAR_EXECUTOR)
+    public AsyncTaskExecutor sonarQueryExecutor(@Value("${devops.sonar.executor.poolSize:8}") Integer poolSize,
+                                                @Value("${devops.sonar.executor.queueCapacity:200}") Integer queueCapacity) {
+        LOGGER.debug("Create AsyncTaskExecutor for sonar queries. The poolSize is {} and the queueCapacity is {}", poolSize, queueCapacity);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(GitOpsConstants.SONAR_EXECUTOR);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        // 队列满时由请求线程自己查询
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -211,12 +211,39 @@ public class GitOpsConstants {
      */
     public static final String PIPELINE_EXECUTOR = "ci-p-executor";
 
+    /**
+     * 并行解析GitOps文件的执行器的名称
+     */
+    public static final String GITOPS_PARSE_EXECUTOR = "gitops-parse";
+
+    /**
+     * 并行查询SonarQube的执行器的名称
+     */
+    public static final String SONAR_EXECUTOR = "sonar-query";
+
     /**
      * DevOps的流水线的redis的key的模板, 用于控制后台刷新gitlab流水线数据的频率
      * 变量是 gitlabPipelineId
      */
     public static final String CI_PIPELINE_REDIS_KEY_TEMPLATE = "devops-service:ci-pipeline:%s";
 
+    /**
+     * 流水线状态同步定时任务的主节点租约的redis的key, 只有持有租约的实例执行同步
+     */
+    public static final String CI_PIPELINE_SYNC_LEADER_REDIS_KEY = "devops-service:ci-pipeline-sync:leader";
+
+    /**
+     * GitLab仓库tag索引的redis的key的模板
+     * 变量是 gitlabProjectId
+     */
+    public static final String GITLAB_TAG_INDEX_REDIS_KEY_TEMPLATE = "devops-service:tag-index:%s";
+
+    /**
+     * GitLab仓库tag索引的代数的redis的key的模板, 删除tag或者索引时加一
+     * 变量是 gitlabProjectId
+     */
+    public static final String GITLAB_TAG_INDEX_GENERATION_REDIS_KEY_TEMPLATE = "devops-service:tag-index-generation:%s";
+
     /**
      * 查询流水线时, 默认的流水线纪录大小
      */
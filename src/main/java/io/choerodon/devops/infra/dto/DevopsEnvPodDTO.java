@@ -32,6 +32,10 @@ public class DevopsEnvPodDTO extends AuditDomain {
     private String namespace;
     private String nodeName;
     private Long restartCount;
+    /**
+     * 入库时从pod中提取的容器名称及是否就绪, 格式见 K8sUtil#getContainerSummary
+     */
+    private String containerSummary;
 
     @Transient
     private String appServiceName;
@@ -255,4 +259,12 @@ public class DevopsEnvPodDTO extends AuditDomain {
     public void setRestartCount(Long restartCount) {
         this.restartCount = restartCount;
     }
+
+    public String getContainerSummary() {
+        return containerSummary;
+    }
+
+    public void setContainerSummary(String containerSummary) {
+        this.containerSummary = containerSummary;
+    }
 }
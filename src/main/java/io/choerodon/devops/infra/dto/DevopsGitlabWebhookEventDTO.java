@@ -0,0 +1,86 @@
+package io.choerodon.devops.infra.dto;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import io.swagger.annotations.ApiModelProperty;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+/**
+ * 已接收但还未处理完成的GitLab webhook事件
+ * 事件在接收时入库, 处理完成后删除; 服务重启或者实例下线后, 剩下的事件会被重新处理
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@ModifyAudit
+@VersionAudit
+@Table(name = "devops_gitlab_webhook_event")
+public class DevopsGitlabWebhookEventDTO extends AuditDomain {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+    @ApiModelProperty("gitlab项目id")
+    private Long gitlabProjectId;
+    @ApiModelProperty("事件类型")
+    private String objectKind;
+    @ApiModelProperty("webhook的X-Gitlab-Token")
+    private String token;
+    @ApiModelProperty("事件内容")
+    private String payload;
+    @ApiModelProperty("负责处理事件的服务实例")
+    private String owner;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getGitlabProjectId() {
+        return gitlabProjectId;
+    }
+
+    public void setGitlabProjectId(Long gitlabProjectId) {
+        this.gitlabProjectId = gitlabProjectId;
+    }
+
+    public String getObjectKind() {
+        return objectKind;
+    }
+
+    public void setObjectKind(String objectKind) {
+        this.objectKind = objectKind;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+}
@@ -11,13 +11,18 @@ import io.choerodon.devops.api.vo.RoleAssignmentSearchVO;
 import io.choerodon.devops.infra.dto.iam.*;
 import io.choerodon.devops.infra.enums.LabelType;
 import io.choerodon.devops.infra.feign.BaseServiceClient;
+import io.choerodon.devops.infra.util.ArrayUtil;
 import io.choerodon.devops.infra.util.FeignParamUtils;
+import io.choerodon.devops.infra.util.LocalTtlCache;
 import io.choerodon.devops.infra.util.TypeUtil;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.mybatis.pagehelper.domain.Sort;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
@@ -25,7 +30,10 @@ import org.springframework.util.StringUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -40,10 +48,55 @@ public class BaseServiceClientOperator {
 
     private static final String LOGIN_NAME = "loginName";
     private static final String REAL_NAME = "realName";
+    private static final String METRIC_CACHE_LOOKUP = "devops.iam.cache.lookup";
 
 
     @Autowired
     private BaseServiceClient baseServiceClient;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否在本地缓存项目、组织和用户的查询结果
+     */
+    @Value("${devops.iam.cache.enabled:true}")
+    private Boolean cacheEnabled;
+    /**
+     * 每种缓存的最大数量
+     */
+    @Value("${devops.iam.cache.maxEntries:5000}")
+    private Integer cacheMaxEntries;
+    /**
+     * 缓存的有效时间, 单位: 秒. saga事件只会让处理事件的实例的缓存失效, 其它实例的缓存在这个时间后过期
+     */
+    @Value("${devops.iam.cache.ttlSeconds:60}")
+    private Long cacheTtlSeconds;
+    /**
+     * 不存在的数据的缓存有效时间, 单位: 秒
+     */
+    @Value("${devops.iam.cache.negativeTtlSeconds:10}")
+    private Long cacheNegativeTtlSeconds;
+
+    private LocalTtlCache<Long, ProjectDTO> projectCache;
+    /**
+     * 服务没有订阅组织信息变化的事件, 组织的缓存只依赖过期时间失效
+     */
+    private LocalTtlCache<Long, Tenant> organizationCache;
+    private LocalTtlCache<Long, IamUserDTO> userCache;
+    /**
+     * 项目id:小写的邮箱 -> 用户, 按项目查询的结果只在同一个项目中使用
+     */
+    private LocalTtlCache<String, IamUserDTO> emailCache;
+
+    @PostConstruct
+    public void initCache() {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(cacheTtlSeconds);
+        long negativeTtlMillis = TimeUnit.SECONDS.toMillis(cacheNegativeTtlSeconds);
+        projectCache = new LocalTtlCache<>(cacheMaxEntries, ttlMillis, negativeTtlMillis);
+        organizationCache = new LocalTtlCache<>(cacheMaxEntries, ttlMillis, negativeTtlMillis);
+        userCache = new LocalTtlCache<>(cacheMaxEntries, ttlMillis, negativeTtlMillis);
+        emailCache = new LocalTtlCache<>(cacheMaxEntries, ttlMillis, negativeTtlMillis);
+    }
 
     /**
      * @param organizationId 组织id
@@ -60,36 +113,78 @@ public class BaseServiceClientOperator {
         }
     }
 
+    /**
+     * 查询项目, 结果会在本地缓存一段时间
+     */
     public ProjectDTO queryIamProjectById(Long projectId) {
-        return queryIamProjectById(projectId, true, true, true);
+        Objects.requireNonNull(projectId);
+        ProjectDTO projectDTO = lookupCache(projectCache, "queryIamProjectById", projectId,
+                () -> fetchIamProject(projectId, true, true, true), ProjectDTO::new);
+        if (projectDTO == null) {
+            throw new CommonException("error.project.query.by.id", projectId);
+        }
+        return projectDTO;
     }
 
     public ProjectDTO queryIamProjectById(Long projectId, Boolean withCategory, Boolean withUserInfo, Boolean withAgileInfo) {
-        ResponseEntity<ProjectDTO> projectDTOResponseEntity = baseServiceClient.queryIamProject(Objects.requireNonNull(projectId), withCategory, withUserInfo, withAgileInfo);
+        ProjectDTO projectDTO = fetchIamProject(Objects.requireNonNull(projectId), withCategory, withUserInfo, withAgileInfo);
+        if (projectDTO == null) {
+            throw new CommonException("error.project.query.by.id", projectId);
+        }
+        return projectDTO;
+    }
+
+    /**
+     * @return 项目, 不存在时为null
+     */
+    @Nullable
+    private ProjectDTO fetchIamProject(Long projectId, Boolean withCategory, Boolean withUserInfo, Boolean withAgileInfo) {
+        ResponseEntity<ProjectDTO> projectDTOResponseEntity = baseServiceClient.queryIamProject(projectId, withCategory, withUserInfo, withAgileInfo);
         ProjectDTO projectDTO = projectDTOResponseEntity.getBody();
         // 判断id是否为空是因为可能会返回 CommonException 但是也会被反序列化为  ProjectDTO
         if (projectDTO == null || projectDTO.getId() == null) {
-            throw new CommonException("error.project.query.by.id", projectId);
+            return null;
         }
         return projectDTO;
     }
 
+    /**
+     * 查询组织, 结果会在本地缓存一段时间
+     */
     public Tenant queryOrganizationById(Long organizationId) {
-        return queryOrganizationById(organizationId, true);
+        Tenant tenant = lookupCache(organizationCache, "queryOrganizationById", organizationId,
+                () -> fetchOrganization(organizationId, true), Tenant::new);
+        if (tenant == null) {
+            throw new CommonException("error.organization.get", organizationId);
+        }
+        return tenant;
     }
 
     public Tenant queryOrganizationById(Long organizationId, Boolean withMoreInfo) {
+        Tenant tenant = fetchOrganization(organizationId, withMoreInfo);
+        if (tenant == null) {
+            throw new CommonException("error.organization.get", organizationId);
+        }
+        return tenant;
+    }
+
+    /**
+     * @return 组织, 不存在时为null
+     */
+    @Nullable
+    private Tenant fetchOrganization(Long organizationId, Boolean withMoreInfo) {
         ResponseEntity<Tenant> organizationDTOResponseEntity = baseServiceClient.queryOrganizationById(organizationId, withMoreInfo);
-        if (organizationDTOResponseEntity.getStatusCode().is2xxSuccessful()) {
-            Tenant tenant = organizationDTOResponseEntity.getBody();
-            if (tenant != null && tenant.getTenantId() != null) {
-                return tenant;
-            }
-            if (LOGGER.isInfoEnabled()) {
-                LOGGER.info("queryOrganizationById: unexpected result: {}", JSONObject.toJSONString(tenant));
-            }
+        if (!organizationDTOResponseEntity.getStatusCode().is2xxSuccessful()) {
+            throw new CommonException("error.organization.get", organizationId);
+        }
+        Tenant tenant = organizationDTOResponseEntity.getBody();
+        if (tenant != null && tenant.getTenantId() != null) {
+            return tenant;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("queryOrganizationById: unexpected result: {}", JSONObject.toJSONString(tenant));
         }
-        throw new CommonException("error.organization.get", organizationId);
+        return null;
     }
 
     public List<Tenant> listOrganizationByIds(Set<Long> organizationIds) {
@@ -148,21 +243,113 @@ public class BaseServiceClientOperator {
         return userDTOS;
     }
 
+    /**
+     * 查询用户, 结果会在本地缓存一段时间
+     */
     public IamUserDTO queryUserByUserId(Long id) {
-        List<Long> ids = new ArrayList<>();
         if (id == null) {
             return null;
         }
-        ids.add(id);
-        List<IamUserDTO> userES = this.listUsersByIds(ids);
-        if (userES != null && !userES.isEmpty()) {
-            return userES.get(0);
-        }
-        return null;
+        return lookupCache(userCache, "queryUserByUserId", id, () -> {
+            List<IamUserDTO> userES = this.listUsersByIds(ArrayUtil.singleAsList(id));
+            return userES.isEmpty() ? null : userES.get(0);
+        }, IamUserDTO::new);
     }
 
+    /**
+     * 批量查询用户, 只查询本地缓存中没有的用户, 结果按照id的顺序, 不包含不存在的用户
+     */
     public List<IamUserDTO> queryUsersByUserIds(List<Long> ids) {
-        return this.listUsersByIds(ids);
+        if (!Boolean.TRUE.equals(cacheEnabled) || CollectionUtils.isEmpty(ids)) {
+            return this.listUsersByIds(ids);
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        Map<Long, IamUserDTO> users = new HashMap<>();
+        List<Long> missedIds = new ArrayList<>();
+        for (Long id : distinctIds) {
+            LocalTtlCache.Entry<IamUserDTO> entry = id == null ? null : userCache.get(id);
+            if (entry == null) {
+                missedIds.add(id);
+            } else if (!entry.isMissing()) {
+                users.put(id, entry.getValue());
+            }
+        }
+        meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", "queryUsersByUserIds", "result", "hit").increment(distinctIds.size() - (double) missedIds.size());
+        meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", "queryUsersByUserIds", "result", "miss").increment(missedIds.size());
+        if (!missedIds.isEmpty()) {
+            this.listUsersByIds(missedIds).forEach(user -> {
+                users.put(user.getId(), user);
+                userCache.put(user.getId(), user);
+            });
+            missedIds.stream().filter(id -> id != null && !users.containsKey(id)).forEach(userCache::putMissing);
+        }
+        return distinctIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(user -> copyOf(user, IamUserDTO::new))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 项目信息变化时清除本地缓存
+     */
+    public void evictProjectCache(Long projectId) {
+        if (projectCache != null && projectId != null) {
+            projectCache.evict(projectId);
+        }
+    }
+
+    /**
+     * 用户信息变化时清除本地缓存
+     */
+    public void evictUserCache(Long userId) {
+        if (userCache != null && userId != null) {
+            userCache.evict(userId);
+        }
+    }
+
+    /**
+     * 用户的邮箱变化时清除本地缓存
+     */
+    public void evictUserEmailCache(String email) {
+        if (emailCache != null && !StringUtils.isEmpty(email)) {
+            String suffix = ":" + email.toLowerCase(Locale.ROOT);
+            emailCache.evictIf(key -> key.endsWith(suffix));
+        }
+    }
+
+    /**
+     * 先查询本地缓存, 没有时通过loader查询并放入缓存
+     * 缓存的对象会被多个调用方共用, 所以每次返回一个复制的对象, 调用方修改返回值不会影响缓存
+     *
+     * @param loader 查询数据的逻辑, 数据不存在时返回null
+     * @param <T>    数据的类型
+     * @return 数据, 不存在时为null
+     */
+    @Nullable
+    private <T> T lookupCache(LocalTtlCache<Long, T> cache, String method, Long id, Supplier<T> loader, Supplier<T> factory) {
+        if (!Boolean.TRUE.equals(cacheEnabled)) {
+            return loader.get();
+        }
+        LocalTtlCache.Entry<T> entry = cache.get(id);
+        if (entry != null) {
+            meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", method, "result", "hit").increment();
+            return entry.isMissing() ? null : copyOf(entry.getValue(), factory);
+        }
+        meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", method, "result", "miss").increment();
+        T value = loader.get();
+        if (value == null) {
+            cache.putMissing(id);
+            return null;
+        }
+        cache.put(id, value);
+        return copyOf(value, factory);
+    }
+
+    private static <T> T copyOf(T source, Supplier<T> factory) {
+        T copy = factory.get();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
     }
 
     public List<IamUserDTO> listUsersWithGitlabLabel(Long projectId,
@@ -190,6 +377,51 @@ public class BaseServiceClientOperator {
         }
     }
 
+    /**
+     * 批量根据邮箱查询项目下的用户, 用于为一批commit或tag填充用户信息
+     * 重复的邮箱只查询一次, 先查询本地缓存, 缓存中没有的邮箱逐个按项目查询
+     *
+     * @param projectId 项目id
+     * @param emails    邮箱
+     * @return 小写的邮箱 -> 用户, 不包含不存在的用户
+     */
+    public Map<String, IamUserDTO> queryUsersByEmails(Long projectId, Collection<String> emails) {
+        Set<String> distinctEmails = emails.stream()
+                .filter(email -> !StringUtils.isEmpty(email))
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, IamUserDTO> users = new HashMap<>();
+        List<String> missedEmails = new ArrayList<>();
+        for (String email : distinctEmails) {
+            LocalTtlCache.Entry<IamUserDTO> entry = Boolean.TRUE.equals(cacheEnabled) ? emailCache.get(emailCacheKey(projectId, email)) : null;
+            if (entry == null) {
+                missedEmails.add(email);
+            } else if (!entry.isMissing()) {
+                users.put(email, copyOf(entry.getValue(), IamUserDTO::new));
+            }
+        }
+        meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", "queryUsersByEmails", "result", "hit").increment(distinctEmails.size() - (double) missedEmails.size());
+        meterRegistry.counter(METRIC_CACHE_LOOKUP, "method", "queryUsersByEmails", "result", "miss").increment(missedEmails.size());
+        if (missedEmails.isEmpty()) {
+            return users;
+        }
+
+        for (String email : missedEmails) {
+            IamUserDTO iamUserDTO = queryByEmail(projectId, email);
+            if (iamUserDTO == null) {
+                emailCache.putMissing(emailCacheKey(projectId, email));
+            } else {
+                emailCache.put(emailCacheKey(projectId, email), iamUserDTO);
+                users.put(email, copyOf(iamUserDTO, IamUserDTO::new));
+            }
+        }
+        return users;
+    }
+
+    private static String emailCacheKey(Long projectId, String email) {
+        return projectId + ":" + email;
+    }
+
     public List<Long> getAllMemberIdsWithoutOwner(Long projectId) {
         // 项目下所有项目成员
         List<Long> memberIds =
@@ -15,6 +15,7 @@ import io.choerodon.devops.infra.dto.gitlab.ci.Pipeline;
 import io.choerodon.devops.infra.dto.iam.IamUserDTO;
 import io.choerodon.devops.infra.dto.iam.ProjectDTO;
 import io.choerodon.devops.infra.feign.GitlabServiceClient;
+import io.choerodon.devops.infra.handler.GitlabTagIndex;
 import io.choerodon.devops.infra.util.FeignResponseStatusCodeParse;
 import io.choerodon.devops.infra.util.GitUtil;
 import io.choerodon.devops.infra.util.PageInfoUtil;
@@ -54,6 +55,8 @@ public class GitlabServiceClientOperator {
     private GitUtil gitUtil;
     @Autowired
     private PermissionHelper permissionHelper;
+    @Autowired
+    private GitlabTagIndex gitlabTagIndex;
 
 
     public GitLabUserDTO createUser(String password, Integer projectsLimit, GitlabUserReqDTO userReqDTO) {
@@ -556,6 +559,7 @@ public class GitlabServiceClientOperator {
             gitlabTransferDTO.setMsg(msg);
             gitlabTransferDTO.setReleaseNotes(releaseNotes);
             gitlabServiceClient.createTag(gitLabProjectId, gitlabTransferDTO, userId);
+            gitlabTagIndex.evict(gitLabProjectId);
         } catch (FeignException e) {
             throw new CommonException("create gitlab tag failed: " + e.getMessage(), e);
         }
@@ -569,7 +573,10 @@ public class GitlabServiceClientOperator {
             GitlabTransferDTO gitlabTransferDTO = new GitlabTransferDTO();
             gitlabTransferDTO.setTagName(tag);
             gitlabTransferDTO.setReleaseNotes(releaseNotes);
-            return gitlabServiceClient.updateTag(gitLabProjectId, gitlabTransferDTO, userId).getBody();
+            TagDTO tagDTO = gitlabServiceClient.updateTag(gitLabProjectId, gitlabTransferDTO, userId).getBody();
+            // 发布日志的修改没有webhook事件, 需要主动让索引失效
+            gitlabTagIndex.evict(gitLabProjectId);
+            return tagDTO;
         } catch (FeignException e) {
             throw new CommonException("update gitlab tag failed: " + e.getMessage(), e);
         }
@@ -578,6 +585,7 @@ public class GitlabServiceClientOperator {
     public void deleteTag(Integer gitLabProjectId, String tag, Integer userId) {
         try {
             gitlabServiceClient.deleteTag(gitLabProjectId, tag, userId);
+            gitlabTagIndex.remove(gitLabProjectId, tag);
         } catch (FeignException e) {
             throw new CommonException("delete gitlab tag failed: " + e.getMessage(), e);
         }
@@ -628,29 +636,35 @@ public class GitlabServiceClientOperator {
             }
         }
 
-        List<TagDTO> tagTotalList = listTags(gitlabProjectId, userId);
-        List<TagDTO> tagList = tagTotalList.stream()
-                .filter(t -> filterTag(t, params))
-                .peek(t -> {
-                    if (t.getRelease() == null) {
-                        ReleaseDO releaseDO = new ReleaseDO();
-                        releaseDO.setTagName(t.getName());
-                        t.setRelease(releaseDO);
-                    }
-                })
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        Page<TagDTO> resp = PageInfoUtil.createPageFromList(tagList, new PageRequest(page, size));
-
-        resp.getContent().stream()
-                .sorted(this::sortTag)
-                .forEach(t -> {
-                    IamUserDTO userDTO = baseServiceClientOperator.queryByEmail(TypeUtil.objToLong(gitlabProjectId), t.getCommit().getAuthorEmail());
-                    if (userDTO != null) {
-                        t.setCommitUserImage(userDTO.getImageUrl());
-                    }
-                    t.getCommit().setUrl(String.format("%s/commit/%s?view=parallel", path, t.getCommit().getId()));
-                });
+        Page<TagDTO> resp;
+        if (StringUtils.isEmpty(params) && size != null && size > 0) {
+            // 没有搜索条件时由GitLab分页, 总数从索引中获取. GitLab的页码从1开始
+            long total = gitlabTagIndex.count(gitlabProjectId, () -> listTags(gitlabProjectId, userId));
+            resp = PageInfoUtil.createPage(listTagsByPage(gitlabProjectId, page + 1, size, userId), new PageRequest(page, size), total);
+        } else {
+            // 有搜索条件时在索引中搜索和排序, 当前页直接使用索引中的摘要
+            List<TagDTO> tagList = gitlabTagIndex.list(gitlabProjectId, () -> listTags(gitlabProjectId, userId)).stream()
+                    .filter(t -> filterTag(t, params))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            resp = PageInfoUtil.createPageFromList(tagList, new PageRequest(page, size));
+        }
+
+        // 只处理当前页的tag, 作者一次批量查询
+        Map<String, IamUserDTO> users = baseServiceClientOperator.queryUsersByEmails(projectDTO.getId(),
+                resp.getContent().stream().map(t -> t.getCommit().getAuthorEmail()).collect(Collectors.toList()));
+        resp.getContent().forEach(t -> {
+            if (t.getRelease() == null) {
+                ReleaseDO releaseDO = new ReleaseDO();
+                releaseDO.setTagName(t.getName());
+                t.setRelease(releaseDO);
+            }
+            String authorEmail = t.getCommit().getAuthorEmail();
+            IamUserDTO userDTO = authorEmail == null ? null : users.get(authorEmail.toLowerCase(Locale.ROOT));
+            if (userDTO != null) {
+                t.setCommitUserImage(userDTO.getImageUrl());
+            }
+            t.getCommit().setUrl(String.format("%s/commit/%s?view=parallel", path, t.getCommit().getId()));
+        });
         return resp;
     }
 
@@ -730,6 +744,25 @@ public class GitlabServiceClientOperator {
         return tagResponseEntity.getBody();
     }
 
+    /**
+     * 分页查询仓库的tag
+     *
+     * @param projectId GitLab项目id
+     * @param page      页码, 从1开始
+     * @param perPage   每页数量
+     * @param userId    GitLab用户id
+     * @return 当前页的tag, 顺序和 {@link #listTags(Integer, Integer)} 一致
+     */
+    public List<TagDTO> listTagsByPage(Integer projectId, int page, int perPage, Integer userId) {
+        ResponseEntity<List<TagDTO>> tagResponseEntity;
+        try {
+            tagResponseEntity = gitlabServiceClient.getPageTags(projectId, page, perPage, userId);
+        } catch (FeignException e) {
+            throw new CommonException("error.tags.get", e);
+        }
+        return tagResponseEntity.getBody() == null ? new ArrayList<>() : tagResponseEntity.getBody();
+    }
+
 
     public BranchDTO queryBranch(Integer gitlabProjectId, String branch) {
         try {
@@ -753,20 +786,6 @@ public class GitlabServiceClientOperator {
     }
 
 
-    private Integer sortTag(TagDTO a, TagDTO b) {
-        TagNodeDO tagA = TagNodeDO.tagNameToTagNode(a.getName());
-        TagNodeDO tagB = TagNodeDO.tagNameToTagNode(b.getName());
-        if (tagA != null && tagB != null) {
-            return tagA.compareTo(tagB) * -1;
-        } else if (tagA == null && tagB != null) {
-            return 1;
-        } else if (tagA != null) {
-            return -1;
-        } else {
-            return a.getName().compareToIgnoreCase(b.getName());
-        }
-    }
-
     public List<CommitDTO> getCommits(Integer gitLabProjectId, String branchName, String date) {
         try {
             GitlabTransferDTO gitlabTransferDTO = new GitlabTransferDTO();
@@ -1085,9 +1104,22 @@ public class GitlabServiceClientOperator {
      * @param commitMessage   提交信息
      */
     public void createGitlabFiles(Integer gitlabProjectId, Integer gitlabUserId, String branch, Map<String, String> pathContent, String commitMessage) {
+        List<CommitActionDTO> actions = new ArrayList<>();
+        pathContent.forEach((filePath, fileContent) -> actions.add(new CommitActionDTO(CommitActionDTO.Action.CREATE, filePath, fileContent)));
+        commitGitlabFiles(gitlabProjectId, gitlabUserId, branch, actions, commitMessage);
+    }
+
+    /**
+     * 在一个提交中对多个gitlab文件进行创建, 更新, 删除等操作
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @param gitlabUserId    用户id
+     * @param branch          分支名
+     * @param actions         文件操作，不能为空
+     * @param commitMessage   提交信息
+     */
+    public void commitGitlabFiles(Integer gitlabProjectId, Integer gitlabUserId, String branch, List<CommitActionDTO> actions, String commitMessage) {
         try {
-            List<CommitActionDTO> actions = new ArrayList<>();
-            pathContent.forEach((filePath, fileContent) -> actions.add(new CommitActionDTO(CommitActionDTO.Action.CREATE, filePath, fileContent)));
             CommitPayloadDTO commitPayloadDTO = new CommitPayloadDTO(Objects.requireNonNull(branch), Objects.requireNonNull(commitMessage), actions);
             gitlabServiceClient.createCommit(Objects.requireNonNull(gitlabProjectId), Objects.requireNonNull(gitlabUserId), commitPayloadDTO);
         } catch (FeignException ex) {
@@ -0,0 +1,173 @@
+package io.choerodon.devops.infra.gitops;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.choerodon.core.convertor.ApplicationContextHelper;
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.dto.gitlab.CommitActionDTO;
+import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator;
+
+/**
+ * 一个环境库的文件变更集合
+ * 收集对环境库中多个文件的创建, 更新和删除, 最后在一个提交中推送到GitLab,
+ * 这样操作多个资源时只会产生一次提交, 一次webhook以及一次GitOps同步
+ * <p>
+ * 同一个文件的多次变更会被合并, 后面的更新基于前面变更之后的内容 (见 {@link #getContent(String)})
+ * 不是线程安全的, 只在一次操作内使用
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class GitOpsChangeSet {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsChangeSet.class);
+
+    private static final String METRIC_SIZE = "devops.gitops.changeset.size";
+    private static final String METRIC_COMMIT = "devops.gitops.changeset.commit";
+
+    private final Integer gitlabEnvProjectId;
+    private final Integer gitlabUserId;
+    /**
+     * 环境库在本地的目录, 用于读取文件变更前的内容, 可以为空
+     */
+    private final String localRepoPath;
+    /**
+     * 文件相对路径 -> 变更, 按变更的顺序
+     */
+    private final Map<String, FileChange> changes = new LinkedHashMap<>();
+    private boolean committed;
+
+    /**
+     * @param gitlabEnvProjectId 环境库对应的GitLab项目id
+     * @param gitlabUserId       提交的GitLab用户id
+     * @param localRepoPath      环境库在本地的目录, 更新已有文件时需要
+     */
+    public GitOpsChangeSet(Integer gitlabEnvProjectId, Integer gitlabUserId, String localRepoPath) {
+        this.gitlabEnvProjectId = gitlabEnvProjectId;
+        this.gitlabUserId = gitlabUserId;
+        this.localRepoPath = localRepoPath;
+    }
+
+    public Integer getGitlabEnvProjectId() {
+        return gitlabEnvProjectId;
+    }
+
+    public Integer getGitlabUserId() {
+        return gitlabUserId;
+    }
+
+    public void create(String filePath, String content) {
+        FileChange previous = changes.get(filePath);
+        // 先删除再创建的文件, 对GitLab而言是更新
+        CommitActionDTO.Action action = previous != null && previous.action == CommitActionDTO.Action.DELETE
+                ? CommitActionDTO.Action.UPDATE : CommitActionDTO.Action.CREATE;
+        changes.put(filePath, new FileChange(action, content));
+    }
+
+    public void update(String filePath, String content) {
+        FileChange previous = changes.get(filePath);
+        // 在这个变更集合中创建的文件, 仍然是创建
+        CommitActionDTO.Action action = previous != null && previous.action == CommitActionDTO.Action.CREATE
+                ? CommitActionDTO.Action.CREATE : CommitActionDTO.Action.UPDATE;
+        changes.put(filePath, new FileChange(action, content));
+    }
+
+    public void delete(String filePath) {
+        FileChange previous = changes.get(filePath);
+        if (previous != null && previous.action == CommitActionDTO.Action.CREATE) {
+            // 在这个变更集合中创建的文件, 远程仓库中并不存在
+            changes.remove(filePath);
+            return;
+        }
+        changes.put(filePath, new FileChange(CommitActionDTO.Action.DELETE, null));
+    }
+
+    /**
+     * 获取文件在应用已收集的变更之后的内容
+     *
+     * @param filePath 文件相对路径
+     * @return 文件内容, 文件被删除时为null
+     */
+    public String getContent(String filePath) {
+        FileChange change = changes.get(filePath);
+        if (change != null) {
+            return change.content;
+        }
+        if (localRepoPath == null) {
+            throw new CommonException("error.fileResource.not.exist");
+        }
+        try {
+            return new String(Files.readAllBytes(new File(localRepoPath, filePath).toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new CommonException(e.getMessage(), e);
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * 将收集的变更作为一个提交推送到环境库的master分支
+     * 没有变更时不会创建提交; 一个变更集合只能提交一次
+     *
+     * @param commitMessage 提交信息
+     */
+    public void commit(String commitMessage) {
+        if (committed) {
+            throw new IllegalStateException("The change set has already been committed");
+        }
+        committed = true;
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        List<CommitActionDTO> actions = new ArrayList<>(changes.size());
+        changes.forEach((filePath, change) -> actions.add(new CommitActionDTO(change.action, filePath, change.content)));
+
+        GitlabServiceClientOperator gitlabServiceClientOperator = ApplicationContextHelper.getSpringFactory().getBean(GitlabServiceClientOperator.class);
+        MeterRegistry meterRegistry = ApplicationContextHelper.getSpringFactory().getBean(MeterRegistry.class);
+        DistributionSummary.builder(METRIC_SIZE)
+                .baseUnit("files")
+                .register(meterRegistry)
+                .record(actions.size());
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            gitlabServiceClientOperator.commitGitlabFiles(gitlabEnvProjectId, gitlabUserId, GitOpsConstants.MASTER, actions, commitMessage);
+            success = true;
+        } finally {
+            meterRegistry.timer(METRIC_COMMIT, "success", String.valueOf(success))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        LOGGER.info("Committed {} file changes to env repository {}", actions.size(), gitlabEnvProjectId);
+    }
+
+    private static class FileChange {
+        private final CommitActionDTO.Action action;
+        private final String content;
+
+        private FileChange(CommitActionDTO.Action action, String content) {
+            this.action = action;
+            this.content = content;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package io.choerodon.devops.infra.gitops;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -71,6 +70,23 @@ public class ResourceConvertToYamlHandler<T> {
      */
     public void operationEnvGitlabFile(String fileCode, Integer gitlabEnvProjectId, String operationType,
                                        Long userId, Long objectId, String objectType, V1Endpoints v1Endpoints, Boolean deleteCert, Long envId, String filePath) {
+        operationEnvGitlabFile(fileCode, gitlabEnvProjectId, operationType, userId, objectId, objectType, v1Endpoints, deleteCert, envId, filePath, null);
+    }
+
+    /**
+     * operate files in GitLab
+     * changeSet不为空时, 文件的变更只记录到changeSet中, 由调用方在操作完所有资源后统一提交
+     *
+     * @param fileCode           file's code
+     * @param gitlabEnvProjectId Environment corresponding GitLab project ID
+     * @param operationType      operation type
+     * @param userId             GitLab user ID
+     * @param filePath           环境库在本地的目录
+     * @param changeSet          环境库的变更集合, 为空时直接提交到GitLab
+     */
+    public void operationEnvGitlabFile(String fileCode, Integer gitlabEnvProjectId, String operationType,
+                                       Long userId, Long objectId, String objectType, V1Endpoints v1Endpoints, Boolean deleteCert, Long envId, String filePath,
+                                       GitOpsChangeSet changeSet) {
         GitlabServiceClientOperator gitlabServiceClientOperator = ApplicationContextHelper.getSpringFactory().getBean(GitlabServiceClientOperator.class);
         Tag tag = new Tag(type.getClass().toString());
         Yaml yaml = getYamlObject(tag, true);
@@ -96,18 +112,31 @@ public class ResourceConvertToYamlHandler<T> {
         }
         if (operationType.equals("create")) {
             String path = fileCode + ".yaml";
-            gitlabServiceClientOperator.createFile(gitlabEnvProjectId, path, content,
-                    "ADD FILE", TypeUtil.objToInteger(userId));
-
+            if (changeSet != null) {
+                changeSet.create(path, content);
+            } else {
+                gitlabServiceClientOperator.createFile(gitlabEnvProjectId, path, content,
+                        "ADD FILE", TypeUtil.objToInteger(userId));
+            }
         } else {
             DevopsEnvFileResourceService devopsEnvFileResourceService = ApplicationContextHelper.getSpringFactory().getBean(DevopsEnvFileResourceService.class);
             DevopsEnvFileResourceDTO devopsEnvFileResourceDTO = devopsEnvFileResourceService.baseQueryByEnvIdAndResourceId(envId, objectId, objectType);
             if (devopsEnvFileResourceDTO == null) {
                 throw new CommonException("error.fileResource.not.exist");
             }
-            gitlabServiceClientOperator.updateFile(gitlabEnvProjectId, devopsEnvFileResourceDTO.getFilePath(), getUpdateContent(type, deleteCert,
-                    endpointContent, devopsEnvFileResourceDTO.getFilePath(), objectType, filePath, operationType),
-                    "UPDATE FILE", TypeUtil.objToInteger(userId));
+            if (changeSet != null) {
+                // 基于变更集合中这个文件最新的内容进行修改, 同一个文件中的多个资源可以在一次提交中修改
+                String fileContent = changeSet.getContent(devopsEnvFileResourceDTO.getFilePath());
+                if (fileContent == null) {
+                    throw new CommonException("error.fileResource.not.exist");
+                }
+                changeSet.update(devopsEnvFileResourceDTO.getFilePath(), getUpdateContent(type, deleteCert, endpointContent,
+                        new Yaml().loadAll(fileContent), objectType, operationType));
+            } else {
+                gitlabServiceClientOperator.updateFile(gitlabEnvProjectId, devopsEnvFileResourceDTO.getFilePath(), getUpdateContent(type, deleteCert,
+                        endpointContent, devopsEnvFileResourceDTO.getFilePath(), objectType, filePath, operationType),
+                        "UPDATE FILE", TypeUtil.objToInteger(userId));
+            }
         }
     }
 
@@ -138,54 +167,58 @@ public class ResourceConvertToYamlHandler<T> {
     public String getUpdateContent(T t, Boolean deleteCert, String content, String filePath, String
             objectType, String path, String operationType) {
         Yaml yaml = new Yaml();
-        StringBuilder resultBuilder = new StringBuilder();
         // 获取要更新的资源所在的文件
         File file = new File(String.format("%s/%s", path, filePath));
-        try {
-            // 读取文件内的所有资源对象，没有更新的资源对象进行保留，更新的进行代替
-            for (Object data : yaml.loadAll(new FileInputStream(file))) {
-                // TODO 加上Yaml文件校验
-                JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
-                switch (jsonObject.get("kind").toString()) {
-                    case "C7NHelmRelease":
-                        handleC7nHelmRelease(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "Ingress":
-                        handleIngress(t, deleteCert, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "Service":
-                        handleService(t, content, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "C7nCertification":
-                        handleC7nCertification(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "ConfigMap":
-                        handleConfigMap(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "Secret":
-                        handleSecret(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "PersistentVolume":
-                        handlePV(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "PersistentVolumeClaim":
-                        // 这里不需要对遗留在自定义资源中的PVC做兼容判断，因为自定义资源中PVC的objectType是'custom'
-                        handlePVC(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                    case "Endpoints":
-                        // 忽视掉Endpoints
-                        break;
-                    default:
-                        handleCustom(t, objectType, operationType, resultBuilder, jsonObject);
-                        break;
-                }
-            }
-            return resultBuilder.toString();
-        } catch (FileNotFoundException e) {
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            return getUpdateContent(t, deleteCert, content, yaml.loadAll(inputStream), objectType, operationType);
+        } catch (IOException e) {
             throw new CommonException(e.getMessage(), e);
         }
     }
 
+    private String getUpdateContent(T t, Boolean deleteCert, String content, Iterable<Object> resources, String objectType, String operationType) {
+        StringBuilder resultBuilder = new StringBuilder();
+        // 读取文件内的所有资源对象，没有更新的资源对象进行保留，更新的进行代替
+        for (Object data : resources) {
+            // TODO 加上Yaml文件校验
+            JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
+            switch (jsonObject.get("kind").toString()) {
+                case "C7NHelmRelease":
+                    handleC7nHelmRelease(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "Ingress":
+                    handleIngress(t, deleteCert, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "Service":
+                    handleService(t, content, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "C7nCertification":
+                    handleC7nCertification(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "ConfigMap":
+                    handleConfigMap(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "Secret":
+                    handleSecret(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "PersistentVolume":
+                    handlePV(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "PersistentVolumeClaim":
+                    // 这里不需要对遗留在自定义资源中的PVC做兼容判断，因为自定义资源中PVC的objectType是'custom'
+                    handlePVC(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+                case "Endpoints":
+                    // 忽视掉Endpoints
+                    break;
+                default:
+                    handleCustom(t, objectType, operationType, resultBuilder, jsonObject);
+                    break;
+            }
+        }
+        return resultBuilder.toString();
+    }
+
     private void handleService(T t, String content, String objectType, String operationType, StringBuilder
             resultBuilder, JSONObject jsonObject) {
         Yaml yaml3 = new Yaml();
@@ -0,0 +1,118 @@
+package io.choerodon.devops.infra.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.CiJobTraceVO;
+
+/**
+ * 已经结束的CI job的日志缓存
+ * job结束后日志不会再变化, 查看日志的页面却会反复请求, 所以按GitLab项目id和job id缓存UTF-8编码的完整日志,
+ * 同时限制缓存的条目数量以及总字节数, 超出后按最近最少使用淘汰
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class CiJobTraceCache {
+    private static final String METRIC_LOOKUP = "devops.ci.job.trace.cache.lookup";
+    private static final String METRIC_EVICTION = "devops.ci.job.trace.cache.eviction";
+    private static final String METRIC_BYTES = "devops.ci.job.trace.cache.bytes";
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    /**
+     * 访问顺序的LinkedHashMap, GitLab项目id:GitLab job id -> 日志
+     * key包含项目id, 其它项目使用同一个job id查询时不会命中
+     */
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public CiJobTraceCache(MeterRegistry meterRegistry,
+                           @Value("${devops.ci.job.trace.cache.maxEntries:200}") int maxEntries,
+                           @Value("${devops.ci.job.trace.cache.maxBytes:67108864}") long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.hitCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "hit");
+        this.missCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "miss");
+        this.evictionCounter = meterRegistry.counter(METRIC_EVICTION);
+        meterRegistry.gauge(METRIC_BYTES, this, CiJobTraceCache::getBytes);
+    }
+
+    /**
+     * @param gitlabProjectId GitLab项目id
+     * @param gitlabJobId     GitLab job id
+     * @return 缓存的日志, 没有时为null. 调用方不能修改
+     */
+    public byte[] get(Long gitlabProjectId, Long gitlabJobId) {
+        byte[] trace;
+        synchronized (this) {
+            trace = entries.get(keyOf(gitlabProjectId, gitlabJobId));
+        }
+        if (trace == null) {
+            missCounter.increment();
+        } else {
+            hitCounter.increment();
+        }
+        return trace;
+    }
+
+    /**
+     * 缓存已经结束的job的日志, 超过最大总字节数的日志不缓存
+     */
+    public void put(Long gitlabProjectId, Long gitlabJobId, byte[] trace) {
+        if (trace.length > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            byte[] previous = entries.put(keyOf(gitlabProjectId, gitlabJobId), trace);
+            if (previous != null) {
+                bytes -= previous.length;
+            }
+            bytes += trace.length;
+            Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+                byte[] eldest = iterator.next().getValue();
+                iterator.remove();
+                bytes -= eldest.length;
+                evictionCounter.increment();
+            }
+        }
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static String keyOf(Long gitlabProjectId, Long gitlabJobId) {
+        return gitlabProjectId + ":" + gitlabJobId;
+    }
+
+    /**
+     * 截取日志从offset开始的部分
+     * 日志只会在末尾追加, 之前返回的offset总是完整字符的边界, 所以按字节截取不会截断字符
+     *
+     * @param trace    UTF-8编码的完整日志
+     * @param offset   开始的字节位置, 超出日志长度时从头开始
+     * @param complete job是否已经结束
+     * @return 截取的日志
+     */
+    public static CiJobTraceVO slice(byte[] trace, long offset, boolean complete) {
+        boolean reset = offset < 0 || offset > trace.length;
+        int start = reset ? 0 : (int) offset;
+        String content = new String(trace, start, trace.length - start, StandardCharsets.UTF_8);
+        return new CiJobTraceVO(content, (long) trace.length, complete, reset);
+    }
+}
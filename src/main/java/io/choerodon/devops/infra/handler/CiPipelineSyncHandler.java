@@ -3,13 +3,13 @@ package io.choerodon.devops.infra.handler;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.hzero.core.util.AssertUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import io.choerodon.devops.app.service.DevopsCiJobRecordService;
@@ -28,7 +28,17 @@ import io.choerodon.devops.infra.enums.PipelineStatus;
 public class CiPipelineSyncHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(CiPipelineSyncHandler.class);
 
-    private static final String CI_PIPELINE_REFRESH = "ci-pipeline-refresh";
+    private static final String METRIC_REFRESH = "devops.ci.pipeline.sync.refresh";
+    private static final String METRIC_REFRESH_LAG = "devops.ci.pipeline.sync.refresh.lag";
+    private static final String TAG_SOURCE = "source";
+    /**
+     * 查询流水线时触发的刷新
+     */
+    public static final String SOURCE_QUERY = "query";
+    /**
+     * 定时任务触发的刷新
+     */
+    public static final String SOURCE_SCHEDULE = "schedule";
 
     /**
      * ci流水线对未终结的流水线进行数据补偿的时间阈值, 单位: 毫秒 (默认600秒)
@@ -62,7 +72,10 @@ public class CiPipelineSyncHandler {
     private DevopsCiJobRecordService devopsCiJobRecordService;
 
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private RedisLeaseHandler redisLeaseHandler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * 判断是否需要异步地拉取gitlab中流水线的状态到数据库进行更新
@@ -74,12 +87,26 @@ public class CiPipelineSyncHandler {
      */
     public void syncPipeline(String pipelineStatus, Date lastUpdateDate,
                              Long pipelineRecordId, Integer gitlabPipelineId) {
+        syncPipeline(pipelineStatus, lastUpdateDate, pipelineRecordId, gitlabPipelineId, null);
+    }
+
+    /**
+     * 判断是否需要异步地拉取gitlab中流水线的状态到数据库进行更新
+     *
+     * @param pipelineStatus   流水线状态
+     * @param lastUpdateDate   流水线最后更新时间
+     * @param pipelineRecordId 流水线纪录id
+     * @param gitlabPipelineId 对应的gitlab流水线纪录id
+     * @param hasJobs          纪录是否有job, 批量查询时已经知道; 为null时查询数据库
+     */
+    public void syncPipeline(String pipelineStatus, Date lastUpdateDate,
+                             Long pipelineRecordId, Integer gitlabPipelineId, Boolean hasJobs) {
         AssertUtils.notNull(pipelineStatus, "Pipeline status can't be null.");
         LOGGER.debug("Sync pipeline... status: {}, date: {}, pipelineRecordId: {}, gitlabPipelineId: {}", pipelineStatus, lastUpdateDate, pipelineRecordId, gitlabPipelineId);
 
         if (PipelineStatus.RUNNING.toValue().equals(pipelineStatus)) {
             if (beforeSeconds(lastUpdateDate, unterminatedPipelineSyncThresholdMilliSeconds)) {
-                if (inFetchPeriod(gitlabPipelineId)) {
+                if (!tryStartRefresh(gitlabPipelineId, lastUpdateDate, SOURCE_QUERY)) {
                     return;
                 }
                 LOGGER.info("Sync pipeline... status: {}, date: {}, pipelineRecordId: {}, gitlabPipelineId: {}", pipelineStatus, lastUpdateDate, pipelineRecordId, gitlabPipelineId);
@@ -88,7 +115,7 @@ public class CiPipelineSyncHandler {
             }
         } else if (PipelineStatus.PENDING.toValue().equals(pipelineStatus)) {
             if (beforeSeconds(lastUpdateDate, pendingPipelineSyncThresholdMilliSeconds)) {
-                if (inFetchPeriod(gitlabPipelineId)) {
+                if (!tryStartRefresh(gitlabPipelineId, lastUpdateDate, SOURCE_QUERY)) {
                     return;
                 }
                 LOGGER.info("Sync pipeline... status: {}, date: {}, pipelineRecordId: {}, gitlabPipelineId: {}", pipelineStatus, lastUpdateDate, pipelineRecordId, gitlabPipelineId);
@@ -100,8 +127,8 @@ public class CiPipelineSyncHandler {
         if (!PipelineStatus.SKIPPED.toValue().equals(pipelineStatus)) {
             // 如果流水线状态不是跳过, 但是job数据为空, 也进行同步
             if (beforeSeconds(lastUpdateDate, emptyStageThresholdMilliSeconds)
-                    && devopsCiJobRecordService.selectCountByCiPipelineRecordId(pipelineRecordId) == 0) {
-                if (inFetchPeriod(gitlabPipelineId)) {
+                    && !(hasJobs != null ? hasJobs : devopsCiJobRecordService.selectCountByCiPipelineRecordId(pipelineRecordId) > 0)) {
+                if (!tryStartRefresh(gitlabPipelineId, lastUpdateDate, SOURCE_QUERY)) {
                     return;
                 }
                 LOGGER.info("Sync pipeline for pipeline with empty jobs... status: {}, date: {}, pipelineRecordId: {}, gitlabPipelineId: {}", pipelineStatus, lastUpdateDate, pipelineRecordId, gitlabPipelineId);
@@ -111,20 +138,26 @@ public class CiPipelineSyncHandler {
     }
 
     /**
-     * 确定是否在查询间隔中, 可以进行数据刷新, 减少对gitlab的访问次数
+     * 获取流水线的刷新租约, 同一条流水线在刷新间隔内只会被所有实例中的一个刷新一次, 减少对gitlab的访问次数
      *
      * @param gitlabPipelineId 流水线id
-     * @return true表示在查询间隔中, 不可以继续执行刷新逻辑
+     * @param lastUpdateDate   流水线纪录最后更新时间, 用于统计刷新的延迟
+     * @param source           触发刷新的来源, 用于指标
+     * @return true表示可以刷新, false表示还在刷新间隔中
      */
-    private boolean inFetchPeriod(Integer gitlabPipelineId) {
+    public boolean tryStartRefresh(Integer gitlabPipelineId, Date lastUpdateDate, String source) {
         String redisKey = String.format(GitOpsConstants.CI_PIPELINE_REDIS_KEY_TEMPLATE, gitlabPipelineId);
-        // 如果已经有key, 说明此时还处于刷新间隔中
-        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(redisKey))) {
+        if (!redisLeaseHandler.tryAcquire(redisKey, ciPipelineRefreshSeconds)) {
             LOGGER.debug("Pipeline with gitlab pipeline id {} is in the refresh period {}, abort...", gitlabPipelineId, ciPipelineRefreshSeconds);
+            // 被节流的刷新就是节省的gitlab调用
+            meterRegistry.counter(METRIC_REFRESH, TAG_SOURCE, source, "result", "throttled").increment();
             return false;
         }
-        // 没有key就设置一个过期时间为特定值的key
-        stringRedisTemplate.opsForValue().set(redisKey, CI_PIPELINE_REFRESH, ciPipelineRefreshSeconds, TimeUnit.SECONDS);
+        meterRegistry.counter(METRIC_REFRESH, TAG_SOURCE, source, "result", "refreshed").increment();
+        if (lastUpdateDate != null) {
+            meterRegistry.timer(METRIC_REFRESH_LAG, TAG_SOURCE, source)
+                    .record(System.currentTimeMillis() - lastUpdateDate.getTime(), TimeUnit.MILLISECONDS);
+        }
         return true;
     }
 
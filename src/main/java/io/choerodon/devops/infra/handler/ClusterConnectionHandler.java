@@ -2,23 +2,17 @@ package io.choerodon.devops.infra.handler;
 
 import static io.choerodon.devops.infra.constant.DevOpsWebSocketConstants.*;
 
-import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.exception.CommonException;
-import io.choerodon.devops.api.vo.ClusterSessionVO;
 import io.choerodon.devops.app.service.DevopsClusterService;
 import io.choerodon.devops.infra.dto.DevopsClusterDTO;
 import io.choerodon.devops.infra.dto.iam.ProjectDTO;
@@ -41,16 +35,14 @@ public class ClusterConnectionHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterConnectionHandler.class);
 
     private Pattern pattern = Pattern.compile("^[-+]?[\\d]*$");
-    @Value("${agent.version}")
-    private String agentExpectVersion;
     @Value("${services.gitlab.sshUrl}")
     private String gitlabSshUrl;
     @Autowired
     private BaseServiceClientOperator baseServiceClientOperator;
     @Autowired
-    private GitUtil gitUtil;
+    private EnvGitWorkspaceManager envGitWorkspaceManager;
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private ClusterSessionRegistry clusterSessionRegistry;
     @Autowired
     private DevopsClusterService devopsClusterService;
 
@@ -76,6 +68,17 @@ public class ClusterConnectionHandler {
         return 1;
     }
 
+    /**
+     * agent的版本是否满足期望的版本, 不需要升级
+     *
+     * @param version       agent的版本
+     * @param expectVersion 期望的版本
+     * @return true表示不需要升级
+     */
+    static boolean isVersionUpToDate(String version, String expectVersion) {
+        return compareVersion(version == null ? "0" : version, expectVersion) != 1;
+    }
+
     private static int compareTag(String a, String b) {
         String[] a1 = a.split("\\.");
         String[] b1 = b.split("\\.");
@@ -118,11 +121,7 @@ public class ClusterConnectionHandler {
      * @return true 表示已连接
      */
     private boolean getEnvConnectionStatus(Long clusterId) {
-        Map<String, ClusterSessionVO> clusterSessions = (Map<String, ClusterSessionVO>) (Map) redisTemplate.opsForHash().entries(CLUSTER_SESSION);
-
-        return clusterSessions.entrySet().stream()
-                .anyMatch(t -> clusterId.equals(t.getValue().getClusterId())
-                        && compareVersion(t.getValue().getVersion() == null ? "0" : t.getValue().getVersion(), agentExpectVersion) != 1);
+        return clusterSessionRegistry.isUpToDate(clusterId);
     }
 
 //
@@ -145,11 +144,7 @@ public class ClusterConnectionHandler {
      * @return 环境更新列表
      */
     public List<Long> getUpdatedClusterList() {
-        Map<String, ClusterSessionVO> clusterSessions = (Map<String, ClusterSessionVO>) (Map) redisTemplate.opsForHash().entries(CLUSTER_SESSION);
-        return clusterSessions.entrySet().stream()
-                .filter(t -> compareVersion(t.getValue().getVersion() == null ? "0" : t.getValue().getVersion(), agentExpectVersion) != 1)
-                .map(t -> t.getValue().getClusterId())
-                .collect(Collectors.toCollection(ArrayList::new));
+        return clusterSessionRegistry.listUpToDateClusterIds();
     }
 
 
@@ -162,19 +157,7 @@ public class ClusterConnectionHandler {
         String url = GitUtil.getGitlabSshUrl(pattern, gitlabSshUrl, organizationDTO.getTenantNum(),
                 projectDTO.getCode(), envCode, EnvironmentType.forValue(envType), clusterCode);
 
-        File file = new File(path);
-        if (!file.exists()) {
-            gitUtil.cloneBySsh(path, url, envRsa);
-        } else {
-            String localPath = String.format("%s%s", path, "/.git");
-            // 如果文件夾存在并且文件夹不为空,去拉取新的配置
-            // 反之克隆远程的仓库的文件
-            if (file.isDirectory() && file.listFiles().length > 0) {
-                GitUtil.pullBySsh(localPath, envRsa);
-            } else {
-                gitUtil.cloneBySsh(path, url, envRsa);
-            }
-        }
+        envGitWorkspaceManager.prepare(path, url, envRsa);
         return path;
     }
 
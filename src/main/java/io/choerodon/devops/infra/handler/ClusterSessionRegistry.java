@@ -0,0 +1,206 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.ClusterSessionVO;
+
+/**
+ * 集群连接信息的本地注册表
+ * 每个devops-service实例在本地维护一份 clusterId -> 连接信息 的索引, 并且预先计算好agent版本是否满足要求,
+ * 使得检查集群连接状态不需要每次都读取redis中的整个hash
+ * 连接信息发生变化时, 通过redis的发布订阅通知所有实例重新加载, 同时本地索引超过最大过期时间也会重新加载, 作为兜底
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class ClusterSessionRegistry implements MessageListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterSessionRegistry.class);
+
+    /**
+     * 集群连接信息变化时发布通知的redis channel
+     */
+    public static final String CLUSTER_SESSION_CHANGED_CHANNEL = "cluster-sessions-changed";
+
+    private static final String METRIC_LOOKUP = "devops.cluster.session.registry.lookup";
+    private static final String METRIC_RELOAD = "devops.cluster.session.registry.reload";
+    private static final String METRIC_STALENESS = "devops.cluster.session.registry.staleness.millis";
+    private static final String METRIC_SIZE = "devops.cluster.session.registry.size";
+
+    /**
+     * 本地索引的最大过期时间, 超过这个时间的索引在下次查询时会从redis重新加载, 单位: 毫秒
+     */
+    @Value("${devops.agent.session.maxStalenessMillis:60000}")
+    private Long maxStalenessMillis;
+    @Value("${agent.version}")
+    private String agentExpectVersion;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter notifiedReloadCounter;
+
+    /**
+     * 当前的索引快照, 每次重新加载时整体替换
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    /**
+     * 收到变化通知后置为true, 下次查询时重新加载
+     */
+    private volatile boolean invalidated = true;
+    private final AtomicLong lastLoadedAt = new AtomicLong(0);
+
+    public ClusterSessionRegistry(MeterRegistry meterRegistry) {
+        this.hitCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "hit");
+        this.missCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "miss");
+        this.notifiedReloadCounter = meterRegistry.counter(METRIC_RELOAD, "cause", "notified");
+        meterRegistry.gauge(METRIC_STALENESS, lastLoadedAt, last -> last.get() == 0 ? 0 : System.currentTimeMillis() - last.get());
+        meterRegistry.gauge(METRIC_SIZE, this, registry -> registry.snapshot.sessions.size());
+    }
+
+    /**
+     * 注册集群的连接信息, 并通知所有实例
+     *
+     * @param clusterSessionVO 连接信息
+     */
+    public void register(ClusterSessionVO clusterSessionVO) {
+        redisTemplate.opsForHash().put(ClusterConnectionHandler.CLUSTER_SESSION, clusterSessionVO.getRegisterKey(), clusterSessionVO);
+        publishChange();
+    }
+
+    /**
+     * 移除集群的连接信息, 并通知所有实例
+     *
+     * @param registerKey 连接信息的key
+     */
+    public void unregister(String registerKey) {
+        redisTemplate.opsForHash().delete(ClusterConnectionHandler.CLUSTER_SESSION, registerKey);
+        publishChange();
+    }
+
+    /**
+     * 集群是否已连接且agent版本不需要升级
+     *
+     * @param clusterId 集群id
+     * @return true表示已连接且为最新
+     */
+    public boolean isUpToDate(Long clusterId) {
+        return Boolean.TRUE.equals(currentSnapshot().upToDateByClusterId.get(clusterId));
+    }
+
+    /**
+     * 已连接且不需要升级的集群id
+     *
+     * @return 集群id列表
+     */
+    public List<Long> listUpToDateClusterIds() {
+        List<Long> clusterIds = new ArrayList<>();
+        currentSnapshot().upToDateByClusterId.forEach((clusterId, upToDate) -> {
+            if (upToDate) {
+                clusterIds.add(clusterId);
+            }
+        });
+        return clusterIds;
+    }
+
+    /**
+     * 所有已连接的集群连接信息 (key为registerKey)
+     *
+     * @return 连接信息
+     */
+    public Map<String, ClusterSessionVO> listSessions() {
+        return currentSnapshot().sessions;
+    }
+
+    /**
+     * 从redis重新加载所有连接信息
+     */
+    public synchronized void reload() {
+        // 先清除失效标记再读取redis, 读取期间收到的通知会再次置为失效, 不会丢失
+        invalidated = false;
+        long loadStartedAt = System.currentTimeMillis();
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(ClusterConnectionHandler.CLUSTER_SESSION);
+        Map<String, ClusterSessionVO> sessions = new HashMap<>(entries.size());
+        Map<Long, Boolean> upToDateByClusterId = new HashMap<>(entries.size());
+        entries.forEach((k, v) -> {
+            if (!(v instanceof ClusterSessionVO)) {
+                return;
+            }
+            ClusterSessionVO session = (ClusterSessionVO) v;
+            sessions.put(String.valueOf(k), session);
+            boolean upToDate = ClusterConnectionHandler.isVersionUpToDate(session.getVersion(), agentExpectVersion);
+            // 同一个集群可能有多条连接信息, 只要有一条满足版本要求即可
+            upToDateByClusterId.merge(session.getClusterId(), upToDate, Boolean::logicalOr);
+        });
+        snapshot = new Snapshot(Collections.unmodifiableMap(sessions), upToDateByClusterId);
+        lastLoadedAt.set(loadStartedAt);
+        LOGGER.debug("Cluster session registry reloaded with {} sessions", sessions.size());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        LOGGER.debug("Received cluster session change notification");
+        notifiedReloadCounter.increment();
+        invalidated = true;
+    }
+
+    private Snapshot currentSnapshot() {
+        if (isStale()) {
+            missCounter.increment();
+            reloadIfStale();
+        } else {
+            hitCounter.increment();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 等待锁的线程在拿到锁时, 索引可能已经被前一个线程重新加载过了, 所以需要再检查一次
+     */
+    private synchronized void reloadIfStale() {
+        if (isStale()) {
+            reload();
+        }
+    }
+
+    private boolean isStale() {
+        return invalidated || System.currentTimeMillis() - lastLoadedAt.get() > maxStalenessMillis;
+    }
+
+    private void publishChange() {
+        // 本实例直接失效, 不依赖通知的到达
+        invalidated = true;
+        try {
+            redisTemplate.convertAndSend(CLUSTER_SESSION_CHANGED_CHANNEL, String.valueOf(System.currentTimeMillis()));
+        } catch (Exception ex) {
+            // 通知失败时其它实例会在最大过期时间后重新加载
+            LOGGER.warn("Failed to publish cluster session change notification", ex);
+        }
+    }
+
+    private static class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+        private final Map<String, ClusterSessionVO> sessions;
+        private final Map<Long, Boolean> upToDateByClusterId;
+
+        private Snapshot(Map<String, ClusterSessionVO> sessions, Map<Long, Boolean> upToDateByClusterId) {
+            this.sessions = sessions;
+            this.upToDateByClusterId = upToDateByClusterId;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package io.choerodon.devops.infra.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.errors.CorruptObjectException;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.util.FileUtil;
+import io.choerodon.devops.infra.util.GitUtil;
+
+/**
+ * 环境GitOps库在本地的工作区管理
+ * 每个环境库在本地保存一份克隆, 之后只拉取增量; 对同一个工作区的克隆和拉取按路径加锁串行执行,
+ * 本地工作区的数量和总大小超出限制时, 按最近最少使用删除空闲的工作区, 之后用到时重新克隆.
+ * 计算目录大小需要遍历所有文件, 所以只在克隆后以及后台定时计算, 拉取时不计算
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class EnvGitWorkspaceManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnvGitWorkspaceManager.class);
+
+    private static final String METRIC_OPERATION = "devops.gitops.workspace.operation";
+    private static final String METRIC_LOOKUP = "devops.gitops.workspace.lookup";
+    private static final String METRIC_EVICTION = "devops.gitops.workspace.eviction";
+    private static final String METRIC_COUNT = "devops.gitops.workspace.count";
+    private static final String METRIC_SIZE = "devops.gitops.workspace.size";
+    private static final String GIT_SUFFIX = "/.git";
+    /**
+     * 环境库本地路径的根目录, 见 GitOpsConstants.LOCAL_ENV_PATH
+     */
+    private static final String WORKSPACE_ROOT = "gitops";
+    /**
+     * 环境库相对根目录的深度: 组织/项目/集群/环境/环境id
+     */
+    private static final int WORKSPACE_DEPTH = 5;
+
+    @Value("${devops.gitops.workspace.maxCount:1000}")
+    private int maxCount;
+    @Value("${devops.gitops.workspace.maxSizeInMb:20480}")
+    private long maxSizeInMb;
+    @Value("${devops.gitops.workspace.minIdleMillis:600000}")
+    private long minIdleMillis;
+    @Value("${devops.gitops.workspace.sizeRefreshMillis:600000}")
+    private long sizeRefreshMillis;
+
+    @Autowired
+    private GitUtil gitUtil;
+
+    /**
+     * 工作区路径 -> 工作区的锁
+     */
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    /**
+     * 工作区路径 -> 工作区的访问记录
+     */
+    private final Map<String, Workspace> workspaces = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scanExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gitops-workspace-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer cloneTimer;
+    private final Timer pullTimer;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public EnvGitWorkspaceManager(MeterRegistry meterRegistry) {
+        this.cloneTimer = meterRegistry.timer(METRIC_OPERATION, "operation", "clone");
+        this.pullTimer = meterRegistry.timer(METRIC_OPERATION, "operation", "pull");
+        this.hitCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "hit");
+        this.missCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "miss");
+        this.evictionCounter = meterRegistry.counter(METRIC_EVICTION);
+        meterRegistry.gauge(METRIC_COUNT, workspaces, Map::size);
+        meterRegistry.gauge(METRIC_SIZE, this, EnvGitWorkspaceManager::totalSize);
+    }
+
+    /**
+     * 在后台线程中登记服务启动前已经存在的工作区, 以便它们也参与淘汰, 之后定时重新计算工作区的大小
+     */
+    @PostConstruct
+    public void init() {
+        scanExecutor.execute(this::registerExistingWorkspaces);
+        scanExecutor.scheduleWithFixedDelay(this::refreshSizes, sizeRefreshMillis, sizeRefreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scanExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取工作区的锁, 在同一个工作区上进行多步操作 (如拉取, 比较, 推送标签) 时, 调用方应该持有这个锁
+     * 锁是可重入的, 持有锁时仍然可以调用 {@link #prepare(String, String, String)}
+     *
+     * @param path 工作区路径
+     * @return 工作区的锁
+     */
+    public ReentrantLock getLock(String path) {
+        return locks.computeIfAbsent(path, k -> new ReentrantLock());
+    }
+
+    /**
+     * 将工作区更新到远程仓库master分支的最新提交
+     * 工作区不存在时克隆, 存在时拉取; 本地库损坏 (如之前的克隆被中断) 时删除工作区后重新克隆, 其它拉取错误直接抛出
+     *
+     * @param path      工作区路径
+     * @param url       仓库ssh地址
+     * @param sshKeyRsa ssh私钥
+     * @return 本地仓库, 其中的Repository已经关闭, 只用于之后的标签推送等操作
+     */
+    public Git prepare(String path, String url, String sshKeyRsa) {
+        ReentrantLock lock = getLock(path);
+        lock.lock();
+        try {
+            Git git = updateWorkspace(path, url, sshKeyRsa);
+            touch(path);
+            return git;
+        } finally {
+            lock.unlock();
+            evictIfNecessary();
+        }
+    }
+
+    private Git updateWorkspace(String path, String url, String sshKeyRsa) {
+        File file = new File(path);
+        File[] children = file.listFiles();
+        // 如果文件夹存在并且文件夹不为空, 去拉取新的配置, 反之克隆远程的仓库的文件
+        if (file.isDirectory() && children != null && children.length > 0) {
+            if (!new File(path + GIT_SUFFIX).isDirectory()) {
+                // 克隆被中断等原因留下了不完整的目录
+                LOGGER.warn("Gitops workspace {} has no .git directory, clone it again", path);
+                FileUtil.deleteDirectory(file);
+                missCounter.increment();
+            } else {
+                hitCounter.increment();
+                try {
+                    return pullTimer.recordCallable(() -> gitUtil.pullBySsh(path + GIT_SUFFIX, sshKeyRsa));
+                } catch (CommonException e) {
+                    // 只有本地库损坏时才重新克隆, 网络和认证等错误原样抛出, 避免删除完好的工作区
+                    if (!isCorrupted(e)) {
+                        throw e;
+                    }
+                    LOGGER.warn("Gitops workspace {} is corrupted, clone it again. The exception is {}", path, e.getMessage());
+                    FileUtil.deleteDirectory(file);
+                } catch (Exception e) {
+                    throw new CommonException("error.git.pull", e);
+                }
+            }
+        } else {
+            missCounter.increment();
+        }
+        try {
+            Git git = cloneTimer.recordCallable(() -> gitUtil.cloneBySsh(path, url, sshKeyRsa));
+            workspaces.computeIfAbsent(path, Workspace::new).size = sizeOf(path);
+            return git;
+        } catch (CommonException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CommonException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 判断拉取失败是否是因为本地库损坏
+     */
+    private static boolean isCorrupted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RepositoryNotFoundException
+                    || cause instanceof NoHeadException
+                    || cause instanceof CorruptObjectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除环境的工作区以及它的锁, 在环境被删除后调用
+     *
+     * @param path 工作区路径
+     */
+    public void remove(String path) {
+        ReentrantLock lock = getLock(path);
+        lock.lock();
+        try {
+            FileUtil.deleteDirectory(new File(path));
+            workspaces.remove(path);
+        } finally {
+            lock.unlock();
+            locks.remove(path, lock);
+        }
+    }
+
+    private void touch(String path) {
+        workspaces.computeIfAbsent(path, Workspace::new).lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * 重新计算工作区的大小, 加上拉取带来的变化. 计算时不持有工作区的锁, 结果是近似值
+     */
+    private void refreshSizes() {
+        try {
+            workspaces.values().forEach(workspace -> workspace.size = sizeOf(workspace.path));
+            evictIfNecessary();
+        } catch (RuntimeException e) {
+            // 未捕获的异常会终止之后的定时执行
+            LOGGER.warn("Failed to refresh the size of gitops workspaces", e);
+        }
+    }
+
+    /**
+     * 按最近最少使用删除工作区, 直到数量和总大小都在限制内
+     * 正在被使用 (锁被持有) 或者最近被访问过的工作区不会被删除, 因为调用方可能还在读取其中的文件
+     */
+    private void evictIfNecessary() {
+        long maxSize = maxSizeInMb * FileUtils.ONE_MB;
+        if (workspaces.size() <= maxCount && totalSize() <= maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Workspace> candidates = workspaces.values().stream()
+                .sorted(Comparator.comparingLong(workspace -> workspace.lastAccess))
+                .collect(Collectors.toList());
+        for (Workspace workspace : candidates) {
+            if (workspaces.size() <= maxCount && totalSize() <= maxSize) {
+                return;
+            }
+            if (now - workspace.lastAccess < minIdleMillis) {
+                // 之后的工作区都更新, 都不能删除
+                return;
+            }
+            ReentrantLock lock = getLock(workspace.path);
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                // 拿到锁之后再次确认期间没有被访问过
+                if (System.currentTimeMillis() - workspace.lastAccess < minIdleMillis) {
+                    continue;
+                }
+                FileUtil.deleteDirectory(new File(workspace.path));
+                workspaces.remove(workspace.path);
+                evictionCounter.increment();
+                LOGGER.info("Evicted gitops workspace {} which was last accessed at {}", workspace.path, new Date(workspace.lastAccess));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long totalSize() {
+        return workspaces.values().stream().mapToLong(workspace -> workspace.size).sum();
+    }
+
+    private void registerExistingWorkspaces() {
+        Path root = Paths.get(WORKSPACE_ROOT);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root, WORKSPACE_DEPTH)) {
+            paths.filter(p -> root.relativize(p).getNameCount() == WORKSPACE_DEPTH)
+                    .filter(p -> Files.isDirectory(p.resolve(".git")))
+                    .forEach(p -> {
+                        // 路径和GitOpsUtil.getLocalPathToStoreEnv生成的保持一致
+                        String path = p.toString().replace(File.separatorChar, '/');
+                        Workspace workspace = new Workspace(path);
+                        workspace.lastAccess = p.toFile().lastModified();
+                        workspace.size = sizeOf(path);
+                        workspaces.putIfAbsent(path, workspace);
+                    });
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to scan existing gitops workspaces", e);
+        }
+        LOGGER.info("Registered {} existing gitops workspaces", workspaces.size());
+        evictIfNecessary();
+    }
+
+    private static long sizeOf(String path) {
+        try {
+            return FileUtils.sizeOfDirectory(new File(path));
+        } catch (IllegalArgumentException e) {
+            // 目录不存在
+            return 0;
+        }
+    }
+
+    private static class Workspace {
+        private final String path;
+        private volatile long lastAccess;
+        private volatile long size;
+
+        private Workspace(String path) {
+            this.path = path;
+        }
+    }
+}
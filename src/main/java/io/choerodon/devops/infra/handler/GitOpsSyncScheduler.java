@@ -0,0 +1,97 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.Objects;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.PushWebHookVO;
+import io.choerodon.devops.app.service.DevopsEnvCommitService;
+import io.choerodon.devops.app.service.DevopsEnvironmentService;
+import io.choerodon.devops.app.service.DevopsGitService;
+import io.choerodon.devops.infra.dto.DevopsEnvCommitDTO;
+import io.choerodon.devops.infra.dto.DevopsEnvironmentDTO;
+
+/**
+ * 环境GitOps同步的调度
+ * 同一个环境同一时间只会有一个同步在执行, 这由gitops saga任务按环境id (TYPE_AND_ID) 的并发限制保证;
+ * 短时间内多次推送时, 每次推送都会开启一个saga, 而只有最新的提交需要被解释 (同步总是比较devops-sync标签和最新的提交),
+ * 所以对于已经过时的推送直接跳过
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class GitOpsSyncScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsSyncScheduler.class);
+
+    private static final String METRIC_SYNC_DURATION = "devops.gitops.sync.duration";
+    private static final String METRIC_SYNC_COALESCED = "devops.gitops.sync.coalesced";
+
+    @Lazy
+    @Autowired
+    private DevopsGitService devopsGitService;
+    @Autowired
+    private DevopsEnvironmentService devopsEnvironmentService;
+    @Autowired
+    private DevopsEnvCommitService devopsEnvCommitService;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter coalescedCounter;
+
+    public GitOpsSyncScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.coalescedCounter = meterRegistry.counter(METRIC_SYNC_COALESCED);
+    }
+
+    /**
+     * 解释推送到环境库的提交
+     *
+     * @param pushWebHookVO 推送的信息, 需要有token
+     */
+    public void sync(PushWebHookVO pushWebHookVO) {
+        DevopsEnvironmentDTO devopsEnvironmentDTO = devopsEnvironmentService.baseQueryByToken(pushWebHookVO.getToken());
+        if (devopsEnvironmentDTO == null) {
+            // 交给原有的逻辑处理
+            devopsGitService.fileResourceSync(pushWebHookVO);
+            return;
+        }
+
+        Long envId = devopsEnvironmentDTO.getId();
+        if (isOutdated(envId, pushWebHookVO.getCheckoutSha())) {
+            coalescedCounter.increment();
+            LOGGER.info("Skip GitOps of env {} for commit {} because a newer commit has been pushed or synced", envId, pushWebHookVO.getCheckoutSha());
+            return;
+        }
+        Timer timer = meterRegistry.timer(METRIC_SYNC_DURATION, "env_id", String.valueOf(envId));
+        timer.record(() -> devopsGitService.fileResourceSync(pushWebHookVO));
+    }
+
+    /**
+     * 判断这次推送是否已经过时, 满足以下任一条件即过时:
+     * 1. 环境最新推送的提交已经不是这次推送的提交, 之后的saga会解释最新的提交
+     * 2. 环境最新推送的提交已经被之前的同步解释过了
+     *
+     * @param envId       环境id
+     * @param checkoutSha 这次推送的提交
+     * @return true表示过时
+     */
+    private boolean isOutdated(Long envId, String checkoutSha) {
+        // 重新查询环境以拿到最新的提交记录
+        DevopsEnvironmentDTO devopsEnvironmentDTO = devopsEnvironmentService.baseQueryById(envId);
+        if (devopsEnvironmentDTO == null || devopsEnvironmentDTO.getSagaSyncCommit() == null || checkoutSha == null) {
+            return false;
+        }
+        if (devopsEnvironmentDTO.getSagaSyncCommit().equals(devopsEnvironmentDTO.getDevopsSyncCommit())) {
+            return true;
+        }
+        DevopsEnvCommitDTO sagaSyncCommit = devopsEnvCommitService.baseQuery(devopsEnvironmentDTO.getSagaSyncCommit());
+        return sagaSyncCommit != null && !Objects.equals(sagaSyncCommit.getCommitSha(), checkoutSha);
+    }
+}
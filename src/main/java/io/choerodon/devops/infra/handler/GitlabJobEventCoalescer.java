@@ -0,0 +1,178 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.JobWebHookVO;
+
+/**
+ * 合并同一条GitLab流水线中短时间内到达的job事件
+ * 一条流水线运行时每个job会产生多个事件 (pending, running, success...), 逐个处理时每个事件都要查询并更新一次数据库,
+ * 合并后每个job只保留最新的状态, 一段时间内的事件只需要一次批量更新
+ * <p>
+ * 合并后的事件通过 {@link GitlabWebhookEventDispatcher} 回到GitLab项目对应的队列中处理, 和其它事件的顺序保持一致;
+ * 处理同一条流水线的pipeline事件之前, 调用方需要先通过 {@link #take(Long)} 取出并处理还在等待的job事件
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class GitlabJobEventCoalescer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitlabJobEventCoalescer.class);
+
+    private static final String BUILD = "build";
+    private static final String METRIC_SUPERSEDED = "devops.gitlab.webhook.build.superseded";
+    private static final String METRIC_BATCH_SIZE = "devops.gitlab.webhook.build.batch.size";
+
+    private final long coalesceMillis;
+    private final GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher;
+
+    /**
+     * gitlab流水线id -> 等待处理的job事件
+     */
+    private final Map<Long, PendingJobEvents> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    private final Counter supersededCounter;
+    private final DistributionSummary batchSizeSummary;
+
+    public GitlabJobEventCoalescer(MeterRegistry meterRegistry,
+                                   GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher,
+                                   @Value("${devops.gitlab.webhook.build.coalesceMillis:1000}") long coalesceMillis) {
+        this.coalesceMillis = coalesceMillis;
+        this.gitlabWebhookEventDispatcher = gitlabWebhookEventDispatcher;
+        this.supersededCounter = meterRegistry.counter(METRIC_SUPERSEDED);
+        this.batchSizeSummary = meterRegistry.summary(METRIC_BATCH_SIZE);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gitlab-job-event-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 加入一个job事件, 流水线的第一个事件到达后经过 coalesceMillis 统一处理
+     *
+     * @param gitlabProjectId  GitLab项目id, 决定合并后的事件进入的队列
+     * @param gitlabPipelineId GitLab流水线id
+     * @param jobWebHookVO     job事件
+     * @param eventId          入库的事件id, 没有入库时为null
+     * @param handler          合并后的事件的处理逻辑
+     * @param rejectedHandler  合并后的事件没有进入队列时的处理逻辑, 在定时任务的线程中调用
+     */
+    public void add(Long gitlabProjectId, Long gitlabPipelineId, JobWebHookVO jobWebHookVO, @Nullable Long eventId,
+                    Consumer<PendingJobEvents> handler, Consumer<PendingJobEvents> rejectedHandler) {
+        // compute和定时任务中的remove对同一个key是原子的, 已经被取出的事件集合不会再加入新的事件
+        pending.compute(gitlabPipelineId, (key, events) -> {
+            if (events == null) {
+                events = new PendingJobEvents(gitlabProjectId, gitlabPipelineId);
+                flushExecutor.schedule(() -> flush(gitlabPipelineId, handler, rejectedHandler), coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+            if (events.add(jobWebHookVO, eventId)) {
+                supersededCounter.increment();
+            }
+            return events;
+        });
+    }
+
+    /**
+     * 取出流水线还在等待的job事件, 由调用方立即处理
+     *
+     * @param gitlabPipelineId GitLab流水线id
+     * @return 等待的事件, 没有时为null
+     */
+    @Nullable
+    public PendingJobEvents take(Long gitlabPipelineId) {
+        PendingJobEvents events = pending.remove(gitlabPipelineId);
+        if (events != null) {
+            batchSizeSummary.record(events.getJobs().size());
+        }
+        return events;
+    }
+
+    private void flush(Long gitlabPipelineId, Consumer<PendingJobEvents> handler, Consumer<PendingJobEvents> rejectedHandler) {
+        PendingJobEvents events = take(gitlabPipelineId);
+        if (events == null) {
+            return;
+        }
+        if (!gitlabWebhookEventDispatcher.dispatch(events.getGitlabProjectId(), BUILD, events.getFirstReceivedAt(), () -> handler.accept(events))) {
+            // 和单个事件一样, 入库的事件留在数据库中, 由调用方按照接收的顺序重新放入队列
+            LOGGER.warn("{} job events of GitLab pipeline {} were rejected by the full queue", events.getEventIds().size(), gitlabPipelineId);
+            rejectedHandler.accept(events);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdownNow();
+    }
+
+    /**
+     * 一条流水线等待处理的job事件, 每个job只保留最新的事件
+     */
+    public static class PendingJobEvents {
+        private final Long gitlabProjectId;
+        private final Long gitlabPipelineId;
+        private final long firstReceivedAt = System.currentTimeMillis();
+        /**
+         * gitlab job id -> 最新的事件, 按最后一次更新的顺序排列.
+         * 依次应用这些事件和依次应用所有原始事件的结果相同, 包括重试的job和之前的job同名的情况
+         */
+        private final LinkedHashMap<Long, JobWebHookVO> jobs = new LinkedHashMap<>();
+        private final List<Long> eventIds = new ArrayList<>();
+
+        public PendingJobEvents(Long gitlabProjectId, Long gitlabPipelineId) {
+            this.gitlabProjectId = gitlabProjectId;
+            this.gitlabPipelineId = gitlabPipelineId;
+        }
+
+        /**
+         * @return 是否替换了同一个job之前的事件
+         */
+        public synchronized boolean add(JobWebHookVO jobWebHookVO, @Nullable Long eventId) {
+            boolean superseded = jobs.remove(jobWebHookVO.getBuildId()) != null;
+            jobs.put(jobWebHookVO.getBuildId(), jobWebHookVO);
+            if (eventId != null) {
+                eventIds.add(eventId);
+            }
+            return superseded;
+        }
+
+        public Long getGitlabProjectId() {
+            return gitlabProjectId;
+        }
+
+        public Long getGitlabPipelineId() {
+            return gitlabPipelineId;
+        }
+
+        public long getFirstReceivedAt() {
+            return firstReceivedAt;
+        }
+
+        public synchronized List<JobWebHookVO> getJobs() {
+            return new ArrayList<>(jobs.values());
+        }
+
+        public synchronized List<Long> getEventIds() {
+            return new ArrayList<>(eventIds);
+        }
+    }
+}
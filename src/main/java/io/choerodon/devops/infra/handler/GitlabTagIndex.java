@@ -0,0 +1,198 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.alibaba.fastjson.JSON;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.infra.constant.GitOpsConstants;
+import io.choerodon.devops.infra.dto.gitlab.CommitDTO;
+import io.choerodon.devops.infra.dto.gitlab.TagDTO;
+
+/**
+ * GitLab仓库tag的索引, 每个仓库在redis中保存一个hash: tag名称 -> tag的摘要 (分页展示和搜索用到的字段)
+ * 用于tag的计数、搜索和排序, 不需要每次分页查询都从GitLab拉取仓库的所有tag
+ * <p>
+ * 索引在第一次使用时从GitLab全量构建; 收到tag删除事件时删除对应的tag, 收到tag创建事件或者tag的发布日志被修改时删除整个索引,
+ * 下次使用时重新构建. 索引还会在 ttlSeconds 后过期, 避免遗漏的webhook事件导致索引一直不准确
+ * <p>
+ * 每个仓库还有一个代数, 删除tag或者索引时加一. 构建索引前记下代数, 从GitLab拉取tag期间代数变化时 (如期间创建了tag),
+ * 拉取到的列表可能已经过时, 不写入索引. 写入和设置过期时间在一个脚本中完成, 不会留下没有过期时间的索引
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class GitlabTagIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitlabTagIndex.class);
+
+    private static final String METRIC_REBUILD = "devops.gitlab.tag.index.rebuild";
+    /**
+     * 标记索引已经构建的字段, 这样没有tag的仓库的索引也能存在. tag名称不可能为空字符串
+     */
+    private static final String BUILT_MARKER = "";
+
+    /**
+     * 代数和构建前一致时替换整个索引并设置过期时间
+     * KEYS: 索引, 代数; ARGV: 构建前的代数 (不存在时为空字符串), 过期时间, 之后依次是字段和值
+     */
+    private static final DefaultRedisScript<Long> REPLACE_IF_UNCHANGED_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "return 1",
+            Long.class);
+    /**
+     * 代数加一, 代数和索引使用相同的过期时间
+     */
+    private static final DefaultRedisScript<Long> NEXT_GENERATION_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[1]) "
+                    + "return redis.call('EXPIRE', KEYS[1], ARGV[1])",
+            Long.class);
+
+    /**
+     * 和GitLab的tag列表默认顺序一致: 最近提交的在前
+     */
+    private static final Comparator<TagDTO> LATEST_FIRST = Comparator
+            .comparing((TagDTO t) -> t.getCommit() == null ? null : t.getCommit().getCommittedDate(),
+                    Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(TagDTO::getName, Comparator.reverseOrder());
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Counter rebuildCounter;
+    /**
+     * 索引的过期时间, 单位: 秒
+     */
+    @Value("${devops.gitlab.tag.index.ttlSeconds:86400}")
+    private Long ttlSeconds;
+
+    public GitlabTagIndex(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.rebuildCounter = meterRegistry.counter(METRIC_REBUILD);
+    }
+
+    /**
+     * 查询仓库的tag数量
+     *
+     * @param gitlabProjectId GitLab项目id
+     * @param loader          索引不存在时查询仓库所有tag的方法
+     * @return tag数量
+     */
+    public long count(Integer gitlabProjectId, Supplier<List<TagDTO>> loader) {
+        Long size = stringRedisTemplate.opsForHash().size(keyOf(gitlabProjectId));
+        if (size == null || size == 0) {
+            return rebuild(gitlabProjectId, loader).size();
+        }
+        // 去掉标记字段
+        return size - 1;
+    }
+
+    /**
+     * 查询仓库所有tag的摘要, 最近提交的在前
+     *
+     * @param gitlabProjectId GitLab项目id
+     * @param loader          索引不存在时查询仓库所有tag的方法
+     * @return tag的摘要, 包含名称、说明、发布日志以及提交的id、信息、作者和提交者
+     */
+    public List<TagDTO> list(Integer gitlabProjectId, Supplier<List<TagDTO>> loader) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(keyOf(gitlabProjectId));
+        List<TagDTO> tags;
+        if (entries.isEmpty()) {
+            tags = rebuild(gitlabProjectId, loader);
+        } else {
+            tags = entries.entrySet().stream()
+                    .filter(e -> !BUILT_MARKER.equals(e.getKey()))
+                    .map(e -> JSON.parseObject((String) e.getValue(), TagDTO.class))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        tags.sort(LATEST_FIRST);
+        return tags;
+    }
+
+    /**
+     * 从索引中删除一个tag
+     */
+    public void remove(Integer gitlabProjectId, String tagName) {
+        // 先增加代数, 正在构建的索引不会再把这个tag写回去
+        nextGeneration(gitlabProjectId);
+        stringRedisTemplate.opsForHash().delete(keyOf(gitlabProjectId), tagName);
+    }
+
+    /**
+     * 删除仓库的索引, 下次使用时重新构建
+     */
+    public void evict(Integer gitlabProjectId) {
+        nextGeneration(gitlabProjectId);
+        stringRedisTemplate.delete(keyOf(gitlabProjectId));
+    }
+
+    private List<TagDTO> rebuild(Integer gitlabProjectId, Supplier<List<TagDTO>> loader) {
+        rebuildCounter.increment();
+        String generationKey = generationKeyOf(gitlabProjectId);
+        String generation = stringRedisTemplate.opsForValue().get(generationKey);
+        List<TagDTO> tags = loader.get().stream()
+                .map(GitlabTagIndex::summaryOf)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        List<String> args = new ArrayList<>(tags.size() * 2 + 4);
+        args.add(generation == null ? "" : generation);
+        args.add(String.valueOf(ttlSeconds));
+        args.add(BUILT_MARKER);
+        args.add("1");
+        tags.forEach(t -> {
+            args.add(t.getName());
+            args.add(JSON.toJSONString(t));
+        });
+        Long replaced = stringRedisTemplate.execute(REPLACE_IF_UNCHANGED_SCRIPT, Arrays.asList(keyOf(gitlabProjectId), generationKey), args.toArray());
+        if (replaced == null || replaced != 1L) {
+            // 拉取期间tag有变化, 本次查询使用拉取到的结果, 下次使用时重新构建
+            LOGGER.debug("Tags of GitLab project {} changed while the index was being built, the index is not saved", gitlabProjectId);
+        }
+        return tags;
+    }
+
+    /**
+     * 只保留分页展示和搜索用到的字段
+     */
+    private static TagDTO summaryOf(TagDTO tag) {
+        TagDTO summary = new TagDTO();
+        summary.setName(tag.getName());
+        summary.setMessage(tag.getMessage());
+        summary.setRelease(tag.getRelease());
+        CommitDTO commit = tag.getCommit();
+        if (commit != null) {
+            CommitDTO commitSummary = new CommitDTO();
+            commitSummary.setId(commit.getId());
+            commitSummary.setShortId(commit.getShortId());
+            commitSummary.setMessage(commit.getMessage());
+            commitSummary.setAuthorName(commit.getAuthorName());
+            commitSummary.setAuthorEmail(commit.getAuthorEmail());
+            commitSummary.setCommitterName(commit.getCommitterName());
+            commitSummary.setCommittedDate(commit.getCommittedDate());
+            summary.setCommit(commitSummary);
+        }
+        return summary;
+    }
+
+    private void nextGeneration(Integer gitlabProjectId) {
+        stringRedisTemplate.execute(NEXT_GENERATION_SCRIPT, Collections.singletonList(generationKeyOf(gitlabProjectId)), String.valueOf(ttlSeconds));
+    }
+
+    private static String generationKeyOf(Integer gitlabProjectId) {
+        return String.format(GitOpsConstants.GITLAB_TAG_INDEX_GENERATION_REDIS_KEY_TEMPLATE, gitlabProjectId);
+    }
+
+    private static String keyOf(Integer gitlabProjectId) {
+        return String.format(GitOpsConstants.GITLAB_TAG_INDEX_REDIS_KEY_TEMPLATE, gitlabProjectId);
+    }
+}
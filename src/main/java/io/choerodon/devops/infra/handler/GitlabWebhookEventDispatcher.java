@@ -0,0 +1,116 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 将GitLab webhook事件从http请求线程分发到工作线程处理
+ * 同一个GitLab项目的事件总是进入同一个队列并由同一个线程按顺序处理, 不同项目的事件可以并行处理
+ * <p>
+ * 分发不会阻塞请求线程: 队列满时返回false, 事件已经入库, 之后按照接收的顺序从数据库放回队列
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class GitlabWebhookEventDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitlabWebhookEventDispatcher.class);
+
+    private static final String METRIC_LAG = "devops.gitlab.webhook.lag";
+    private static final String METRIC_PROCESSING = "devops.gitlab.webhook.processing";
+    private static final String METRIC_OVERFLOW = "devops.gitlab.webhook.overflow";
+    private static final String METRIC_QUEUE_DEPTH = "devops.gitlab.webhook.queue.depth";
+    private static final String TAG_KIND = "kind";
+
+    /**
+     * 工作线程数量, 也就是队列的数量
+     */
+    @Value("${devops.gitlab.webhook.workerCount:8}")
+    private Integer workerCount;
+    /**
+     * 每个队列的容量
+     */
+    @Value("${devops.gitlab.webhook.queueCapacity:5000}")
+    private Integer queueCapacity;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<ThreadPoolExecutor> lanes = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(queueCapacity);
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+                    r -> {
+                        Thread thread = new Thread(r, "gitlab-webhook-" + threadIndex.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // 队列由dispatch直接写入, 所以需要提前启动消费线程
+            lane.prestartAllCoreThreads();
+            lanes.add(lane);
+            meterRegistry.gauge(METRIC_QUEUE_DEPTH, Tags.of("lane", String.valueOf(i)), queue, BlockingQueue::size);
+        }
+        LOGGER.info("GitLab webhook dispatcher started with {} lanes, each with capacity {}", workerCount, queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lanes.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * 分发事件
+     *
+     * @param gitlabProjectId  GitLab项目id, 决定事件进入的队列
+     * @param kind             事件类型, 用于指标
+     * @param receivedAtMillis 事件被接收的时间, 用于计算处理的延迟
+     * @param handler          事件的处理逻辑
+     * @return 是否进入了队列
+     */
+    public boolean dispatch(Long gitlabProjectId, String kind, long receivedAtMillis, Runnable handler) {
+        Runnable task = () -> {
+            meterRegistry.timer(METRIC_LAG, TAG_KIND, kind)
+                    .record(System.currentTimeMillis() - receivedAtMillis, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            String result = "success";
+            try {
+                handler.run();
+                // 将异常捕获，避免工作线程因为异常退出
+            } catch (Exception ex) {
+                result = "failure";
+                LOGGER.warn("Handle GitLab webhook: an unexpected exception occurred when handling {} event of project {}", kind, gitlabProjectId, ex);
+            } finally {
+                meterRegistry.timer(METRIC_PROCESSING, TAG_KIND, kind, "result", result)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        if (!laneOf(gitlabProjectId).getQueue().offer(task)) {
+            meterRegistry.counter(METRIC_OVERFLOW, TAG_KIND, kind).increment();
+            LOGGER.warn("GitLab webhook {} event of project {} was left in the database because the queue is full", kind, gitlabProjectId);
+            return false;
+        }
+        return true;
+    }
+
+    private ThreadPoolExecutor laneOf(Long gitlabProjectId) {
+        int hash = gitlabProjectId == null ? 0 : gitlabProjectId.hashCode();
+        return lanes.get(Math.floorMod(hash, lanes.size()));
+    }
+}
@@ -0,0 +1,217 @@
+package io.choerodon.devops.infra.handler;
+
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import io.choerodon.core.exception.CommonException;
+
+/**
+ * 访问Chart仓库, Harbor, Sonar等外部系统的http客户端
+ * 所有客户端共用一个连接池和一个请求调度器, 按 (地址, 认证信息, 是否跳过证书校验) 缓存Retrofit,
+ * 不再每次请求都新建连接池和进行TLS握手; 连接空闲超过keepAlive时间后由连接池关闭
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class OkHttpClientRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OkHttpClientRegistry.class);
+
+    private static final String METRIC_REQUESTS = "devops.http.client.requests";
+    private static final String IO_ERROR = "IO_ERROR";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxClients;
+    /**
+     * 所有客户端的基础, 持有共用的连接池和调度器
+     */
+    private final OkHttpClient sharedClient;
+    /**
+     * 访问顺序的LinkedHashMap, 头部是最久未被使用的客户端
+     */
+    private final LinkedHashMap<ClientKey, Retrofit> retrofits = new LinkedHashMap<>(16, 0.75f, true);
+
+    public OkHttpClientRegistry(MeterRegistry meterRegistry,
+                                @Value("${devops.http.client.connectTimeoutMillis:10000}") long connectTimeoutMillis,
+                                @Value("${devops.http.client.readTimeoutMillis:10000}") long readTimeoutMillis,
+                                @Value("${devops.http.client.writeTimeoutMillis:10000}") long writeTimeoutMillis,
+                                @Value("${devops.http.client.maxIdleConnections:20}") int maxIdleConnections,
+                                @Value("${devops.http.client.keepAliveMillis:300000}") long keepAliveMillis,
+                                @Value("${devops.http.client.maxRequestsPerHost:10}") int maxRequestsPerHost,
+                                @Value("${devops.http.client.maxClients:200}") int maxClients) {
+        this.meterRegistry = meterRegistry;
+        this.maxClients = maxClients;
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        this.sharedClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .build();
+    }
+
+    /**
+     * 获取访问指定地址的Retrofit
+     *
+     * @param baseUrl               外部系统的地址
+     * @param token                 Authorization请求头的值
+     * @param insecureSkipTlsVerify 是否跳过证书校验
+     * @return 共用连接池的Retrofit
+     */
+    public Retrofit getRetrofit(String baseUrl, String token, boolean insecureSkipTlsVerify) {
+        ClientKey key = new ClientKey(baseUrl, token, insecureSkipTlsVerify);
+        synchronized (retrofits) {
+            Retrofit retrofit = retrofits.get(key);
+            if (retrofit == null) {
+                retrofit = new Retrofit.Builder()
+                        .baseUrl(baseUrl)
+                        .client(buildClient(key))
+                        .addConverterFactory(GsonConverterFactory.create())
+                        .build();
+                retrofits.put(key, retrofit);
+                if (retrofits.size() > maxClients) {
+                    // 客户端共用连接池, 淘汰时不需要关闭连接
+                    retrofits.remove(retrofits.keySet().iterator().next());
+                }
+            }
+            return retrofit;
+        }
+    }
+
+    /**
+     * 获取共用连接池, 带有认证请求头的客户端
+     *
+     * @param token Authorization请求头的值
+     * @return client
+     */
+    public OkHttpClient getClient(String token) {
+        return buildClient(new ClientKey(null, token, false));
+    }
+
+    private OkHttpClient buildClient(ClientKey key) {
+        String target = key.baseUrl == null ? null : target(key.baseUrl);
+        OkHttpClient.Builder builder = sharedClient.newBuilder();
+        builder.interceptors().add((Interceptor.Chain chain) -> {
+            Request request = chain.request().newBuilder()
+                    .header("Authorization", key.token)
+                    .build();
+            return proceedWithMetrics(chain, request, target == null ? target(request.url().toString()) : target);
+        });
+        if (key.insecureSkipTlsVerify) {
+            // 不检验安全证书，避免有些harbor仓库没使用https安全证书导致harbor api失败
+            builder.sslSocketFactory(InsecureTrust.SSL_CONTEXT.getSocketFactory(), InsecureTrust.TRUST_MANAGER);
+            builder.hostnameVerifier((requestedHost, remoteServerSession) -> requestedHost.equalsIgnoreCase(remoteServerSession.getPeerHost()));
+        }
+        return builder.build();
+    }
+
+    private Response proceedWithMetrics(Interceptor.Chain chain, Request request, String target) throws IOException {
+        long start = System.nanoTime();
+        String status = IO_ERROR;
+        try {
+            Response response = chain.proceed(request);
+            status = String.valueOf(response.code());
+            return response;
+        } finally {
+            meterRegistry.timer(METRIC_REQUESTS, "target", target, "method", request.method(), "status", status)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 指标中只保留协议, 主机和端口, 避免路径参数导致指标数量过多
+     */
+    private static String target(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return "unknown";
+        }
+        return httpUrl.scheme() + "://" + httpUrl.host() + ":" + httpUrl.port();
+    }
+
+    private static class ClientKey {
+        private final String baseUrl;
+        private final String token;
+        private final boolean insecureSkipTlsVerify;
+
+        private ClientKey(String baseUrl, String token, boolean insecureSkipTlsVerify) {
+            this.baseUrl = baseUrl;
+            this.token = token;
+            this.insecureSkipTlsVerify = insecureSkipTlsVerify;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ClientKey clientKey = (ClientKey) o;
+            return insecureSkipTlsVerify == clientKey.insecureSkipTlsVerify &&
+                    Objects.equals(baseUrl, clientKey.baseUrl) &&
+                    Objects.equals(token, clientKey.token);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(baseUrl, token, insecureSkipTlsVerify);
+        }
+    }
+
+    /**
+     * 信任所有证书的SSLContext, 只创建一次
+     */
+    private static class InsecureTrust {
+        private static final X509TrustManager TRUST_MANAGER = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                // 不检验证书
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                // 不检验证书
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[]{};
+            }
+        };
+        private static final SSLContext SSL_CONTEXT = createSslContext();
+
+        private static SSLContext createSslContext() {
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+                sslContext.init(null, new TrustManager[]{TRUST_MANAGER}, new SecureRandom());
+                return sslContext;
+            } catch (NoSuchAlgorithmException | KeyManagementException e) {
+                LOGGER.error(e.getMessage());
+                throw new CommonException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.choerodon.devops.infra.handler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+/**
+ * 基于redis的租约, 用于在多个服务实例之间协调
+ * <p>
+ * 租约通过 SET NX EX 原子地获取, 不会出现多个实例同时判断key不存在后都获取成功的情况;
+ * 持有者可以续期, 持有者停止后租约过期, 由其它实例获取
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class RedisLeaseHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisLeaseHandler.class);
+
+    /**
+     * 租约属于当前实例时续期, 不存在时获取, 否则失败
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_OR_RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+                    + "elseif redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then "
+                    + "return 1 "
+                    + "else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    /**
+     * 当前服务实例的标识, 使用主机名, 这样实例重启后可以继续持有之前的租约
+     */
+    private final String instanceId = resolveInstanceId();
+
+    public RedisLeaseHandler(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 获取一个不需要续期的租约, 在过期之前其它调用都会失败
+     *
+     * @param key        redis key
+     * @param ttlSeconds 租约的有效时间, 单位: 秒
+     * @return true表示获取成功
+     */
+    public boolean tryAcquire(String key, long ttlSeconds) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        byte[] rawValue = instanceId.getBytes(StandardCharsets.UTF_8);
+        return Boolean.TRUE.equals(stringRedisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.set(rawKey, rawValue, Expiration.seconds(ttlSeconds), RedisStringCommands.SetOption.ifAbsent())));
+    }
+
+    /**
+     * 获取或者续期当前实例的租约, 可以用于选主: 持有租约的实例就是主节点
+     *
+     * @param key       redis key
+     * @param ttlMillis 租约的有效时间, 单位: 毫秒
+     * @return true表示当前实例持有租约
+     */
+    public boolean tryAcquireOrRenew(String key, long ttlMillis) {
+        Long result = stringRedisTemplate.execute(ACQUIRE_OR_RENEW_SCRIPT, Collections.singletonList(key), instanceId, String.valueOf(ttlMillis));
+        return result != null && result == 1L;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    private static String resolveInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            LOGGER.warn("Failed to resolve host name, use a random instance id for redis leases");
+            return UUID.randomUUID().toString();
+        }
+    }
+}
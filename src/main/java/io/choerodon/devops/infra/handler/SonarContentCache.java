@@ -0,0 +1,136 @@
+package io.choerodon.devops.infra.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.SonarContentsVO;
+
+/**
+ * SonarQube代码质量概览的缓存
+ * 同一个sonar项目在两次分析之间的结果不会变化, 所以按 (sonar项目key, 最近一次分析的时间) 缓存查询结果,
+ * 有新的分析后自然不再命中. 缓存的对象会被多个请求共用, 调用方不能修改
+ * <p>
+ * CI流水线中的sonar任务结束后可以预热缓存; SonarQube在扫描结束后还需要在后台处理分析报告,
+ * 所以预热会延迟一段时间执行
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class SonarContentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SonarContentCache.class);
+
+    private static final String METRIC_LOOKUP = "devops.sonar.content.cache.lookup";
+    private static final String METRIC_WARM_UP = "devops.sonar.content.cache.warmup";
+
+    private final int maxEntries;
+    private final long warmUpDelayMillis;
+
+    /**
+     * 访问顺序的LinkedHashMap, sonar项目key -> 缓存的结果
+     */
+    private final LinkedHashMap<String, CachedContent> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 已经安排了预热的key, 避免短时间内重复预热
+     */
+    private final Set<String> pendingWarmUps = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService warmUpExecutor;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter warmUpCounter;
+
+    public SonarContentCache(MeterRegistry meterRegistry,
+                             @Value("${devops.sonar.cache.maxEntries:500}") int maxEntries,
+                             @Value("${devops.sonar.cache.warmUpDelayMillis:30000}") long warmUpDelayMillis) {
+        this.maxEntries = maxEntries;
+        this.warmUpDelayMillis = warmUpDelayMillis;
+        this.hitCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "hit");
+        this.missCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "miss");
+        this.warmUpCounter = meterRegistry.counter(METRIC_WARM_UP);
+        this.warmUpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sonar-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 查询缓存的结果
+     *
+     * @param sonarProjectKey sonar项目key
+     * @param analysisDate    最近一次分析的时间
+     * @return 缓存的结果, 没有或者分析时间不一致时为null
+     */
+    public SonarContentsVO get(String sonarProjectKey, String analysisDate) {
+        CachedContent cached;
+        synchronized (entries) {
+            cached = entries.get(sonarProjectKey);
+        }
+        if (cached != null && Objects.equals(cached.analysisDate, analysisDate)) {
+            hitCounter.increment();
+            return cached.content;
+        }
+        missCounter.increment();
+        return null;
+    }
+
+    public void put(String sonarProjectKey, String analysisDate, SonarContentsVO content) {
+        synchronized (entries) {
+            entries.put(sonarProjectKey, new CachedContent(analysisDate, content));
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * 延迟执行预热, 同一个key在预热执行前只会被安排一次
+     * 预热中的异常只记录日志, 不会抛给调用方
+     *
+     * @param warmUpKey 用于去重的key, 如应用服务id
+     * @param loader    查询并放入缓存的逻辑
+     */
+    public void scheduleWarmUp(String warmUpKey, Runnable loader) {
+        if (!pendingWarmUps.add(warmUpKey)) {
+            return;
+        }
+        warmUpExecutor.schedule(() -> {
+            pendingWarmUps.remove(warmUpKey);
+            try {
+                loader.run();
+                warmUpCounter.increment();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to warm up sonar content of {}: {}", warmUpKey, e.getMessage());
+            }
+        }, warmUpDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        warmUpExecutor.shutdownNow();
+    }
+
+    private static class CachedContent {
+        private final String analysisDate;
+        private final SonarContentsVO content;
+
+        private CachedContent(String analysisDate, SonarContentsVO content) {
+            this.analysisDate = analysisDate;
+            this.content = content;
+        }
+    }
+}
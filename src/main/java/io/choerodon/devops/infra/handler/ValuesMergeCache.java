@@ -0,0 +1,209 @@
+package io.choerodon.devops.infra.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.choerodon.devops.api.vo.ValuesMergeCacheStatsVO;
+import io.choerodon.devops.api.vo.kubernetes.HighlightMarker;
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO;
+
+/**
+ * values合并结果的缓存
+ * 同一个版本的values和同一份部署values的合并结果总是相同的, 而实例详情, 预览, 升级等接口会对同样的输入反复合并,
+ * 所以按照两份输入的摘要缓存合并结果, 同时限制缓存的条目数量以及缓存内容的总字符数, 超出后按最近最少使用淘汰
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class ValuesMergeCache {
+    private static final String METRIC_LOOKUP = "devops.values.merge.cache.lookup";
+    private static final String METRIC_EVICTION = "devops.values.merge.cache.eviction";
+    private static final String METRIC_SIZE = "devops.values.merge.cache.size";
+    private static final String METRIC_WEIGHT = "devops.values.merge.cache.weight";
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxWeight;
+
+    /**
+     * 访问顺序的LinkedHashMap, 头部是最久未被访问的条目
+     */
+    private final LinkedHashMap<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public ValuesMergeCache(MeterRegistry meterRegistry,
+                            @Value("${devops.values.merge.cache.enabled:true}") boolean enabled,
+                            @Value("${devops.values.merge.cache.maxEntries:1000}") int maxEntries,
+                            @Value("${devops.values.merge.cache.maxWeight:20000000}") long maxWeight) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.hitCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "hit");
+        this.missCounter = meterRegistry.counter(METRIC_LOOKUP, "result", "miss");
+        this.evictionCounter = meterRegistry.counter(METRIC_EVICTION);
+        meterRegistry.gauge(METRIC_SIZE, this, cache -> cache.getStats().getSize());
+        meterRegistry.gauge(METRIC_WEIGHT, this, cache -> cache.getStats().getWeight());
+    }
+
+    /**
+     * 查询缓存的合并结果, 不存在时调用merger合并并放入缓存
+     * 返回的总是一份新的对象, 调用方可以随意修改
+     *
+     * @param versionValue 版本的values
+     * @param deployValue  部署的values
+     * @param merger       合并逻辑
+     * @return 合并结果
+     */
+    public InstanceValueVO computeIfAbsent(String versionValue, String deployValue, BiFunction<String, String, InstanceValueVO> merger) {
+        if (!enabled) {
+            return merger.apply(versionValue, deployValue);
+        }
+        String key = digest(versionValue, deployValue);
+        CachedResult cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hitCounter.increment();
+            return cached.toInstanceValueVO();
+        }
+
+        missCounter.increment();
+        // 合并在锁外进行, 并发的相同请求最多重复合并一次
+        InstanceValueVO result = merger.apply(versionValue, deployValue);
+        CachedResult toCache = new CachedResult(result);
+        if (toCache.weight <= maxWeight) {
+            synchronized (this) {
+                CachedResult previous = entries.put(key, toCache);
+                if (previous != null) {
+                    weight -= previous.weight;
+                }
+                weight += toCache.weight;
+                evictIfNecessary();
+            }
+        }
+        return toCache.toInstanceValueVO();
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @return 清除的条目数量
+     */
+    public synchronized int flush() {
+        int size = entries.size();
+        entries.clear();
+        weight = 0;
+        return size;
+    }
+
+    public synchronized ValuesMergeCacheStatsVO getStats() {
+        ValuesMergeCacheStatsVO stats = new ValuesMergeCacheStatsVO();
+        stats.setEnabled(enabled);
+        stats.setSize(entries.size());
+        stats.setMaxEntries(maxEntries);
+        stats.setWeight(weight);
+        stats.setMaxWeight(maxWeight);
+        stats.setHitCount((long) hitCounter.count());
+        stats.setMissCount((long) missCounter.count());
+        stats.setEvictionCount((long) evictionCounter.count());
+        long total = stats.getHitCount() + stats.getMissCount();
+        stats.setHitRate(total == 0 ? 0D : (double) stats.getHitCount() / total);
+        return stats;
+    }
+
+    private void evictIfNecessary() {
+        Iterator<Map.Entry<String, CachedResult>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxEntries || weight > maxWeight)) {
+            CachedResult eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictionCounter.increment();
+        }
+    }
+
+    /**
+     * 以长度作为前缀拼接两份输入, 避免不同的输入拼接后相同
+     */
+    private static String digest(String versionValue, String deployValue) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update((versionValue.length() + ":").getBytes(StandardCharsets.UTF_8));
+            messageDigest.update(versionValue.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((":" + deployValue.length() + ":").getBytes(StandardCharsets.UTF_8));
+            messageDigest.update(deployValue.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = messageDigest.digest();
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 不可变的缓存内容, 每次取出时复制为新的InstanceValueVO, 避免调用方修改缓存
+     */
+    private static class CachedResult {
+        private final String yaml;
+        private final String deltaYaml;
+        private final Integer totalLine;
+        private final List<Integer> newLines;
+        private final List<HighlightMarker> highlightMarkers;
+        private final long weight;
+
+        private CachedResult(InstanceValueVO instanceValueVO) {
+            this.yaml = instanceValueVO.getYaml();
+            this.deltaYaml = instanceValueVO.getDeltaYaml();
+            this.totalLine = instanceValueVO.getTotalLine();
+            this.newLines = instanceValueVO.getNewLines() == null ? null : new ArrayList<>(instanceValueVO.getNewLines());
+            this.highlightMarkers = instanceValueVO.getHighlightMarkers() == null ? null
+                    : instanceValueVO.getHighlightMarkers().stream().map(CachedResult::copyMarker).collect(Collectors.toList());
+            this.weight = length(yaml) + length(deltaYaml)
+                    + (newLines == null ? 0 : newLines.size())
+                    + (highlightMarkers == null ? 0 : highlightMarkers.size() * 6L);
+        }
+
+        private InstanceValueVO toInstanceValueVO() {
+            InstanceValueVO instanceValueVO = new InstanceValueVO();
+            instanceValueVO.setYaml(yaml);
+            instanceValueVO.setDeltaYaml(deltaYaml);
+            instanceValueVO.setTotalLine(totalLine);
+            instanceValueVO.setNewLines(newLines == null ? null : new ArrayList<>(newLines));
+            instanceValueVO.setHighlightMarkers(highlightMarkers == null ? null
+                    : highlightMarkers.stream().map(CachedResult::copyMarker).collect(Collectors.toList()));
+            return instanceValueVO;
+        }
+
+        private static long length(String value) {
+            return value == null ? 0 : value.length();
+        }
+
+        private static HighlightMarker copyMarker(HighlightMarker marker) {
+            HighlightMarker copy = new HighlightMarker();
+            copy.setLine(marker.getLine());
+            copy.setEndLine(marker.getEndLine());
+            copy.setStartIndex(marker.getStartIndex());
+            copy.setEndIndex(marker.getEndIndex());
+            copy.setStartColumn(marker.getStartColumn());
+            copy.setEndColumn(marker.getEndColumn());
+            return copy;
+        }
+    }
+}
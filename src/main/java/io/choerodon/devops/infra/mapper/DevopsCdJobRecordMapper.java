@@ -1,9 +1,11 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
 
+import io.choerodon.devops.api.vo.JobStatusCountVO;
 import io.choerodon.devops.infra.dto.DevopsCdJobRecordDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -22,4 +24,9 @@ public interface DevopsCdJobRecordMapper extends BaseMapper<DevopsCdJobRecordDTO
                                 @Param("status") String status);
 
     List<DevopsCdJobRecordDTO> listByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按阶段记录统计每种状态的job数量
+     */
+    List<JobStatusCountVO> countStatusByStageRecordIds(@Param("stageRecordIds") Collection<Long> stageRecordIds);
 }
@@ -1,5 +1,6 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
@@ -26,4 +27,9 @@ public interface DevopsCdStageRecordMapper extends BaseMapper<DevopsCdStageRecor
     List<DevopsCdStageRecordDTO> queryCreatedOrPendingAndRunning(@Param("pipelineRecordId") Long pipelineRecordId);
 
     List<DevopsCdStageRecordDTO> listByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 查询多条cd流水线记录的阶段记录
+     */
+    List<DevopsCdStageRecordDTO> listByPipelineRecordIds(@Param("pipelineRecordIds") Collection<Long> pipelineRecordIds);
 }
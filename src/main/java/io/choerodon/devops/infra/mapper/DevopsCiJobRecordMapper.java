@@ -1,5 +1,11 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.api.vo.JobStatusCountVO;
 import io.choerodon.devops.infra.dto.DevopsCiJobRecordDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -11,5 +17,18 @@ import io.choerodon.mybatis.common.BaseMapper;
  * @Date 2020/4/3 9:22
  */
 public interface DevopsCiJobRecordMapper extends BaseMapper<DevopsCiJobRecordDTO> {
+    /**
+     * 根据gitlab job id查询job记录, 只查询id和gitlab_job_id
+     */
+    List<DevopsCiJobRecordDTO> listByGitlabJobIds(@Param("gitlabJobIds") Collection<Long> gitlabJobIds);
+
+    /**
+     * 批量更新job记录的状态和时间, 为null的字段不更新
+     */
+    void batchUpdateStatus(@Param("items") List<DevopsCiJobRecordDTO> items);
 
+    /**
+     * 按流水线记录和阶段统计每种状态的job数量, 重试过的job只统计最新的记录
+     */
+    List<JobStatusCountVO> countStatusByCiPipelineRecordIds(@Param("ciPipelineRecordIds") Collection<Long> ciPipelineRecordIds);
 }
@@ -1,5 +1,10 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
 import io.choerodon.devops.infra.dto.DevopsCiStageDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -11,4 +16,8 @@ import io.choerodon.mybatis.common.BaseMapper;
  * @Date 2020/4/3 9:19
  */
 public interface DevopsCiStageMapper extends BaseMapper<DevopsCiStageDTO> {
+    /**
+     * 查询多条流水线的阶段
+     */
+    List<DevopsCiStageDTO> listByPipelineIds(@Param("ciPipelineIds") Collection<Long> ciPipelineIds);
 }
@@ -1,5 +1,7 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dto.DevopsEnvFileDTO;
@@ -8,4 +10,8 @@ import io.choerodon.mybatis.common.BaseMapper;
 public interface DevopsEnvFileMapper extends BaseMapper<DevopsEnvFileDTO> {
 
     DevopsEnvFileDTO queryLatestByEnvAndPath(@Param("envId") Long envId, @Param("filePath") String filePath);
+
+    void batchInsert(@Param("items") List<DevopsEnvFileDTO> items);
+
+    void batchUpdateDevopsCommit(@Param("items") List<DevopsEnvFileDTO> items);
 }
@@ -1,5 +1,6 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -33,4 +34,16 @@ public interface DevopsEnvPodMapper extends BaseMapper<DevopsEnvPodDTO> {
                        @Param("namespace") String namespace,
                        @Param("status") String status,
                        @Param("is_ready") Boolean isReady);
+
+    /**
+     * 批量删除命名空间下指定名称的pod
+     */
+    int batchDeleteByNamespaceAndNames(@Param("namespace") String namespace,
+                                       @Param("names") Collection<String> names);
+
+    /**
+     * 只更新pod的容器摘要, 不修改版本号
+     */
+    void updateContainerSummary(@Param("id") Long id,
+                                @Param("containerSummary") String containerSummary);
 }
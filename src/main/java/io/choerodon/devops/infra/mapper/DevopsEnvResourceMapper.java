@@ -1,5 +1,6 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
@@ -28,4 +29,12 @@ public interface DevopsEnvResourceMapper extends BaseMapper<DevopsEnvResourceDTO
     String getResourceDetailByNameAndTypeAndInstanceId(@Param("instanceId") Long instanceId, @Param("name") String name, @Param("kind") String resourceType);
 
     List<DevopsEnvResourceDTO> listEnvResourceByOptions(@Param("envId") Long envId, @Param("kind") String type, @Param("names") List<String> names);
+
+    /**
+     * 批量删除环境下指定类型和名称的资源
+     * 包括env_id为空但是所属实例在这个环境下的旧数据
+     */
+    int batchDeleteByEnvIdAndKindAndNames(@Param("envId") Long envId,
+                                          @Param("kind") String kind,
+                                          @Param("names") Collection<String> names);
 }
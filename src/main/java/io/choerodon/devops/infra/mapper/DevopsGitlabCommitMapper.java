@@ -6,6 +6,7 @@ import io.choerodon.mybatis.common.BaseMapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 
 
@@ -30,4 +31,23 @@ public interface DevopsGitlabCommitMapper extends BaseMapper<DevopsGitlabCommitD
     List<java.util.Date> queryCountByProjectIdAndDate(@Param("projectId") Long projectId,
                                                       @Param("startDate") java.util.Date startDate,
                                                       @Param("endDate") Date endDate);
+
+    /**
+     * 查询分支上已经存在的commit
+     *
+     * @param ref        分支
+     * @param commitShas commit sha
+     * @return 已经存在的commit sha
+     */
+    List<String> listExistingShas(@Param("ref") String ref,
+                                  @Param("commitShas") Collection<String> commitShas);
+
+    /**
+     * 批量插入commit, 分支上已经存在的commit (uk_commit_sha_ref) 保持不变
+     *
+     * @param items      commit
+     * @param operatorId 创建人和更新人
+     */
+    void batchInsert(@Param("items") List<DevopsGitlabCommitDTO> items,
+                     @Param("operatorId") Long operatorId);
 }
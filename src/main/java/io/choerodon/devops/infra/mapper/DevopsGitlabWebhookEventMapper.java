@@ -0,0 +1,61 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+/**
+ * @author agent
+ * @since 2026/10/18
+ */
+public interface DevopsGitlabWebhookEventMapper extends BaseMapper<DevopsGitlabWebhookEventDTO> {
+    /**
+     * 查询需要重新处理的事件: 属于指定实例的, 或者超过指定时间没有被处理的
+     * 不查询事件内容, 内容在处理时再查询
+     *
+     * @param owner  服务实例, 为null时只查询超时的事件
+     * @param before 最近更新时间早于这个时间的事件
+     * @param limit  最多查询的数量
+     * @return 事件, 按接收的顺序
+     */
+    List<DevopsGitlabWebhookEventDTO> listToRecover(@Param("owner") String owner,
+                                                    @Param("before") Date before,
+                                                    @Param("limit") int limit);
+
+    /**
+     * 查询服务实例名下一个GitLab项目的事件, 用于按顺序将留在数据库中的事件放入处理队列
+     * 不查询事件内容, 内容在处理时再查询
+     *
+     * @param owner           服务实例
+     * @param gitlabProjectId gitlab项目id
+     * @param limit           最多查询的数量
+     * @return 事件, 按接收的顺序
+     */
+    List<DevopsGitlabWebhookEventDTO> listByOwnerAndProject(@Param("owner") String owner,
+                                                            @Param("gitlabProjectId") Long gitlabProjectId,
+                                                            @Param("limit") int limit);
+
+    /**
+     * 认领事件, 只有事件仍然属于期望的实例时才会成功
+     *
+     * @param id            事件id
+     * @param expectedOwner 期望的当前实例
+     * @param owner         新的实例
+     * @return 更新的行数, 为1时认领成功
+     */
+    int claim(@Param("id") Long id,
+              @Param("expectedOwner") String expectedOwner,
+              @Param("owner") String owner);
+
+    /**
+     * 批量删除处理完成的事件
+     *
+     * @param ids 事件id
+     */
+    void deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,9 +1,11 @@
 package io.choerodon.devops.infra.mapper;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
 
+import io.choerodon.devops.api.vo.PipelineRecordRelStatsVO;
 import io.choerodon.devops.infra.dto.DevopsPipelineRecordRelDTO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -18,4 +20,19 @@ public interface DevopsPipelineRecordRelMapper extends BaseMapper<DevopsPipeline
     List<DevopsPipelineRecordRelDTO> selectBySprint(@Param("pipeline_id") Long pipelineId,
                                                     @Param("startDate") Date startDate,
                                                     @Param("endDate") Date endDate);
+
+    /**
+     * 查询每条流水线最新的若干条执行记录
+     *
+     * @param pipelineIds 流水线id
+     * @param size        每条流水线的记录数量
+     * @return 执行记录, 按流水线分组, 组内按id倒序
+     */
+    List<DevopsPipelineRecordRelDTO> listLatestByPipelineIds(@Param("pipelineIds") Collection<Long> pipelineIds,
+                                                             @Param("size") int size);
+
+    /**
+     * 统计每条流水线的执行记录数量和第一条记录, 没有记录的流水线不返回
+     */
+    List<PipelineRecordRelStatsVO> listStatsByPipelineIds(@Param("pipelineIds") Collection<Long> pipelineIds);
 }
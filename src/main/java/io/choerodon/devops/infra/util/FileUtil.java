@@ -34,10 +34,12 @@ import org.springframework.web.multipart.MultipartFile;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.error.Mark;
 import org.yaml.snakeyaml.nodes.MappingNode;
 import org.yaml.snakeyaml.nodes.Node;
 import org.yaml.snakeyaml.nodes.NodeTuple;
 import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
 import org.yaml.snakeyaml.parser.ParserImpl;
 import org.yaml.snakeyaml.reader.StreamReader;
 import org.yaml.snakeyaml.resolver.Resolver;
@@ -53,7 +55,6 @@ public class FileUtil {
 
     private static final int BUFFER_SIZE = 2048;
     private static final Logger logger = LoggerFactory.getLogger(FileUtil.class);
-    private static final String EXEC_PATH = "/usr/lib/yaml/values_yaml";
 
 
     private FileUtil() {
@@ -459,96 +460,41 @@ public class FileUtil {
 
 
     /**
-     * 指定values文件路径
+     * 根据新增和修改的key路径, 标记出yaml中新增的行以及修改的位置
      *
-     * @param path 路径
-     * @return 返回替换结果
+     * @param yaml       合并后的yaml
+     * @param addKeys    新增的key路径
+     * @param updateKeys 修改的key路径
+     * @return 标记结果
      */
-    public static InstanceValueVO replaceNew(String path) {
-        BufferedReader stdInput = null;
-        BufferedReader stdError = null;
-        InstanceValueVO instanceValueVO = null;
-        try {
-
-            String command = EXEC_PATH + " " + path;
-            // TODO 这里每次执行都是开启了一个新进程，可能开销不小
-            Process p = Runtime.getRuntime().exec(command);
-
-            stdInput = new BufferedReader(new
-                    InputStreamReader(p.getInputStream()));
-
-            stdError = new BufferedReader(new
-                    InputStreamReader(p.getErrorStream()));
-
-            StringBuilder stringBuilder = new StringBuilder();
-            String s = null;
-            while ((s = stdInput.readLine()) != null) {
-                stringBuilder.append(s).append("\n");
-            }
-            String result = stringBuilder.toString();
-            String err = null;
-            instanceValueVO = loadResult(result);
-            while ((err = stdError.readLine()) != null) {
-                err += err;
-            }
-        } catch (IOException e) {
-            throw new CommonException(e);
-        } finally {
-            try {
-                if (stdError != null) {
-                    stdError.close();
-                }
-                if (stdInput != null) {
-                    stdInput.close();
-                }
-            } catch (IOException e) {
-                logger.info(e.getMessage(), e);
-            }
-        }
-        return instanceValueVO;
-    }
-
-    private static InstanceValueVO loadResult(String yml) {
-        String[] strings = yml.split("------love----you------choerodon----");
-        if (strings.length < 2) {
-            throw new CommonException("error.value.illegal");
-        }
-        Yaml yaml = new Yaml();
-        Object map = yaml.load(strings[2]);
-        InstanceValueVO instanceValueVO = replaceNew(strings[0], (Map) map);
-        instanceValueVO.setDeltaYaml(strings[1]);
-        return instanceValueVO;
-    }
-
-    private static InstanceValueVO replaceNew(String yaml, Map map) {
+    public static InstanceValueVO markChanges(String yaml, List<List<String>> addKeys, List<List<String>> updateKeys) {
         Composer composer = new Composer(new ParserImpl(new StreamReader(yaml)), new Resolver());
-        MappingNode mappingNode = (MappingNode) composer.getSingleNode();
+        Node rootNode = composer.getSingleNode();
         List<Integer> addLines = new ArrayList<>();
+        List<HighlightMarker> highlightMarkers = new ArrayList<>();
 
-        //处理新增
-        ArrayList addLists = (ArrayList) map.get("add");
-        for (Object add : addLists) {
-            ArrayList<String> addList = (ArrayList<String>) add;
-            Node node = getKeysNode(addList, mappingNode);
-            if (node != null) {
-                appendLine(node.getStartMark().getLine(), node.getEndMark().getLine(), addLines);
+        if (rootNode instanceof MappingNode) {
+            MappingNode mappingNode = (MappingNode) rootNode;
+            //处理新增
+            for (List<String> addList : addKeys) {
+                Node node = getKeysNode(addList, mappingNode);
+                if (node != null) {
+                    appendLine(node.getStartMark().getLine(), getLastMark(node).getLine(), addLines);
+                }
             }
-        }
 
-        List<HighlightMarker> highlightMarkers = new ArrayList<>();
-
-        //处理修改
-        ArrayList updateList = (ArrayList) map.get("update");
-        for (Object add : updateList) {
-            ArrayList<String> addList = (ArrayList<String>) add;
-            Node node = getKeysNode(addList, mappingNode);
-            HighlightMarker highlightMarker = new HighlightMarker();
-            if (node != null) {
-                highlightMarker.setLine(node.getStartMark().getLine());
-                highlightMarker.setEndLine(node.getEndMark().getLine());
-                highlightMarker.setStartColumn(node.getStartMark().getColumn());
-                highlightMarker.setEndColumn(node.getEndMark().getColumn());
-                highlightMarkers.add(highlightMarker);
+            //处理修改
+            for (List<String> updateList : updateKeys) {
+                Node node = getKeysNode(updateList, mappingNode);
+                HighlightMarker highlightMarker = new HighlightMarker();
+                if (node != null) {
+                    highlightMarker.setLine(node.getStartMark().getLine());
+                    Mark lastMark = getLastMark(node);
+                    highlightMarker.setEndLine(lastMark.getLine());
+                    highlightMarker.setStartColumn(node.getStartMark().getColumn());
+                    highlightMarker.setEndColumn(lastMark.getColumn());
+                    highlightMarkers.add(highlightMarker);
+                }
             }
         }
 
@@ -560,6 +506,21 @@ public class FileUtil {
 
     }
 
+    /**
+     * block风格的map和数组的结束位置是下一个元素的开始, 所以取最后一个子节点的结束位置
+     */
+    private static Mark getLastMark(Node node) {
+        if (node instanceof MappingNode && !((MappingNode) node).getValue().isEmpty()) {
+            List<NodeTuple> nodeTuples = ((MappingNode) node).getValue();
+            return getLastMark(nodeTuples.get(nodeTuples.size() - 1).getValueNode());
+        }
+        if (node instanceof SequenceNode && !((SequenceNode) node).getValue().isEmpty()) {
+            List<Node> nodes = ((SequenceNode) node).getValue();
+            return getLastMark(nodes.get(nodes.size() - 1));
+        }
+        return node.getEndMark();
+    }
+
     private static void appendLine(int start, int end, List<Integer> adds) {
         for (int i = start; i <= end; i++) {
             adds.add(i);
@@ -574,9 +535,10 @@ public class FileUtil {
                 if (nodeTuple.getKeyNode() instanceof ScalarNode && ((ScalarNode) nodeTuple.getKeyNode()).getValue().equals(keys.get(i))) {
                     if (i == keys.size() - 1) {
                         value = nodeTuple.getValueNode();
-                    } else {
+                    } else if (nodeTuple.getValueNode() instanceof MappingNode) {
                         mappingNode = (MappingNode) nodeTuple.getValueNode();
-
+                    } else {
+                        return null;
                     }
                 }
             }
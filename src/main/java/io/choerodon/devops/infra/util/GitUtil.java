@@ -2,26 +2,27 @@ package io.choerodon.devops.infra.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 import java.util.regex.Pattern;
 
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.*;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ConfigConstants;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.*;
-import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +38,7 @@ import io.choerodon.devops.api.vo.GitEnvConfigVO;
 import io.choerodon.devops.app.service.DevopsEnvironmentService;
 import io.choerodon.devops.infra.dto.DevopsClusterDTO;
 import io.choerodon.devops.infra.dto.DevopsEnvironmentDTO;
+import io.choerodon.devops.infra.dto.gitlab.DiffDTO;
 import io.choerodon.devops.infra.dto.iam.ProjectDTO;
 import io.choerodon.devops.infra.dto.iam.Tenant;
 import io.choerodon.devops.infra.enums.EnvironmentType;
@@ -65,6 +67,8 @@ public class GitUtil {
     private DevopsEnvironmentService devopsEnvironmentService;
     @Autowired
     private BaseServiceClientOperator baseServiceClientOperator;
+    @Autowired
+    private SshSessionFactoryCache sshSessionFactoryCache;
     private String classPath;
     @Value("${services.gitlab.sshUrl}")
     private String gitlabSshUrl;
@@ -136,6 +140,133 @@ public class GitUtil {
         return "";
     }
 
+    /**
+     * 在一次提交历史遍历中批量查询多个文件的最新提交
+     * 查询规则与{@link #getFileLatestCommit(String, String)}一致, 即按照文件名在仓库中查找修改过这个文件的最新提交,
+     * 从HEAD开始按提交时间倒序遍历, 所有文件都找到最新提交后即停止遍历
+     *
+     * @param path      仓库的.git目录
+     * @param filePaths 文件相对于仓库的路径
+     * @return 文件路径 -> 最新提交的sha, 未找到提交的文件对应空字符串
+     */
+    public static Map<String, String> getFilesLatestCommit(String path, Collection<String> filePaths) {
+        Map<String, String> result = new HashMap<>();
+        // 文件名 -> 使用这个文件名的文件路径
+        Map<String, List<String>> pathsByName = new HashMap<>();
+        for (String filePath : filePaths) {
+            if (filePath == null) {
+                continue;
+            }
+            result.put(filePath, "");
+            String[] fileName = filePath.split("/");
+            String name = fileName[fileName.length - 1];
+            if (!name.isEmpty()) {
+                pathsByName.computeIfAbsent(name, k -> new ArrayList<>()).add(filePath);
+            }
+        }
+        if (pathsByName.isEmpty()) {
+            return result;
+        }
+
+        File file = new File(path);
+        try (Repository repository = new FileRepository(file.getAbsolutePath());
+             RevWalk revWalk = new RevWalk(repository)) {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return result;
+            }
+            revWalk.markStart(revWalk.parseCommit(head));
+            Set<String> remaining = new HashSet<>(pathsByName.keySet());
+            for (RevCommit commit : revWalk) {
+                for (String name : changedPaths(repository, revWalk, commit, remaining)) {
+                    remaining.remove(name);
+                    pathsByName.get(name).forEach(filePath -> result.put(filePath, commit.getName()));
+                }
+                if (remaining.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.info(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 查询提交相对于所有父提交都有改动的路径, 与git log按路径过滤时判断提交是否修改了路径的规则一致
+     */
+    private static List<String> changedPaths(Repository repository, RevWalk revWalk, RevCommit commit, Set<String> paths) throws IOException {
+        List<String> changed = new ArrayList<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+            treeWalk.addTree(commit.getTree());
+            for (RevCommit parent : commit.getParents()) {
+                treeWalk.addTree(revWalk.parseCommit(parent).getTree());
+            }
+            int treeCount = treeWalk.getTreeCount();
+            while (treeWalk.next()) {
+                boolean sameAsParent = false;
+                for (int i = 1; i < treeCount; i++) {
+                    if (treeWalk.idEqual(0, i) && treeWalk.getRawMode(0) == treeWalk.getRawMode(i)) {
+                        sameAsParent = true;
+                        break;
+                    }
+                }
+                if (!sameAsParent && paths.contains(treeWalk.getPathString())) {
+                    changed.add(treeWalk.getPathString());
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 在本地仓库比较两个提交之间的文件改动, 包含重命名检测
+     * 返回结果的格式与GitLab的compare接口一致: 删除的文件的newPath与oldPath相同
+     *
+     * @param path      仓库的.git目录
+     * @param oldCommit 旧的提交
+     * @param newCommit 新的提交
+     * @return 文件改动, 不包含改动的内容
+     */
+    public static List<DiffDTO> getDiffs(String path, String oldCommit, String newCommit) {
+        File file = new File(path);
+        try (Repository repository = new FileRepository(file.getAbsolutePath());
+             RevWalk revWalk = new RevWalk(repository);
+             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            RevCommit oldRevCommit = revWalk.parseCommit(ObjectId.fromString(oldCommit));
+            RevCommit newRevCommit = revWalk.parseCommit(ObjectId.fromString(newCommit));
+            diffFormatter.setRepository(repository);
+            diffFormatter.setDetectRenames(true);
+
+            List<DiffDTO> diffs = new ArrayList<>();
+            for (DiffEntry diffEntry : diffFormatter.scan(oldRevCommit.getTree(), newRevCommit.getTree())) {
+                DiffDTO diffDTO = new DiffDTO();
+                diffDTO.setNewFile(diffEntry.getChangeType() == DiffEntry.ChangeType.ADD || diffEntry.getChangeType() == DiffEntry.ChangeType.COPY);
+                diffDTO.setDeletedFile(diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE);
+                diffDTO.setRenamedFile(diffEntry.getChangeType() == DiffEntry.ChangeType.RENAME);
+                switch (diffEntry.getChangeType()) {
+                    case ADD:
+                        diffDTO.setOldPath(diffEntry.getNewPath());
+                        diffDTO.setNewPath(diffEntry.getNewPath());
+                        break;
+                    case DELETE:
+                        diffDTO.setOldPath(diffEntry.getOldPath());
+                        diffDTO.setNewPath(diffEntry.getOldPath());
+                        break;
+                    default:
+                        diffDTO.setOldPath(diffEntry.getOldPath());
+                        diffDTO.setNewPath(diffEntry.getNewPath());
+                }
+                diffs.add(diffDTO);
+            }
+            return diffs;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new CommonException("error.git.diff", e);
+        }
+    }
+
     public static String getGitlabSshUrl(Pattern pattern, String url, String orgCode, String proCode, String envCode, EnvironmentType environmentType, String clusterCode) {
         final String groupSuffix = GitOpsUtil.getGroupSuffixByEnvType(environmentType);
         String result = "";
@@ -212,6 +343,7 @@ public class GitUtil {
 
     /**
      * clone by ssh
+     * 只克隆master分支, 环境库的其它分支不会被用到
      *
      * @param path target path
      * @param url  git repo url
@@ -220,11 +352,19 @@ public class GitUtil {
         CloneCommand cloneCommand = Git.cloneRepository();
         cloneCommand.setURI(url);
         cloneCommand.setBranch(MASTER);
+        cloneCommand.setCloneAllBranches(false);
+        cloneCommand.setBranchesToClone(Collections.singletonList(Constants.R_HEADS + MASTER));
         cloneCommand.setTransportConfigCallback(getTransportConfigCallback(sshKeyRsa));
         try {
             cloneCommand.setDirectory(new File(path));
-            return cloneCommand.call();
-        } catch (GitAPIException e) {
+            Git git = cloneCommand.call();
+            // 之后的拉取也只获取master分支
+            StoredConfig config = git.getRepository().getConfig();
+            config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, Constants.DEFAULT_REMOTE_NAME, "fetch",
+                    "+" + Constants.R_HEADS + MASTER + ":" + Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + MASTER);
+            config.save();
+            return git;
+        } catch (GitAPIException | IOException e) {
             LOGGER.debug("Failed to clone by ssh: path: {}, url: {}", path, url);
             throw new CommonException(e.getMessage(), e);
         }
@@ -260,7 +400,7 @@ public class GitUtil {
      *
      * @param path git repo
      */
-    public static Git pullBySsh(String path, String envRas) {
+    public Git pullBySsh(String path, String envRas) {
         File repoGitDir = new File(path);
         try (Repository repository = new FileRepository(repoGitDir.getAbsolutePath())) {
             return pullBySsh(repository, envRas);
@@ -269,7 +409,7 @@ public class GitUtil {
         }
     }
 
-    private static Git pullBySsh(Repository repository, String sshKeyRsa) {
+    private Git pullBySsh(Repository repository, String sshKeyRsa) {
         try (Git git = new Git(repository)) {
             git.pull()
                     .setTransportConfigCallback(getTransportConfigCallback(sshKeyRsa))
@@ -280,27 +420,10 @@ public class GitUtil {
         }
     }
 
-    private static TransportConfigCallback getTransportConfigCallback(String sshKeyRsa) {
+    private TransportConfigCallback getTransportConfigCallback(String sshKeyRsa) {
         return transport -> {
             SshTransport sshTransport = (SshTransport) transport;
-            sshTransport.setSshSessionFactory(sshSessionFactor(sshKeyRsa));
-        };
-    }
-
-    private static SshSessionFactory sshSessionFactor(String sshKeyRsa) {
-        return new JschConfigSessionFactory() {
-            @Override
-            protected void configure(OpenSshConfig.Host host, Session session) {
-                session.setConfig("StrictHostKeyChecking", "no");
-            }
-
-            @Override
-            protected JSch createDefaultJSch(FS fs) throws JSchException {
-                JSch defaultJSch = super.createDefaultJSch(fs);
-                defaultJSch.getIdentityRepository().removeAll();
-                defaultJSch.getIdentityRepository().add(sshKeyRsa.getBytes());
-                return defaultJSch;
-            }
+            sshTransport.setSshSessionFactory(sshSessionFactoryCache.get(sshKeyRsa));
         };
     }
 
@@ -641,7 +764,7 @@ public class GitUtil {
      * @param sha     要打tag的散列值
      * @throws CommonException push error
      */
-    public static void createTagAndPush(Git git, String sshKey, String tagName, String sha) {
+    public void createTagAndPush(Git git, String sshKey, String tagName, String sha) {
         try {
             // 创建之前删除，保证本地不存在要创建的tag
             deleteTag(git, tagName);
@@ -668,7 +791,7 @@ public class GitUtil {
      * @param tagName 要删除的tag的名称
      * @throws CommonException push error
      */
-    public static void deleteTagAndPush(Git git, String sshKey, String tagName) {
+    public void deleteTagAndPush(Git git, String sshKey, String tagName) {
         try {
             PushCommand pushCommand = git.push();
             List<Ref> refs = git.tagList().call();
@@ -710,7 +833,7 @@ public class GitUtil {
      * @param tagName tag名称
      * @param sha     要打tag的commit的散列值
      */
-    public static void pushTag(Git git, String sshKey, String tagName, String sha) {
+    public void pushTag(Git git, String sshKey, String tagName, String sha) {
         deleteTag(git, tagName);
         createTagAndPush(git, sshKey, tagName, sha);
     }
@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import io.choerodon.devops.api.vo.ContainerVO;
+
 /**
  * Created by younger on 2018/4/25.
  */
@@ -20,6 +22,12 @@ public class K8sUtil {
     private static final String EXIT_CODE = "ExitCode:";
     private static final String NONE_LABEL = "<none>";
     private static final JSON json = new JSON();
+    /**
+     * 容器摘要的最大长度, 和devops_env_pod.container_summary列的长度一致
+     */
+    private static final int CONTAINER_SUMMARY_MAX_LENGTH = 2048;
+    private static final String CONTAINER_SEPARATOR = ",";
+    private static final String READY_SEPARATOR = ":";
 
     private K8sUtil() {
     }
@@ -336,6 +344,52 @@ public class K8sUtil {
         return restarts;
     }
 
+    /**
+     * 提取pod中各个容器的名称和是否就绪, 编码为紧凑的摘要, 不可用的容器在前
+     * 格式为 "名称:0,名称:1", 容器名称是DNS标签, 不会包含分隔符
+     *
+     * @param v1Pod pod对象
+     * @return 容器摘要, 没有容器状态时为空字符串, 过长时为null (查询时退回解析资源详情)
+     */
+    public static String getContainerSummary(V1Pod v1Pod) {
+        if (v1Pod.getStatus() == null || CollectionUtils.isEmpty(v1Pod.getStatus().getContainerStatuses())) {
+            return "";
+        }
+        List<String> notReady = new ArrayList<>();
+        List<String> ready = new ArrayList<>();
+        for (V1ContainerStatus containerStatus : v1Pod.getStatus().getContainerStatuses()) {
+            if (Boolean.TRUE.equals(containerStatus.isReady())) {
+                ready.add(containerStatus.getName() + READY_SEPARATOR + "1");
+            } else {
+                notReady.add(containerStatus.getName() + READY_SEPARATOR + "0");
+            }
+        }
+        notReady.addAll(ready);
+        String summary = String.join(CONTAINER_SEPARATOR, notReady);
+        return summary.length() > CONTAINER_SUMMARY_MAX_LENGTH ? null : summary;
+    }
+
+    /**
+     * 解析 {@link #getContainerSummary(V1Pod)} 生成的容器摘要
+     *
+     * @param containerSummary 容器摘要, 不能为null
+     * @return 容器信息, 顺序和摘要中一致
+     */
+    public static List<ContainerVO> parseContainerSummary(String containerSummary) {
+        List<ContainerVO> containers = new ArrayList<>();
+        if (containerSummary.isEmpty()) {
+            return containers;
+        }
+        for (String container : containerSummary.split(CONTAINER_SEPARATOR)) {
+            int index = container.lastIndexOf(READY_SEPARATOR);
+            ContainerVO containerVO = new ContainerVO();
+            containerVO.setName(container.substring(0, index));
+            containerVO.setReady("1".equals(container.substring(index + 1)));
+            containers.add(containerVO);
+        }
+        return containers;
+    }
+
     /**
      * 反序列化K8s的json字符串
      *
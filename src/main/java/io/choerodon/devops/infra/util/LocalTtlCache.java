@@ -0,0 +1,116 @@
+package io.choerodon.devops.infra.util;
+
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * 容量有限并且带过期时间的本地缓存, 超出容量时淘汰最久没有访问的数据
+ * <p>
+ * 除了缓存查询到的值, 也可以缓存 "不存在" 的结果 (负缓存), 避免对不存在的数据反复查询;
+ * 负缓存通常使用更短的过期时间
+ *
+ * @param <K> key的类型
+ * @param <V> value的类型
+ * @author agent
+ * @since 2026/10/18
+ */
+public class LocalTtlCache<K, V> {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    /**
+     * 访问顺序的LinkedHashMap
+     */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public LocalTtlCache(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key key
+     * @return 没有缓存或者已经过期时为null; 负缓存返回 {@link Entry#isMissing()} 为true的结果
+     */
+    @Nullable
+    public Entry<V> get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    public void put(K key, V value) {
+        doPut(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 记录key对应的数据不存在
+     */
+    public void putMissing(K key) {
+        doPut(key, new Entry<>(null, System.currentTimeMillis() + negativeTtlMillis));
+    }
+
+    public void evict(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * 删除key满足条件的缓存
+     */
+    public void evictIf(Predicate<K> predicate) {
+        synchronized (entries) {
+            entries.keySet().removeIf(predicate);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private void doPut(K key, Entry<V> entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+            if (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    public static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        /**
+         * @return 缓存的值, 负缓存时为null
+         */
+        public V getValue() {
+            return value;
+        }
+
+        public boolean isMissing() {
+            return value == null;
+        }
+    }
+}
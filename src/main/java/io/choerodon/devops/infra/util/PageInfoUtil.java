@@ -70,4 +70,24 @@ public class PageInfoUtil {
         }
         return result;
     }
+
+    /**
+     * 根据已经分页查询到的当前页内容和总数设置Page对象, 分页信息和 {@link #createPageFromList(List, PageRequest)} 一致
+     *
+     * @param content  当前页的内容
+     * @param pageable 分页参数, 页码从0开始, 大小不能为0
+     * @param total    总共的数量
+     * @return 分页结果
+     */
+    public static <T> Page<T> createPage(List<T> content, PageRequest pageable, long total) {
+        Page<T> result = new Page<>();
+        result.setNumberOfElements(pageable.getSize());
+        result.setNumber(pageable.getPage());
+        result.setTotalElements(total);
+        int ceilTotal = (int) (Math.ceil(total / (pageable.getSize() * 1.0)));
+        result.setTotalPages(Math.max(0, ceilTotal - 1));
+        result.setSize(content.size());
+        result.setContent(content);
+        return result;
+    }
 }
@@ -0,0 +1,329 @@
+package io.choerodon.devops.infra.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.transport.*;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按ssh私钥缓存JGit的ssh会话工厂
+ * 每个私钥 (以摘要作为指纹) 对应一个会话工厂, 不再每次操作都重新解析私钥;
+ * 工厂内按 用户@主机:端口 保留已经建立的ssh连接, 一次GitOps同步中的拉取和推送标签复用同一个连接,
+ * 连接空闲超过一定时间后断开. 工厂的数量有上限, 超出时 (如环境重建后私钥变化) 淘汰最久未使用的工厂,
+ * 断开它空闲的连接, 正在使用的连接在归还时断开.
+ * 连接上开启了心跳, 对端已经断开的连接会被及时发现; 复用的连接在使用时失败的, 断开后用新的连接重试一次
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+@Component
+public class SshSessionFactoryCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SshSessionFactoryCache.class);
+
+    private static final String METRIC_SSH_SESSION = "devops.gitops.ssh.session";
+    /**
+     * 缓存的会话工厂的最大数量
+     */
+    private static final int MAX_FACTORIES = 200;
+    /**
+     * 连接在空闲多久之后断开, 单位: 毫秒
+     */
+    private static final long IDLE_MILLIS = 60000L;
+    /**
+     * 心跳间隔, 单位: 毫秒
+     */
+    private static final int SERVER_ALIVE_INTERVAL_MILLIS = 15000;
+    /**
+     * 连续多少次心跳没有响应后断开连接
+     */
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    /**
+     * 克隆, 拉取以及推送标签时新建立和复用的ssh连接数量
+     */
+    private final Counter handshakeCounter;
+    private final Counter reuseCounter;
+
+    /**
+     * 访问顺序的LinkedHashMap, 私钥指纹 -> 会话工厂
+     */
+    private final LinkedHashMap<String, CachedSessionFactory> factories = new LinkedHashMap<String, CachedSessionFactory>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSessionFactory> eldest) {
+            if (size() > MAX_FACTORIES) {
+                eldest.getValue().evict();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ssh-session-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SshSessionFactoryCache(MeterRegistry meterRegistry) {
+        this.handshakeCounter = meterRegistry.counter(METRIC_SSH_SESSION, "result", "handshake");
+        this.reuseCounter = meterRegistry.counter(METRIC_SSH_SESSION, "result", "reuse");
+    }
+
+    @PostConstruct
+    public void init() {
+        reaper.scheduleWithFixedDelay(this::closeIdleSessions, IDLE_MILLIS, IDLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 服务关闭时停止断开空闲连接的后台线程, 并断开所有连接
+     */
+    @PreDestroy
+    public void destroy() {
+        reaper.shutdownNow();
+        synchronized (factories) {
+            factories.values().forEach(CachedSessionFactory::closeAll);
+            factories.clear();
+        }
+    }
+
+    /**
+     * 获取私钥对应的会话工厂
+     *
+     * @param sshKeyRsa ssh私钥
+     * @return 会话工厂
+     */
+    public SshSessionFactory get(String sshKeyRsa) {
+        String fingerprint = fingerprint(sshKeyRsa);
+        synchronized (factories) {
+            return factories.computeIfAbsent(fingerprint, k -> new CachedSessionFactory(sshKeyRsa));
+        }
+    }
+
+    private void closeIdleSessions() {
+        List<CachedSessionFactory> snapshot;
+        synchronized (factories) {
+            snapshot = new ArrayList<>(factories.values());
+        }
+        long now = System.currentTimeMillis();
+        snapshot.forEach(factory -> factory.closeIdle(now));
+    }
+
+    private static String fingerprint(String sshKeyRsa) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(sshKeyRsa.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class CachedSessionFactory extends JschConfigSessionFactory {
+        private final String sshKeyRsa;
+        /**
+         * 用户@主机:端口 -> 已经建立的连接
+         */
+        private final Map<String, PooledSession> sessions = new HashMap<>();
+        /**
+         * 最近一次由父类创建的会话, 在 {@link #configure(OpenSshConfig.Host, Session)} 中记录,
+         * getSession是同步方法, 所以不会被其它线程覆盖
+         */
+        private Session created;
+        /**
+         * 工厂是否已经被淘汰, 淘汰后不再缓存新的连接, 正在使用的连接在归还时断开
+         */
+        private boolean evicted;
+
+        private CachedSessionFactory(String sshKeyRsa) {
+            this.sshKeyRsa = sshKeyRsa;
+        }
+
+        @Override
+        public synchronized RemoteSession getSession(URIish uri, CredentialsProvider credentialsProvider, FS fs, int tms) throws TransportException {
+            String key = uri.getUser() + "@" + uri.getHost() + ":" + uri.getPort();
+            PooledSession pooled = sessions.get(key);
+            if (evicted) {
+                // 仍然持有被淘汰的工厂的调用方, 按原来的方式使用新的连接
+                handshakeCounter.increment();
+                RemoteSession remoteSession = super.getSession(uri, credentialsProvider, fs, tms);
+                created = null;
+                return remoteSession;
+            }
+            if (pooled != null && pooled.session.isConnected()) {
+                reuseCounter.increment();
+                // 对端已经断开而本地还没有发现的连接, 在使用时才会失败, 这时换一个新的连接重试
+                return pooled.acquire(uri, () -> connect(key, pooled, uri, credentialsProvider, fs, tms));
+            }
+            return connect(key, pooled, uri, credentialsProvider, fs, tms);
+        }
+
+        /**
+         * 断开已经失效的连接, 建立新的连接
+         */
+        private synchronized RemoteSession connect(String key, PooledSession broken, URIish uri, CredentialsProvider credentialsProvider, FS fs, int tms) throws TransportException {
+            if (broken != null) {
+                broken.session.disconnect();
+                sessions.remove(key, broken);
+            }
+
+            RemoteSession remoteSession = super.getSession(uri, credentialsProvider, fs, tms);
+            handshakeCounter.increment();
+            Session session = created;
+            created = null;
+            if (session == null || !session.isConnected() || sessions.containsKey(key)) {
+                // 拿不到底层的会话, 或者其它线程已经重新建立了连接时不缓存, 按原来的方式使用
+                return remoteSession;
+            }
+            PooledSession pooled = new PooledSession(key, session);
+            sessions.put(key, pooled);
+            return pooled.acquire(uri, null);
+        }
+
+        @Override
+        protected void configure(OpenSshConfig.Host host, Session session) {
+            session.setConfig("StrictHostKeyChecking", "no");
+            try {
+                session.setServerAliveInterval(SERVER_ALIVE_INTERVAL_MILLIS);
+                session.setServerAliveCountMax(SERVER_ALIVE_COUNT_MAX);
+            } catch (JSchException e) {
+                LOGGER.warn("Failed to enable ssh keepalive for {}. The exception is {}", host.getHostName(), e.getMessage());
+            }
+            created = session;
+        }
+
+        @Override
+        protected JSch createDefaultJSch(FS fs) throws JSchException {
+            JSch defaultJSch = super.createDefaultJSch(fs);
+            defaultJSch.getIdentityRepository().removeAll();
+            defaultJSch.getIdentityRepository().add(sshKeyRsa.getBytes());
+            return defaultJSch;
+        }
+
+        private synchronized void closeIdle(long now) {
+            Iterator<PooledSession> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                PooledSession pooled = iterator.next();
+                if (!pooled.session.isConnected() || (pooled.inUse == 0 && now - pooled.lastReleased > IDLE_MILLIS)) {
+                    pooled.session.disconnect();
+                    iterator.remove();
+                }
+            }
+        }
+
+        /**
+         * 工厂被淘汰时只断开空闲的连接, 正在被克隆或者推送使用的连接在归还时断开
+         */
+        private synchronized void evict() {
+            evicted = true;
+            Iterator<PooledSession> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                PooledSession pooled = iterator.next();
+                if (pooled.inUse == 0) {
+                    pooled.session.disconnect();
+                    iterator.remove();
+                }
+            }
+        }
+
+        private synchronized void closeAll() {
+            sessions.values().forEach(pooled -> pooled.session.disconnect());
+            sessions.clear();
+        }
+
+        /**
+         * 被多次使用的连接, 每次使用 (一个JGit Transport) 结束时只归还, 不断开
+         */
+        private class PooledSession {
+            private final String key;
+            private final Session session;
+            private int inUse;
+            private long lastReleased = System.currentTimeMillis();
+
+            private PooledSession(String key, Session session) {
+                this.key = key;
+                this.session = session;
+            }
+
+            /**
+             * @param uri       仓库地址
+             * @param reconnect 连接失效时用来建立新连接, 为null时不重试
+             */
+            private RemoteSession acquire(URIish uri, Reconnect reconnect) {
+                inUse++;
+                JschSession delegate = new JschSession(session, uri);
+                return new RemoteSession() {
+                    private boolean released;
+                    private RemoteSession retried;
+
+                    @Override
+                    public Process exec(String commandName, int timeout) throws IOException {
+                        if (retried != null) {
+                            return retried.exec(commandName, timeout);
+                        }
+                        try {
+                            return delegate.exec(commandName, timeout);
+                        } catch (IOException e) {
+                            if (reconnect == null) {
+                                throw e;
+                            }
+                            LOGGER.info("Reused ssh session to {} is broken, retry with a new one. The exception is {}", uri.getHost(), e.getMessage());
+                            release();
+                            retried = reconnect.open();
+                            return retried.exec(commandName, timeout);
+                        }
+                    }
+
+                    @Override
+                    public void disconnect() {
+                        release();
+                        if (retried != null) {
+                            retried.disconnect();
+                        }
+                    }
+
+                    private void release() {
+                        synchronized (CachedSessionFactory.this) {
+                            if (!released) {
+                                released = true;
+                                inUse--;
+                                lastReleased = System.currentTimeMillis();
+                                if (evicted && inUse == 0) {
+                                    session.disconnect();
+                                    sessions.remove(key, PooledSession.this);
+                                }
+                            }
+                        }
+                    }
+                };
+            }
+        }
+
+        @FunctionalInterface
+        private interface Reconnect {
+            RemoteSession open() throws TransportException;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package io.choerodon.devops.infra.util;
+
+import java.util.*;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.*;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO;
+
+/**
+ * 在JVM内合并chart版本的values和部署的values, 替代原来的values_yaml进程 (docker/values_yaml.py)
+ * 合并规则和values_yaml一致:
+ * 1. 部署values中的map: 版本values中没有这个key, 或者对应的值为空map/null/字符串/整数/布尔值时, 整个替换(新增), 否则递归合并
+ * 2. 部署values中的字符串/整数/布尔值: 版本values中没有这个key时新增, 值不同时替换(修改)
+ * 3. 部署values中的数组: 版本values中没有这个key时新增, 版本values中是空数组时为新增, 长度或者元素不同时为修改
+ * 4. 其它类型(浮点数, null等)的值被忽略
+ * <p>
+ * 合并后的yaml是在版本values原文的基础上修改得到的, 所以没有被修改的部分的注释和格式会保留
+ *
+ * @author agent
+ * @since 2026/10/18
+ */
+public class ValuesMergeUtil {
+    private static final String ERROR_VALUE_ILLEGAL = "error.value.illegal";
+    private static final String EMPTY_MAP = "{}";
+
+    private ValuesMergeUtil() {
+    }
+
+    /**
+     * 合并values
+     *
+     * @param versionValue 版本的values
+     * @param deployValue  部署的values
+     * @return 合并后的yaml, 差异的yaml, 以及新增和修改的行的标记
+     */
+    public static InstanceValueVO merge(String versionValue, String deployValue) {
+        Object baseData = load(versionValue);
+        Object deployData = load(deployValue);
+        if (deployData == null) {
+            deployData = new LinkedHashMap<>();
+        }
+        if (!(deployData instanceof Map) || (baseData != null && !(baseData instanceof Map))) {
+            throw new CommonException(ERROR_VALUE_ILLEGAL);
+        }
+
+        Node baseRoot = compose(versionValue);
+        MergeContext context = new MergeContext(versionValue);
+        Map<Object, Object> base = baseData == null ? new LinkedHashMap<>() : castMap(baseData);
+
+        String mergedYaml;
+        if (baseRoot instanceof MappingNode && !context.isFlow(baseRoot)) {
+            traverse((MappingNode) baseRoot, base, castMap(deployData), new ArrayList<>(), context);
+            mergedYaml = context.apply();
+        } else {
+            // 版本values为空或者是flow风格, 没有可以保留的格式, 直接输出合并后的数据
+            traverse(null, base, castMap(deployData), new ArrayList<>(), context);
+            mergedYaml = context.changeCount() == 0 ? versionValue : dump(base);
+        }
+
+        InstanceValueVO instanceValueVO = FileUtil.markChanges(mergedYaml, context.addKeys, context.updateKeys);
+        instanceValueVO.setDeltaYaml(context.delta.isEmpty() ? EMPTY_MAP + "\n" : dump(context.delta));
+        return instanceValueVO;
+    }
+
+    /**
+     * 将部署values中的值合并到版本values中
+     *
+     * @param node    版本values中对应的节点, 为null时只合并数据, 不修改原文
+     * @param base    版本values中对应的数据, 会被修改为合并后的数据
+     * @param deploy  部署values中对应的数据
+     * @param path    当前的key路径
+     * @param context 合并的上下文
+     */
+    private static void traverse(MappingNode node, Map<Object, Object> base, Map<Object, Object> deploy, List<Object> path, MergeContext context) {
+        // 需要追加到这个map末尾的key
+        List<Object> appendedKeys = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : deploy.entrySet()) {
+            Object key = entry.getKey();
+            Object deployValue = entry.getValue();
+            List<Object> keyPath = new ArrayList<>(path);
+            keyPath.add(key);
+            boolean exists = base.containsKey(key);
+            Object baseValue = base.get(key);
+            NodeTuple tuple = node == null ? null : findTuple(node, key);
+
+            if (deployValue instanceof Map) {
+                Map<Object, Object> deployMap = castMap(deployValue);
+                if (!exists) {
+                    replace(base, key, new LinkedHashMap<>(deployMap), keyPath, tuple, appendedKeys, context, context.addKeys);
+                } else if (baseValue instanceof Map) {
+                    Map<Object, Object> baseMap = castMap(baseValue);
+                    if (baseMap.isEmpty() && !deployMap.isEmpty()) {
+                        replace(base, key, new LinkedHashMap<>(deployMap), keyPath, tuple, appendedKeys, context, context.addKeys);
+                    } else if (tuple != null && tuple.getValueNode() instanceof MappingNode && !context.isFlow(tuple.getValueNode())) {
+                        traverse((MappingNode) tuple.getValueNode(), baseMap, deployMap, keyPath, context);
+                    } else {
+                        // flow风格的map无法逐行修改, 有变化时整个重新输出
+                        int before = context.changeCount();
+                        traverse(null, baseMap, deployMap, keyPath, context);
+                        if (node != null && context.changeCount() != before) {
+                            rewrite(key, baseMap, tuple, appendedKeys, context);
+                        }
+                    }
+                } else if (isReplaceableByMap(baseValue)) {
+                    replace(base, key, new LinkedHashMap<>(deployMap), keyPath, tuple, appendedKeys, context, context.addKeys);
+                }
+            } else if (isScalar(deployValue)) {
+                if (!exists) {
+                    replace(base, key, deployValue, keyPath, tuple, appendedKeys, context, context.addKeys);
+                } else if (!Objects.equals(baseValue, deployValue)) {
+                    replace(base, key, deployValue, keyPath, tuple, appendedKeys, context, context.updateKeys);
+                }
+            } else if (deployValue instanceof List) {
+                List<?> deployList = (List<?>) deployValue;
+                if (!exists) {
+                    replace(base, key, deployList, keyPath, tuple, appendedKeys, context, context.addKeys);
+                } else if (baseValue instanceof List) {
+                    List<?> baseList = (List<?>) baseValue;
+                    if (baseList.isEmpty() && !deployList.isEmpty()) {
+                        replace(base, key, deployList, keyPath, tuple, appendedKeys, context, context.addKeys);
+                    } else if (!baseList.equals(deployList)) {
+                        replace(base, key, deployList, keyPath, tuple, appendedKeys, context, context.updateKeys);
+                    }
+                }
+            }
+        }
+
+        if (node != null && !appendedKeys.isEmpty()) {
+            context.append(node, appendedKeys, base);
+        }
+    }
+
+    /**
+     * 替换或者新增一个值, 并记录到差异和变化的key中
+     */
+    private static void replace(Map<Object, Object> base, Object key, Object value, List<Object> keyPath,
+                                NodeTuple tuple, List<Object> appendedKeys, MergeContext context, List<List<String>> changedKeys) {
+        base.put(key, value);
+        setDelta(context.delta, keyPath, value instanceof Map ? new LinkedHashMap<>(castMap(value)) : value);
+        changedKeys.add(toStringPath(keyPath));
+        rewrite(key, value, tuple, appendedKeys, context);
+    }
+
+    /**
+     * 修改原文中key对应的值, 原文中没有这个key时追加到所在map的末尾
+     */
+    private static void rewrite(Object key, Object value, NodeTuple tuple, List<Object> appendedKeys, MergeContext context) {
+        if (tuple == null) {
+            if (!appendedKeys.contains(key)) {
+                appendedKeys.add(key);
+            }
+        } else {
+            context.replaceValue(tuple, value);
+        }
+    }
+
+    private static void setDelta(Map<Object, Object> delta, List<Object> keyPath, Object value) {
+        Map<Object, Object> current = delta;
+        for (int i = 0; i < keyPath.size() - 1; i++) {
+            Object child = current.get(keyPath.get(i));
+            if (!(child instanceof Map)) {
+                child = new LinkedHashMap<>();
+                current.put(keyPath.get(i), child);
+            }
+            current = castMap(child);
+        }
+        current.put(keyPath.get(keyPath.size() - 1), value);
+    }
+
+    private static NodeTuple findTuple(MappingNode node, Object key) {
+        String keyString = String.valueOf(key);
+        NodeTuple found = null;
+        for (NodeTuple tuple : node.getValue()) {
+            if (tuple.getKeyNode() instanceof ScalarNode && keyString.equals(((ScalarNode) tuple.getKeyNode()).getValue())) {
+                // 重复的key以最后一个为准
+                found = tuple;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 部署values中会被合并的单值类型, 和values_yaml保持一致, 不包括浮点数和null
+     */
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof java.math.BigInteger || value instanceof Boolean;
+    }
+
+    /**
+     * 版本values中可以被部署values中的map替换的值
+     */
+    private static boolean isReplaceableByMap(Object value) {
+        return value == null || isScalar(value);
+    }
+
+    private static List<String> toStringPath(List<Object> keyPath) {
+        List<String> path = new ArrayList<>(keyPath.size());
+        keyPath.forEach(k -> path.add(String.valueOf(k)));
+        return path;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> castMap(Object value) {
+        return (Map<Object, Object>) value;
+    }
+
+    private static Object load(String value) {
+        try {
+            return new Yaml(new SafeConstructor()).load(value);
+        } catch (Exception e) {
+            throw new CommonException(ERROR_VALUE_ILLEGAL, e);
+        }
+    }
+
+    private static Node compose(String value) {
+        return new Composer(new ParserImpl(new StreamReader(value)), new Resolver()).getSingleNode();
+    }
+
+    /**
+     * 以block风格输出yaml, 不折行
+     */
+    static String dump(Object value) {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setIndent(2);
+        options.setWidth(Integer.MAX_VALUE);
+        options.setAllowUnicode(true);
+        String result = new Yaml(options).dump(value);
+        // 单个值输出时可能带有文档结束标记
+        if (result.endsWith("\n...\n")) {
+            result = result.substring(0, result.length() - 4);
+        }
+        return result;
+    }
+
+    /**
+     * 记录对版本values原文的修改, 最后统一应用
+     */
+    private static class MergeContext {
+        private final String text;
+        private final boolean hasSurrogates;
+        private final List<TextEdit> edits = new ArrayList<>();
+        private final Map<Object, Object> delta = new LinkedHashMap<>();
+        private final List<List<String>> addKeys = new ArrayList<>();
+        private final List<List<String>> updateKeys = new ArrayList<>();
+
+        private MergeContext(String text) {
+            this.text = text;
+            this.hasSurrogates = text.length() != text.codePointCount(0, text.length());
+        }
+
+        private int changeCount() {
+            return addKeys.size() + updateKeys.size();
+        }
+
+        /**
+         * 替换key对应的值, 从key的结尾到值的结尾
+         */
+        private void replaceValue(NodeTuple tuple, Object value) {
+            Node keyNode = tuple.getKeyNode();
+            int start = charIndex(keyNode.getEndMark().getIndex());
+            int end = contentEnd(tuple.getValueNode());
+            edits.add(new TextEdit(start, end, renderValue(value, keyNode.getStartMark().getColumn() + 2), edits.size()));
+        }
+
+        /**
+         * 在map的最后一个值之后追加key
+         */
+        private void append(MappingNode node, List<Object> keys, Map<Object, Object> values) {
+            int column = node.getStartMark().getColumn();
+            String indent = spaces(column);
+            StringBuilder builder = new StringBuilder();
+            for (Object key : keys) {
+                builder.append("\n").append(indent)
+                        .append(dump(key).trim())
+                        .append(renderValue(values.get(key), column + 2));
+            }
+            int position = contentEnd(node);
+            edits.add(new TextEdit(position, position, builder.toString(), edits.size()));
+        }
+
+        private String apply() {
+            if (edits.isEmpty()) {
+                return text;
+            }
+            // 从后往前应用, 同一位置后记录的修改先应用, 从而排在先记录的修改之后
+            edits.sort(Comparator.comparingInt((TextEdit e) -> e.start).thenComparingInt(e -> e.sequence).reversed());
+            StringBuilder builder = new StringBuilder(text);
+            for (TextEdit edit : edits) {
+                builder.replace(edit.start, edit.end, edit.replacement);
+            }
+            return builder.toString();
+        }
+
+        private boolean isFlow(Node node) {
+            int index = charIndex(node.getStartMark().getIndex());
+            if (index >= text.length()) {
+                return false;
+            }
+            char c = text.charAt(index);
+            return c == '{' || c == '[';
+        }
+
+        /**
+         * 节点内容在原文中结束的位置, 不包括之后的空白以及注释
+         */
+        private int contentEnd(Node node) {
+            if (node instanceof MappingNode && !isFlow(node)) {
+                List<NodeTuple> tuples = ((MappingNode) node).getValue();
+                if (!tuples.isEmpty()) {
+                    return contentEnd(tuples.get(tuples.size() - 1).getValueNode());
+                }
+            } else if (node instanceof SequenceNode && !isFlow(node)) {
+                List<Node> items = ((SequenceNode) node).getValue();
+                if (!items.isEmpty()) {
+                    return contentEnd(items.get(items.size() - 1));
+                }
+            }
+            int start = charIndex(node.getStartMark().getIndex());
+            int end = charIndex(node.getEndMark().getIndex());
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            return end;
+        }
+
+        /**
+         * Mark中的index是以code point计算的
+         */
+        private int charIndex(int codePointIndex) {
+            if (!hasSurrogates) {
+                return Math.min(codePointIndex, text.length());
+            }
+            return text.offsetByCodePoints(0, Math.min(codePointIndex, text.codePointCount(0, text.length())));
+        }
+
+        /**
+         * 输出key之后的部分, 包括冒号
+         */
+        private static String renderValue(Object value, int indent) {
+            String rendered = dump(value);
+            if (rendered.endsWith("\n")) {
+                rendered = rendered.substring(0, rendered.length() - 1);
+            }
+            String indentString = spaces(indent);
+            boolean block = (value instanceof Map && !((Map<?, ?>) value).isEmpty())
+                    || (value instanceof List && !((List<?>) value).isEmpty());
+            if (block) {
+                return ":\n" + indentString + rendered.replace("\n", "\n" + indentString);
+            }
+            return ": " + rendered.replace("\n", "\n" + indentString);
+        }
+
+        private static String spaces(int count) {
+            char[] chars = new char[count];
+            Arrays.fill(chars, ' ');
+            return new String(chars);
+        }
+    }
+
+    private static class TextEdit {
+        private final int start;
+        private final int end;
+        private final String replacement;
+        private final int sequence;
+
+        private TextEdit(int start, int end, String replacement, int sequence) {
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -50,4 +50,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_ci_job_record.groovy') {
             column(name: "metadata", type: "TEXT", afterColumn: 'duration_seconds')
         }
     }
-}
\ No newline at end of file
+    changeSet(author: 'agent', id: '2026-10-18-add-index') {
+        createIndex(tableName: 'devops_ci_job_record', indexName: 'ci_job_record_cprid_name_idx') {
+            column(name: 'ci_pipeline_record_id')
+            column(name: 'name')
+        }
+    }
+}
@@ -24,5 +24,9 @@ databaseChangeLog(logicalFilePath: 'dba/devops_pipeline_record_rel.groovy') {
         addUniqueConstraint(tableName: 'devops_pipeline_record_rel',
                 constraintName: 'uk_complex_id', columnNames: 'pipeline_id,ci_pipeline_record_id,cd_pipeline_record_id')
     }
-
+    changeSet(author: 'agent', id: '2026-10-18-add-index') {
+        createIndex(tableName: 'devops_pipeline_record_rel', indexName: 'pipeline_record_rel_pid_idx') {
+            column(name: 'pipeline_id')
+        }
+    }
 }
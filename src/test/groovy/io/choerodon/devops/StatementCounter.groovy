@@ -0,0 +1,55 @@
+package io.choerodon.devops
+
+import java.sql.Connection
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.apache.ibatis.executor.statement.StatementHandler
+import org.apache.ibatis.plugin.*
+import org.apache.ibatis.session.SqlSessionFactory
+
+/**
+ * 统计执行的sql语句数量, 用于校验查询次数不随数据量增长
+ */
+@Intercepts(@Signature(type = StatementHandler, method = "prepare", args = [Connection, Integer]))
+class StatementCounter implements Interceptor {
+    private static final StatementCounter INSTANCE = new StatementCounter()
+
+    final AtomicInteger count = new AtomicInteger()
+
+    /**
+     * 注册到mybatis, 重复调用只注册一次
+     */
+    static void install(SqlSessionFactory sqlSessionFactory) {
+        synchronized (INSTANCE) {
+            if (!sqlSessionFactory.configuration.interceptors.contains(INSTANCE)) {
+                sqlSessionFactory.configuration.addInterceptor(INSTANCE)
+            }
+        }
+    }
+
+    /**
+     * 执行closure并统计其间执行的sql语句数量
+     *
+     * @return [result: closure的返回值, count: sql语句数量]
+     */
+    static Map count(Closure closure) {
+        INSTANCE.count.set(0)
+        def result = closure.call()
+        return [result: result, count: INSTANCE.count.get()]
+    }
+
+    @Override
+    Object intercept(Invocation invocation) throws Throwable {
+        count.incrementAndGet()
+        return invocation.proceed()
+    }
+
+    @Override
+    Object plugin(Object target) {
+        return Plugin.wrap(target, this)
+    }
+
+    @Override
+    void setProperties(Properties properties) {
+    }
+}
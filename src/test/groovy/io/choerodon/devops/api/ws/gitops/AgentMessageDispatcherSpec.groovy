@@ -0,0 +1,76 @@
+package io.choerodon.devops.api.ws.gitops
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.infra.enums.HelmType
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 队列满时只丢弃agent会定时重发的消息, 其它消息等待入队
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class AgentMessageDispatcherSpec extends Specification {
+
+    AgentMessageDispatcher dispatcher
+    CountDownLatch release = new CountDownLatch(1)
+    List<String> handled = Collections.synchronizedList([])
+
+    def setup() {
+        dispatcher = new AgentMessageDispatcher()
+        ReflectionTestUtils.setField(dispatcher, "workerCount", 1)
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1)
+        ReflectionTestUtils.setField(dispatcher, "offerTimeoutMillis", 50L)
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", new SimpleMeterRegistry())
+        dispatcher.init()
+        // 工作线程被第一个消息阻塞, 第二个消息占满队列
+        dispatcher.dispatch(1L, HelmType.HELM_RELEASE_START, { release.await(5, TimeUnit.SECONDS) })
+        dispatcher.dispatch(1L, HelmType.HELM_RELEASE_STOP, { handled << "stop" })
+    }
+
+    def cleanup() {
+        release.countDown()
+        dispatcher.destroy()
+    }
+
+    def "a periodically resent message is dropped when the queue stays full"() {
+        when:
+        def accepted = dispatcher.dispatch(1L, HelmType.NODE_SYNC, { handled << "node" })
+
+        then:
+        !accepted
+    }
+
+    def "a message that the agent does not resend waits until the queue has space"() {
+        given:
+        def accepted = null
+        def sender = Thread.start {
+            accepted = dispatcher.dispatch(1L, HelmType.GIT_OPS_SYNC_EVENT, { handled << "sync" })
+        }
+
+        when: "超过可以丢弃的消息的等待时间后, 消息仍然在等待"
+        sender.join(200)
+
+        then:
+        sender.isAlive()
+
+        when: "工作线程继续处理后消息入队"
+        release.countDown()
+        sender.join(5000)
+        def done = new CountDownLatch(1)
+        dispatcher.dispatch(1L, HelmType.HELM_RELEASE_START, { done.countDown() })
+        done.await(5, TimeUnit.SECONDS)
+
+        then: "消息按照顺序处理"
+        accepted
+        handled == ["stop", "sync"]
+    }
+}
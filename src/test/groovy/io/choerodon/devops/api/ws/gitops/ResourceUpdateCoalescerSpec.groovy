@@ -0,0 +1,45 @@
+package io.choerodon.devops.api.ws.gitops
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class ResourceUpdateCoalescerSpec extends Specification {
+    private static final String KEY = "env:test-ns.Pod:nginx-0"
+
+    def coalescer = new ResourceUpdateCoalescer(new SimpleMeterRegistry())
+    def applied = []
+
+    def "updates waiting in the queue are merged into one task with the newest version"() {
+        when:
+        def task = coalescer.offer(1L, KEY, '{"resourceVersion":"2"}', { applied << it })
+        def merged = coalescer.offer(1L, KEY, '{"resourceVersion":"3"}', { applied << it })
+        def outdated = coalescer.offer(1L, KEY, '{"resourceVersion":"1"}', { applied << it })
+        task.run()
+
+        then:
+        merged == null
+        outdated == null
+        applied == ['{"resourceVersion":"3"}']
+    }
+
+    def "a discarded task does not swallow later updates"() {
+        given: "任务因为队列满没能入队"
+        def rejected = coalescer.offer(1L, KEY, '{"resourceVersion":"2"}', { applied << it })
+        rejected.discard()
+
+        when:
+        def next = coalescer.offer(1L, KEY, '{"resourceVersion":"3"}', { applied << it })
+        next.run()
+
+        then:
+        next != null
+        applied == ['{"resourceVersion":"3"}']
+    }
+}
@@ -0,0 +1,191 @@
+package io.choerodon.devops.app.service
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.vo.DevopsEnvPodInfoVO
+import io.choerodon.devops.api.vo.PodMetricsRedisInfoVO
+import io.choerodon.devops.app.service.impl.AgentPodInfoServiceImpl
+import io.choerodon.devops.app.service.impl.DevopsEnvPodServiceImpl
+import io.choerodon.devops.infra.dto.DevopsClusterDTO
+import io.choerodon.devops.infra.dto.DevopsEnvResourceDTO
+import io.choerodon.devops.infra.dto.DevopsEnvResourceDetailDTO
+import io.choerodon.devops.infra.dto.DevopsEnvironmentDTO
+import io.choerodon.devops.infra.mapper.DevopsEnvPodMapper
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.data.redis.connection.StringRedisConnection
+import org.springframework.data.redis.core.ListOperations
+import org.springframework.data.redis.core.StringRedisTemplate
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * pod的cpu和内存用量以数值存储: 兼容升级前的json数据, 按数值排序
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class AgentPodMetricsSpec extends Specification {
+    private static final String KEY = "pod--web-1--ns--c"
+    private static final String HISTORY_KEY = "pod-history--web-1--ns--c"
+
+    StringRedisTemplate stringRedisTemplate = Mock()
+    ListOperations<String, String> listOperations = Mock()
+    StringRedisConnection connection = Mock()
+    /**
+     * pipeline中写入的 key -> 值
+     */
+    List<List<String>> pushes = []
+    /**
+     * pipeline中读取的key
+     */
+    List<String> reads = []
+
+    AgentPodInfoServiceImpl agentPodService
+
+    def setup() {
+        agentPodService = new AgentPodInfoServiceImpl()
+        ReflectionTestUtils.setField(agentPodService, "stringRedisTemplate", stringRedisTemplate)
+        ReflectionTestUtils.setField(agentPodService, "retainSeconds", 3600L)
+        ReflectionTestUtils.setField(agentPodService, "historyIntervalMillis", 300000L)
+        ReflectionTestUtils.setField(agentPodService, "historySize", 288L)
+        stringRedisTemplate.opsForList() >> listOperations
+        connection.rPush(*_) >> { args -> pushes << [args[0] as String, (args[1] as String[])[0]]; null }
+        connection.lIndex(*_) >> { args -> reads << (args[0] as String); null }
+    }
+
+    def "cpu and memory strings are stored as millicores and bytes"() {
+        given:
+        stringRedisTemplate.executePipelined(_) >> { args -> args[0].doInRedis(connection); [] }
+
+        when:
+        agentPodService.handleRealTimePodData([pod("web-1", "250m", "512Mi"), pod("web-2", "1", "1Gi")])
+
+        then: "一次pipeline写入所有pod"
+        pushes.size() == 2
+        pushes[0][0] == KEY
+        pushes[0][1] ==~ /\d+,250,536870912/
+        pushes[1][0] == "pod--web-2--ns--c"
+        pushes[1][1] ==~ /\d+,1000,1073741824/
+    }
+
+    def "legacy json entries and numeric samples are both readable"() {
+        given: "升级前写入的json数据后面是新的数值数据"
+        listOperations.range(KEY, 0, -1) >> [
+                '{"name":"web-1","namespace":"ns","clusterCode":"c","cpu":"120m","memory":"64Mi","snapShotTime":1690000000000}',
+                "1700000000000,250,536870912"]
+
+        when:
+        List<PodMetricsRedisInfoVO> snapshots = agentPodService.queryAllPodSnapshots("web-1", "ns", "c")
+
+        then:
+        snapshots*.cpuMillicores == [120L, 250L]
+        snapshots*.memoryBytes == [64L << 20, 512L << 20]
+        snapshots*.cpu == ["120m", "250m"]
+        snapshots*.memory == ["64Mi", "512Mi"]
+        snapshots*.snapShotTime == [new Date(1690000000000L), new Date(1700000000000L)]
+        snapshots.every { it.name == "web-1" && it.namespace == "ns" && it.clusterCode == "c" }
+    }
+
+    def "samples of an interval are averaged into the history"() {
+        given:
+        ReflectionTestUtils.setField(agentPodService, "historyEnabled", true)
+        ReflectionTestUtils.setField(agentPodService, "historyIntervalMillis", 1000L)
+        stringRedisTemplate.executePipelined(_) >> { args -> args[0].doInRedis(connection); [] }
+        // 在一个时间间隔的开始上报, 保证前两次采样在同一个时间间隔内
+        sleep(1000 - System.currentTimeMillis() % 1000)
+
+        when: "一个时间间隔内上报两次"
+        agentPodService.handleRealTimePodData([pod("web-1", "100m", "100Mi")])
+        agentPodService.handleRealTimePodData([pod("web-1", "300m", "300Mi")])
+
+        then: "时间间隔结束前不写入历史数据"
+        pushes*.get(0) == [KEY, KEY]
+
+        when: "下一个时间间隔的第一次上报"
+        sleep(1000)
+        agentPodService.handleRealTimePodData([pod("web-1", "500m", "500Mi")])
+
+        then: "写入上一个时间间隔的平均值"
+        def history = pushes.findAll { it[0] == HISTORY_KEY }
+        history.size() == 1
+        history[0][1] ==~ /\d+000,200,${200L << 20}/
+    }
+
+    def "pods of an environment are read in one pipeline and sorted by their numeric usage"() {
+        given: "字符串比较时 '90m' > '250m' > '1100m', '64Mi' > '512Mi' > '2048Mi'"
+        def devopsEnvPodService = envPodService(["web-1", "web-2", "web-3", "web-4"])
+        stringRedisTemplate.executePipelined(_) >> { args ->
+            args[0].doInRedis(connection)
+            ['{"name":"web-1","namespace":"ns","clusterCode":"c","cpu":"90m","memory":"2048Mi"}',
+             "1700000000000,1100,${64L << 20}".toString(),
+             null,
+             "1700000000000,250,${512L << 20}".toString()]
+        }
+
+        when:
+        List<DevopsEnvPodInfoVO> byCpu = devopsEnvPodService.queryEnvPodInfo(1L, "cpu")
+        List<DevopsEnvPodInfoVO> byMemory = devopsEnvPodService.queryEnvPodInfo(1L, "memory")
+
+        then: "每次查询一次pipeline读取命名空间下所有pod, 没有数据的pod在最后"
+        reads == ["pod--web-1--ns--c", "pod--web-2--ns--c", "pod--web-3--ns--c", "pod--web-4--ns--c"] * 2
+        byCpu*.name == ["web-2", "web-4", "web-1", "web-3"]
+        byCpu*.cpuUsed == ["1100m", "250m", "90m", null]
+        byMemory*.name == ["web-1", "web-4", "web-2", "web-3"]
+        byMemory*.memoryUsed == ["2048Mi", "512Mi", "64Mi", null]
+    }
+
+    private DevopsEnvPodServiceImpl envPodService(List<String> podNames) {
+        DevopsEnvironmentService devopsEnvironmentService = Mock()
+        DevopsClusterService devopsClusterService = Mock()
+        DevopsEnvPodMapper devopsEnvPodMapper = Mock()
+        DevopsEnvResourceService devopsEnvResourceService = Mock()
+        DevopsEnvResourceDetailService devopsEnvResourceDetailService = Mock()
+
+        def env = new DevopsEnvironmentDTO()
+        env.setCode("ns")
+        env.setClusterId(2L)
+        devopsEnvironmentService.baseQueryById(1L) >> env
+        def cluster = new DevopsClusterDTO()
+        cluster.setCode("c")
+        devopsClusterService.baseQuery(2L) >> cluster
+        devopsEnvPodMapper.queryEnvPodIns(1L) >> {
+            podNames.collect {
+                def pod = new DevopsEnvPodInfoVO()
+                pod.setName(it)
+                pod
+            }
+        }
+        devopsEnvResourceService.listEnvResourceByOptions(1L, _, podNames) >> podNames.withIndex().collect { name, i ->
+            def resource = new DevopsEnvResourceDTO()
+            resource.setName(name)
+            resource.setResourceDetailId(i + 1L)
+            resource
+        }
+        devopsEnvResourceDetailService.listByMessageIds(_) >> (1..podNames.size()).collect {
+            def detail = new DevopsEnvResourceDetailDTO()
+            detail.setId(it as Long)
+            detail.setMessage('{"status":{"phase":"Running","podIP":"10.0.0.' + it + '"}}')
+            detail
+        }
+
+        def service = new DevopsEnvPodServiceImpl()
+        ReflectionTestUtils.setField(service, "devopsEnvironmentService", devopsEnvironmentService)
+        ReflectionTestUtils.setField(service, "devopsClusterService", devopsClusterService)
+        ReflectionTestUtils.setField(service, "devopsEnvPodMapper", devopsEnvPodMapper)
+        ReflectionTestUtils.setField(service, "devopsEnvResourceService", devopsEnvResourceService)
+        ReflectionTestUtils.setField(service, "devopsEnvResourceDetailService", devopsEnvResourceDetailService)
+        ReflectionTestUtils.setField(service, "agentPodService", agentPodService)
+        service
+    }
+
+    private static PodMetricsRedisInfoVO pod(String name, String cpu, String memory) {
+        def pod = new PodMetricsRedisInfoVO()
+        pod.setName(name)
+        pod.setNamespace("ns")
+        pod.setClusterCode("c")
+        pod.setCpu(cpu)
+        pod.setMemory(memory)
+        pod
+    }
+}
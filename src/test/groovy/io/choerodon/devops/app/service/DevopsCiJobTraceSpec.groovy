@@ -0,0 +1,94 @@
+package io.choerodon.devops.app.service
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.app.service.impl.DevopsCiJobServiceImpl
+import io.choerodon.devops.infra.dto.AppServiceDTO
+import io.choerodon.devops.infra.dto.DevopsCiJobRecordDTO
+import io.choerodon.devops.infra.dto.UserAttrDTO
+import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator
+import io.choerodon.devops.infra.handler.CiJobTraceCache
+import io.choerodon.devops.infra.mapper.AppServiceMapper
+import io.choerodon.devops.infra.util.CustomContextUtil
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 查询CI job日志: 缓存的日志只返回给job所属的GitLab项目
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class DevopsCiJobTraceSpec extends Specification {
+    private static final Long JOB_ID = 9001L
+
+    GitlabServiceClientOperator gitlabServiceClientOperator = Mock()
+    UserAttrService userAttrService = Mock()
+    DevopsCiJobRecordService devopsCiJobRecordService = Mock()
+    AppServiceMapper appServiceMapper = Mock()
+
+    DevopsCiJobServiceImpl devopsCiJobService
+
+    def setup() {
+        devopsCiJobService = new DevopsCiJobServiceImpl(null, gitlabServiceClientOperator, userAttrService, null, null, null,
+                null, devopsCiJobRecordService, null, appServiceMapper, null, null, null,
+                new CiJobTraceCache(new SimpleMeterRegistry(), 10, 1024))
+        CustomContextUtil.setUserContext(1L)
+        def userAttrDTO = new UserAttrDTO()
+        userAttrDTO.setIamUserId(1L)
+        userAttrDTO.setGitlabUserId(11L)
+        userAttrService.baseQueryById(1L) >> userAttrDTO
+        // 项目1的应用服务对应GitLab项目101, 项目2的应用服务对应GitLab项目202
+        appServiceMapper.selectOne(_) >> { args -> appService(args[0].gitlabProjectId == 101 ? 1L : 2L) }
+        // job 9001属于GitLab项目101, 已经结束
+        devopsCiJobRecordService.queryByGitlabJobId(JOB_ID) >> jobRecord(101L, "success")
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "a finished trace is cached for its own GitLab project"() {
+        when:
+        def first = devopsCiJobService.queryTrace(1L, 101L, JOB_ID, 0L)
+        def second = devopsCiJobService.queryTrace(1L, 101L, JOB_ID, 0L)
+
+        then: "只查询一次GitLab"
+        1 * gitlabServiceClientOperator.queryTrace(101, 9001, 11) >> "build log of project 101"
+        first.content == "build log of project 101"
+        first.complete
+        second.content == first.content
+    }
+
+    def "a cached trace is not returned to another project that asks for the same job id"() {
+        given: "项目1已经查看过job 9001的日志"
+        gitlabServiceClientOperator.queryTrace(101, 9001, 11) >> "build log of project 101"
+        devopsCiJobService.queryTrace(1L, 101L, JOB_ID, 0L)
+
+        when: "项目2用自己的GitLab项目查询同一个job id"
+        def trace = devopsCiJobService.queryTrace(2L, 202L, JOB_ID, 0L)
+        devopsCiJobService.queryTrace(2L, 202L, JOB_ID, 0L)
+
+        then: "每次都交给GitLab按GitLab项目查询, 结果不缓存"
+        2 * gitlabServiceClientOperator.queryTrace(202, 9001, 11) >> null
+        trace.content == ""
+        !trace.complete
+    }
+
+    private static AppServiceDTO appService(Long projectId) {
+        def appServiceDTO = new AppServiceDTO()
+        appServiceDTO.setProjectId(projectId)
+        return appServiceDTO
+    }
+
+    private static DevopsCiJobRecordDTO jobRecord(Long gitlabProjectId, String status) {
+        def devopsCiJobRecordDTO = new DevopsCiJobRecordDTO()
+        devopsCiJobRecordDTO.setGitlabJobId(JOB_ID)
+        devopsCiJobRecordDTO.setGitlabProjectId(gitlabProjectId)
+        devopsCiJobRecordDTO.setStatus(status)
+        return devopsCiJobRecordDTO
+    }
+}
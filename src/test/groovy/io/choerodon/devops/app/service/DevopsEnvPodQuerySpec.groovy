@@ -0,0 +1,97 @@
+package io.choerodon.devops.app.service
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.StatementCounter
+import io.choerodon.devops.api.vo.DevopsEnvPodVO
+import io.choerodon.devops.infra.dto.AppServiceInstanceDTO
+import io.choerodon.devops.infra.dto.DevopsEnvPodDTO
+import io.choerodon.devops.infra.dto.DevopsEnvironmentDTO
+import io.choerodon.devops.infra.handler.ClusterConnectionHandler
+import io.choerodon.devops.infra.mapper.AppServiceInstanceMapper
+import io.choerodon.devops.infra.mapper.DevopsEnvPodMapper
+import io.choerodon.devops.infra.mapper.DevopsEnvironmentMapper
+import io.choerodon.mybatis.pagehelper.domain.PageRequest
+import org.apache.ibatis.session.SqlSessionFactory
+import org.spockframework.mock.MockUtil
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * pod分页查询: 使用入库时保存的容器摘要, 查询次数不随pod的数量增长
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class DevopsEnvPodQuerySpec extends Specification {
+
+    @Autowired
+    SqlSessionFactory sqlSessionFactory
+    @Autowired
+    DevopsEnvPodService devopsEnvPodService
+    @Autowired
+    DevopsEnvironmentMapper devopsEnvironmentMapper
+    @Autowired
+    AppServiceInstanceMapper appServiceInstanceMapper
+    @Autowired
+    DevopsEnvPodMapper devopsEnvPodMapper
+    @Autowired
+    ClusterConnectionHandler clusterConnectionHandler
+
+    def mockUtil = new MockUtil()
+
+    def setup() {
+        StatementCounter.install(sqlSessionFactory)
+        mockUtil.attachMock(clusterConnectionHandler, this)
+    }
+
+    def cleanup() {
+        mockUtil.detachMock(clusterConnectionHandler)
+    }
+
+    def "a page of pods is loaded with the same number of queries for one pod and for many"() {
+        given: "项目96001的环境中有1个pod, 项目96002的环境中有5个pod"
+        insertPods(96001L, 1)
+        insertPods(96002L, 5)
+        clusterConnectionHandler.getUpdatedClusterList() >> [96L]
+
+        when:
+        def single = StatementCounter.count { devopsEnvPodService.pageByOptions(96001L, null, null, null, new PageRequest(0, 10), null) }
+        def many = StatementCounter.count { devopsEnvPodService.pageByOptions(96002L, null, null, null, new PageRequest(0, 10), null) }
+        List<DevopsEnvPodVO> pods = many.result.content
+
+        then: "分页的计数和查询各一次"
+        single.count == 2
+        many.count == single.count
+        pods.size() == 5
+        pods.every { it.connect && it.containers*.name == ["app", "sidecar"] && it.containers*.ready == [false, true] }
+    }
+
+    private void insertPods(Long projectId, int count) {
+        def env = new DevopsEnvironmentDTO()
+        env.setProjectId(projectId)
+        env.setCode("env-" + projectId)
+        env.setName("env-" + projectId)
+        env.setClusterId(96L)
+        env.setType("user")
+        devopsEnvironmentMapper.insertSelective(env)
+
+        def instance = new AppServiceInstanceDTO()
+        instance.setCode("ins-" + projectId)
+        instance.setEnvId(env.getId())
+        appServiceInstanceMapper.insertSelective(instance)
+
+        (1..count).each {
+            def pod = new DevopsEnvPodDTO()
+            pod.setInstanceId(instance.getId())
+            pod.setName("ins-" + projectId + "-" + it)
+            pod.setNamespace(env.getCode())
+            pod.setStatus("Running")
+            pod.setReady(true)
+            pod.setContainerSummary("app:0,sidecar:1")
+            devopsEnvPodMapper.insertSelective(pod)
+        }
+    }
+}
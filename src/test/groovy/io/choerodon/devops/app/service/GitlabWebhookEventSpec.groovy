@@ -0,0 +1,276 @@
+package io.choerodon.devops.app.service
+
+import java.nio.file.Files
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.app.service.impl.GitlabWebHookServiceImpl
+import io.choerodon.devops.infra.dto.AppServiceDTO
+import io.choerodon.devops.infra.dto.DevopsGitlabWebhookEventDTO
+import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator
+import io.choerodon.devops.infra.handler.GitlabJobEventCoalescer
+import io.choerodon.devops.infra.handler.GitlabTagIndex
+import io.choerodon.devops.infra.handler.GitlabWebhookEventDispatcher
+import io.choerodon.devops.infra.mapper.DevopsGitlabWebhookEventMapper
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * GitLab webhook事件的入库, 认领和按项目顺序处理
+ * 工作线程的队列用列表代替, 由测试决定队列是否已满以及何时执行
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class GitlabWebhookEventSpec extends Specification {
+    private static final String INSTANCE = "instance-a"
+
+    @Autowired
+    DevopsGitlabWebhookEventMapper devopsGitlabWebhookEventMapper
+
+    DevopsGitService devopsGitService = Mock()
+    AppServiceService appServiceService = Mock()
+    GitlabWebhookEventDispatcher gitlabWebhookEventDispatcher = Mock()
+    DevopsGitlabPipelineService devopsGitlabPipelineService = Mock()
+    DevopsCiJobRecordService devopsCiJobRecordService = Mock()
+    GitlabJobEventCoalescer gitlabJobEventCoalescer = Mock()
+
+    GitlabWebHookServiceImpl service
+    List<Runnable> lane = []
+    boolean laneFull
+    List<String> handled = []
+
+    def setup() {
+        service = newService()
+        appServiceService.baseQueryByToken(_ as String) >> { String token -> token.startsWith("token-") ? appService(token.substring(6) as Integer) : null }
+        gitlabWebhookEventDispatcher.dispatch(*_) >> { args ->
+            if (laneFull) {
+                return false
+            }
+            lane << (args[3] as Runnable)
+            return true
+        }
+        devopsGitService.branchSync(*_) >> { args -> handled << args[0].after }
+    }
+
+    def "an event with an invalid token is neither stored nor handled"() {
+        when: "没有token, token不存在, 或者token属于其它项目"
+        service.forwardingEventToPortal(push(98001, "a1"), null)
+        service.forwardingEventToPortal(push(98001, "a2"), "unknown")
+        service.forwardingEventToPortal(push(98001, "a3"), "token-98002")
+
+        then:
+        storedEvents(98001L).isEmpty()
+        lane.isEmpty()
+    }
+
+    def "events of a project keep their order when the queue is full"() {
+        given: "队列中已经有项目98011的一个事件"
+        service.forwardingEventToPortal(push(98011, "c1"), "token-98011")
+
+        when: "队列满时接收c2, 队列有空间后接收c3和其它项目的d1"
+        laneFull = true
+        service.forwardingEventToPortal(push(98011, "c2"), "token-98011")
+        laneFull = false
+        service.forwardingEventToPortal(push(98011, "c3"), "token-98011")
+        service.forwardingEventToPortal(push(98012, "d1"), "token-98012")
+
+        then: "c3排在留在数据库中的c2后面, 没有直接放入队列"
+        lane.size() == 2
+        storedEvents(98011L).size() == 3
+
+        when: "将留在数据库中的事件放入队列后处理"
+        service.drainSpilledEvents()
+        runLane()
+
+        then:
+        handled == ["c1", "d1", "c2", "c3"]
+        storedEvents(98011L).isEmpty()
+        storedEvents(98012L).isEmpty()
+
+        when: "数据库中的事件处理完成后, 新的事件直接放入队列"
+        service.forwardingEventToPortal(push(98011, "c4"), "token-98011")
+        runLane()
+
+        then:
+        handled.last() == "c4"
+    }
+
+    def "timed out events of another instance are claimed and processed"() {
+        given: "另一个实例接收的事件"
+        def event = storeEvent(98021, "e1", "instance-b")
+
+        when: "事件没有超时"
+        service.recoverWebhookEvents()
+
+        then:
+        lane.isEmpty()
+        devopsGitlabWebhookEventMapper.selectByPrimaryKey(event.getId()).getOwner() == "instance-b"
+
+        when: "事件已经超时"
+        ReflectionTestUtils.setField(service, "recoverAfterMillis", -60000L)
+        service.recoverWebhookEvents()
+
+        then: "只有期望的实例仍然是事件的所有者时才能认领"
+        devopsGitlabWebhookEventMapper.claim(event.getId(), "instance-b", "instance-c") == 0
+        devopsGitlabWebhookEventMapper.selectByPrimaryKey(event.getId()).getOwner() == INSTANCE
+        lane.size() == 1
+
+        when:
+        runLane()
+
+        then:
+        handled == ["e1"]
+        storedEvents(98021L).isEmpty()
+    }
+
+    def "events left by the previous run of this instance are recovered in batches and in order"() {
+        given: "当前实例上一次运行时遗留的三个事件, 每次最多读取两个"
+        ReflectionTestUtils.setField(service, "ownEventsRecovered", false)
+        ReflectionTestUtils.setField(service, "recoverBatchSize", 2)
+        ["f1", "f2", "f3"].each { storeEvent(98031, it, INSTANCE) }
+
+        when:
+        service.recoverWebhookEvents()
+
+        then: "第一批放入队列, 遗留的事件还没有全部认领"
+        lane.size() == 2
+        !ReflectionTestUtils.getField(service, "ownEventsRecovered")
+
+        when: "项目在处理遗留事件期间接收的新事件排在它们后面"
+        service.forwardingEventToPortal(push(98031, "f4"), "token-98031")
+        runLane()
+        service.recoverWebhookEvents()
+        runLane()
+        service.recoverWebhookEvents()
+
+        then:
+        handled == ["f1", "f2", "f3", "f4"]
+        ReflectionTestUtils.getField(service, "ownEventsRecovered")
+        storedEvents(98031L).isEmpty()
+    }
+
+    def "coalesced job events rejected by the full queue are put back and applied"() {
+        given: "合并器使用同一个分发器"
+        gitlabJobEventCoalescer = new GitlabJobEventCoalescer(new SimpleMeterRegistry(), gitlabWebhookEventDispatcher, 200)
+        service = newService()
+        def conditions = new PollingConditions(timeout: 5)
+        List<String> applied = []
+        devopsCiJobRecordService.update(_) >> { args -> applied.addAll(args[0]*.buildStatus) }
+
+        when: "job事件交给合并器后, 合并的事件放入队列时队列已满"
+        service.forwardingEventToPortal(build(98041, 501, "running"), "token-98041")
+        service.forwardingEventToPortal(build(98041, 501, "success"), "token-98041")
+        runLane()
+        laneFull = true
+
+        then: "事件留在数据库中, 项目的事件等待从数据库放回队列"
+        conditions.eventually {
+            assert (ReflectionTestUtils.getField(service, "spilledProjects") as Set).contains(98041L)
+        }
+        applied.isEmpty()
+        storedEvents(98041L).size() == 2
+        (ReflectionTestUtils.getField(service, "queuedEventIds") as Set).isEmpty()
+
+        when: "队列有空间后从数据库放回队列, 再次合并后处理"
+        laneFull = false
+        service.drainSpilledEvents()
+        runLane()
+        conditions.eventually {
+            assert !lane.isEmpty()
+        }
+        runLane()
+
+        then:
+        applied == ["success"]
+        1 * devopsGitlabPipelineService.updateStages({ it*.buildStatus == ["success"] })
+        storedEvents(98041L).isEmpty()
+
+        cleanup:
+        gitlabJobEventCoalescer.destroy()
+    }
+
+    def "the instance id is kept across restarts and a configured id takes precedence"() {
+        given:
+        def dir = Files.createTempDirectory("webhook-instance")
+        def file = dir.resolve("webhook/instance-id").toString()
+
+        when:
+        def first = initializedInstanceId(null, file)
+        def second = initializedInstanceId(null, file)
+        def configured = initializedInstanceId("devops-service-0", file)
+
+        then:
+        first == second
+        new File(file).text == first
+        configured == "devops-service-0"
+
+        cleanup:
+        dir.toFile().deleteDir()
+    }
+
+    private GitlabWebHookServiceImpl newService() {
+        def newService = new GitlabWebHookServiceImpl(Mock(DevopsMergeRequestService), devopsGitService,
+                Mock(DevopsGitlabCommitService), devopsGitlabPipelineService, Mock(DevopsCiPipelineRecordService),
+                devopsCiJobRecordService, Mock(BaseServiceClientOperator), Mock(DevopsCdPipelineService),
+                appServiceService, devopsGitlabWebhookEventMapper, gitlabWebhookEventDispatcher,
+                gitlabJobEventCoalescer, Mock(GitlabTagIndex))
+        ReflectionTestUtils.setField(newService, "instanceId", INSTANCE)
+        ReflectionTestUtils.setField(newService, "ownEventsRecovered", true)
+        ReflectionTestUtils.setField(newService, "asyncEnabled", true)
+        ReflectionTestUtils.setField(newService, "recoverAfterMillis", 1800000L)
+        ReflectionTestUtils.setField(newService, "recoverBatchSize", 500)
+        return newService
+    }
+
+    private String initializedInstanceId(String configuredInstanceId, String instanceIdFile) {
+        def newService = newService()
+        ReflectionTestUtils.setField(newService, "configuredInstanceId", configuredInstanceId)
+        ReflectionTestUtils.setField(newService, "instanceIdFile", instanceIdFile)
+        newService.init()
+        return ReflectionTestUtils.getField(newService, "instanceId")
+    }
+
+    private void runLane() {
+        while (!lane.isEmpty()) {
+            lane.remove(0).run()
+        }
+    }
+
+    private DevopsGitlabWebhookEventDTO storeEvent(Integer gitlabProjectId, String after, String owner) {
+        def event = new DevopsGitlabWebhookEventDTO()
+        event.setGitlabProjectId(gitlabProjectId as Long)
+        event.setObjectKind("push")
+        event.setToken("token-" + gitlabProjectId)
+        event.setPayload(push(gitlabProjectId, after))
+        event.setOwner(owner)
+        devopsGitlabWebhookEventMapper.insertSelective(event)
+        return event
+    }
+
+    private List<DevopsGitlabWebhookEventDTO> storedEvents(Long gitlabProjectId) {
+        def condition = new DevopsGitlabWebhookEventDTO()
+        condition.setGitlabProjectId(gitlabProjectId)
+        return devopsGitlabWebhookEventMapper.select(condition)
+    }
+
+    private static AppServiceDTO appService(Integer gitlabProjectId) {
+        def appServiceDTO = new AppServiceDTO()
+        appServiceDTO.setGitlabProjectId(gitlabProjectId)
+        return appServiceDTO
+    }
+
+    private static String build(Integer gitlabProjectId, long buildId, String buildStatus) {
+        return """{"object_kind":"build","ref":"master","build_id":${buildId},"build_name":"build","build_stage":"build",
+"build_status":"${buildStatus}","project_id":${gitlabProjectId},"commit":{"id":98141,"status":"running"}}"""
+    }
+
+    private static String push(Integer gitlabProjectId, String after) {
+        return """{"object_kind":"push","project_id":${gitlabProjectId},"after":"${after}","ref":"refs/heads/master","user_username":"admin"}"""
+    }
+}
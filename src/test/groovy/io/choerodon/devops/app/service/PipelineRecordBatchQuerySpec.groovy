@@ -0,0 +1,318 @@
+package io.choerodon.devops.app.service
+
+import java.sql.Connection
+import java.util.concurrent.atomic.AtomicInteger
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.vo.CiCdPipelineVO
+import io.choerodon.devops.infra.dto.*
+import io.choerodon.devops.infra.dto.iam.ProjectDTO
+import io.choerodon.devops.infra.feign.operator.BaseServiceClientOperator
+import io.choerodon.devops.infra.handler.CiPipelineSyncHandler
+import io.choerodon.devops.infra.mapper.*
+import io.choerodon.devops.infra.util.CustomContextUtil
+import org.apache.ibatis.executor.statement.StatementHandler
+import org.apache.ibatis.plugin.*
+import org.apache.ibatis.session.SqlSessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.test.util.AopTestUtils
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 流水线列表的执行记录批量查询: 查询次数不随流水线和记录的数量增长
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class PipelineRecordBatchQuerySpec extends Specification {
+    private static final StatementCounter COUNTER = new StatementCounter()
+
+    @Autowired
+    SqlSessionFactory sqlSessionFactory
+    @Autowired
+    DevopsPipelineRecordRelMapper devopsPipelineRecordRelMapper
+    @Autowired
+    DevopsPipelineRecordRelService devopsPipelineRecordRelService
+    @Autowired
+    DevopsCiJobRecordMapper devopsCiJobRecordMapper
+    @Autowired
+    DevopsCdPipelineRecordMapper devopsCdPipelineRecordMapper
+    @Autowired
+    DevopsCdStageRecordMapper devopsCdStageRecordMapper
+    @Autowired
+    DevopsCdJobRecordMapper devopsCdJobRecordMapper
+    @Autowired
+    DevopsCdPipelineRecordService devopsCdPipelineRecordService
+    @Autowired
+    DevopsCiPipelineRecordMapper devopsCiPipelineRecordMapper
+    @Autowired
+    DevopsCiPipelineRecordService devopsCiPipelineRecordService
+    @Autowired
+    DevopsCiStageMapper devopsCiStageMapper
+    @Autowired
+    CiCdPipelineMapper ciCdPipelineMapper
+    @Autowired
+    AppServiceMapper appServiceMapper
+    @Autowired
+    DevopsCiPipelineService devopsCiPipelineService
+    @Autowired
+    CiPipelineSyncHandler ciPipelineSyncHandler
+
+    BaseServiceClientOperator baseServiceClientOperator = Mock()
+    PermissionHelper permissionHelper = Mock()
+
+    Object originalBaseServiceClientOperator
+    Object originalPermissionHelper
+    Object originalEmptyStageThreshold
+
+    def setup() {
+        if (!sqlSessionFactory.configuration.interceptors.contains(COUNTER)) {
+            sqlSessionFactory.configuration.addInterceptor(COUNTER)
+        }
+        CustomContextUtil.setUserContext(1L)
+        def pipelineService = AopTestUtils.getUltimateTargetObject(devopsCiPipelineService)
+        originalBaseServiceClientOperator = ReflectionTestUtils.getField(pipelineService, "baseServiceClientOperator")
+        originalPermissionHelper = ReflectionTestUtils.getField(pipelineService, "permissionHelper")
+        ReflectionTestUtils.setField(pipelineService, "baseServiceClientOperator", baseServiceClientOperator)
+        ReflectionTestUtils.setField(pipelineService, "permissionHelper", permissionHelper)
+        // 让所有记录都超过没有job的同步阈值, 同步时需要判断记录是否有job
+        def syncHandler = AopTestUtils.getUltimateTargetObject(ciPipelineSyncHandler)
+        originalEmptyStageThreshold = ReflectionTestUtils.getField(syncHandler, "emptyStageThresholdMilliSeconds")
+        ReflectionTestUtils.setField(syncHandler, "emptyStageThresholdMilliSeconds", -1000L)
+    }
+
+    def cleanup() {
+        def pipelineService = AopTestUtils.getUltimateTargetObject(devopsCiPipelineService)
+        ReflectionTestUtils.setField(pipelineService, "baseServiceClientOperator", originalBaseServiceClientOperator)
+        ReflectionTestUtils.setField(pipelineService, "permissionHelper", originalPermissionHelper)
+        ReflectionTestUtils.setField(AopTestUtils.getUltimateTargetObject(ciPipelineSyncHandler), "emptyStageThresholdMilliSeconds", originalEmptyStageThreshold)
+        SecurityContextHolder.clearContext()
+    }
+
+    def "latest records and stats of all pipelines are loaded in one query each"() {
+        given: "流水线9001有7条记录, 9002有2条记录"
+        def pipeline1 = (1..7).collect { insertRel(9001L, it) }
+        def pipeline2 = (1..2).collect { insertRel(9002L, it) }
+
+        when:
+        def queries = countStatements {
+            [devopsPipelineRecordRelService.listLatestByPipelineIds([9001L, 9002L, 9003L], 5),
+             devopsPipelineRecordRelService.queryStatsByPipelineIds([9001L, 9002L, 9003L])]
+        }
+        def latest = queries.result[0] as List<DevopsPipelineRecordRelDTO>
+        def stats = queries.result[1] as Map
+
+        then:
+        queries.count == 2
+        latest*.id == pipeline1.reverse().take(5)*.id + pipeline2.reverse()*.id
+        stats[9001L].recordCount == 7
+        stats[9001L].firstRecordRelId == pipeline1.first().id
+        stats[9002L].recordCount == 2
+        !stats.containsKey(9003L)
+    }
+
+    def "ci job statuses are aggregated by record and stage, counting only the latest retry"() {
+        given:
+        insertCiJob(8001L, "build", "maven", "failed")
+        insertCiJob(8001L, "build", "maven", "success")
+        insertCiJob(8001L, "test", "unit", "running")
+        insertCiJob(8002L, "build", "maven", "created")
+
+        when:
+        def queries = countStatements { devopsCiJobRecordMapper.countStatusByCiPipelineRecordIds([8001L, 8002L]) }
+        def counts = queries.result.collectEntries { ["${it.recordId}:${it.stage}:${it.status}".toString(), it.jobCount] }
+
+        then:
+        queries.count == 1
+        counts == ["8001:build:success": 1L, "8001:test:running": 1L, "8002:build:created": 1L]
+    }
+
+    def "cd records are assembled with a constant number of queries"() {
+        given:
+        def oneRecord = [insertCdRecord(["created", "created"], ["success"])]
+        def manyRecords = (1..4).collect { insertCdRecord(["created", "created"], ["success"]) }
+
+        when:
+        def single = countStatements { devopsCdPipelineRecordService.queryByCdPipelineRecordIds(oneRecord) }
+        def batch = countStatements { devopsCdPipelineRecordService.queryByCdPipelineRecordIds(manyRecords) }
+
+        then: "记录、阶段记录和job状态统计各一次查询"
+        single.count == 3
+        batch.count == single.count
+        batch.result.keySet() == manyRecords.toSet()
+        batch.result.values().every { record ->
+            record.devopsCdStageRecordVOS*.status == ["created", "success"]
+        }
+    }
+
+    def "ci records are assembled with a constant number of queries and no per record job count"() {
+        given:
+        def oneRecord = [insertCiRecord(9300L)]
+        def manyRecords = (1..4).collect { insertCiRecord(9301L) }
+        insertCiStage(9300L, "build", 1L)
+        insertCiStage(9301L, "build", 1L)
+
+        when:
+        def single = countStatements { devopsCiPipelineRecordService.queryByCiPipelineRecordIds(oneRecord) }
+        def batch = countStatements { devopsCiPipelineRecordService.queryByCiPipelineRecordIds(manyRecords) }
+
+        then: "记录、job状态统计和阶段各一次查询, 同步判断不再逐条统计job"
+        single.count == 3
+        batch.count == single.count
+        batch.result.keySet() == manyRecords.toSet()
+        batch.result.values().every { record ->
+            record.stageRecordVOList*.name == ["build"] && record.stageRecordVOList*.status == ["success"]
+        }
+    }
+
+    def "the pipeline list takes the same number of queries for one pipeline and for many"() {
+        given: "项目9401有1条流水线和1条记录, 项目9402有3条流水线, 每条6条记录"
+        insertPipelines(9401L, 1, 1)
+        insertPipelines(9402L, 3, 6)
+        def projectDTO = new ProjectDTO()
+        projectDTO.setId(1L)
+        projectDTO.setOrganizationId(1L)
+        baseServiceClientOperator.queryIamProjectById(_) >> projectDTO
+        permissionHelper.isGitlabProjectOwnerOrGitlabAdmin(_, 1L) >> true
+
+        when:
+        def single = countStatements { devopsCiPipelineService.listByProjectIdAndAppName(9401L, null) }
+        def many = countStatements { devopsCiPipelineService.listByProjectIdAndAppName(9402L, null) }
+        List<CiCdPipelineVO> pipelines = many.result
+
+        then: "应用服务、流水线、记录、记录统计各一次查询, ci和cd记录各三次查询"
+        single.count == 10
+        many.count == single.count
+        pipelines.size() == 3
+        pipelines.every { it.hasMoreRecords && it.ciCdPipelineRecordVOS.size() == 5 }
+        pipelines.every { pipeline -> pipeline.ciCdPipelineRecordVOS.every { it.ciRecordId != null && it.cdRecordId != null } }
+    }
+
+    private DevopsPipelineRecordRelDTO insertRel(Long pipelineId, int index) {
+        return insertRel(pipelineId, index as Long, 0L)
+    }
+
+    private DevopsPipelineRecordRelDTO insertRel(Long pipelineId, Long ciPipelineRecordId, Long cdPipelineRecordId) {
+        def rel = new DevopsPipelineRecordRelDTO()
+        rel.setPipelineId(pipelineId)
+        rel.setCiPipelineRecordId(ciPipelineRecordId)
+        rel.setCdPipelineRecordId(cdPipelineRecordId)
+        devopsPipelineRecordRelMapper.insertSelective(rel)
+        return rel
+    }
+
+    private void insertPipelines(Long projectId, int pipelineCount, int recordCount) {
+        (1..pipelineCount).each { index ->
+            def appServiceDTO = new AppServiceDTO()
+            appServiceDTO.setProjectId(projectId)
+            appServiceDTO.setName("app-" + projectId + "-" + index)
+            appServiceDTO.setCode("app-" + projectId + "-" + index)
+            appServiceDTO.setActive(true)
+            appServiceDTO.setSynchro(true)
+            appServiceDTO.setGitlabProjectId(index)
+            appServiceMapper.insertSelective(appServiceDTO)
+
+            def pipeline = new CiCdPipelineDTO()
+            pipeline.setProjectId(projectId)
+            pipeline.setAppServiceId(appServiceDTO.getId())
+            pipeline.setName("pipeline-" + index)
+            pipeline.setTriggerType("auto")
+            pipeline.setEnabled(true)
+            ciCdPipelineMapper.insertSelective(pipeline)
+            insertCiStage(pipeline.getId(), "build", 1L)
+
+            (1..recordCount).each {
+                insertRel(pipeline.getId(), insertCiRecord(pipeline.getId()), insertCdRecord(pipeline.getId(), ["created"], ["success"]))
+            }
+        }
+    }
+
+    private Long insertCiRecord(Long ciPipelineId) {
+        def record = new DevopsCiPipelineRecordDTO()
+        record.setCiPipelineId(ciPipelineId)
+        record.setStatus("success")
+        record.setCreatedDate(new Date())
+        devopsCiPipelineRecordMapper.insertSelective(record)
+        insertCiJob(record.getId(), "build", "maven", "success")
+        return record.getId()
+    }
+
+    private void insertCiStage(Long ciPipelineId, String name, Long sequence) {
+        def stage = new DevopsCiStageDTO()
+        stage.setCiPipelineId(ciPipelineId)
+        stage.setName(name)
+        stage.setSequence(sequence)
+        devopsCiStageMapper.insertSelective(stage)
+    }
+
+    private void insertCiJob(Long ciPipelineRecordId, String stage, String name, String status) {
+        def job = new DevopsCiJobRecordDTO()
+        job.setCiPipelineRecordId(ciPipelineRecordId)
+        job.setStage(stage)
+        job.setName(name)
+        job.setStatus(status)
+        devopsCiJobRecordMapper.insertSelective(job)
+    }
+
+    private Long insertCdRecord(List<String> firstStageJobStatus, List<String> secondStageJobStatus) {
+        return insertCdRecord(9100L, firstStageJobStatus, secondStageJobStatus)
+    }
+
+    private Long insertCdRecord(Long pipelineId, List<String> firstStageJobStatus, List<String> secondStageJobStatus) {
+        def record = new DevopsCdPipelineRecordDTO()
+        record.setPipelineId(pipelineId)
+        record.setProjectId(1L)
+        record.setStatus("running")
+        devopsCdPipelineRecordMapper.insertSelective(record)
+        [firstStageJobStatus, secondStageJobStatus].eachWithIndex { List<String> jobStatus, int index ->
+            def stage = new DevopsCdStageRecordDTO()
+            stage.setPipelineRecordId(record.getId())
+            stage.setSequence(index + 1L)
+            stage.setStageName("stage" + index)
+            stage.setStatus(jobStatus.contains("success") ? "success" : "running")
+            devopsCdStageRecordMapper.insertSelective(stage)
+            jobStatus.eachWithIndex { String status, int sequence ->
+                def job = new DevopsCdJobRecordDTO()
+                job.setStageRecordId(stage.getId())
+                job.setName("job" + sequence)
+                job.setSequence(sequence + 1L)
+                job.setStatus(status)
+                devopsCdJobRecordMapper.insertSelective(job)
+            }
+        }
+        return record.getId()
+    }
+
+    private static Map countStatements(Closure closure) {
+        COUNTER.count.set(0)
+        def result = closure.call()
+        return [result: result, count: COUNTER.count.get()]
+    }
+
+    /**
+     * 统计执行的sql语句数量
+     */
+    @Intercepts(@Signature(type = StatementHandler, method = "prepare", args = [Connection, Integer]))
+    static class StatementCounter implements Interceptor {
+        final AtomicInteger count = new AtomicInteger()
+
+        @Override
+        Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet()
+            return invocation.proceed()
+        }
+
+        @Override
+        Object plugin(Object target) {
+            return Plugin.wrap(target, this)
+        }
+
+        @Override
+        void setProperties(Properties properties) {
+        }
+}
@@ -0,0 +1,152 @@
+package io.choerodon.devops.infra.feign.operator
+
+import io.choerodon.core.domain.Page
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.infra.dto.iam.IamUserDTO
+import io.choerodon.devops.infra.dto.iam.ProjectDTO
+import io.choerodon.devops.infra.feign.BaseServiceClient
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class BaseServiceClientOperatorSpec extends Specification {
+
+    BaseServiceClient baseServiceClient = Mock(BaseServiceClient)
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    BaseServiceClientOperator operator = new BaseServiceClientOperator()
+
+    def setup() {
+        operator.baseServiceClient = baseServiceClient
+        operator.meterRegistry = meterRegistry
+        operator.cacheEnabled = true
+        operator.cacheMaxEntries = 100
+        operator.cacheTtlSeconds = 60
+        operator.cacheNegativeTtlSeconds = 10
+        operator.initCache()
+    }
+
+    def "QueryIamProjectById is served from cache"() {
+        when: "查询同一个项目两次"
+        ProjectDTO first = operator.queryIamProjectById(1L)
+        first.setName("changed by caller")
+        ProjectDTO second = operator.queryIamProjectById(1L)
+
+        then: "只调用一次IAM, 调用方的修改不影响缓存"
+        1 * baseServiceClient.queryIamProject(1L, true, true, true) >> new ResponseEntity<>(project(1L, "devops"), HttpStatus.OK)
+        second.name == "devops"
+        meterRegistry.counter("devops.iam.cache.lookup", "method", "queryIamProjectById", "result", "hit").count() == 1
+        meterRegistry.counter("devops.iam.cache.lookup", "method", "queryIamProjectById", "result", "miss").count() == 1
+    }
+
+    def "Missing project is cached until evicted"() {
+        when: "查询不存在的项目两次"
+        operator.queryIamProjectById(2L)
+
+        then:
+        1 * baseServiceClient.queryIamProject(2L, true, true, true) >> new ResponseEntity<>(new ProjectDTO(), HttpStatus.OK)
+        thrown(CommonException)
+
+        when:
+        operator.queryIamProjectById(2L)
+
+        then: "负缓存命中, 不再调用IAM"
+        0 * baseServiceClient.queryIamProject(*_)
+        thrown(CommonException)
+
+        when: "项目创建事件清除缓存后再查询"
+        operator.evictProjectCache(2L)
+        ProjectDTO projectDTO = operator.queryIamProjectById(2L)
+
+        then:
+        1 * baseServiceClient.queryIamProject(2L, true, true, true) >> new ResponseEntity<>(project(2L, "created"), HttpStatus.OK)
+        projectDTO.name == "created"
+    }
+
+    def "QueryUsersByUserIds only queries missed users"() {
+        given: "用户1已经缓存"
+        baseServiceClient.listUsersByIds([1L] as Long[], false) >> new ResponseEntity<>([user(1L)], HttpStatus.OK)
+        operator.queryUserByUserId(1L)
+
+        when: "批量查询用户1、2、3, 其中3不存在"
+        List<IamUserDTO> users = operator.queryUsersByUserIds([3L, 1L, 2L])
+
+        then: "只查询缓存中没有的用户, 结果按照id的顺序"
+        1 * baseServiceClient.listUsersByIds([3L, 2L] as Long[], false) >> new ResponseEntity<>([user(2L)], HttpStatus.OK)
+        users*.id == [1L, 2L]
+
+        when: "再次查询"
+        users = operator.queryUsersByUserIds([1L, 2L, 3L])
+
+        then: "全部命中缓存, 包括不存在的用户"
+        0 * baseServiceClient.listUsersByIds(*_)
+        users*.id == [1L, 2L]
+    }
+
+    def "QueryUsersByEmails queries each distinct email of the project once"() {
+        when: "一批commit的作者邮箱, 有重复和大小写不同的邮箱"
+        Map<String, IamUserDTO> users = operator.queryUsersByEmails(1L, ["a@choerodon.io", "B@choerodon.io", "A@choerodon.io", null, "c@choerodon.io"])
+
+        then: "每个邮箱只按项目查询一次"
+        1 * baseServiceClient.listUsersByEmail(1L, 0, 0, "a@choerodon.io") >> new ResponseEntity<>(page([user(1L, "a@choerodon.io")]), HttpStatus.OK)
+        1 * baseServiceClient.listUsersByEmail(1L, 0, 0, "b@choerodon.io") >> new ResponseEntity<>(page([user(2L, "b@choerodon.io")]), HttpStatus.OK)
+        1 * baseServiceClient.listUsersByEmail(1L, 0, 0, "c@choerodon.io") >> new ResponseEntity<>(page([]), HttpStatus.OK)
+        users.keySet() == ["a@choerodon.io", "b@choerodon.io"] as Set
+
+        when: "再次查询"
+        users = operator.queryUsersByEmails(1L, ["b@choerodon.io", "c@choerodon.io"])
+
+        then: "存在和不存在的邮箱都命中缓存"
+        0 * baseServiceClient.listUsersByEmail(*_)
+        users*.value*.id == [2L]
+    }
+
+    def "QueryUsersByEmails does not share cached users between projects"() {
+        given: "项目1中查询过邮箱"
+        baseServiceClient.listUsersByEmail(1L, 0, 0, "d@choerodon.io") >> new ResponseEntity<>(page([user(4L, "d@choerodon.io")]), HttpStatus.OK)
+        operator.queryUsersByEmails(1L, ["d@choerodon.io"])
+
+        when: "在项目2中查询同一个邮箱"
+        Map<String, IamUserDTO> users = operator.queryUsersByEmails(2L, ["d@choerodon.io"])
+
+        then: "按项目2重新查询, 用户不是项目2的成员"
+        1 * baseServiceClient.listUsersByEmail(2L, 0, 0, "d@choerodon.io") >> new ResponseEntity<>(page([]), HttpStatus.OK)
+        users.isEmpty()
+
+        when: "用户的邮箱变化后"
+        operator.evictUserEmailCache("D@choerodon.io")
+        operator.queryUsersByEmails(1L, ["d@choerodon.io"])
+        operator.queryUsersByEmails(2L, ["d@choerodon.io"])
+
+        then: "所有项目中这个邮箱的缓存都失效"
+        1 * baseServiceClient.listUsersByEmail(1L, 0, 0, "d@choerodon.io") >> new ResponseEntity<>(page([user(4L, "d@choerodon.io")]), HttpStatus.OK)
+        1 * baseServiceClient.listUsersByEmail(2L, 0, 0, "d@choerodon.io") >> new ResponseEntity<>(page([]), HttpStatus.OK)
+    }
+
+    private static Page<IamUserDTO> page(List<IamUserDTO> users) {
+        Page<IamUserDTO> page = new Page<>()
+        page.setContent(users)
+        return page
+    }
+
+    private static ProjectDTO project(Long id, String name) {
+        ProjectDTO projectDTO = new ProjectDTO()
+        projectDTO.setId(id)
+        projectDTO.setName(name)
+        return projectDTO
+    }
+
+    private static IamUserDTO user(Long id, String email = null) {
+        IamUserDTO iamUserDTO = new IamUserDTO()
+        iamUserDTO.setId(id)
+        iamUserDTO.setEmail(email)
+        return iamUserDTO
+    }
+}
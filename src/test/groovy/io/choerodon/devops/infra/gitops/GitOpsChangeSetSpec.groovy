@@ -0,0 +1,160 @@
+package io.choerodon.devops.infra.gitops
+
+import java.nio.file.Files
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.infra.dto.DevopsEnvFileResourceDTO
+import io.choerodon.devops.infra.dto.gitlab.CommitActionDTO
+import io.choerodon.devops.infra.feign.operator.GitlabServiceClientOperator
+import io.choerodon.devops.infra.mapper.DevopsEnvFileResourceMapper
+import io.kubernetes.client.models.V1ConfigMap
+import io.kubernetes.client.models.V1ObjectMeta
+import org.spockframework.mock.MockUtil
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class GitOpsChangeSetSpec extends Specification {
+    private static final Long ENV_ID = 97001L
+
+    @Autowired
+    GitlabServiceClientOperator gitlabServiceClientOperator
+    @Autowired
+    DevopsEnvFileResourceMapper devopsEnvFileResourceMapper
+
+    def mockUtil = new MockUtil()
+
+    def setup() {
+        mockUtil.attachMock(gitlabServiceClientOperator, this)
+    }
+
+    def cleanup() {
+        mockUtil.detachMock(gitlabServiceClientOperator)
+    }
+
+    def "a file created and then deleted in the same change set is not committed"() {
+        given:
+        def changeSet = new GitOpsChangeSet(1, 2, null)
+
+        when:
+        changeSet.create("svc-a.yaml", "a")
+        changeSet.update("svc-a.yaml", "b")
+        changeSet.delete("svc-a.yaml")
+        changeSet.commit("DELETE FILE")
+
+        then:
+        changeSet.isEmpty()
+        0 * gitlabServiceClientOperator.commitGitlabFiles(*_)
+    }
+
+    def "a file deleted and then created again is committed as an update with the new content"() {
+        given:
+        def changeSet = new GitOpsChangeSet(1, 2, null)
+        List<CommitActionDTO> committed = null
+
+        when:
+        changeSet.delete("svc-a.yaml")
+        changeSet.create("svc-a.yaml", "new")
+        changeSet.commit("UPDATE FILE")
+
+        then:
+        1 * gitlabServiceClientOperator.commitGitlabFiles(1, 2, "master", _, "UPDATE FILE") >> { args -> committed = args[3] }
+        committed*.action == [CommitActionDTO.Action.UPDATE]
+        committed*.content == ["new"]
+    }
+
+    def "all changes of a change set are pushed in one commit and it can only be committed once"() {
+        given:
+        def changeSet = new GitOpsChangeSet(1, 2, null)
+        List<CommitActionDTO> committed = null
+
+        when:
+        changeSet.create("release-a.yaml", "a")
+        changeSet.update("release-a.yaml", "a2")
+        changeSet.update("svc-b.yaml", "b")
+        changeSet.delete("ing-c.yaml")
+        changeSet.commit("BATCH")
+
+        then:
+        1 * gitlabServiceClientOperator.commitGitlabFiles(1, 2, "master", _, "BATCH") >> { args -> committed = args[3] }
+        committed.collect { [it.action, it.filePath, it.content] } == [
+                [CommitActionDTO.Action.CREATE, "release-a.yaml", "a2"],
+                [CommitActionDTO.Action.UPDATE, "svc-b.yaml", "b"],
+                [CommitActionDTO.Action.DELETE, "ing-c.yaml", null]]
+
+        when:
+        changeSet.commit("BATCH")
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "several resources in one file are changed in a single commit"() {
+        given: "一个文件中有两个ConfigMap"
+        def repo = Files.createTempDirectory("gitops-changeset").toFile()
+        new File(repo, "configMap-a.yaml").text = """---
+apiVersion: v1
+kind: ConfigMap
+metadata:
+  name: cm-a
+data:
+  key: old
+---
+apiVersion: v1
+kind: ConfigMap
+metadata:
+  name: cm-b
+data:
+  key: b
+"""
+        insertFileResource("configMap-a.yaml", 97101L)
+        insertFileResource("configMap-a.yaml", 97102L)
+        def changeSet = new GitOpsChangeSet(1, 2, repo.path)
+        List<CommitActionDTO> committed = null
+
+        when: "更新cm-a并删除cm-b"
+        configMapHandler("cm-a", [key: "new"]).operationEnvGitlabFile("configMap-cm-a", 1, "update", 2L, 97101L, "ConfigMap", null, false, ENV_ID, repo.path, changeSet)
+        configMapHandler("cm-b", null).operationEnvGitlabFile(null, 1, "delete", 2L, 97102L, "ConfigMap", null, false, ENV_ID, repo.path, changeSet)
+        changeSet.commit("UPDATE FILE")
+
+        then: "只有一次提交, 文件中只剩更新后的cm-a"
+        0 * gitlabServiceClientOperator.updateFile(*_)
+        1 * gitlabServiceClientOperator.commitGitlabFiles(1, 2, "master", _, "UPDATE FILE") >> { args -> committed = args[3] }
+        committed.size() == 1
+        committed[0].action == CommitActionDTO.Action.UPDATE
+        committed[0].filePath == "configMap-a.yaml"
+        committed[0].content.contains("cm-a")
+        committed[0].content.contains("new")
+        !committed[0].content.contains("cm-b")
+
+        cleanup:
+        repo.deleteDir()
+    }
+
+    private static ResourceConvertToYamlHandler<V1ConfigMap> configMapHandler(String name, Map<String, String> data) {
+        def configMap = new V1ConfigMap()
+        configMap.setApiVersion("v1")
+        configMap.setKind("ConfigMap")
+        def metadata = new V1ObjectMeta()
+        metadata.setName(name)
+        configMap.setMetadata(metadata)
+        configMap.setData(data)
+        def handler = new ResourceConvertToYamlHandler<V1ConfigMap>()
+        handler.setType(configMap)
+        return handler
+    }
+
+    private void insertFileResource(String filePath, Long resourceId) {
+        def resource = new DevopsEnvFileResourceDTO()
+        resource.setEnvId(ENV_ID)
+        resource.setFilePath(filePath)
+        resource.setResourceType("ConfigMap")
+        resource.setResourceId(resourceId)
+        devopsEnvFileResourceMapper.insertSelective(resource)
+    }
+}
@@ -0,0 +1,75 @@
+package io.choerodon.devops.infra.handler
+
+import java.nio.charset.StandardCharsets
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class CiJobTraceCacheSpec extends Specification {
+
+    def "polling with the returned offsets rebuilds the whole trace"() {
+        given: "日志不断追加, 包含多字节字符"
+        def snapshots = ["", "[INFO] 开始构建\n", "[INFO] 开始构建\n[INFO] 编译 ✓\n", "[INFO] 开始构建\n[INFO] 编译 ✓\n[INFO] BUILD SUCCESS\n"]
+
+        when:
+        long offset = 0
+        StringBuilder received = new StringBuilder()
+        snapshots.eachWithIndex { String snapshot, int index ->
+            def chunk = CiJobTraceCache.slice(snapshot.getBytes(StandardCharsets.UTF_8), offset, index == snapshots.size() - 1)
+            assert !chunk.reset
+            received.append(chunk.content)
+            offset = chunk.nextOffset
+        }
+
+        then:
+        received.toString() == snapshots.last()
+        offset == snapshots.last().getBytes(StandardCharsets.UTF_8).length
+    }
+
+    def "an offset beyond the trace restarts from the beginning"() {
+        when:
+        def chunk = CiJobTraceCache.slice("abc".getBytes(StandardCharsets.UTF_8), 10, false)
+
+        then:
+        chunk.reset
+        chunk.content == "abc"
+        chunk.nextOffset == 3
+        !chunk.complete
+    }
+
+    def "the cache evicts the least recently used traces over the byte limit"() {
+        given:
+        def cache = new CiJobTraceCache(new SimpleMeterRegistry(), 10, 10)
+
+        when:
+        cache.put(100L, 1L, new byte[4])
+        cache.put(100L, 2L, new byte[4])
+        cache.get(100L, 1L)
+        cache.put(100L, 3L, new byte[4])
+        cache.put(100L, 4L, new byte[11])
+
+        then: "2最久没有被访问, 被淘汰; 超过总字节数的日志不缓存"
+        cache.get(100L, 1L) != null
+        cache.get(100L, 2L) == null
+        cache.get(100L, 3L) != null
+        cache.get(100L, 4L) == null
+        cache.getBytes() == 8
+    }
+
+    def "a cached trace is only returned for the GitLab project it was cached for"() {
+        given:
+        def cache = new CiJobTraceCache(new SimpleMeterRegistry(), 10, 100)
+        cache.put(100L, 1L, new byte[4])
+
+        expect:
+        cache.get(100L, 1L) != null
+        cache.get(200L, 1L) == null
+    }
+}
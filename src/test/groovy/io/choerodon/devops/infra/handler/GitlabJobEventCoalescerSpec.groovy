@@ -0,0 +1,140 @@
+package io.choerodon.devops.infra.handler
+
+import com.alibaba.fastjson.JSON
+import com.alibaba.fastjson.JSONArray
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.vo.JobWebHookVO
+import io.choerodon.devops.api.vo.kubernetes.Stage
+import io.choerodon.devops.app.service.DevopsGitlabPipelineService
+import io.choerodon.devops.infra.dto.DevopsGitlabCommitDTO
+import io.choerodon.devops.infra.dto.DevopsGitlabPipelineDTO
+import io.choerodon.devops.infra.mapper.DevopsGitlabCommitMapper
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineMapper
+import io.choerodon.devops.infra.util.FastjsonParserConfigProvider
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class GitlabJobEventCoalescerSpec extends Specification {
+    private static final String SHA = "2293ada6b400935a1378653304eaf6221e0fdb8f"
+    private static final Long GITLAB_PIPELINE_ID = 99101L
+
+    /**
+     * 一条流水线运行时GitLab依次发送的job事件: build成功, deploy失败后重试成功
+     */
+    private static final List<String> RECORDED_PAYLOADS = [
+            payload(101, "build", "pending"),
+            payload(101, "build", "running"),
+            payload(102, "deploy", "created"),
+            payload(101, "build", "success"),
+            payload(102, "deploy", "pending"),
+            payload(102, "deploy", "running"),
+            payload(102, "deploy", "failed"),
+            payload(103, "deploy", "pending"),
+            payload(103, "deploy", "running"),
+            payload(103, "deploy", "success")]
+
+    def "PendingJobEvents keeps the latest event of each job"() {
+        given: "回放记录的事件"
+        def events = new GitlabJobEventCoalescer.PendingJobEvents(1L, 1000L)
+        def jobs = RECORDED_PAYLOADS.collect { parse(it) }
+
+        when:
+        int superseded = 0
+        jobs.eachWithIndex { JobWebHookVO job, int index ->
+            if (events.add(job, index as Long)) {
+                superseded++
+            }
+        }
+
+        then: "每个job只保留最新的事件, 按最后一次更新的顺序排列"
+        events.jobs*.buildId == [101L, 102L, 103L]
+        events.jobs*.buildStatus == ["success", "failed", "success"]
+        events.eventIds.size() == RECORDED_PAYLOADS.size()
+        superseded == RECORDED_PAYLOADS.size() - 3
+    }
+
+    @Autowired
+    DevopsGitlabPipelineService devopsGitlabPipelineService
+    @Autowired
+    DevopsGitlabCommitMapper devopsGitlabCommitMapper
+    @Autowired
+    DevopsGitlabPipelineMapper devopsGitlabPipelineMapper
+
+    def "Applying coalesced events gives the same stage status as applying every event"() {
+        given: "流水线的两个阶段都还没有开始"
+        insertCommit()
+        def pipeline = insertPipeline()
+        def events = new GitlabJobEventCoalescer.PendingJobEvents(1L, 1000L)
+        def jobs = RECORDED_PAYLOADS.collect { parse(it) }
+        jobs.each { events.add(it, null) }
+
+        when: "和不合并时一样逐个处理事件"
+        jobs.each { devopsGitlabPipelineService.updateStages([it]) }
+        def uncoalesced = stagesOf(pipeline.getId())
+
+        and: "恢复阶段的状态后处理合并后的事件"
+        resetStages(pipeline.getId())
+        devopsGitlabPipelineService.updateStages(events.jobs)
+        def coalesced = stagesOf(pipeline.getId())
+
+        then: "和逐个处理事件时流水线阶段的状态一致"
+        coalesced == uncoalesced
+        coalesced == [["build", "success"], ["deploy", "success"]]
+    }
+
+    private void insertCommit() {
+        def commit = new DevopsGitlabCommitDTO()
+        commit.setAppServiceId(1L)
+        commit.setCommitSha(SHA)
+        commit.setRef("master")
+        commit.setCommitDate(new Date())
+        devopsGitlabCommitMapper.insertSelective(commit)
+    }
+
+    private DevopsGitlabPipelineDTO insertPipeline() {
+        def pipeline = new DevopsGitlabPipelineDTO()
+        pipeline.setAppServiceId(1L)
+        pipeline.setPipelineId(GITLAB_PIPELINE_ID)
+        pipeline.setStatus("running")
+        pipeline.setStage(initialStages())
+        devopsGitlabPipelineMapper.insertSelective(pipeline)
+        return pipeline
+    }
+
+    private void resetStages(Long id) {
+        def pipeline = devopsGitlabPipelineMapper.selectByPrimaryKey(id)
+        pipeline.setStage(initialStages())
+        devopsGitlabPipelineMapper.updateByPrimaryKeySelective(pipeline)
+    }
+
+    private List<List<String>> stagesOf(Long id) {
+        return JSONArray.parseArray(devopsGitlabPipelineMapper.selectByPrimaryKey(id).getStage(), Stage.class)
+                .collect { [it.name, it.status] }
+    }
+
+    private static String initialStages() {
+        return JSONArray.toJSONString(["build", "deploy"].collect {
+            def stage = new Stage()
+            stage.setName(it)
+            stage.setStatus("created")
+            return stage
+        })
+    }
+
+    private static JobWebHookVO parse(String payload) {
+        return JSON.parseObject(payload, JobWebHookVO.class, FastjsonParserConfigProvider.getParserConfig())
+    }
+
+    private static String payload(long buildId, String buildName, String buildStatus) {
+        return """{"object_kind":"build","ref":"master","sha":"2293ada6b400935a1378653304eaf6221e0fdb8f",
+"build_id":${buildId},"build_name":"${buildName}","build_stage":"${buildName}","build_status":"${buildStatus}",
+"build_started_at":null,"build_finished_at":null,"build_duration":null,"project_id":1,
+"commit":{"id":${GITLAB_PIPELINE_ID},"sha":"2293ada6b400935a1378653304eaf6221e0fdb8f","status":"running"}}"""
+    }
+}
@@ -0,0 +1,74 @@
+package io.choerodon.devops.infra.handler
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.vo.SonarContentsVO
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class SonarContentCacheSpec extends Specification {
+
+    def "cached content is returned only for the same analysis date"() {
+        given:
+        def cache = new SonarContentCache(new SimpleMeterRegistry(), 10, 0)
+        def content = new SonarContentsVO()
+        cache.put("org:project:app", "2026-10-18T10:00:00+0800", content)
+
+        expect:
+        cache.get("org:project:app", "2026-10-18T10:00:00+0800").is(content)
+        cache.get("org:project:app", "2026-10-18T11:00:00+0800") == null
+        cache.get("org:project:other", "2026-10-18T10:00:00+0800") == null
+    }
+
+    def "the least recently used entry is evicted when the cache is full"() {
+        given:
+        def cache = new SonarContentCache(new SimpleMeterRegistry(), 2, 0)
+        cache.put("a", "1", new SonarContentsVO())
+        cache.put("b", "1", new SonarContentsVO())
+
+        when: "访问a之后放入c"
+        cache.get("a", "1")
+        cache.put("c", "1", new SonarContentsVO())
+
+        then:
+        cache.get("a", "1") != null
+        cache.get("b", "1") == null
+        cache.get("c", "1") != null
+    }
+
+    def "a warm up is scheduled once per key and its failure does not reach the caller"() {
+        given:
+        def cache = new SonarContentCache(new SimpleMeterRegistry(), 10, 200)
+        def loads = new AtomicInteger()
+        def done = new CountDownLatch(1)
+
+        when: "预热执行前重复安排, 并且加载失败"
+        cache.scheduleWarmUp("1", { loads.incrementAndGet(); done.countDown(); throw new IllegalStateException("iam unavailable") })
+        cache.scheduleWarmUp("1", { loads.incrementAndGet() })
+
+        then:
+        noExceptionThrown()
+        done.await(5, TimeUnit.SECONDS)
+
+        when: "预热执行后可以再次安排"
+        def again = new CountDownLatch(1)
+        Thread.sleep(50)
+        cache.scheduleWarmUp("1", { loads.incrementAndGet(); again.countDown() })
+
+        then:
+        again.await(5, TimeUnit.SECONDS)
+        loads.get() == 2
+
+        cleanup:
+        cache.destroy()
+    }
+}
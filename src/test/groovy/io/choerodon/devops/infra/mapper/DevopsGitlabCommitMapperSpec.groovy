@@ -0,0 +1,52 @@
+package io.choerodon.devops.infra.mapper
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.infra.dto.DevopsGitlabCommitDTO
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class DevopsGitlabCommitMapperSpec extends Specification {
+
+    @Autowired
+    DevopsGitlabCommitMapper devopsGitlabCommitMapper
+
+    def "BatchInsert keeps the commits that already exist on the ref"() {
+        given: "分支上已经有commit sha-1"
+        devopsGitlabCommitMapper.batchInsert([commit("sha-1", "first")], 7L)
+
+        when: "并发的推送再次插入sha-1和新的sha-2"
+        devopsGitlabCommitMapper.batchInsert([commit("sha-1", "second"), commit("sha-2", "second")], 8L)
+
+        then: "已经存在的commit保持不变, 新的commit记录创建人和更新人"
+        def first = queryCommit("sha-1")
+        def second = queryCommit("sha-2")
+        first.commitContent == "first"
+        first.createdBy == 7L
+        second.commitContent == "second"
+        second.createdBy == 8L
+        second.lastUpdatedBy == 8L
+    }
+
+    private DevopsGitlabCommitDTO queryCommit(String sha) {
+        def condition = new DevopsGitlabCommitDTO()
+        condition.setCommitSha(sha)
+        condition.setRef("batch-insert")
+        return devopsGitlabCommitMapper.selectOne(condition)
+    }
+
+    private static DevopsGitlabCommitDTO commit(String sha, String content) {
+        def commit = new DevopsGitlabCommitDTO()
+        commit.setAppServiceId(1L)
+        commit.setCommitSha(sha)
+        commit.setCommitContent(content)
+        commit.setRef("batch-insert")
+        commit.setCommitDate(new Date())
+        return commit
+    }
+}
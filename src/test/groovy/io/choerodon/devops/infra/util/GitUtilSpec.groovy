@@ -0,0 +1,92 @@
+package io.choerodon.devops.infra.util
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.infra.dto.gitlab.DiffDTO
+import org.eclipse.jgit.api.Git
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 使用本地创建的仓库测试GitUtil中基于本地仓库的操作
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class GitUtilSpec extends Specification {
+
+    File repoDir
+    Git git
+
+    def setup() {
+        repoDir = Files.createTempDirectory("gitops-diff").toFile()
+        git = Git.init().setDirectory(repoDir).call()
+    }
+
+    def cleanup() {
+        git.close()
+        FileUtil.deleteDirectory(repoDir)
+    }
+
+    def "GetDiffs"() {
+        given: "创建包含新增, 修改, 删除, 重命名的两次提交"
+        write("modify.yaml", "kind: ConfigMap\nmetadata:\n  name: modify\n")
+        write("delete.yaml", "kind: ConfigMap\nmetadata:\n  name: delete\n")
+        write("rename.yaml", "kind: ConfigMap\nmetadata:\n  name: rename\ndata:\n  key1: value1\n  key2: value2\n")
+        write("unchanged.yaml", "kind: ConfigMap\nmetadata:\n  name: unchanged\n")
+        String oldCommit = commit("init")
+
+        write("modify.yaml", "kind: ConfigMap\nmetadata:\n  name: modify\ndata:\n  key: value\n")
+        new File(repoDir, "delete.yaml").delete()
+        write("dir/renamed.yaml", new File(repoDir, "rename.yaml").getText("UTF-8"))
+        new File(repoDir, "rename.yaml").delete()
+        write("add.yaml", "kind: Secret\nmetadata:\n  name: add\n")
+        String newCommit = commit("update")
+
+        when: "在本地仓库比较两个提交"
+        List<DiffDTO> diffs = GitUtil.getDiffs(new File(repoDir, ".git").absolutePath, oldCommit, newCommit)
+        Map<String, DiffDTO> diffsByNewPath = diffs.collectEntries { [(it.newPath): it] }
+
+        then: "改动与GitLab compare接口的格式一致"
+        diffs.size() == 4
+        diffsByNewPath["add.yaml"].newFile
+        !diffsByNewPath["add.yaml"].deletedFile
+        diffsByNewPath["delete.yaml"].deletedFile
+        diffsByNewPath["delete.yaml"].oldPath == "delete.yaml"
+        diffsByNewPath["dir/renamed.yaml"].renamedFile
+        diffsByNewPath["dir/renamed.yaml"].oldPath == "rename.yaml"
+        !diffsByNewPath["modify.yaml"].newFile
+        !diffsByNewPath["modify.yaml"].deletedFile
+        !diffsByNewPath["modify.yaml"].renamedFile
+        diffsByNewPath["modify.yaml"].oldPath == "modify.yaml"
+        !diffsByNewPath.containsKey("unchanged.yaml")
+    }
+
+    def "GetDiffs with missing commit"() {
+        given: "只有一次提交的仓库"
+        write("a.yaml", "kind: ConfigMap\n")
+        String commit = commit("init")
+
+        when: "和本地不存在的提交比较"
+        GitUtil.getDiffs(new File(repoDir, ".git").absolutePath, "1111111111111111111111111111111111111111", commit)
+
+        then: "抛出异常以便调用方回退到GitLab compare接口"
+        thrown(CommonException)
+    }
+
+    private void write(String path, String content) {
+        File file = new File(repoDir, path)
+        file.parentFile.mkdirs()
+        file.setText(content, "UTF-8")
+    }
+
+    private String commit(String message) {
+        git.add().addFilepattern(".").call()
+        git.add().setUpdate(true).addFilepattern(".").call()
+        return git.commit().setMessage(message).setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").call().getName()
+    }
+}
@@ -0,0 +1,39 @@
+package io.choerodon.devops.infra.util
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.kubernetes.client.models.V1ContainerStatus
+import io.kubernetes.client.models.V1Pod
+import io.kubernetes.client.models.V1PodStatus
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class K8sUtilSpec extends Specification {
+
+    def "GetContainerSummary"() {
+        given: "一个有就绪和未就绪容器的pod"
+        V1Pod pod = new V1Pod().status(new V1PodStatus().containerStatuses([
+                new V1ContainerStatus().name("app").ready(true),
+                new V1ContainerStatus().name("sidecar").ready(false),
+                new V1ContainerStatus().name("proxy").ready(null)]))
+
+        when: "提取并解析容器摘要"
+        String summary = K8sUtil.getContainerSummary(pod)
+        def containers = K8sUtil.parseContainerSummary(summary)
+
+        then: "不可用的容器在前"
+        summary == "sidecar:0,proxy:0,app:1"
+        containers*.name == ["sidecar", "proxy", "app"]
+        containers*.ready == [false, false, true]
+    }
+
+    def "GetContainerSummary without container statuses"() {
+        expect: "没有容器状态时摘要为空"
+        K8sUtil.getContainerSummary(new V1Pod().status(new V1PodStatus())) == ""
+        K8sUtil.parseContainerSummary("").isEmpty()
+    }
+}
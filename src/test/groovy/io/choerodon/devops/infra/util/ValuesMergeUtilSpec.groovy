@@ -0,0 +1,77 @@
+package io.choerodon.devops.infra.util
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.vo.kubernetes.InstanceValueVO
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import org.yaml.snakeyaml.Yaml
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * values合并的兼容性测试
+ * values-merge目录下的每个用例包含version.yaml, deploy.yaml以及用 docker/values_yaml.py 生成的 expected.out (见 generate.sh),
+ * expected.out 依次是合并后的yaml, 差异的yaml以及新增和修改的key
+ * 合并结果和差异按照数据结构比较, 不比较格式; 新增和修改的key按照它们在合并结果中标记的行和位置比较
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class ValuesMergeUtilSpec extends Specification {
+    private static final String SEPARATOR = "------love----you------choerodon----"
+
+    @Unroll
+    def "Merge #caseName the same way as values_yaml"() {
+        given: "读取用例"
+        def versionValue = read(caseName, "version.yaml")
+        def deployValue = read(caseName, "deploy.yaml")
+        def expected = read(caseName, "expected.out").split(SEPARATOR)
+        def yaml = new Yaml()
+        Map<String, List<List<String>>> expectedKeys = yaml.load(expected[2])
+
+        when: "合并values"
+        InstanceValueVO result = ValuesMergeUtil.merge(versionValue, deployValue)
+        InstanceValueVO expectedMarks = FileUtil.markChanges(result.getYaml(), expectedKeys.get("add"), expectedKeys.get("update"))
+
+        then: "合并结果和差异与values_yaml一致"
+        yaml.load(result.getYaml()) == yaml.load(expected[0])
+        yaml.load(result.getDeltaYaml()) == yaml.load(expected[1])
+
+        and: "新增和修改的标记与values_yaml给出的key一致"
+        result.getNewLines() == expectedMarks.getNewLines()
+        markers(result) == markers(expectedMarks)
+
+        where: ""
+        caseName << ["chart-values", "nested-add", "ignored-types", "type-changes"]
+    }
+
+    def "Merge keeps comments of untouched lines"() {
+        when: "合并values"
+        InstanceValueVO result = ValuesMergeUtil.merge(read("chart-values", "version.yaml"), read("chart-values", "deploy.yaml"))
+
+        then: "未修改部分的注释保留"
+        result.getYaml().contains("# Default values for app")
+        result.getYaml().contains("repository: nginx  # repo")
+    }
+
+    def "Empty version values are merged as an empty map"() {
+        given: "values_yaml在版本values为空时会报错, 这里按照空map合并"
+        def yaml = new Yaml()
+
+        when:
+        InstanceValueVO result = ValuesMergeUtil.merge("", "a: 1\nb:\n  c: [1]\n")
+
+        then:
+        yaml.load(result.getYaml()) == [a: 1, b: [c: [1]]]
+        yaml.load(result.getDeltaYaml()) == [a: 1, b: [c: [1]]]
+    }
+
+    private static List<List<Integer>> markers(InstanceValueVO instanceValueVO) {
+        return instanceValueVO.getHighlightMarkers().collect { [it.line, it.endLine, it.startColumn, it.endColumn] }
+    }
+
+    private static String read(String caseName, String fileName) {
+        return ValuesMergeUtilSpec.getResourceAsStream("/values-merge/${caseName}/${fileName}").getText("UTF-8")
+    }
+}
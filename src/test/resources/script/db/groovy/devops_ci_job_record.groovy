@@ -45,4 +45,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_ci_job_record.groovy') {
     changeSet(author: 'wanghao', id: '2020-04-19-add-not-null-cons') {
         addNotNullConstraint(tableName: "devops_ci_job_record", columnName: "name", columnDataType: "VARCHAR(255)")
     }
-}
\ No newline at end of file
+    changeSet(author: 'agent', id: '2026-10-18-add-index') {
+        createIndex(tableName: 'devops_ci_job_record', indexName: 'ci_job_record_cprid_name_idx') {
+            column(name: 'ci_pipeline_record_id')
+            column(name: 'name')
+        }
+    }
+}
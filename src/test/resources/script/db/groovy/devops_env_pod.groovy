@@ -51,4 +51,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_env_pod.groovy') {
             column(name: "instance_id")
         }
     }
+
+    changeSet(author: 'agent', id: '2026-10-18-add-container-summary') {
+        addColumn(tableName: 'devops_env_pod') {
+            column(name: 'container_summary', type: 'VARCHAR(2048)', remarks: '容器名称及是否就绪的摘要, 入库时从pod中提取', afterColumn: 'restart_count')
+        }
+    }
 }
\ No newline at end of file
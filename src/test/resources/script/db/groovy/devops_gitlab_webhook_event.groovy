@@ -0,0 +1,35 @@
+package script.db.groovy
+
+databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_webhook_event.groovy') {
+    changeSet(author: 'agent', id: '2026-10-18-create-table') {
+        createTable(tableName: "devops_gitlab_webhook_event", remarks: '已接收但还未处理完成的GitLab webhook事件') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'gitlab_project_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab项目id, 同一个项目的事件按顺序处理')
+            column(name: 'object_kind', type: 'VARCHAR(32)', remarks: '事件类型')
+            column(name: 'token', type: 'VARCHAR(255)', remarks: 'webhook的X-Gitlab-Token')
+            column(name: 'payload', type: 'LONGTEXT', remarks: '事件内容')
+            column(name: 'owner', type: 'VARCHAR(255)', remarks: '负责处理事件的服务实例')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "idx_owner", tableName: "devops_gitlab_webhook_event") {
+            column(name: "owner")
+        }
+        createIndex(indexName: "idx_last_update_date", tableName: "devops_gitlab_webhook_event") {
+            column(name: "last_update_date")
+        }
+    }
+
+    changeSet(author: 'agent', id: '2026-10-18-add-index-owner-project') {
+        createIndex(indexName: "idx_owner_project_id", tableName: "devops_gitlab_webhook_event") {
+            column(name: "owner")
+            column(name: "gitlab_project_id")
+        }
+    }
+}
\ No newline at end of file
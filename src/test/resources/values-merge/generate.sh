@@ -0,0 +1,14 @@
+#!/usr/bin/env bash
+# 用 docker/values_yaml.py 生成每个用例的预期输出 expected.out
+# 需要 ruamel.yaml==0.16.10, 和 docker/Dockerfile-base 中打包的版本一致
+# 输入和原来调用values_yaml时写入的文件一致: 版本values + "\n---\n" + 部署values
+set -euo pipefail
+cd "$(dirname "$0")"
+script=../../../../docker/values_yaml.py
+input=$(mktemp)
+trap 'rm -f "$input"' EXIT
+for dir in */; do
+    name=${dir%/}
+    { cat "$name/version.yaml"; printf '\n---\n'; cat "$name/deploy.yaml"; } > "$input"
+    python3 "$script" "$input" > "$name/expected.out"
+done